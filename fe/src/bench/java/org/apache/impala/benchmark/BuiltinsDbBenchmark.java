@@ -0,0 +1,74 @@
+package org.apache.impala.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.impala.catalog.BuiltinsDb;
+import org.apache.impala.catalog.Catalog;
+import org.apache.impala.catalog.Db;
+import org.apache.impala.util.PatternMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of creating the BuiltinsDb that every Catalog starts with.
+ *
+ * The *InJvm benchmarks run once per fresh JVM, so they measure what frontend startup
+ * pays. firstInJvm creates the first BuiltinsDb, which records the builtins but creates
+ * none of them. firstLookupsInJvm also resolves the functions of a typical query, which
+ * creates the builtins of those names only. allBuiltinsInJvm lists every builtin, which
+ * creates all of them, as creating the first BuiltinsDb used to. later measures the
+ * BuiltinsDbs created after that, e.g. for the ImpaladCatalog that replaces the current
+ * one on every full catalog update, which share the recorded builtins.
+ */
+public class BuiltinsDbBenchmark {
+    private static final String[] QUERY_FUNCTIONS = {
+            "count", "sum", "avg", "eq", "lt", "add", "and", "like", "concat", "substr",
+            "casttostring", "if"};
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Fork(10)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public Object firstInJvm() {
+        return new BuiltinsDb(Catalog.BUILTINS_DB, null);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Fork(10)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public void firstLookupsInJvm(Blackhole bh) {
+        Db db = new BuiltinsDb(Catalog.BUILTINS_DB, null);
+        for (String name: QUERY_FUNCTIONS) {
+            bh.consume(db.getFunctions(name));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Fork(10)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public Object allBuiltinsInJvm() {
+        Db db = new BuiltinsDb(Catalog.BUILTINS_DB, null);
+        return db.getFunctions(null, PatternMatcher.MATCHER_MATCH_ALL);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object later() {
+        return new BuiltinsDb(Catalog.BUILTINS_DB, null);
+    }
+}
@@ -0,0 +1,162 @@
+package org.apache.impala.benchmark;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.io.CharStreams;
+import org.apache.impala.util.ScriptParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SQL corpora shared by the benchmarks. All of them are bundled or generated, so the
+ * benchmarks run offline:
+ * <ul>
+ *   <li>tpch: TPC-H queries 1-22,</li>
+ *   <li>tpcds: a representative subset of the TPC-DS queries,</li>
+ *   <li>in_list: queries with IN-lists of 10,000 integer, decimal and string literals,</li>
+ *   <li>nested: queries with subqueries nested 64 deep in FROM and WHERE clauses,</li>
+ *   <li>wide_create_table: a CREATE TABLE statement with 10,000 columns,</li>
+ *   <li>script: a script of SCRIPT_STATEMENTS statements cycling through tpch and
+ *   tpcds.</li>
+ * </ul>
+ */
+public final class Corpora {
+    public static final String TPCH = "tpch";
+    public static final String TPCDS = "tpcds";
+    public static final String IN_LIST = "in_list";
+    public static final String NESTED = "nested";
+    public static final String WIDE_CREATE_TABLE = "wide_create_table";
+    public static final String SCRIPT = "script";
+
+    public static final int IN_LIST_SIZE = 10000;
+    public static final int NESTING_DEPTH = 64;
+    public static final int WIDE_TABLE_COLUMNS = 10000;
+    public static final int SCRIPT_STATEMENTS = 5000;
+
+    private static final String[] COLUMN_TYPES = new String[] {
+            "int", "bigint", "string", "double", "decimal(18,4)", "timestamp", "boolean",
+            "varchar(64)", "array<int>", "map<string,bigint>", "struct<a:int,b:string>"
+    };
+
+    private Corpora() {
+    }
+
+    /**
+     * Returns the statements of the corpus 'name'.
+     */
+    public static List<String> statements(String name) {
+        switch (name) {
+            case TPCH:
+                return loadResource("tpch.sql");
+            case TPCDS:
+                return loadResource("tpcds.sql");
+            case IN_LIST:
+                return inListQueries();
+            case NESTED:
+                return nestedQueries();
+            case WIDE_CREATE_TABLE:
+                return Collections.singletonList(wideCreateTable());
+            case SCRIPT:
+                return scriptStatements();
+            default:
+                throw new IllegalArgumentException("Unknown corpus: " + name);
+        }
+    }
+
+    /**
+     * Returns the statements of the corpus 'name' as one ';'-separated script.
+     */
+    public static String script(String name) {
+        StringBuilder script = new StringBuilder();
+        for (String statement: statements(name)) {
+            script.append(statement).append(";\n");
+        }
+        return script.toString();
+    }
+
+    private static List<String> loadResource(String resource) {
+        InputStream in = Corpora.class.getResourceAsStream(resource);
+        Preconditions.checkState(in != null, "Missing corpus resource: " + resource);
+        try {
+            try {
+                String script = CharStreams.toString(
+                        new InputStreamReader(in, Charset.forName("UTF-8")));
+                List<String> statements = new ArrayList<>();
+                for (ScriptParser.Statement statement: ScriptParser.split(script)) {
+                    statements.add(statement.getSql());
+                }
+                return Collections.unmodifiableList(statements);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private static List<String> inListQueries() {
+        StringBuilder ints = new StringBuilder();
+        StringBuilder decimals = new StringBuilder();
+        StringBuilder strings = new StringBuilder();
+        for (int i = 0; i < IN_LIST_SIZE; ++i) {
+            String sep = i == 0 ? "" : ", ";
+            ints.append(sep).append(i * 7919L);
+            decimals.append(sep).append(i).append('.').append(i % 100);
+            strings.append(sep).append('\'').append(Integer.toHexString(i * 31)).append('\'');
+        }
+        List<String> queries = new ArrayList<>();
+        queries.add("select * from lineitem where l_orderkey in (" + ints + ")");
+        queries.add("select l_orderkey, l_extendedprice from lineitem " +
+                "where l_extendedprice not in (" + decimals + ")");
+        queries.add("select count(*) from customer where c_name in (" + strings + ") " +
+                "and c_custkey in (" + ints + ")");
+        return Collections.unmodifiableList(queries);
+    }
+
+    private static List<String> nestedQueries() {
+        StringBuilder from = new StringBuilder("select a from t0");
+        StringBuilder where = new StringBuilder("select a from t0 where a > 0");
+        StringBuilder exprs = new StringBuilder("a");
+        for (int i = 1; i < NESTING_DEPTH; ++i) {
+            from.insert(0, "select a + " + i + " a from (").append(") v").append(i);
+            where.insert(0, "select a from t" + i + " where a in (").append(')');
+            exprs.insert(0, "(case when a > " + i + " then ").append(" else " + i + " end)");
+        }
+        List<String> queries = new ArrayList<>();
+        queries.add(from.toString());
+        queries.add(where.toString());
+        queries.add("select " + exprs + " from t0");
+        return Collections.unmodifiableList(queries);
+    }
+
+    private static String wideCreateTable() {
+        StringBuilder sql = new StringBuilder("create table wide_table (");
+        for (int i = 0; i < WIDE_TABLE_COLUMNS; ++i) {
+            if (i > 0) {
+                sql.append(",\n  ");
+            }
+            sql.append("c").append(i).append(' ').append(COLUMN_TYPES[i % COLUMN_TYPES.length]);
+            if (i % 10 == 0) {
+                sql.append(" comment 'column ").append(i).append('\'');
+            }
+        }
+        sql.append(")\npartitioned by (year int, month int)\nstored as parquet");
+        return sql.toString();
+    }
+
+    private static List<String> scriptStatements() {
+        List<String> queries = new ArrayList<>(statements(TPCH));
+        queries.addAll(statements(TPCDS));
+        List<String> statements = new ArrayList<>(SCRIPT_STATEMENTS);
+        for (int i = 0; i < SCRIPT_STATEMENTS; ++i) {
+            statements.add(queries.get(i % queries.size()));
+        }
+        return Collections.unmodifiableList(statements);
+    }
+}
@@ -0,0 +1,171 @@
+package org.apache.impala.benchmark;
+
+import org.apache.impala.analysis.BinaryPredicate;
+import org.apache.impala.analysis.CompoundPredicate;
+import org.apache.impala.analysis.DescriptorTable;
+import org.apache.impala.analysis.Expr;
+import org.apache.impala.analysis.ExprSubstitutionMap;
+import org.apache.impala.analysis.NumericLiteral;
+import org.apache.impala.analysis.SlotDescriptor;
+import org.apache.impala.analysis.SlotRef;
+import org.apache.impala.analysis.TupleDescriptor;
+import org.apache.impala.catalog.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Substitution through the smap of an inline view with 'width' select items, as the
+ * planner does for every expr of the enclosing query block: the smap maps the SlotRef
+ * of each view column to the SlotRef of the base column, and the outer query has one
+ * predicate 'c_i = i' per view column. Expr.substituteImpl() looks up every node of
+ * every predicate, so each predicate costs three lookups, two of them misses.
+ *
+ * indexedLookups goes through ExprSubstitutionMap.get(). linearLookups repeats the
+ * same lookups with a linear scan over getLhs(), as get() did before the hash index.
+ * The planner itself needs a catalog, so the smap is built on a standalone
+ * DescriptorTable.
+ *
+ * The chain benchmarks look up every node of a single conjunction of all predicates,
+ * 'p_0 AND p_1 AND ... AND p_width-1', which is a left-deep tree of depth 'width'.
+ * chainTreeLookups brackets the lookups with beginTreeLookups() and endTreeLookups()
+ * like Expr.substituteImpl(), chainLookups does not and hashes each probe from scratch,
+ * and chainLinearLookups uses the linear scan.
+ */
+@State(Scope.Thread)
+public class ExprSubstitutionMapBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    public int width;
+
+    private ExprSubstitutionMap smap;
+    private List<Expr> outerExprs;
+    private Expr chain;
+
+    @Setup
+    public void setup() {
+        DescriptorTable descTbl = new DescriptorTable();
+        TupleDescriptor base = descTbl.createTupleDescriptor("base");
+        TupleDescriptor view = descTbl.createTupleDescriptor("view");
+        smap = new ExprSubstitutionMap();
+        outerExprs = new ArrayList<>();
+        for (int i = 0; i < width; ++i) {
+            SlotRef baseSlot = new SlotRef(slot(descTbl, base, "b" + i));
+            SlotRef viewSlot = new SlotRef(slot(descTbl, view, "c" + i));
+            smap.put(viewSlot, baseSlot);
+            outerExprs.add(new BinaryPredicate(BinaryPredicate.Operator.EQ,
+                    viewSlot.clone(), new NumericLiteral(i)));
+        }
+        chain = outerExprs.get(0);
+        for (int i = 1; i < width; ++i) {
+            chain = new CompoundPredicate(CompoundPredicate.Operator.AND, chain,
+                    outerExprs.get(i));
+        }
+    }
+
+    private static SlotDescriptor slot(DescriptorTable descTbl, TupleDescriptor tuple,
+            String label) {
+        SlotDescriptor slot = descTbl.addSlotDescriptor(tuple);
+        slot.setType(Type.BIGINT);
+        slot.setLabel(label);
+        return slot;
+    }
+
+    @Benchmark
+    public void indexedLookups(Blackhole bh) {
+        for (Expr expr: outerExprs) {
+            bh.consume(smap.get(expr));
+            for (Expr child: expr.getChildren()) {
+                bh.consume(smap.get(child));
+            }
+        }
+    }
+
+    @Benchmark
+    public void linearLookups(Blackhole bh) {
+        for (Expr expr: outerExprs) {
+            bh.consume(linearGet(expr));
+            for (Expr child: expr.getChildren()) {
+                bh.consume(linearGet(child));
+            }
+        }
+    }
+
+    @Benchmark
+    public void chainTreeLookups(Blackhole bh) {
+        smap.beginTreeLookups();
+        try {
+            chainLookups(bh);
+        } finally {
+            smap.endTreeLookups();
+        }
+    }
+
+    /**
+     * Looks up every node of 'chain' top-down, like Expr.substituteImpl() on a tree
+     * without matches above the SlotRefs.
+     */
+    @Benchmark
+    public void chainLookups(Blackhole bh) {
+        Deque<Expr> exprs = new ArrayDeque<>();
+        exprs.push(chain);
+        while (!exprs.isEmpty()) {
+            Expr expr = exprs.pop();
+            Expr rhs = smap.get(expr);
+            bh.consume(rhs);
+            if (rhs != null) continue;
+            for (Expr child: expr.getChildren()) {
+                exprs.push(child);
+            }
+        }
+    }
+
+    @Benchmark
+    public void chainLinearLookups(Blackhole bh) {
+        Deque<Expr> exprs = new ArrayDeque<>();
+        exprs.push(chain);
+        while (!exprs.isEmpty()) {
+            Expr expr = exprs.pop();
+            Expr rhs = linearGet(expr);
+            bh.consume(rhs);
+            if (rhs != null) continue;
+            for (Expr child: expr.getChildren()) {
+                exprs.push(child);
+            }
+        }
+    }
+
+    private Expr linearGet(Expr lhsExpr) {
+        List<Expr> lhs = smap.getLhs();
+        for (int i = 0; i < lhs.size(); ++i) {
+            if (lhsExpr.equals(lhs.get(i))) {
+                return smap.getRhs().get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds a copy of the view smap, checking for an existing mapping before every put
+     * like ExprSubstitutionMap.compose() does.
+     */
+    @Benchmark
+    public Object build() {
+        ExprSubstitutionMap result = new ExprSubstitutionMap();
+        List<Expr> lhs = smap.getLhs();
+        List<Expr> rhs = smap.getRhs();
+        for (int i = 0; i < lhs.size(); ++i) {
+            if (!result.containsMappingFor(lhs.get(i))) {
+                result.put(lhs.get(i), rhs.get(i));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,78 @@
+package org.apache.impala.benchmark;
+
+import java_cup.runtime.ExtendSymbol;
+import org.apache.impala.analysis.SqlParserSymbols;
+import org.apache.impala.analysis.SqlScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keyword recognition of identifier-like words: the previous lookup, which lower-cased a
+ * copy of the token text and probed keywordMap, against SqlKeywordTable, which hashes
+ * the characters in the scan buffer. The words are all keywords and identifiers of the
+ * corpus, in order.
+ */
+@State(Scope.Thread)
+public class KeywordLookupBenchmark {
+    @Param({Corpora.TPCH, Corpora.TPCDS})
+    public String corpus;
+
+    private String[] words;
+    private char[] buffer;
+    private int[] starts;
+    private int[] ends;
+
+    @Setup
+    public void setup() throws Exception {
+        List<String> found = new ArrayList<>();
+        for (String statement: Corpora.statements(corpus)) {
+            SqlScanner scanner = new SqlScanner(new StringReader(statement));
+            while (true) {
+                ExtendSymbol token = (ExtendSymbol) scanner.next_token();
+                if (token.sym == SqlParserSymbols.EOF) {
+                    break;
+                }
+                if (token.sym == SqlParserSymbols.IDENT || SqlScanner.isKeyword(token.sym)) {
+                    String text = token.getText();
+                    if (!text.isEmpty() && Character.isLetter(text.charAt(0))) {
+                        found.add(text);
+                    }
+                }
+            }
+        }
+        words = found.toArray(new String[found.size()]);
+        StringBuilder chars = new StringBuilder();
+        starts = new int[words.length];
+        ends = new int[words.length];
+        for (int i = 0; i < words.length; ++i) {
+            starts[i] = chars.length();
+            chars.append(words[i]);
+            ends[i] = chars.length();
+            chars.append(' ');
+        }
+        buffer = chars.toString().toCharArray();
+    }
+
+    @Benchmark
+    public void mapLookup(Blackhole bh) {
+        for (int i = 0; i < words.length; ++i) {
+            String text = new String(buffer, starts[i], ends[i] - starts[i]);
+            bh.consume(SqlScanner.keywordMap.get(text.toLowerCase()));
+        }
+    }
+
+    @Benchmark
+    public void tableLookup(Blackhole bh) {
+        for (int i = 0; i < words.length; ++i) {
+            bh.consume(SqlScanner.keywordTable.lookup(buffer, starts[i], ends[i]));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.apache.impala.benchmark;
+
+import java_cup.runtime.ExtendSymbolFactory;
+import org.apache.impala.analysis.SqlParser;
+import org.apache.impala.analysis.SqlScanner;
+import org.apache.impala.util.SqlFingerprint;
+import org.apache.impala.util.SqlParserHandle;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Parser throughput in statements/sec (the "statements" counter):
+ * <ul>
+ *   <li>freshParser: a new eager-text SqlScanner and SqlParser per statement, as
+ *   before SqlParserHandle,</li>
+ *   <li>handle: the thread's SqlParserHandle, with or without subBlocks,</li>
+ *   <li>fingerprint: SqlFingerprint.of(), which only scans.</li>
+ * </ul>
+ * Per-core scaling is measured by running with several threads, e.g. "-t 4"; each
+ * thread then uses its own handle.
+ */
+@State(Scope.Thread)
+public class ParserBenchmark {
+    @Param({Corpora.TPCH, Corpora.TPCDS, Corpora.IN_LIST, Corpora.NESTED,
+            Corpora.WIDE_CREATE_TABLE})
+    public String corpus;
+
+    @Param({"true", "false"})
+    public boolean buildSubBlocks;
+
+    private List<String> statements;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class StatementCounters {
+        public long statements;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        statements = Corpora.statements(corpus);
+    }
+
+    @Benchmark
+    public void freshParser(StatementCounters counters, Blackhole bh) throws Exception {
+        for (String statement: statements) {
+            SqlScanner scanner = new SqlScanner(new StringReader(statement));
+            SqlParser parser = new SqlParser(scanner, new ExtendSymbolFactory(statement));
+            parser.setBuildSubBlocks(buildSubBlocks);
+            bh.consume(parser.parse().value);
+            ++counters.statements;
+        }
+    }
+
+    @Benchmark
+    public void handle(StatementCounters counters, Blackhole bh) throws Exception {
+        SqlParserHandle handle = SqlParserHandle.acquire();
+        try {
+            for (String statement: statements) {
+                bh.consume(handle.parse(statement, buildSubBlocks));
+                ++counters.statements;
+            }
+        } finally {
+            handle.release();
+        }
+    }
+
+    @Benchmark
+    public void fingerprint(StatementCounters counters, Blackhole bh) {
+        for (String statement: statements) {
+            bh.consume(SqlFingerprint.of(statement).getHash());
+            ++counters.statements;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.apache.impala.benchmark;
+
+import java_cup.runtime.ExtendSymbol;
+import org.apache.impala.analysis.SqlParserSymbols;
+import org.apache.impala.analysis.SqlScanner;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Scanner throughput in tokens/sec (the "tokens" counter), with token text copied
+ * eagerly or sliced lazily out of the statement (setLazyTextSource()).
+ */
+@State(Scope.Thread)
+public class ScannerBenchmark {
+    @Param({Corpora.TPCH, Corpora.TPCDS, Corpora.IN_LIST, Corpora.NESTED,
+            Corpora.WIDE_CREATE_TABLE})
+    public String corpus;
+
+    @Param({"eager", "lazy"})
+    public String textMode;
+
+    private List<String> statements;
+    private boolean lazy;
+
+    /**
+     * Per-iteration counters, reported by JMH as rates next to the primary score.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class TokenCounters {
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        statements = Corpora.statements(corpus);
+        lazy = "lazy".equals(textMode);
+    }
+
+    /**
+     * Scans every statement of the corpus once.
+     */
+    @Benchmark
+    public void scan(TokenCounters counters, Blackhole bh) throws Exception {
+        for (String statement: statements) {
+            SqlScanner scanner = new SqlScanner(new StringReader(statement));
+            if (lazy) {
+                scanner.setLazyTextSource(statement);
+            }
+            while (true) {
+                ExtendSymbol token = (ExtendSymbol) scanner.next_token();
+                bh.consume(token);
+                ++counters.tokens;
+                if (token.sym == SqlParserSymbols.EOF) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as scan(), but also reads the text of every token, which is the worst case
+     * for the lazy mode.
+     */
+    @Benchmark
+    public void scanWithText(TokenCounters counters, Blackhole bh) throws Exception {
+        for (String statement: statements) {
+            SqlScanner scanner = new SqlScanner(new StringReader(statement));
+            if (lazy) {
+                scanner.setLazyTextSource(statement);
+            }
+            while (true) {
+                ExtendSymbol token = (ExtendSymbol) scanner.next_token();
+                bh.consume(token.getText());
+                ++counters.tokens;
+                if (token.sym == SqlParserSymbols.EOF) {
+                    break;
+                }
+            }
+        }
+    }
+}
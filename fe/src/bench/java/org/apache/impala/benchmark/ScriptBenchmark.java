@@ -0,0 +1,112 @@
+package org.apache.impala.benchmark;
+
+import org.apache.impala.util.IncrementalParser;
+import org.apache.impala.util.ScriptParser;
+import org.apache.impala.util.StatementStreamParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.List;
+
+/**
+ * Multi-statement scripts of Corpora.SCRIPT_STATEMENTS statements. Scores are in
+ * statements/sec: ScriptParser splitting alone, ScriptParser parsing the statements in
+ * parallel on all cores, and StatementStreamParser parsing them sequentially from a
+ * Reader or a CharBuffer. The error recovery variant runs on the same script with a
+ * syntax error injected into every tenth statement.
+ *
+ * reparseAfterEdit measures IncrementalParser on the 10,000-column CREATE TABLE: one
+ * whitespace edit and its undo per operation.
+ */
+@State(Scope.Thread)
+public class ScriptBenchmark {
+    private String script;
+    private String scriptWithErrors;
+    private String wideTable;
+    private int editOffset;
+    private IncrementalParser.Result incremental;
+
+    @Setup
+    public void setup() throws Exception {
+        script = Corpora.script(Corpora.SCRIPT);
+        StringBuilder withErrors = new StringBuilder();
+        List<String> statements = Corpora.statements(Corpora.SCRIPT);
+        for (int i = 0; i < statements.size(); ++i) {
+            String statement = statements.get(i);
+            if (i % 10 == 0) {
+                statement = statement.replaceFirst("(?i)\\bfrom\\b", "from from");
+            }
+            withErrors.append(statement).append(";\n");
+        }
+        scriptWithErrors = withErrors.toString();
+        wideTable = Corpora.statements(Corpora.WIDE_CREATE_TABLE).get(0);
+        editOffset = wideTable.indexOf(',', wideTable.length() / 2) + 1;
+        incremental = IncrementalParser.parse(wideTable);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpora.SCRIPT_STATEMENTS)
+    public Object split() throws Exception {
+        return ScriptParser.split(script);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpora.SCRIPT_STATEMENTS)
+    public Object parallelParse() throws Exception {
+        return ScriptParser.parse(script);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpora.SCRIPT_STATEMENTS)
+    public Object parallelParseWithRecovery() throws Exception {
+        return ScriptParser.parseWithRecovery(scriptWithErrors);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpora.SCRIPT_STATEMENTS)
+    public void streamParseReader(Blackhole bh) throws Exception {
+        StatementStreamParser parser = new StatementStreamParser(new StringReader(script));
+        try {
+            StatementStreamParser.Statement statement;
+            while ((statement = parser.next()) != null) {
+                bh.consume(statement.getRoot());
+            }
+        } finally {
+            parser.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Corpora.SCRIPT_STATEMENTS)
+    public void streamParseCharBuffer(Blackhole bh) throws Exception {
+        StatementStreamParser parser = new StatementStreamParser(CharBuffer.wrap(script));
+        try {
+            StatementStreamParser.Statement statement;
+            while ((statement = parser.next()) != null) {
+                bh.consume(statement.getRoot());
+            }
+        } finally {
+            parser.close();
+        }
+    }
+
+    @Benchmark
+    public Object reparseAfterEdit() throws Exception {
+        incremental = IncrementalParser.reparse(incremental, editOffset, 0, " ");
+        incremental = IncrementalParser.reparse(incremental, editOffset, 1, "");
+        return incremental.getRoot();
+    }
+
+    @Benchmark
+    public Object fullParseAfterEdit() throws Exception {
+        IncrementalParser.Result result = IncrementalParser.parse(
+                wideTable.substring(0, editOffset) + " " + wideTable.substring(editOffset));
+        return result.getRoot();
+    }
+}
@@ -0,0 +1,122 @@
+package org.apache.impala.benchmark;
+
+import org.apache.impala.analysis.SyntaxBlock;
+import org.apache.impala.util.ImpalaSqlUtil;
+import org.apache.impala.util.SyntaxBlockCodec;
+import org.apache.impala.util.SyntaxBlockCursor;
+import org.apache.impala.util.SyntaxBlockIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+
+/**
+ * Cost of working with parsed SyntaxBlock trees: walking them, building and querying a
+ * SyntaxBlockIndex, and encoding and decoding them with SyntaxBlockCodec. The trees of
+ * all statements of the corpus are parsed once in setup.
+ */
+@State(Scope.Thread)
+public class TreeBenchmark {
+    private static final int LOOKUPS_PER_TREE = 64;
+
+    @Param({Corpora.TPCH, Corpora.IN_LIST, Corpora.NESTED, Corpora.WIDE_CREATE_TABLE,
+            Corpora.SCRIPT})
+    public String corpus;
+
+    private SyntaxBlock[] roots;
+    private SyntaxBlockIndex[] indexes;
+    private byte[][] encoded;
+    private int[][] lookupOffsets;
+
+    @Setup
+    public void setup() throws Exception {
+        List<String> statements = Corpora.statements(corpus);
+        int n = statements.size();
+        roots = new SyntaxBlock[n];
+        indexes = new SyntaxBlockIndex[n];
+        encoded = new byte[n][];
+        lookupOffsets = new int[n][LOOKUPS_PER_TREE];
+        Random random = new Random(42);
+        for (int i = 0; i < n; ++i) {
+            roots[i] = ImpalaSqlUtil.parse(statements.get(i));
+            indexes[i] = SyntaxBlockIndex.build(roots[i]);
+            encoded[i] = SyntaxBlockCodec.encode(roots[i]);
+            for (int j = 0; j < LOOKUPS_PER_TREE; ++j) {
+                lookupOffsets[i][j] = random.nextInt(statements.get(i).length());
+            }
+        }
+    }
+
+    /**
+     * Pre-order walk with SyntaxBlockCursor, counting blocks.
+     */
+    @Benchmark
+    public long cursorWalk() {
+        long blocks = 0;
+        SyntaxBlockCursor cursor = new SyntaxBlockCursor(null);
+        for (SyntaxBlock root: roots) {
+            cursor.reset(root);
+            while (cursor.next()) {
+                ++blocks;
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Walk through ImpalaSqlUtil.foreach(), which copies the ancestor path for every
+     * block.
+     */
+    @Benchmark
+    public void foreachWalk(final Blackhole bh) {
+        for (SyntaxBlock root: roots) {
+            ImpalaSqlUtil.foreach(root, new ImpalaSqlUtil.ForeachAction() {
+                @Override
+                public void doAction(SyntaxBlock syntaxBlock, Stack<SyntaxBlock> parentStack,
+                        int childIndex) {
+                    bh.consume(syntaxBlock);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void buildIndex(Blackhole bh) {
+        for (SyntaxBlock root: roots) {
+            bh.consume(SyntaxBlockIndex.build(root));
+        }
+    }
+
+    /**
+     * LOOKUPS_PER_TREE innermostAt() and enclosingAt() lookups at random offsets.
+     */
+    @Benchmark
+    public void indexLookups(Blackhole bh) {
+        for (int i = 0; i < indexes.length; ++i) {
+            for (int offset: lookupOffsets[i]) {
+                bh.consume(indexes[i].innermostAt(offset));
+                bh.consume(indexes[i].enclosingAt(offset));
+            }
+        }
+    }
+
+    @Benchmark
+    public void encode(Blackhole bh) throws Exception {
+        for (SyntaxBlock root: roots) {
+            bh.consume(SyntaxBlockCodec.encode(root));
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) throws Exception {
+        for (byte[] bytes: encoded) {
+            bh.consume(SyntaxBlockCodec.decode(bytes));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.apache.impala.benchmark;
+
+import org.apache.impala.util.ReachabilityMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Transitive closure of one value-transfer graph partition, as computed by
+ * Analyzer.ValueTransferGraph. The graph models a star join of STAR_WIDTH tables
+ * stacked under outer-joined inline views: each view layer has STAR_WIDTH slots, the
+ * fact slot of a layer transfers values to its dimension slots, and every slot
+ * transfers values to the slot of the same column in the enclosing view. A few random
+ * forward transfers between layers are added on top.
+ *
+ * bitset and bitsetSmall run ReachabilityMatrix. bruteForceSmall runs the repeated
+ * triple loop over a boolean matrix that ValueTransferGraph used before, on the small
+ * graphs only.
+ */
+public class ValueTransferBenchmark {
+    private static final int STAR_WIDTH = 60;
+
+    @State(Scope.Thread)
+    public static class Graph {
+        @Param({"500", "2000", "5000"})
+        public int numSlots;
+
+        private int[][] edges;
+
+        @Setup
+        public void setup() {
+            edges = starJoinEdges(numSlots);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SmallGraph {
+        @Param({"120", "500"})
+        public int numSlots;
+
+        private int[][] edges;
+
+        @Setup
+        public void setup() {
+            edges = starJoinEdges(numSlots);
+        }
+    }
+
+    /**
+     * Returns the source slots and the destination slots of the value transfers.
+     */
+    private static int[][] starJoinEdges(int numSlots) {
+        Random random = new Random(42);
+        int numEdges = 0;
+        int[] src = new int[3 * numSlots];
+        int[] dest = new int[3 * numSlots];
+        for (int slot = 0; slot < numSlots; ++slot) {
+            int column = slot % STAR_WIDTH;
+            if (column != 0) {
+                src[numEdges] = slot - column;
+                dest[numEdges++] = slot;
+            }
+            if (slot + STAR_WIDTH < numSlots) {
+                src[numEdges] = slot;
+                dest[numEdges++] = slot + STAR_WIDTH;
+            }
+            if (random.nextInt(10) == 0 && slot + 1 < numSlots) {
+                src[numEdges] = slot;
+                dest[numEdges++] = slot + 1 + random.nextInt(numSlots - slot - 1);
+            }
+        }
+        return new int[][] {Arrays.copyOf(src, numEdges), Arrays.copyOf(dest, numEdges)};
+    }
+
+    @Benchmark
+    public Object bitset(Graph graph) {
+        return closure(graph.numSlots, graph.edges);
+    }
+
+    @Benchmark
+    public Object bitsetSmall(SmallGraph graph) {
+        return closure(graph.numSlots, graph.edges);
+    }
+
+    private static ReachabilityMatrix closure(int numSlots, int[][] edges) {
+        ReachabilityMatrix m = new ReachabilityMatrix(numSlots);
+        for (int i = 0; i < edges[0].length; ++i) {
+            m.addEdge(edges[0][i], edges[1][i]);
+        }
+        m.computeClosure();
+        return m;
+    }
+
+    @Benchmark
+    public Object bruteForceSmall(SmallGraph graph) {
+        int n = graph.numSlots;
+        boolean[][] valueTransfer = new boolean[n][n];
+        for (int i = 0; i < n; ++i) {
+            valueTransfer[i][i] = true;
+        }
+        for (int i = 0; i < graph.edges[0].length; ++i) {
+            valueTransfer[graph.edges[0][i]][graph.edges[1][i]] = true;
+        }
+        boolean changed;
+        do {
+            changed = false;
+            for (int i = 0; i < n; ++i) {
+                for (int j = 0; j < n; ++j) {
+                    for (int k = 0; k < n; ++k) {
+                        if (valueTransfer[i][j] && valueTransfer[j][k]
+                                && !valueTransfer[i][k]) {
+                            valueTransfer[i][k] = true;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        } while (changed);
+        return valueTransfer;
+    }
+}
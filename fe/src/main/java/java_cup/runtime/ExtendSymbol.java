@@ -9,6 +9,9 @@ public class ExtendSymbol extends Symbol {
     public int start;
     public int end;
     public String text;
+    // Shared source of the statement. When set, text is sliced out of it on first use
+    // instead of being copied eagerly for every token.
+    private CharSequence source;
 
     public ExtendSymbol(int id, int left, int right, Object value,
                         int start, int end, String text) {
@@ -18,6 +21,12 @@ public class ExtendSymbol extends Symbol {
         this.text = text;
     }
 
+    public ExtendSymbol(int id, int left, int right, Object value,
+                        CharSequence source, int start, int end) {
+        this(id, left, right, value, start, end, null);
+        this.source = source;
+    }
+
     public ExtendSymbol(int id, ExtendSymbol left, ExtendSymbol right, Object value) {
         this(id, left.left, right.right, value, left.start, right.end, null);
     }
@@ -49,4 +58,15 @@ public class ExtendSymbol extends Symbol {
         this.start = -1;
         this.end = -1;
     }
+
+    public boolean hasText() {
+        return text != null || source != null;
+    }
+
+    public String getText() {
+        if (text == null && source != null && start >= 0 && end <= source.length()) {
+            text = source.subSequence(start, end).toString();
+        }
+        return text;
+    }
 }
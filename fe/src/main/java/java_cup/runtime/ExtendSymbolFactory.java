@@ -7,15 +7,30 @@ import java_cup.runtime.SymbolFactory;
  * Created by lanhuajian on 2017/4/12.
  */
 public class ExtendSymbolFactory implements SymbolFactory {
-    private int firstNonWhitespaceIndex;
+    private CharSequence sql;
 
-    public ExtendSymbolFactory(String sql) {
+    /**
+     * 'sql' is only read when parsing starts, to find the first non-whitespace offset, so
+     * it can be a view over a larger buffer such as a slice of a memory-mapped file.
+     */
+    public ExtendSymbolFactory(CharSequence sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Points the factory at the next statement, so that a parser can be reused.
+     */
+    public void reset(CharSequence sql) {
+        this.sql = sql;
+    }
+
+    private int firstNonWhitespaceIndex() {
         for (int i = 0; i < sql.length(); i++) {
             if (!Character.isWhitespace(sql.charAt(i))) {
-                firstNonWhitespaceIndex = i;
-                break;
+                return i;
             }
         }
+        return 0;
     }
 
     @Override
@@ -41,6 +56,7 @@ public class ExtendSymbolFactory implements SymbolFactory {
     @Override
     public ExtendSymbol startSymbol(String name, int id, int state) {
         ExtendSymbol symbol = new ExtendSymbol(id, state);
+        int firstNonWhitespaceIndex = firstNonWhitespaceIndex();
         symbol.start = firstNonWhitespaceIndex;
         symbol.end = firstNonWhitespaceIndex;
         return symbol;
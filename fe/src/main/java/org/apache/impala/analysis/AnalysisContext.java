@@ -17,7 +17,6 @@
 
 package org.apache.impala.analysis;
 
-import java.io.StringReader;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -43,6 +42,7 @@ import org.apache.impala.rewrite.FoldConstantsRule;
 import org.apache.impala.thrift.TAccessEvent;
 import org.apache.impala.thrift.TLineageGraph;
 import org.apache.impala.thrift.TQueryCtx;
+import org.apache.impala.util.SqlParserHandle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +60,9 @@ public class AnalysisContext {
   private final AuthorizationConfig authzConfig_;
   private final ExprRewriter rewriter_;
 
+  // If set, parsed stmts are looked up in and added to this cache.
+  private ParseCache parseCache_;
+
   // Set in analyze()
   private AnalysisResult analysisResult_;
 
@@ -90,6 +93,8 @@ public class AnalysisContext {
     rewriter_ = rewriter;
   }
 
+  public void setParseCache(ParseCache parseCache) { parseCache_ = parseCache; }
+
   static public class AnalysisResult {
     private StatementBase stmt_;
     private Analyzer analyzer_;
@@ -363,19 +368,32 @@ public class AnalysisContext {
     analyze(stmt, analyzer);
   }
 
+  /**
+   * Returns the unanalyzed stmt parsed from 'stmt', from the parse cache if possible.
+   */
+  private StatementBase parse(SqlParserHandle parser, String stmt) throws Exception {
+    if (parseCache_ != null) {
+      StatementBase cachedStmt = parseCache_.get(stmt);
+      if (cachedStmt != null) return cachedStmt;
+    }
+    // Analysis does not need the subBlocks of the syntax tree.
+    StatementBase parsedStmt = (StatementBase) parser.parse(stmt, false);
+    if (parseCache_ != null && parsedStmt != null) parseCache_.put(stmt, parsedStmt);
+    return parsedStmt;
+  }
+
   /**
    * Parse and analyze 'stmt' using a specified Analyzer.
    */
   public void analyze(String stmt, Analyzer analyzer) throws AnalysisException {
-    SqlScanner input = new SqlScanner(new StringReader(stmt));
-    SqlParser parser = new SqlParser(input);
+    SqlParserHandle parser = SqlParserHandle.acquire();
     try {
       analysisResult_ = new AnalysisResult();
       analysisResult_.analyzer_ = analyzer;
       if (analysisResult_.analyzer_ == null) {
         analysisResult_.analyzer_ = new Analyzer(catalog_, queryCtx_, authzConfig_);
       }
-      analysisResult_.stmt_ = (StatementBase) parser.parse().value;
+      analysisResult_.stmt_ = parse(parser, stmt);
       if (analysisResult_.stmt_ == null) return;
 
       analysisResult_.stmt_.analyze(analysisResult_.analyzer_);
@@ -385,8 +403,12 @@ public class AnalysisContext {
       boolean reAnalyze = false;
       if (analysisResult_.requiresExprRewrite()) {
         rewriter_.reset();
+        rewriter_.setTimeRules(LOG.isDebugEnabled());
         analysisResult_.stmt_.rewriteExprs(rewriter_);
         reAnalyze = rewriter_.changed();
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Expr rewrite rule stats: " + rewriter_.getRuleStats());
+        }
       }
       if (analysisResult_.requiresSubqueryRewrite()) {
         StmtRewriter.rewrite(analysisResult_);
@@ -422,6 +444,8 @@ public class AnalysisContext {
       throw e;
     } catch (Exception e) {
       throw new AnalysisException(parser.getErrorMsg(stmt), e);
+    } finally {
+      parser.release();
     }
   }
 
@@ -434,6 +458,9 @@ public class AnalysisContext {
       throws AuthorizationException, InternalException {
     Preconditions.checkNotNull(analysisResult_);
     Analyzer analyzer = getAnalyzer();
+    // The time between these two events in the timeline is the authorization time.
+    boolean markEvents = authzChecker.getConfig().isEnabled();
+    if (markEvents) analyzer.getTimeline().markEvent("Authorization started");
     // Process statements for which column-level privilege requests may be registered
     // except for DESCRIBE TABLE or REFRESH/INVALIDATE statements
     if (analysisResult_.isQueryStmt() || analysisResult_.isInsertStmt() ||
@@ -492,6 +519,7 @@ public class AnalysisContext {
         throw new AuthorizationException(maskedReq.second);
       }
     }
+    if (markEvents) analyzer.getTimeline().markEvent("Authorization finished");
   }
 
   /**
@@ -521,6 +549,8 @@ public class AnalysisContext {
    * function requires 'SELECT' requests to be ordered by table and then by column
    * privilege requests. Throws an AuthorizationException if the user doesn't have
    * sufficient privileges.
+   * The column-level requests are only decided if the user lacks the table-level
+   * SELECT privilege, in one batch that stops at the first denied column.
    */
   private void authorizeTableAccess(AuthorizationChecker authzChecker,
       List<PrivilegeRequest> requests)
@@ -528,7 +558,7 @@ public class AnalysisContext {
     Preconditions.checkState(!requests.isEmpty());
     Analyzer analyzer = getAnalyzer();
     boolean hasTableSelectPriv = true;
-    boolean hasColumnSelectPriv = false;
+    List<PrivilegeRequest> columnRequests = Lists.newArrayList();
     for (PrivilegeRequest request: requests) {
       if (request.getAuthorizeable() instanceof AuthorizeableTable) {
         try {
@@ -543,22 +573,23 @@ public class AnalysisContext {
         Preconditions.checkState(
             request.getAuthorizeable() instanceof AuthorizeableColumn);
         if (hasTableSelectPriv) continue;
-        if (authzChecker.hasAccess(analyzer.getUser(), request)) {
-          hasColumnSelectPriv = true;
-          continue;
-        }
-        // Make sure we don't reveal any column names in the error message.
-        throw new AuthorizationException(String.format("User '%s' does not have " +
-          "privileges to execute '%s' on: %s", analyzer.getUser().getName(),
-          request.getPrivilege().toString(),
-          request.getAuthorizeable().getFullTableName()));
+        columnRequests.add(request);
       }
     }
-    if (!hasTableSelectPriv && !hasColumnSelectPriv) {
+    if (hasTableSelectPriv) return;
+    if (columnRequests.isEmpty()) {
        throw new AuthorizationException(String.format("User '%s' does not have " +
           "privileges to execute 'SELECT' on: %s", analyzer.getUser().getName(),
           requests.get(0).getAuthorizeable().getFullTableName()));
     }
+    if (!authzChecker.hasAccessToAll(analyzer.getUser(), columnRequests)) {
+      // Make sure we don't reveal any column names in the error message.
+      PrivilegeRequest request = columnRequests.get(0);
+      throw new AuthorizationException(String.format("User '%s' does not have " +
+        "privileges to execute '%s' on: %s", analyzer.getUser().getName(),
+        request.getPrivilege().toString(),
+        request.getAuthorizeable().getFullTableName()));
+    }
   }
 
   /**
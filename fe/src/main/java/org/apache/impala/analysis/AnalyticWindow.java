@@ -41,7 +41,7 @@ public class AnalyticWindow extends SyntaxBlock {
       new Boundary(BoundaryType.UNBOUNDED_PRECEDING, null),
       new Boundary(BoundaryType.CURRENT_ROW, null));
 
-  enum Type {
+  public enum Type {
     ROWS("ROWS"),
     RANGE("RANGE");
 
@@ -42,6 +42,7 @@ import org.apache.impala.catalog.Column;
 import org.apache.impala.catalog.DataSourceTable;
 import org.apache.impala.catalog.DatabaseNotFoundException;
 import org.apache.impala.catalog.Db;
+import org.apache.impala.catalog.Function;
 import org.apache.impala.catalog.HBaseTable;
 import org.apache.impala.catalog.HdfsTable;
 import org.apache.impala.catalog.ImpaladCatalog;
@@ -67,9 +68,11 @@ import org.apache.impala.thrift.TLineageGraph;
 import org.apache.impala.thrift.TNetworkAddress;
 import org.apache.impala.thrift.TQueryCtx;
 import org.apache.impala.thrift.TQueryOptions;
-import org.apache.impala.util.DisjointSet;
 import org.apache.impala.util.EventSequence;
+import org.apache.impala.util.IdDisjointSet;
+import org.apache.impala.util.IntDisjointSet;
 import org.apache.impala.util.ListMap;
+import org.apache.impala.util.ReachabilityMatrix;
 import org.apache.impala.util.TSessionStateUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -171,6 +174,49 @@ public class Analyzer {
   public void setIsWithClause() { isWithClause_ = true; }
   public boolean isWithClause() { return isWithClause_; }
 
+  /**
+   * Key of a function resolved by getFunction(): the database, name and signature of the
+   * searched function and the compare mode. Argument types are compared with
+   * Type.equals(), and hashed by their primitive types because Type does not override
+   * hashCode().
+   */
+  private static class FunctionKey {
+    private final String dbName_;
+    private final String fnName_;
+    private final Type[] argTypes_;
+    private final boolean hasVarArgs_;
+    private final Function.CompareMode mode_;
+
+    public FunctionKey(Function desc, Function.CompareMode mode) {
+      dbName_ = desc.dbName();
+      fnName_ = desc.functionName();
+      argTypes_ = desc.getArgs();
+      hasVarArgs_ = desc.hasVarArgs();
+      mode_ = mode;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = fnName_.hashCode();
+      result = 31 * result + (dbName_ == null ? 0 : dbName_.hashCode());
+      for (Type argType: argTypes_) {
+        result = 31 * result + argType.getPrimitiveType().hashCode();
+      }
+      result = 31 * result + (hasVarArgs_ ? 1 : 0);
+      return 31 * result + mode_.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof FunctionKey)) return false;
+      FunctionKey other = (FunctionKey) o;
+      return fnName_.equals(other.fnName_)
+          && (dbName_ == null ? other.dbName_ == null : dbName_.equals(other.dbName_))
+          && Arrays.equals(argTypes_, other.argTypes_)
+          && hasVarArgs_ == other.hasVarArgs_ && mode_ == other.mode_;
+    }
+  }
+
   // state shared between all objects of an Analyzer tree
   // TODO: Many maps here contain properties about tuples, e.g., whether
   // a tuple is outer/semi joined, etc. Remove the maps in favor of making
@@ -290,6 +336,10 @@ public class Analyzer {
     private final List<Pair<SlotId, SlotId>> registeredValueTransfers =
         Lists.newArrayList();
 
+    // Functions resolved by getFunction(), keyed by database, signature and compare
+    // mode. Null values record lookups that did not find a function.
+    private final Map<FunctionKey, Function> resolvedFunctions = Maps.newHashMap();
+
     // Bidirectional map between Integer index and TNetworkAddress.
     // Decreases the size of the scan range locations.
     private final ListMap<TNetworkAddress> hostIndex = new ListMap<TNetworkAddress>();
@@ -1288,6 +1338,21 @@ public class Analyzer {
 
   public DescriptorTable getDescTbl() { return globalState_.descTbl; }
   public ImpaladCatalog getCatalog() { return globalState_.catalog; }
+
+  /**
+   * Returns the catalog function that best matches 'desc' using 'mode', or null if
+   * there is none. The result is memoized for the rest of the query, so that repeated
+   * calls of the same function are only resolved against the overloads once.
+   */
+  public Function getFunction(Function desc, Function.CompareMode mode) {
+    FunctionKey key = new FunctionKey(desc, mode);
+    Map<FunctionKey, Function> resolvedFunctions = globalState_.resolvedFunctions;
+    if (resolvedFunctions.containsKey(key)) return resolvedFunctions.get(key);
+    Function fn = getCatalog().getFunction(desc, mode);
+    resolvedFunctions.put(key, fn);
+    return fn;
+  }
+
   public Set<String> getAliases() { return aliasMap_.keySet(); }
 
   /**
@@ -1651,7 +1716,7 @@ public class Analyzer {
     // Maps from a slot id to its set of equivalent slots. Used to track equivalences
     // that have been established by predicates assigned/generated to plan nodes
     // materializing lhsTids as well as the given conjuncts.
-    DisjointSet<SlotId> partialEquivSlots = new DisjointSet<SlotId>();
+    IdDisjointSet<SlotId> partialEquivSlots = new IdDisjointSet<SlotId>();
     // Add the partial equivalences to the partialEquivSlots map. The equivalent-slot
     // sets of slots from lhsTids are disjoint from those of slots from rhsTids.
     // We need to 'connect' the disjoint slot sets by constructing a new predicate
@@ -1744,7 +1809,7 @@ public class Analyzer {
       Set<SlotId> ignoreSlots) {
     // Maps from a slot id to its set of equivalent slots. Used to track equivalences
     // that have been established by 'conjuncts' and the 'ignoredsSlots'.
-    DisjointSet<SlotId> partialEquivSlots = new DisjointSet<SlotId>();
+    IdDisjointSet<SlotId> partialEquivSlots = new IdDisjointSet<SlotId>();
 
     // Treat ignored slots as already connected. Add the ignored slots at this point
     // such that redundant conjuncts are removed.
@@ -1797,7 +1862,7 @@ public class Analyzer {
           if (!hasMutualValueTransfer(lhs, rhs)) continue;
           conjuncts.add((T) createInferredEqPred(lhs, rhs));
           // Check for early termination.
-          if (partialEquivSlots.get(lhs).size() == slotIds.size()) {
+          if (partialEquivSlots.setSize(lhs) == slotIds.size()) {
             done = true;
             break;
           }
@@ -2628,7 +2693,7 @@ public class Analyzer {
     // subgraph of value transfers. Maps from a slot id to its set of slots with mutual
     // value transfers (in the original slot domain). Since the objectValue transfer graph is
     // a DAG these disjoint sets represent all the strongly connected components.
-    private final DisjointSet<SlotId> completeSubGraphs_ = new DisjointSet<SlotId>();
+    private final IdDisjointSet<SlotId> completeSubGraphs_ = new IdDisjointSet<SlotId>();
 
     // Maps each slot id in the original slot domain to a slot id in the new slot domain
     // created by coalescing complete subgraphs into a single slot, and retaining only
@@ -2639,8 +2704,13 @@ public class Analyzer {
     // Used for generating slot ids in the new slot domain.
     private int nextCoalescedSlotId_ = 0;
 
-    // Condensed DAG of value transfers in the new slot domain.
-    private boolean[][] valueTransfer_;
+    // Condensed DAG of value transfers in the new slot domain, stored as one
+    // ReachabilityMatrix per graph partition (see computeValueTransfers()). Maps each
+    // coalesced slot id to the index of its partition in partitions_, or -1 if the slot
+    // has no uni-directional value transfers, and to its node in that partition.
+    private List<ReachabilityMatrix> partitions_;
+    private int[] partitionOfSlot_;
+    private int[] nodeOfSlot_;
 
     // Number of slots registered at the time when the value transfer graph was
     // computed.
@@ -2657,11 +2727,12 @@ public class Analyzer {
      * 3. Identify the connected components of the uni-directional value transfers.
      *    This step partitions the value transfers into disjoint sets.
      * 4. Compute the transitive closure of each partition from (3) in the new slot
-     *    domain separately. Hopefully, the partitions are small enough to afford
-     *    the O(N^3) complexity of the brute-force transitive closure computation.
+     *    domain separately, with a bitset per slot over the slots of its partition.
+     *    The closure of a partition with N slots and E value transfers takes
+     *    O(E * N / 64) word operations, see ReachabilityMatrix.
      * The condensed graph is not transformed back into the original slot domain because
      * of the potential performance penalty. Instead, hasValueTransfer() consults
-     * coalescedSlots_, valueTransfer_, and completeSubGraphs_ which can together
+     * coalescedSlots_, partitions_, and completeSubGraphs_ which can together
      * determine any value transfer in the original slot domain in constant time.
      */
     public void computeValueTransfers() {
@@ -2687,71 +2758,43 @@ public class Analyzer {
       List<Pair<Integer, Integer>> coalescedValueTransfers = Lists.newArrayList();
       // A graph partition is a set of slot ids that are connected by uni-directional
       // value transfers. The graph corresponding to a graph partition is a DAG.
-      DisjointSet<Integer> graphPartitions = new DisjointSet<Integer>();
+      IntDisjointSet graphPartitions = new IntDisjointSet();
       mapSlots(origValueTransfers, coalescedValueTransfers, graphPartitions);
       mapSlots(globalState_.registeredValueTransfers, coalescedValueTransfers,
           graphPartitions);
 
-      // Step 3: Group the coalesced value transfers by the graph partition they
-      // belong to. Maps from the graph partition to its list of value transfers.
-      // TODO: Implement a specialized DisjointSet data structure to avoid this step.
-      Map<Set<Integer>, List<Pair<Integer, Integer>>> partitionedValueTransfers =
-          Maps.newHashMap();
-      for (Pair<Integer, Integer> vt: coalescedValueTransfers) {
-        Set<Integer> partition = graphPartitions.get(vt.first.intValue());
-        List<Pair<Integer, Integer>> l = partitionedValueTransfers.get(partition);
-        if (l == null) {
-          l = Lists.newArrayList();
-          partitionedValueTransfers.put(partition, l);
+      // Step 3: Number the graph partitions and the slots within each partition.
+      int numCoalescedSlots = nextCoalescedSlotId_;
+      partitions_ = Lists.newArrayList();
+      partitionOfSlot_ = new int[numCoalescedSlots];
+      nodeOfSlot_ = new int[numCoalescedSlots];
+      Arrays.fill(partitionOfSlot_, -1);
+      // Maps the representative slot of each graph partition to its partition index.
+      int[] partitionOfRoot = new int[numCoalescedSlots];
+      Arrays.fill(partitionOfRoot, -1);
+      List<Integer> partitionSizes = Lists.newArrayList();
+      for (int slotId = 0; slotId < numCoalescedSlots; ++slotId) {
+        int root = graphPartitions.find(slotId);
+        if (root == -1) continue;
+        if (partitionOfRoot[root] == -1) {
+          partitionOfRoot[root] = partitionSizes.size();
+          partitionSizes.add(0);
         }
-        l.add(vt);
+        int partition = partitionOfRoot[root];
+        partitionOfSlot_[slotId] = partition;
+        nodeOfSlot_[slotId] = partitionSizes.get(partition);
+        partitionSizes.set(partition, nodeOfSlot_[slotId] + 1);
       }
-
-      // Initialize the value transfer graph.
-      int numCoalescedSlots = nextCoalescedSlotId_ + 1;
-      valueTransfer_ = new boolean[numCoalescedSlots][numCoalescedSlots];
-      for (int i = 0; i < numCoalescedSlots; ++i) {
-        valueTransfer_[i][i] = true;
+      for (Integer partitionSize: partitionSizes) {
+        partitions_.add(new ReachabilityMatrix(partitionSize));
       }
 
       // Step 4: Compute the transitive closure for each graph partition.
-      for (Map.Entry<Set<Integer>, List<Pair<Integer, Integer>>> graphPartition:
-        partitionedValueTransfers.entrySet()) {
-        // Set value transfers of this partition.
-        for (Pair<Integer, Integer> vt: graphPartition.getValue()) {
-          valueTransfer_[vt.first][vt.second] = true;
-        }
-        Set<Integer> partitionSlotIds = graphPartition.getKey();
-        // No transitive value transfers.
-        if (partitionSlotIds.size() <= 2) continue;
-
-        // Indirection vector into valueTransfer_. Contains one entry for each distinct
-        // slot id referenced in a value transfer of this partition.
-        int[] p = new int[partitionSlotIds.size()];
-        int numPartitionSlots = 0;
-        for (Integer slotId: partitionSlotIds) {
-          p[numPartitionSlots++] = slotId;
-        }
-        // Compute the transitive closure of this graph partition.
-        // TODO: Since we are operating on a DAG the performance can be improved if
-        // necessary (e.g., topological sort + backwards propagation of the transitive
-        // closure).
-        boolean changed = false;
-        do {
-          changed = false;
-          for (int i = 0; i < numPartitionSlots; ++i) {
-            for (int j = 0; j < numPartitionSlots; ++j) {
-              for (int k = 0; k < numPartitionSlots; ++k) {
-                if (valueTransfer_[p[i]][p[j]] && valueTransfer_[p[j]][p[k]]
-                    && !valueTransfer_[p[i]][p[k]]) {
-                  valueTransfer_[p[i]][p[k]] = true;
-                  changed = true;
-                }
-              }
-            }
-          }
-        } while (changed);
+      for (Pair<Integer, Integer> vt: coalescedValueTransfers) {
+        partitions_.get(partitionOfSlot_[vt.first]).addEdge(
+            nodeOfSlot_[vt.first], nodeOfSlot_[vt.second]);
       }
+      for (ReachabilityMatrix partition: partitions_) partition.computeClosure();
 
       long end = System.currentTimeMillis();
       if (LOG.isDebugEnabled()) {
@@ -2768,7 +2811,7 @@ public class Analyzer {
      */
     public void bulkUpdate(List<Pair<SlotId, SlotId>> mutualValueTransfers) {
       // Requires an existing value transfer graph.
-      Preconditions.checkState(valueTransfer_ != null);
+      Preconditions.checkState(partitions_ != null);
       int oldNumSlots = coalescedSlots_.length;
       int maxNumSlots = globalState_.descTbl.getMaxSlotId().asInt() + 1;
       // Expand the coalesced slots to the new maximum number of slots,
@@ -2779,7 +2822,7 @@ public class Analyzer {
         SlotId existingSid = valTrans.first;
         SlotId newSid = valTrans.second;
         // New slot id must not already be registered in the value transfer graph.
-        Preconditions.checkState(completeSubGraphs_.get(newSid) == null);
+        Preconditions.checkState(!completeSubGraphs_.contains(newSid));
         Preconditions.checkState(coalescedSlots_[newSid.asInt()] == -1);
         completeSubGraphs_.union(existingSid, newSid);
         coalescedSlots_[newSid.asInt()] = coalescedSlots_[existingSid.asInt()];
@@ -2795,10 +2838,14 @@ public class Analyzer {
       int mappedSrcId = coalescedSlots_[slotA.asInt()];
       int mappedDestId = coalescedSlots_[slotB.asInt()];
       if (mappedSrcId == -1 || mappedDestId == -1) return false;
-      if (valueTransfer_[mappedSrcId][mappedDestId]) return true;
-      Set<SlotId> eqSlots = completeSubGraphs_.get(slotA);
-      if (eqSlots == null) return false;
-      return eqSlots.contains(slotB);
+      if (mappedSrcId == mappedDestId) return true;
+      int partition = partitionOfSlot_[mappedSrcId];
+      if (partition != -1 && partition == partitionOfSlot_[mappedDestId]
+          && partitions_.get(partition).reaches(
+              nodeOfSlot_[mappedSrcId], nodeOfSlot_[mappedDestId])) {
+        return true;
+      }
+      return completeSubGraphs_.inSameSet(slotA, slotB);
     }
 
     /**
@@ -2810,7 +2857,7 @@ public class Analyzer {
      */
     private void mapSlots(List<Pair<SlotId, SlotId>> origValueTransfers,
         List<Pair<Integer, Integer>> coalescedValueTransfers,
-        DisjointSet<Integer> graphPartitions) {
+        IntDisjointSet graphPartitions) {
       for (Pair<SlotId, SlotId> vt: origValueTransfers) {
         int src = coalescedSlots_[vt.first.asInt()];
         if (src == -1) {
@@ -2826,7 +2873,7 @@ public class Analyzer {
         }
         coalescedValueTransfers.add(
             new Pair<Integer, Integer>(Integer.valueOf(src), Integer.valueOf(dest)));
-        graphPartitions.union(Integer.valueOf(src), Integer.valueOf(dest));
+        graphPartitions.union(src, dest);
       }
     }
 
@@ -2839,7 +2886,7 @@ public class Analyzer {
      * For debugging: If completeSubGraphs is null, adds all value transfers including
      * bi-directional ones into valueTransfers.
      */
-    private void partitionValueTransfers(DisjointSet<SlotId> completeSubGraphs,
+    private void partitionValueTransfers(IdDisjointSet<SlotId> completeSubGraphs,
         List<Pair<SlotId, SlotId>> valueTransfers) {
       // transform equality predicates into a transfer graph
       for (ExprId id: globalState_.conjuncts.keySet()) {
@@ -80,6 +80,9 @@ public class BetweenPredicate extends Predicate {
     return isNotBetween_ == ((BetweenPredicate)obj).isNotBetween_;
   }
 
+  @Override
+  protected int localHash() { return isNotBetween_ ? 1 : 0; }
+
   @Override
   public Expr clone() { return new BetweenPredicate(this); }
 }
@@ -349,6 +349,9 @@ public class BinaryPredicate extends Predicate {
     return op_.equals(other.op_);
   }
 
+  @Override
+  protected int localHash() { return op_.ordinal(); }
+
   @Override
   public Expr clone() { return new BinaryPredicate(this); }
 }
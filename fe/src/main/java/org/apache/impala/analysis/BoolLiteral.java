@@ -72,6 +72,9 @@ public class BoolLiteral extends LiteralExpr {
   @Override
   public int hashCode() { return value_ ? 1 : 0; }
 
+  @Override
+  protected int localHash() { return hashCode(); }
+
   public boolean getValue() { return value_; }
 
   @Override
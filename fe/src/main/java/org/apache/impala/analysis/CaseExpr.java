@@ -186,6 +186,11 @@ public class CaseExpr extends Expr {
         && isDecode() == expr.isDecode();
   }
 
+  @Override
+  protected int localHash() {
+    return (hasCaseExpr_ ? 1 : 0) + (hasElseExpr_ ? 2 : 0) + (isDecode() ? 4 : 0);
+  }
+
   @Override
   public String toSqlImpl() {
     return (decodeExpr_ == null) ? toCaseSql() : decodeExpr_.toSqlImpl();
@@ -17,6 +17,8 @@
 
 package org.apache.impala.analysis;
 
+import java.util.Map;
+
 import org.apache.impala.catalog.Catalog;
 import org.apache.impala.catalog.Db;
 import org.apache.impala.catalog.Function;
@@ -308,6 +310,21 @@ public class CastExpr extends Expr {
     return false;
   }
 
+  /**
+   * Implicit casts are transparent to equals(), so they hash like their child.
+   */
+  @Override
+  public int structuralHash() {
+    if (isImplicit_) return getChild(0).structuralHash();
+    return super.structuralHash();
+  }
+
+  @Override
+  protected Integer computeStructuralHash(Map<Expr, Integer> hashes) {
+    if (isImplicit_) return getChild(0).structuralHash(hashes);
+    return super.computeStructuralHash(hashes);
+  }
+
   @Override
   public Expr clone() { return new CastExpr(this); }
 }
@@ -94,6 +94,9 @@ public class CompoundPredicate extends Predicate {
     return ((CompoundPredicate) obj).op_ == op_;
   }
 
+  @Override
+  protected int localHash() { return op_.ordinal(); }
+
   @Override
   public String debugString() {
     return Objects.toStringHelper(this)
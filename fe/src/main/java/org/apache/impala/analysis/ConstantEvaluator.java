@@ -0,0 +1,543 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.analysis;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.impala.catalog.Catalog;
+import org.apache.impala.catalog.Function;
+import org.apache.impala.catalog.PrimitiveType;
+import org.apache.impala.catalog.ScalarFunction;
+import org.apache.impala.catalog.Type;
+
+/**
+ * Evaluates constant exprs in the FE, so that constant folding and partition pruning
+ * do not need a round-trip through FeSupport to the BE for the common cases.
+ *
+ * Supports literals, casts between integer, floating-point, boolean and string types,
+ * arithmetic on integer and floating-point types, comparisons, AND/OR/NOT, IS [NOT]
+ * NULL, CASE (and thus DECODE), and the builtins coalesce(), if(), isnull() and their
+ * aliases, a few string functions and the date part functions on timestamp literals.
+ * Any expr that is not supported, or whose evaluation could differ from the BE, e.g.
+ * integer overflow, division by zero, decimal arithmetic, or strings with non-ASCII
+ * characters, is reported as not evaluable and must be evaluated in the BE instead.
+ */
+public class ConstantEvaluator {
+  // Evaluation result of an expr that cannot be evaluated in the FE. All other results
+  // are null for SQL NULL, or a Boolean, Long (integer types), Float, Double,
+  // BigDecimal or String (STRING and TIMESTAMP) depending on the type of the expr.
+  private static final Object NOT_EVALUABLE = new Object();
+
+  private static final Pattern INTEGER_PATTERN = Pattern.compile("[+-]?[0-9]+");
+
+  // Matches the string representation of a TimestampLiteral.
+  private static final Pattern TIMESTAMP_PATTERN = Pattern.compile(
+      "([0-9]{4})-([0-9]{2})-([0-9]{2})" +
+      "(?: ([0-9]{2}):([0-9]{2}):([0-9]{2})(?:\\.[0-9]{1,9})?)?");
+
+  /**
+   * Returns the analyzed literal that the analyzed, constant 'expr' evaluates to, or
+   * null if 'expr' cannot be evaluated in the FE.
+   */
+  public static LiteralExpr evaluate(Expr expr) {
+    Object value = eval(expr);
+    if (value == NOT_EVALUABLE) return null;
+    LiteralExpr result;
+    if (value == null) {
+      result = new NullLiteral();
+    } else {
+      Type type = expr.getType();
+      switch (type.getPrimitiveType()) {
+        case BOOLEAN:
+          result = new BoolLiteral((Boolean) value);
+          break;
+        case TINYINT:
+        case SMALLINT:
+        case INT:
+        case BIGINT:
+          result = new NumericLiteral(BigDecimal.valueOf((Long) value));
+          break;
+        case FLOAT:
+        case DOUBLE:
+          double doubleValue = ((Number) value).doubleValue();
+          if (!NumericLiteral.isValidLiteral(doubleValue)) return null;
+          result = new NumericLiteral(new BigDecimal(doubleValue), type);
+          break;
+        case STRING:
+          result = new StringLiteral((String) value, type, false);
+          break;
+        default:
+          // Creating decimal and timestamp literals is left to the BE.
+          return null;
+      }
+    }
+    result.analyzeNoThrow(null);
+    return result;
+  }
+
+  private static Object eval(Expr expr) {
+    if (!expr.getType().isValid()) return NOT_EVALUABLE;
+    if (expr instanceof LiteralExpr) return evalLiteral((LiteralExpr) expr);
+    if (expr instanceof CastExpr) return evalCast((CastExpr) expr);
+    if (expr instanceof ArithmeticExpr) return evalArithmetic((ArithmeticExpr) expr);
+    if (expr instanceof BinaryPredicate) {
+      return evalBinaryPredicate((BinaryPredicate) expr);
+    }
+    if (expr instanceof CompoundPredicate) {
+      return evalCompoundPredicate((CompoundPredicate) expr);
+    }
+    if (expr instanceof IsNullPredicate) {
+      Object value = eval(expr.getChild(0));
+      if (value == NOT_EVALUABLE) return value;
+      return ((IsNullPredicate) expr).isNotNull() == (value != null);
+    }
+    if (expr instanceof CaseExpr) return evalCase((CaseExpr) expr);
+    if (expr instanceof FunctionCallExpr) {
+      return evalFunctionCall((FunctionCallExpr) expr);
+    }
+    return NOT_EVALUABLE;
+  }
+
+  /**
+   * Evaluates 'expr' as the result of 'parent', which must have the same type.
+   */
+  private static Object evalAs(Expr expr, Expr parent) {
+    Object value = eval(expr);
+    if (value != null && !expr.getType().equals(parent.getType())) return NOT_EVALUABLE;
+    return value;
+  }
+
+  private static Object evalLiteral(LiteralExpr literal) {
+    if (literal instanceof NullLiteral) return null;
+    if (literal instanceof BoolLiteral) return ((BoolLiteral) literal).getValue();
+    if (literal instanceof StringLiteral) {
+      if (!literal.getType().isScalarType(PrimitiveType.STRING)) return NOT_EVALUABLE;
+      String value = ((StringLiteral) literal).getEvalValue();
+      return isAscii(value) ? value : NOT_EVALUABLE;
+    }
+    if (literal instanceof TimestampLiteral) {
+      return ((TimestampLiteral) literal).getStringValue();
+    }
+    if (!(literal instanceof NumericLiteral)) return NOT_EVALUABLE;
+    NumericLiteral numeric = (NumericLiteral) literal;
+    Type type = literal.getType();
+    if (type.isIntegerType()) {
+      BigDecimal value = numeric.getValue();
+      if (value.signum() != 0 && value.stripTrailingZeros().scale() > 0) {
+        return NOT_EVALUABLE;
+      }
+      return toIntegerValue(value.toBigInteger(), type);
+    }
+    if (type.isScalarType(PrimitiveType.FLOAT)) return (float) numeric.getDoubleValue();
+    if (type.isScalarType(PrimitiveType.DOUBLE)) return numeric.getDoubleValue();
+    if (type.isDecimal()) return numeric.getValue();
+    return NOT_EVALUABLE;
+  }
+
+  /**
+   * Returns 'value' as the value of an expr of integer type 'type', or NOT_EVALUABLE if
+   * it does not fit, in which case the BE would wrap around or return NULL.
+   */
+  private static Object toIntegerValue(BigInteger value, Type type) {
+    int numBits;
+    switch (type.getPrimitiveType()) {
+      case TINYINT: numBits = 8; break;
+      case SMALLINT: numBits = 16; break;
+      case INT: numBits = 32; break;
+      case BIGINT: numBits = 64; break;
+      default: return NOT_EVALUABLE;
+    }
+    if (value.bitLength() >= numBits) return NOT_EVALUABLE;
+    return value.longValue();
+  }
+
+  private static Object evalCast(CastExpr cast) {
+    Expr child = cast.getChild(0);
+    Object value = eval(child);
+    if (value == null || value == NOT_EVALUABLE) return value;
+    Type fromType = child.getType();
+    Type toType = cast.getType();
+    if (fromType.equals(toType)) return value;
+    if (toType.isIntegerType()) {
+      if (value instanceof Long) {
+        return toIntegerValue(BigInteger.valueOf((Long) value), toType);
+      }
+      if (value instanceof Boolean) return (Boolean) value ? 1L : 0L;
+      if (fromType.isScalarType(PrimitiveType.STRING)) {
+        String str = (String) value;
+        if (!INTEGER_PATTERN.matcher(str).matches()) return NOT_EVALUABLE;
+        return toIntegerValue(new BigInteger(str), toType);
+      }
+      // Casting floating-point values to integers is left to the BE.
+      return NOT_EVALUABLE;
+    }
+    if (toType.isFloatingPointType()) {
+      boolean isFloat = toType.isScalarType(PrimitiveType.FLOAT);
+      if (value instanceof Long) {
+        long longValue = (Long) value;
+        return isFloat ? (Object) (float) longValue : (Object) (double) longValue;
+      }
+      if (value instanceof Float || value instanceof Double) {
+        double doubleValue = ((Number) value).doubleValue();
+        return isFloat ? (Object) (float) doubleValue : (Object) doubleValue;
+      }
+      return NOT_EVALUABLE;
+    }
+    if (toType.isBoolean()) {
+      if (value instanceof Long) return (Long) value != 0;
+      if (value instanceof Float || value instanceof Double) {
+        return ((Number) value).doubleValue() != 0;
+      }
+      return NOT_EVALUABLE;
+    }
+    if (toType.isScalarType(PrimitiveType.STRING) && value instanceof Long) {
+      return Long.toString((Long) value);
+    }
+    return NOT_EVALUABLE;
+  }
+
+  private static Object evalArithmetic(ArithmeticExpr expr) {
+    Object[] args = evalChildren(expr);
+    if (args == null) return NOT_EVALUABLE;
+    for (Object arg: args) if (arg == null) return null;
+    Type type = expr.getType();
+    ArithmeticExpr.Operator op = expr.getOp();
+    if (type.isIntegerType()) {
+      BigInteger a = toBigInteger(args[0]);
+      BigInteger b = args.length > 1 ? toBigInteger(args[1]) : BigInteger.ZERO;
+      if (a == null || b == null) return NOT_EVALUABLE;
+      BigInteger result;
+      switch (op) {
+        case ADD: result = a.add(b); break;
+        case SUBTRACT: result = a.subtract(b); break;
+        case MULTIPLY: result = a.multiply(b); break;
+        case INT_DIVIDE:
+          if (b.signum() == 0) return NOT_EVALUABLE;
+          result = a.divide(b);
+          break;
+        case MOD:
+          if (b.signum() == 0) return NOT_EVALUABLE;
+          result = a.remainder(b);
+          break;
+        case BITAND: result = a.and(b); break;
+        case BITOR: result = a.or(b); break;
+        case BITXOR: result = a.xor(b); break;
+        case BITNOT: result = a.not(); break;
+        default: return NOT_EVALUABLE;
+      }
+      return toIntegerValue(result, type);
+    }
+    if (type.isFloatingPointType() && args.length == 2) {
+      // The operands must already have been cast to the result type.
+      boolean isFloat = type.isScalarType(PrimitiveType.FLOAT);
+      for (Object arg: args) {
+        if (isFloat ? !(arg instanceof Float) : !(arg instanceof Double)) {
+          return NOT_EVALUABLE;
+        }
+      }
+      double a = ((Number) args[0]).doubleValue();
+      double b = ((Number) args[1]).doubleValue();
+      double result;
+      switch (op) {
+        case ADD: result = a + b; break;
+        case SUBTRACT: result = a - b; break;
+        case MULTIPLY: result = a * b; break;
+        case DIVIDE:
+          if (b == 0) return NOT_EVALUABLE;
+          result = a / b;
+          break;
+        case MOD:
+          if (b == 0) return NOT_EVALUABLE;
+          result = a % b;
+          break;
+        default: return NOT_EVALUABLE;
+      }
+      // The double result of these operations on floats, rounded to float, is the
+      // same as the result of the float operation.
+      return isFloat ? (Object) (float) result : (Object) result;
+    }
+    // Decimal arithmetic is left to the BE.
+    return NOT_EVALUABLE;
+  }
+
+  private static BigInteger toBigInteger(Object value) {
+    return value instanceof Long ? BigInteger.valueOf((Long) value) : null;
+  }
+
+  private static Object evalBinaryPredicate(BinaryPredicate pred) {
+    Object[] args = evalChildren(pred);
+    if (args == null) return NOT_EVALUABLE;
+    BinaryPredicate.Operator op = pred.getOp();
+    if (op == BinaryPredicate.Operator.DISTINCT_FROM
+        || op == BinaryPredicate.Operator.NOT_DISTINCT) {
+      boolean isDistinct;
+      if (args[0] == null || args[1] == null) {
+        isDistinct = args[0] != null || args[1] != null;
+      } else {
+        Integer cmp = compare(pred.getChild(0), args[0], pred.getChild(1), args[1]);
+        if (cmp == null) return NOT_EVALUABLE;
+        isDistinct = cmp != 0;
+      }
+      return isDistinct == (op == BinaryPredicate.Operator.DISTINCT_FROM);
+    }
+    if (op == BinaryPredicate.Operator.NULL_MATCHING_EQ) return NOT_EVALUABLE;
+    if (args[0] == null || args[1] == null) return null;
+    Integer cmp = compare(pred.getChild(0), args[0], pred.getChild(1), args[1]);
+    if (cmp == null) return NOT_EVALUABLE;
+    switch (op) {
+      case EQ: return cmp == 0;
+      case NE: return cmp != 0;
+      case LE: return cmp <= 0;
+      case GE: return cmp >= 0;
+      case LT: return cmp < 0;
+      case GT: return cmp > 0;
+      default: return NOT_EVALUABLE;
+    }
+  }
+
+  /**
+   * Compares the non-NULL values 'a' and 'b' of the exprs 'exprA' and 'exprB'. Returns
+   * null if they cannot be compared in the FE.
+   */
+  private static Integer compare(Expr exprA, Object a, Expr exprB, Object b) {
+    if (a.getClass() != b.getClass()) return null;
+    if (a instanceof Long) return Long.compare((Long) a, (Long) b);
+    if (a instanceof Boolean) return Boolean.compare((Boolean) a, (Boolean) b);
+    if (a instanceof BigDecimal) return ((BigDecimal) a).compareTo((BigDecimal) b);
+    if (a instanceof Float || a instanceof Double) {
+      double x = ((Number) a).doubleValue();
+      double y = ((Number) b).doubleValue();
+      if (Double.isNaN(x) || Double.isNaN(y)) return null;
+      return x < y ? -1 : (x > y ? 1 : 0);
+    }
+    // Timestamps are compared in the BE.
+    if (a instanceof String && exprA.getType().isScalarType(PrimitiveType.STRING)
+        && exprB.getType().isScalarType(PrimitiveType.STRING)) {
+      // Same as the byte-wise comparison of the BE for ASCII strings.
+      return Integer.signum(((String) a).compareTo((String) b));
+    }
+    return null;
+  }
+
+  private static Object evalCompoundPredicate(CompoundPredicate pred) {
+    Object[] args = evalChildren(pred);
+    if (args == null) return NOT_EVALUABLE;
+    for (Object arg: args) {
+      if (arg != null && !(arg instanceof Boolean)) return NOT_EVALUABLE;
+    }
+    switch (pred.getOp()) {
+      case NOT:
+        return args[0] == null ? null : !(Boolean) args[0];
+      case AND:
+        if (Boolean.FALSE.equals(args[0]) || Boolean.FALSE.equals(args[1])) return false;
+        if (args[0] == null || args[1] == null) return null;
+        return true;
+      case OR:
+        if (Boolean.TRUE.equals(args[0]) || Boolean.TRUE.equals(args[1])) return true;
+        if (args[0] == null || args[1] == null) return null;
+        return false;
+      default:
+        return NOT_EVALUABLE;
+    }
+  }
+
+  private static Object evalCase(CaseExpr caseExpr) {
+    List<Expr> children = caseExpr.getChildren();
+    int whenIdx = 0;
+    Expr caseChild = null;
+    Object caseValue = null;
+    if (caseExpr.hasCaseExpr()) {
+      caseChild = children.get(0);
+      caseValue = eval(caseChild);
+      if (caseValue == NOT_EVALUABLE) return caseValue;
+      whenIdx = 1;
+    }
+    int numWhenThen = children.size() - (caseExpr.hasElseExpr() ? 1 : 0);
+    for (; whenIdx + 1 < numWhenThen; whenIdx += 2) {
+      Expr whenChild = children.get(whenIdx);
+      Object whenValue = eval(whenChild);
+      if (whenValue == NOT_EVALUABLE) return whenValue;
+      boolean matches;
+      if (caseChild != null) {
+        if (caseValue == null || whenValue == null) continue;
+        Integer cmp = compare(caseChild, caseValue, whenChild, whenValue);
+        if (cmp == null) return NOT_EVALUABLE;
+        matches = cmp == 0;
+      } else {
+        matches = Boolean.TRUE.equals(whenValue);
+      }
+      if (matches) return evalAs(children.get(whenIdx + 1), caseExpr);
+    }
+    if (caseExpr.hasElseExpr()) {
+      return evalAs(children.get(children.size() - 1), caseExpr);
+    }
+    return null;
+  }
+
+  private static Object evalFunctionCall(FunctionCallExpr expr) {
+    Function fn = expr.getFn();
+    if (!(fn instanceof ScalarFunction)
+        || !Catalog.BUILTINS_DB.equals(fn.getFunctionName().getDb())) {
+      return NOT_EVALUABLE;
+    }
+    List<Expr> children = expr.getChildren();
+    String fnName = fn.functionName();
+    // Conditional functions only evaluate the arguments they need.
+    switch (fnName) {
+      case "coalesce":
+        for (Expr child: children) {
+          Object value = evalAs(child, expr);
+          if (value != null) return value;
+        }
+        return null;
+      case "if": {
+        if (children.size() != 3) return NOT_EVALUABLE;
+        Object cond = eval(children.get(0));
+        if (cond == NOT_EVALUABLE) return cond;
+        return evalAs(children.get(Boolean.TRUE.equals(cond) ? 1 : 2), expr);
+      }
+      case "isnull":
+      case "ifnull":
+      case "nvl": {
+        if (children.size() != 2) return NOT_EVALUABLE;
+        Object value = evalAs(children.get(0), expr);
+        if (value != null) return value;
+        return evalAs(children.get(1), expr);
+      }
+    }
+
+    // All other functions return NULL if any argument is NULL.
+    Object[] args = evalChildren(expr);
+    if (args == null) return NOT_EVALUABLE;
+    for (Object arg: args) if (arg == null) return null;
+    if (args.length == 1 && children.get(0).getType().isScalarType(
+        PrimitiveType.TIMESTAMP)) {
+      return evalTimestampFunction(fnName, (String) args[0]);
+    }
+    for (int i = 0; i < args.length; ++i) {
+      if (i == 0 || fnName.equals("concat")) {
+        if (!children.get(i).getType().isScalarType(PrimitiveType.STRING)) {
+          return NOT_EVALUABLE;
+        }
+      } else if (!(args[i] instanceof Long)) {
+        return NOT_EVALUABLE;
+      }
+    }
+    if (args.length == 0) return NOT_EVALUABLE;
+    String str = (String) args[0];
+    switch (fnName) {
+      case "upper":
+      case "ucase":
+        if (args.length != 1) return NOT_EVALUABLE;
+        return str.toUpperCase(Locale.ROOT);
+      case "lower":
+      case "lcase":
+        if (args.length != 1) return NOT_EVALUABLE;
+        return str.toLowerCase(Locale.ROOT);
+      case "length":
+        if (args.length != 1) return NOT_EVALUABLE;
+        return (long) str.length();
+      case "reverse":
+        if (args.length != 1) return NOT_EVALUABLE;
+        return new StringBuilder(str).reverse().toString();
+      case "trim":
+      case "ltrim":
+      case "rtrim": {
+        if (args.length != 1) return NOT_EVALUABLE;
+        // Only spaces are trimmed.
+        int begin = 0;
+        int end = str.length();
+        if (!fnName.equals("rtrim")) {
+          while (begin < end && str.charAt(begin) == ' ') ++begin;
+        }
+        if (!fnName.equals("ltrim")) {
+          while (end > begin && str.charAt(end - 1) == ' ') --end;
+        }
+        return str.substring(begin, end);
+      }
+      case "concat": {
+        StringBuilder sb = new StringBuilder();
+        for (Object arg: args) sb.append((String) arg);
+        return sb.toString();
+      }
+      case "substr":
+      case "substring": {
+        if (args.length != 2 && args.length != 3) return NOT_EVALUABLE;
+        long pos = (Long) args[1];
+        long len = args.length == 3 ? (Long) args[2] : Integer.MAX_VALUE;
+        // The BE truncates the position and length to ints.
+        if (pos != (int) pos || len != (int) len) return NOT_EVALUABLE;
+        if (pos < 0) pos += str.length() + 1;
+        if (pos <= 0 || pos > str.length() || len <= 0) return "";
+        long end = Math.min(str.length(), pos - 1 + len);
+        return str.substring((int) pos - 1, (int) end);
+      }
+      default:
+        return NOT_EVALUABLE;
+    }
+  }
+
+  /**
+   * Evaluates the function 'fnName' on the string representation of a timestamp.
+   */
+  private static Object evalTimestampFunction(String fnName, String timestamp) {
+    Matcher m = TIMESTAMP_PATTERN.matcher(timestamp);
+    if (!m.matches()) return NOT_EVALUABLE;
+    int group;
+    switch (fnName) {
+      case "to_date": return timestamp.substring(0, 10);
+      case "year": group = 1; break;
+      case "month": group = 2; break;
+      case "day":
+      case "dayofmonth":
+        group = 3;
+        break;
+      case "hour": group = 4; break;
+      case "minute": group = 5; break;
+      case "second": group = 6; break;
+      default: return NOT_EVALUABLE;
+    }
+    String value = m.group(group);
+    return value == null ? 0L : Long.parseLong(value);
+  }
+
+  /**
+   * Evaluates all children of 'expr'. Returns null if any of them cannot be evaluated
+   * in the FE.
+   */
+  private static Object[] evalChildren(Expr expr) {
+    Object[] values = new Object[expr.getChildren().size()];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = eval(expr.getChild(i));
+      if (values[i] == NOT_EVALUABLE) return null;
+    }
+    return values;
+  }
+
+  private static boolean isAscii(String str) {
+    for (int i = 0; i < str.length(); ++i) {
+      if (str.charAt(i) > 127) return false;
+    }
+    return true;
+  }
+}
@@ -74,6 +74,9 @@ public class ExistsPredicate extends Predicate {
     return notExists_ == ((ExistsPredicate)o).notExists_;
   }
 
+  @Override
+  protected int localHash() { return notExists_ ? 1 : 0; }
+
   @Override
   public Expr clone() { return new ExistsPredicate(this); }
 
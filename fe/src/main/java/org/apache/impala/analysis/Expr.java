@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.impala.catalog.Catalog;
@@ -331,7 +332,7 @@ abstract public class Expr extends TreeNode<Expr> implements ParseNode, Cloneabl
       Type[] argTypes, CompareMode mode) throws AnalysisException {
     FunctionName fnName = new FunctionName(Catalog.BUILTINS_DB, name);
     Function searchDesc = new Function(fnName, argTypes, Type.INVALID, false);
-    return analyzer.getCatalog().getFunction(searchDesc, mode);
+    return analyzer.getFunction(searchDesc, mode);
   }
 
   /**
@@ -620,6 +621,67 @@ abstract public class Expr extends TreeNode<Expr> implements ParseNode, Cloneabl
     return fn_.equals(expr.fn_);
   }
 
+  /**
+   * Returns a hash of this expr tree that is consistent with equals(): if e1.equals(e2)
+   * and both exprs are structurally hashable, then their structural hashes are equal.
+   * Implicit casts are skipped, like in CastExpr.equals(). Unlike hashCode(), this does
+   * not depend on id_ and can be computed on unanalyzed exprs. The hash may be coarser
+   * than equals(), so callers must still confirm matches with equals().
+   */
+  public int structuralHash() {
+    int hash = getClass().getName().hashCode() * 31 + localHash();
+    for (Expr child: children_) hash = hash * 31 + child.structuralHash();
+    return hash;
+  }
+
+  /**
+   * Returns structuralHash() of this expr tree, or null if it is not structurally
+   * hashable. Looks up and records the results for this expr and its descendants in
+   * 'hashes', so that hashing every subtree of a tree, as the lookups of
+   * Expr.substituteImpl() do, costs time linear in the size of the tree. 'hashes' must
+   * be discarded once any expr in it changes.
+   */
+  Integer structuralHash(Map<Expr, Integer> hashes) {
+    if (hashes.containsKey(this)) return hashes.get(this);
+    Integer hash = computeStructuralHash(hashes);
+    hashes.put(this, hash);
+    return hash;
+  }
+
+  /**
+   * Computes structuralHash(hashes) of this expr from the hashes of its children.
+   * Subclasses that override structuralHash() or isStructurallyHashable() must override
+   * this accordingly.
+   */
+  protected Integer computeStructuralHash(Map<Expr, Integer> hashes) {
+    int hash = getClass().getName().hashCode() * 31 + localHash();
+    for (Expr child: children_) {
+      Integer childHash = child.structuralHash(hashes);
+      if (childHash == null) return null;
+      hash = hash * 31 + childHash;
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the hash of the fields of this expr that are compared by equals(), not
+   * including its children. Subclasses that compare additional fields in equals()
+   * may override this to spread structurally similar exprs over more hash values.
+   */
+  protected int localHash() { return 0; }
+
+  /**
+   * Returns false if this expr tree contains an expr whose equals() cannot be captured
+   * by structuralHash(), e.g. a SlotRef that is only compared by its label. Such exprs
+   * must be compared with equals() against all candidates.
+   */
+  public boolean isStructurallyHashable() {
+    for (Expr child: children_) {
+      if (!child.isStructurallyHashable()) return false;
+    }
+    return true;
+  }
+
   /**
    * Return true if l1[i].equals(l2[i]) for all i.
    */
@@ -734,7 +796,12 @@ abstract public class Expr extends TreeNode<Expr> implements ParseNode, Cloneabl
     Expr result = clone();
     // Return clone to avoid removing casts.
     if (smap == null) return result;
-    result = result.substituteImpl(smap, analyzer);
+    smap.beginTreeLookups();
+    try {
+      result = result.substituteImpl(smap, analyzer);
+    } finally {
+      smap.endTreeLookups();
+    }
     result.analyze(analyzer);
     if (preserveRootType && !type_.equals(result.getType())) result = result.castTo(type_);
     return result;
@@ -17,13 +17,17 @@
 
 package org.apache.impala.analysis;
 
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 
 /**
@@ -33,6 +37,15 @@ import com.google.common.collect.Lists;
  * substitution, e.g., because the table it refers to is in a different query block
  * that is not visible.
  * See Expr.substitute() and related functions for details on the actual substitution.
+ *
+ * Lookups in smaps with at least INDEX_THRESHOLD entries go through a hash index over
+ * Expr.structuralHash() of the lhs exprs, which is built lazily and extended as entries
+ * are appended. Candidates from the index are confirmed with Expr.equals(), so the
+ * result is the same as that of a linear scan. The lhs list may be shared with another
+ * smap (see getLhs()), but must only be appended to or cleared outside of this class.
+ * Between beginTreeLookups() and endTreeLookups(), the structural hashes of the exprs
+ * looked up are remembered, so that looking up every node of an expr tree top-down, as
+ * Expr.substituteImpl() does, hashes each node once.
  */
 public final class ExprSubstitutionMap extends SyntaxBlock {
   private final static Logger LOG = LoggerFactory.getLogger(ExprSubstitutionMap.class);
@@ -40,6 +53,22 @@ public final class ExprSubstitutionMap extends SyntaxBlock {
   private List<Expr> lhs_; // left-hand side
   private List<Expr> rhs_; // right-hand side
 
+  // Smaps with fewer entries than this are scanned linearly.
+  private final static int INDEX_THRESHOLD = 8;
+
+  // Maps the structural hash of each structurally hashable lhs expr to its positions in
+  // indexedLhs_, in ascending order. Positions of the other lhs exprs are kept in
+  // unhashedLhs_. The index covers the first indexedSize_ entries of indexedLhs_ and is
+  // rebuilt if lhs_ is replaced or shrinks.
+  private final ListMultimap<Integer, Integer> lhsIndex_ = ArrayListMultimap.create();
+  private final List<Integer> unhashedLhs_ = Lists.newArrayList();
+  private List<Expr> indexedLhs_;
+  private int indexedSize_;
+
+  // Structural hashes of the exprs looked up since beginTreeLookups(), see
+  // Expr.structuralHash(Map). Null if no tree lookups are in progress.
+  private Map<Expr, Integer> treeHashes_;
+
   public ExprSubstitutionMap() {
     this(Lists.<Expr>newArrayList(), Lists.<Expr>newArrayList());
   }
@@ -63,17 +92,87 @@ public final class ExprSubstitutionMap extends SyntaxBlock {
    * Returns the expr mapped to lhsExpr or null if no mapping to lhsExpr exists.
    */
   public Expr get(Expr lhsExpr) {
-    for (int i = 0; i < lhs_.size(); ++i) {
-      if (lhsExpr.equals(lhs_.get(i))) return rhs_.get(i);
-    }
-    return null;
+    int i = find(lhsExpr, 0);
+    return i < 0 ? null : rhs_.get(i);
   }
 
   /**
    * Returns true if the smap contains a mapping for lhsExpr.
    */
   public boolean containsMappingFor(Expr lhsExpr) {
-    return lhs_.contains(lhsExpr);
+    return find(lhsExpr, 0) >= 0;
+  }
+
+  /**
+   * Starts the lookups of the nodes of one expr tree, top-down. Until the matching
+   * endTreeLookups(), the hashes of the subtrees of the exprs looked up are reused for
+   * later lookups, so the exprs of the tree must not change after they or one of their
+   * ancestors have been looked up.
+   */
+  public void beginTreeLookups() {
+    if (lhs_.size() >= INDEX_THRESHOLD) treeHashes_ = new IdentityHashMap<Expr, Integer>();
+  }
+
+  /**
+   * Ends the lookups started by beginTreeLookups().
+   */
+  public void endTreeLookups() { treeHashes_ = null; }
+
+  /**
+   * Returns the first position i >= from of lhs_ such that expr.equals(lhs_[i]), or -1
+   * if there is none. The direction matters because equals() is not symmetric, e.g. an
+   * implicit cast equals its child but not vice versa.
+   */
+  private int find(Expr expr, int from) {
+    Integer hash = null;
+    if (lhs_.size() - from >= INDEX_THRESHOLD) {
+      if (treeHashes_ != null) {
+        hash = expr.structuralHash(treeHashes_);
+      } else if (expr.isStructurallyHashable()) {
+        hash = expr.structuralHash();
+      }
+    }
+    if (hash == null) {
+      for (int i = from; i < lhs_.size(); ++i) {
+        if (expr.equals(lhs_.get(i))) return i;
+      }
+      return -1;
+    }
+    updateIndex();
+    int result = -1;
+    for (int i: lhsIndex_.get(hash)) {
+      if (i >= from && expr.equals(lhs_.get(i))) {
+        result = i;
+        break;
+      }
+    }
+    // An unhashable lhs expr may still equal 'expr'. Only the ones before the match
+    // from the index need to be checked to return the first match.
+    for (int i: unhashedLhs_) {
+      if (result >= 0 && i > result) break;
+      if (i >= from && expr.equals(lhs_.get(i))) return i;
+    }
+    return result;
+  }
+
+  /**
+   * Brings the lhs index up to date with lhs_.
+   */
+  private void updateIndex() {
+    if (indexedLhs_ != lhs_ || indexedSize_ > lhs_.size()) {
+      lhsIndex_.clear();
+      unhashedLhs_.clear();
+      indexedLhs_ = lhs_;
+      indexedSize_ = 0;
+    }
+    for (; indexedSize_ < lhs_.size(); ++indexedSize_) {
+      Expr lhsExpr = lhs_.get(indexedSize_);
+      if (lhsExpr.isStructurallyHashable()) {
+        lhsIndex_.put(lhsExpr.structuralHash(), indexedSize_);
+      } else {
+        unhashedLhs_.add(indexedSize_);
+      }
+    }
   }
 
   /**
@@ -102,7 +201,7 @@ public final class ExprSubstitutionMap extends SyntaxBlock {
       // and g: count(*) -> slotref
       // result.lhs must only have: count(*) -> zeroifnull(slotref) from f above,
       // and not count(*) -> slotref from g as well.
-      if (!result.lhs_.contains(g.lhs_.get(i))) {
+      if (!result.containsMappingFor(g.lhs_.get(i))) {
         result.lhs_.add(g.lhs_.get(i).clone());
         result.rhs_.add(g.rhs_.get(i).clone());
       }
@@ -154,13 +253,11 @@ public final class ExprSubstitutionMap extends SyntaxBlock {
    */
   private void verify() {
     for (int i = 0; i < lhs_.size(); ++i) {
-      for (int j = i + 1; j < lhs_.size(); ++j) {
-        if (lhs_.get(i).equals(lhs_.get(j))) {
-          if (LOG.isTraceEnabled()) {
-            LOG.trace("verify: smap=" + this.debugString());
-          }
-          Preconditions.checkState(false);
+      if (find(lhs_.get(i), i + 1) >= 0) {
+        if (LOG.isTraceEnabled()) {
+          LOG.trace("verify: smap=" + this.debugString());
         }
+        Preconditions.checkState(false);
       }
       Preconditions.checkState(rhs_.get(i).isAnalyzed_);
     }
@@ -169,6 +266,9 @@ public final class ExprSubstitutionMap extends SyntaxBlock {
   public void clear() {
     lhs_.clear();
     rhs_.clear();
+    lhsIndex_.clear();
+    unhashedLhs_.clear();
+    indexedSize_ = 0;
   }
 
   @Override
@@ -156,6 +156,13 @@ public class FunctionCallExpr extends Expr {
            params_.isStar() == o.params_.isStar();
   }
 
+  @Override
+  protected int localHash() {
+    // The db is not hashed: equals() ignores it if only one side has it set.
+    return fnName_.getFunction().toLowerCase().hashCode() * 4
+        + (params_.isDistinct() ? 2 : 0) + (params_.isStar() ? 1 : 0);
+  }
+
   @Override
   public String toSqlImpl() {
     if (label_ != null) return label_;
@@ -413,7 +420,8 @@ public class FunctionCallExpr extends Expr {
       // TODO: fix how we rewrite count distinct.
       argTypes = new Type[0];
       Function searchDesc = new Function(fnName_, argTypes, Type.INVALID, false);
-      fn_ = db.getFunction(searchDesc, Function.CompareMode.IS_NONSTRICT_SUPERTYPE_OF);
+      fn_ = analyzer.getFunction(
+          searchDesc, Function.CompareMode.IS_NONSTRICT_SUPERTYPE_OF);
       type_ = fn_.getReturnType();
       // Make sure BE doesn't see any TYPE_NULL exprs
       for (int i = 0; i < children_.size(); ++i) {
@@ -436,7 +444,8 @@ public class FunctionCallExpr extends Expr {
     }
 
     Function searchDesc = new Function(fnName_, argTypes, Type.INVALID, false);
-    fn_ = db.getFunction(searchDesc, Function.CompareMode.IS_NONSTRICT_SUPERTYPE_OF);
+    fn_ = analyzer.getFunction(
+        searchDesc, Function.CompareMode.IS_NONSTRICT_SUPERTYPE_OF);
     if (fn_ == null || (!isInternalFnCall_ && !fn_.userVisible())) {
       throw new AnalysisException(getFunctionNotFoundError(argTypes));
     }
@@ -83,6 +83,9 @@ public class IsNullPredicate extends Predicate {
     return ((IsNullPredicate) obj).isNotNull_ == isNotNull_;
   }
 
+  @Override
+  protected int localHash() { return isNotNull_ ? 1 : 0; }
+
   @Override
   public String toSqlImpl() {
     return getChild(0).toSql() + (isNotNull_ ? " IS NOT NULL" : " IS NULL");
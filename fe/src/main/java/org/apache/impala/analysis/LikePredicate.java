@@ -103,6 +103,9 @@ public class LikePredicate extends Predicate {
     return ((LikePredicate) obj).op_ == op_;
   }
 
+  @Override
+  protected int localHash() { return op_.ordinal(); }
+
   @Override
   public String toSqlImpl() {
     return getChild(0).toSql() + " " + op_.toString() + " " + getChild(1).toSql();
@@ -156,6 +156,7 @@ public abstract class LiteralExpr extends Expr implements Comparable<LiteralExpr
   /**
    * Evaluates the given constant expr and returns its result as a LiteralExpr.
    * Assumes expr has been analyzed. Returns constExpr if is it already a LiteralExpr.
+   * Exprs supported by ConstantEvaluator are evaluated in the FE, all others in the BE.
    * Returns null for types that do not have a LiteralExpr subclass, e.g. TIMESTAMP, or
    * in cases where the corresponding LiteralExpr is not able to represent the evaluation
    * result, e.g., NaN or infinity. Returns null if the expr evaluation encountered errors
@@ -167,6 +168,9 @@ public abstract class LiteralExpr extends Expr implements Comparable<LiteralExpr
     Preconditions.checkState(constExpr.isConstant());
     Preconditions.checkState(constExpr.getType().isValid());
     if (constExpr instanceof LiteralExpr) return (LiteralExpr) constExpr;
+    // Avoid the expensive BE evaluation if possible.
+    LiteralExpr feResult = ConstantEvaluator.evaluate(constExpr);
+    if (feResult != null) return feResult;
 
     TColumnValue val = null;
     try {
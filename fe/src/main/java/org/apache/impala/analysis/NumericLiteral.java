@@ -49,7 +49,11 @@ public class NumericLiteral extends LiteralExpr {
   // and ours. (See getUnscaledValue()).
   // A BigDecimal cannot represent special float values like NaN, infinity, or
   // negative zero.
+  // Integer literals created from a long leave value_ null and keep the value in
+  // longValue_ until a BigDecimal is needed (see getValue()). Queries with large
+  // IN-lists of small integers then never create one.
   private BigDecimal value_;
+  private long longValue_;
 
   // If true, this literal has been explicitly cast to a type and should not
   // be analyzed (which infers the type from value_).
@@ -59,6 +63,29 @@ public class NumericLiteral extends LiteralExpr {
     init(value);
   }
 
+  public NumericLiteral(long value) {
+    isAnalyzed_ = false;
+    value_ = null;
+    longValue_ = value;
+  }
+
+  /**
+   * Creates a literal from the value of an INTEGER_LITERAL or DECIMAL_LITERAL token,
+   * which is a Long for integers that fit in one and a BigDecimal otherwise.
+   */
+  public static NumericLiteral create(Number value) {
+    if (value instanceof Long) return new NumericLiteral(value.longValue());
+    return new NumericLiteral((BigDecimal) value);
+  }
+
+  /**
+   * Converts the value of an INTEGER_LITERAL or DECIMAL_LITERAL token to a BigDecimal.
+   */
+  public static BigDecimal toBigDecimal(Number value) {
+    if (value instanceof Long) return BigDecimal.valueOf(value.longValue());
+    return (BigDecimal) value;
+  }
+
   public NumericLiteral(String value, Type t) throws AnalysisException {
     BigDecimal val = null;
     try {
@@ -109,6 +136,7 @@ public class NumericLiteral extends LiteralExpr {
   protected NumericLiteral(NumericLiteral other) {
     super(other);
     value_ = other.value_;
+    longValue_ = other.longValue_;
     explicitlyCast_ = other.explicitlyCast_;
   }
 
@@ -127,7 +155,7 @@ public class NumericLiteral extends LiteralExpr {
   @Override
   public String debugString() {
     return Objects.toStringHelper(this)
-        .add("value", value_)
+        .add("value", getStringValue())
         .add("type", type_)
         .toString();
   }
@@ -135,19 +163,59 @@ public class NumericLiteral extends LiteralExpr {
   @Override
   public boolean equals(Object obj) {
     if (!super.equals(obj)) return false;
-    return ((NumericLiteral) obj).value_.equals(value_);
+    NumericLiteral other = (NumericLiteral) obj;
+    if (value_ == null && other.value_ == null) return longValue_ == other.longValue_;
+    if (value_ == null) return isLong(other.value_, longValue_);
+    if (other.value_ == null) return isLong(value_, other.longValue_);
+    return other.value_.equals(value_);
+  }
+
+  /**
+   * Returns true if 'value' equals BigDecimal.valueOf(l), i.e. it has scale 0 and the
+   * value l.
+   */
+  private static boolean isLong(BigDecimal value, long l) {
+    return value.scale() == 0 && value.unscaledValue().bitLength() < 64
+        && value.longValue() == l;
   }
 
+  /**
+   * Hashes values that equal a long like that long, so that literals kept in
+   * longValue_ are hashed without creating a BigDecimal.
+   */
   @Override
-  public int hashCode() { return value_.hashCode(); }
+  public int hashCode() {
+    if (value_ == null) return hashLong(longValue_);
+    if (value_.scale() == 0 && value_.unscaledValue().bitLength() < 64) {
+      return hashLong(value_.longValue());
+    }
+    return value_.hashCode();
+  }
+
+  private static int hashLong(long l) { return (int) (l ^ (l >>> 32)); }
+
+  @Override
+  protected int localHash() { return hashCode(); }
 
   @Override
   public String toSqlImpl() { return getStringValue(); }
   @Override
-  public String getStringValue() { return value_.toString(); }
-  public double getDoubleValue() { return value_.doubleValue(); }
-  public long getLongValue() { return value_.longValue(); }
-  public long getIntValue() { return value_.intValue(); }
+  public String getStringValue() {
+    if (value_ == null) return Long.toString(longValue_);
+    return value_.toString();
+  }
+  public double getDoubleValue() {
+    if (value_ == null) return longValue_;
+    return value_.doubleValue();
+  }
+  public long getLongValue() {
+    if (value_ == null) return longValue_;
+    return value_.longValue();
+  }
+  public long getIntValue() {
+    if (value_ == null) return (int) longValue_;
+    return value_.intValue();
+  }
 
   @Override
   protected void toThrift(TExprNode msg) {
@@ -157,12 +225,12 @@ public class NumericLiteral extends LiteralExpr {
       case INT:
       case BIGINT:
         msg.node_type = TExprNodeType.INT_LITERAL;
-        msg.int_literal = new TIntLiteral(value_.longValue());
+        msg.int_literal = new TIntLiteral(getLongValue());
         break;
       case FLOAT:
       case DOUBLE:
         msg.node_type = TExprNodeType.FLOAT_LITERAL;
-        msg.float_literal = new TFloatLiteral(value_.doubleValue());
+        msg.float_literal = new TFloatLiteral(getDoubleValue());
         break;
       case DECIMAL:
         msg.node_type = TExprNodeType.DECIMAL_LITERAL;
@@ -175,13 +243,20 @@ public class NumericLiteral extends LiteralExpr {
     }
   }
 
-  public BigDecimal getValue() { return value_; }
+  public BigDecimal getValue() {
+    if (value_ == null) value_ = BigDecimal.valueOf(longValue_);
+    return value_;
+  }
 
   @Override
   public void analyze(Analyzer analyzer) throws AnalysisException {
     if (isAnalyzed_) return;
     super.analyze(analyzer);
-    if (!explicitlyCast_) {
+    if (!explicitlyCast_ && value_ == null) {
+      // Integer literal that fits in a long: pick the smallest integer type directly.
+      // This gives the same type as the BigDecimal path below.
+      type_ = getIntegerType(longValue_);
+    } else if (!explicitlyCast_) {
       // Compute the precision and scale from the BigDecimal.
       type_ = TypesUtil.computeDecimalType(value_);
       if (type_ == null) {
@@ -228,6 +303,16 @@ public class NumericLiteral extends LiteralExpr {
     isAnalyzed_ = true;
   }
 
+  /**
+   * Returns the smallest integer type that can hold 'value'.
+   */
+  private static Type getIntegerType(long value) {
+    if (value <= Byte.MAX_VALUE && value >= Byte.MIN_VALUE) return Type.TINYINT;
+    if (value <= Short.MAX_VALUE && value >= Short.MIN_VALUE) return Type.SMALLINT;
+    if (value <= Integer.MAX_VALUE && value >= Integer.MIN_VALUE) return Type.INT;
+    return Type.BIGINT;
+  }
+
   /**
    * Explicitly cast this literal to 'targetType'. The targetType must be a
    * float point type.
@@ -252,11 +337,12 @@ public class NumericLiteral extends LiteralExpr {
       ScalarType decimalType = (ScalarType) targetType;
       // analyze() ensures that value_ never exceeds the maximum scale and precision.
       Preconditions.checkState(isAnalyzed_);
+      BigDecimal value = getValue();
       // Sanity check that our implicit casting does not allow a reduced precision or
       // truncating values from the right of the decimal point.
-      Preconditions.checkState(value_.precision() <= decimalType.decimalPrecision());
-      Preconditions.checkState(value_.scale() <= decimalType.decimalScale());
-      int valLeftDigits = value_.precision() - value_.scale();
+      Preconditions.checkState(value.precision() <= decimalType.decimalPrecision());
+      Preconditions.checkState(value.scale() <= decimalType.decimalScale());
+      int valLeftDigits = value.precision() - value.scale();
       int typeLeftDigits = decimalType.decimalPrecision() - decimalType.decimalScale();
       if (typeLeftDigits < valLeftDigits) return new CastExpr(targetType, this);
     }
@@ -267,7 +353,11 @@ public class NumericLiteral extends LiteralExpr {
   @Override
   public void swapSign() throws NotImplementedException {
     // swapping sign does not change the type
-    value_ = value_.negate();
+    if (value_ == null && longValue_ != Long.MIN_VALUE) {
+      longValue_ = -longValue_;
+    } else {
+      value_ = getValue().negate();
+    }
   }
 
   @Override
@@ -275,7 +365,10 @@ public class NumericLiteral extends LiteralExpr {
     int ret = super.compareTo(o);
     if (ret != 0) return ret;
     NumericLiteral other = (NumericLiteral) o;
-    return value_.compareTo(other.value_);
+    if (value_ == null && other.value_ == null) {
+      return Long.compare(longValue_, other.longValue_);
+    }
+    return getValue().compareTo(other.getValue());
   }
 
   private void init(BigDecimal value) {
@@ -287,8 +380,9 @@ public class NumericLiteral extends LiteralExpr {
   // the way we do. We need to pad it out with zeros or truncate as necessary.
   private BigInteger getUnscaledValue() {
     Preconditions.checkState(type_.isDecimal());
-    BigInteger result = value_.unscaledValue();
-    int valueScale = value_.scale();
+    BigDecimal value = getValue();
+    BigInteger result = value.unscaledValue();
+    int valueScale = value.scale();
     // If valueScale is less than 0, it indicates the power of 10 to multiply the
     // unscaled value. This path also handles this case by padding with zeros.
     // e.g. unscaled value = 123, objectValue scale = -2 means 12300.
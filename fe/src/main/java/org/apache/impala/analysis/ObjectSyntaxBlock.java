@@ -38,8 +38,8 @@ public class ObjectSyntaxBlock<T> extends SyntaxBlock {
             return (SyntaxBlock) t;
         } else if (t instanceof ExtendSymbol) {
             ExtendSymbol extendSymbol = (ExtendSymbol) t;
-            if (extendSymbol.value == null && extendSymbol.text != null) {
-                return new ObjectSyntaxBlock<>(extendSymbol.start, extendSymbol.end, extendSymbol.text);
+            if (extendSymbol.value == null && extendSymbol.hasText()) {
+                return new ObjectSyntaxBlock<>(extendSymbol.start, extendSymbol.end, extendSymbol.getText());
             } else {
                 return valueOf(extendSymbol.value);
             }
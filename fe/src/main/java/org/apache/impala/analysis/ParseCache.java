@@ -0,0 +1,102 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.analysis;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * Concurrent, size-bounded cache of parsed statements keyed by the statement text.
+ * Avoids re-lexing and re-parsing the same text when it is analyzed again, e.g. when
+ * analysis is restarted after loading missing tables or when identical SQL is
+ * submitted repeatedly.
+ *
+ * The cache holds unanalyzed statements that are never handed out; callers always get
+ * a fresh deep copy made with StatementBase.clone(), which they are free to analyze and
+ * rewrite. Only query statements are cached because their clone() is a deep copy; other
+ * statements either do not implement clone() or share mutable state with their copies.
+ *
+ * Entries are evicted in approximately least-recently-used order once the estimated
+ * size of all entries exceeds the capacity given in bytes.
+ */
+public class ParseCache {
+  // Rough size of the parsed tree per char of statement text, in bytes. Exprs, table
+  // refs and their lists make up most of it.
+  private static final int ESTIMATED_TREE_BYTES_PER_CHAR = 24;
+
+  // Estimated fixed per-entry overhead of the cache and of the key String, in bytes.
+  private static final int ESTIMATED_ENTRY_OVERHEAD_BYTES = 128;
+
+  private final Cache<String, StatementBase> cache_;
+
+  public ParseCache(long capacityBytes) {
+    Preconditions.checkArgument(capacityBytes > 0);
+    cache_ = CacheBuilder.newBuilder()
+        .maximumWeight(capacityBytes)
+        .weigher(new Weigher<String, StatementBase>() {
+          @Override
+          public int weigh(String stmt, StatementBase parsedStmt) {
+            return estimateBytes(stmt);
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Returns the estimated number of bytes the cache entry for 'stmt' occupies.
+   */
+  static int estimateBytes(String stmt) {
+    long bytes = ESTIMATED_ENTRY_OVERHEAD_BYTES +
+        (long) stmt.length() * (2 + ESTIMATED_TREE_BYTES_PER_CHAR);
+    return (int) Math.min(bytes, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns a copy of the statement parsed from 'stmt', or null if it is not cached.
+   */
+  public StatementBase get(String stmt) {
+    StatementBase cached = cache_.getIfPresent(stmt);
+    return cached == null ? null : cached.clone();
+  }
+
+  /**
+   * Caches the statement 'parsedStmt' that was parsed from 'stmt'. 'parsedStmt' must not
+   * have been analyzed yet. It is copied, so the caller may go on to analyze it.
+   * Statements that cannot be cached are ignored.
+   */
+  public void put(String stmt, StatementBase parsedStmt) {
+    Preconditions.checkNotNull(stmt);
+    if (!isCacheable(parsedStmt)) return;
+    Preconditions.checkState(!parsedStmt.isAnalyzed());
+    cache_.put(stmt, parsedStmt.clone());
+  }
+
+  private static boolean isCacheable(StatementBase parsedStmt) {
+    return parsedStmt instanceof QueryStmt;
+  }
+
+  public void invalidateAll() { cache_.invalidateAll(); }
+  public long size() { return cache_.size(); }
+  public long getHitCount() { return cache_.stats().hitCount(); }
+  public long getMissCount() { return cache_.stats().missCount(); }
+  public long getEvictionCount() { return cache_.stats().evictionCount(); }
+  public CacheStats getStats() { return cache_.stats(); }
+}
@@ -19,6 +19,7 @@ package org.apache.impala.analysis;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.impala.analysis.Path.PathType;
@@ -197,6 +198,21 @@ public class SlotRef extends Expr {
     return true;
   }
 
+  /**
+   * Resolved SlotRefs are hashed by their slot id. Unresolved ones are compared by label
+   * against any other SlotRef, so they are not structurally hashable.
+   */
+  @Override
+  protected int localHash() { return desc_ == null ? 0 : desc_.getId().hashCode(); }
+
+  @Override
+  public boolean isStructurallyHashable() { return desc_ != null; }
+
+  @Override
+  protected Integer computeStructuralHash(Map<Expr, Integer> hashes) {
+    return desc_ == null ? null : super.computeStructuralHash(hashes);
+  }
+
   @Override
   public boolean isBoundByTupleIds(List<TupleId> tids) {
     Preconditions.checkState(desc_ != null);
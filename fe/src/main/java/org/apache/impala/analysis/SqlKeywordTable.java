@@ -0,0 +1,154 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.analysis;
+
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Case-insensitive keyword lookup that works directly on the scanner's char buffer,
+ * without creating a String or lower-casing the candidate identifier.
+ *
+ * The table is a perfect hash generated when the class is initialized: a seed for the
+ * hash function is searched so that all keywords land in distinct slots. A lookup is
+ * then one hash computation over the candidate chars plus one comparison against the
+ * single keyword in its slot. Only ASCII letters are folded; keywords are all ASCII, so
+ * a candidate containing any other char is never a keyword.
+ *
+ * Also keeps a table indexed by token id to answer isKeyword(int) without boxing.
+ */
+public class SqlKeywordTable {
+  // Keywords and their token ids, indexed by slot. Unused slots have a null keyword.
+  private final char[][] slotKeywords_;
+  private final int[] slotTokenIds_;
+  private final int mask_;
+  private final int seed_;
+  private final int maxKeywordLength_;
+
+  // isKeywordId_[tokenId] is true if tokenId is the id of a keyword token.
+  private final boolean[] isKeywordId_;
+
+  /**
+   * Builds the table for 'keywords', a map from lower-case keyword to token id.
+   */
+  public SqlKeywordTable(Map<String, Integer> keywords) {
+    int maxLength = 0;
+    int maxTokenId = 0;
+    for (Map.Entry<String, Integer> entry: keywords.entrySet()) {
+      maxLength = Math.max(maxLength, entry.getKey().length());
+      maxTokenId = Math.max(maxTokenId, entry.getValue());
+    }
+    maxKeywordLength_ = maxLength;
+    isKeywordId_ = new boolean[maxTokenId + 1];
+    for (Integer tokenId: keywords.values()) isKeywordId_[tokenId] = true;
+
+    // Search for a seed that gives a perfect hash, growing the table if none is found.
+    int size = Integer.highestOneBit(Math.max(keywords.size(), 1) * 4) * 2;
+    int seed = 1;
+    while (!isPerfect(keywords, seed, size - 1)) {
+      if (++seed > 4096) {
+        seed = 1;
+        size *= 2;
+      }
+    }
+    mask_ = size - 1;
+    seed_ = seed;
+    slotKeywords_ = new char[size][];
+    slotTokenIds_ = new int[size];
+    for (Map.Entry<String, Integer> entry: keywords.entrySet()) {
+      char[] keyword = entry.getKey().toCharArray();
+      int slot = hash(seed_, keyword, 0, keyword.length) & mask_;
+      slotKeywords_[slot] = keyword;
+      slotTokenIds_[slot] = entry.getValue();
+    }
+  }
+
+  private static boolean isPerfect(Map<String, Integer> keywords, int seed, int mask) {
+    boolean[] used = new boolean[mask + 1];
+    for (String keyword: keywords.keySet()) {
+      Preconditions.checkState(keyword.equals(keyword.toLowerCase()));
+      char[] chars = keyword.toCharArray();
+      int slot = hash(seed, chars, 0, chars.length) & mask;
+      if (used[slot]) return false;
+      used[slot] = true;
+    }
+    return true;
+  }
+
+  /**
+   * Folds ASCII upper-case letters to lower case. Other chars are returned unchanged.
+   */
+  private static char toLowerAscii(char c) {
+    return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  private static int hash(int seed, char[] chars, int start, int end) {
+    int h = seed * 0x9E3779B9;
+    for (int i = start; i < end; ++i) {
+      h = (h ^ toLowerAscii(chars[i])) * 0x01000193;
+    }
+    return h ^ (h >>> 15);
+  }
+
+  private static int hash(int seed, CharSequence chars) {
+    int h = seed * 0x9E3779B9;
+    for (int i = 0; i < chars.length(); ++i) {
+      h = (h ^ toLowerAscii(chars.charAt(i))) * 0x01000193;
+    }
+    return h ^ (h >>> 15);
+  }
+
+  /**
+   * Returns the token id of the keyword in chars[start, end), compared case-insensitively,
+   * or -1 if it is not a keyword.
+   */
+  public int lookup(char[] chars, int start, int end) {
+    int length = end - start;
+    if (length <= 0 || length > maxKeywordLength_) return -1;
+    int slot = hash(seed_, chars, start, end) & mask_;
+    char[] keyword = slotKeywords_[slot];
+    if (keyword == null || keyword.length != length) return -1;
+    for (int i = 0; i < length; ++i) {
+      if (toLowerAscii(chars[start + i]) != keyword[i]) return -1;
+    }
+    return slotTokenIds_[slot];
+  }
+
+  /**
+   * Same as lookup() above for a CharSequence.
+   */
+  public int lookup(CharSequence chars) {
+    int length = chars.length();
+    if (length == 0 || length > maxKeywordLength_) return -1;
+    int slot = hash(seed_, chars) & mask_;
+    char[] keyword = slotKeywords_[slot];
+    if (keyword == null || keyword.length != length) return -1;
+    for (int i = 0; i < length; ++i) {
+      if (toLowerAscii(chars.charAt(i)) != keyword[i]) return -1;
+    }
+    return slotTokenIds_[slot];
+  }
+
+  /**
+   * Returns true if 'tokenId' is the token id of a keyword.
+   */
+  public boolean isKeywordId(int tokenId) {
+    return tokenId >= 0 && tokenId < isKeywordId_.length && isKeywordId_[tokenId];
+  }
+}
@@ -70,18 +70,28 @@ public class StringLiteral extends LiteralExpr {
   @Override
   public int hashCode() { return value_.hashCode(); }
 
+  @Override
+  protected int localHash() { return hashCode(); }
+
   @Override
   public String toSqlImpl() { return "'" + value_ + "'"; }
 
   @Override
   protected void toThrift(TExprNode msg) {
     msg.node_type = TExprNodeType.STRING_LITERAL;
-    String val = (needsUnescaping_) ? getUnescapedValue() : value_;
-    msg.string_literal = new TStringLiteral(val);
+    msg.string_literal = new TStringLiteral(getEvalValue());
   }
 
   public String getValue() { return value_; }
 
+  /**
+   * Returns the value this literal evaluates to in the BE, i.e., the unescaped value
+   * if it needs unescaping.
+   */
+  public String getEvalValue() {
+    return needsUnescaping_ ? getUnescapedValue() : value_;
+  }
+
   public String getUnescapedValue() {
     // Unescape string exactly like Hive does. Hive's method assumes
     // quotes so we add them here to reuse Hive's code.
@@ -150,7 +160,7 @@ public class StringLiteral extends LiteralExpr {
       throw new AnalysisException("Number too large: " + value_);
     }
     if (sym.sym == SqlParserSymbols.INTEGER_LITERAL) {
-      BigDecimal val = (BigDecimal) sym.value;
+      BigDecimal val = NumericLiteral.toBigDecimal((Number) sym.value);
       if (negative) val = val.negate();
       return new NumericLiteral(val);
     }
@@ -66,6 +66,9 @@ public class TimestampLiteral extends LiteralExpr {
   @Override
   public int hashCode() { return Arrays.hashCode(value_); }
 
+  @Override
+  protected int localHash() { return hashCode(); }
+
   @Override
   public String toSqlImpl() {
     // ANSI Timestamp Literal format.
@@ -87,6 +87,9 @@ public class TupleIsNullPredicate extends Predicate {
         tupleIds_.containsAll(other.tupleIds_);
   }
 
+  @Override
+  protected int localHash() { return tupleIds_.hashCode(); }
+
   @Override
   protected String toSqlImpl() { return "TupleIsNull()"; }
 
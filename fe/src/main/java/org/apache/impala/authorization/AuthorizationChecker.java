@@ -36,16 +36,61 @@ import org.apache.sentry.provider.common.ProviderBackendContext;
 import org.apache.sentry.provider.common.ResourceAuthorizationProvider;
 import org.apache.sentry.provider.file.SimpleFileProviderBackend;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
 /**
  * Class used to check whether a user has access to a given resource.
+ *
+ * Decisions are cached by the groups of the user, the request and the version of the
+ * AuthorizationPolicy, since the provider only grants privileges to groups. A change
+ * to the policy, e.g. by a catalog update, changes its version, so decisions made
+ * against an older policy are no longer used. Policy files are reloaded by creating a
+ * new AuthorizationChecker, which starts with an empty cache.
  */
 public class AuthorizationChecker {
+  // Maximum number of cached authorization decisions.
+  private static final long DECISION_CACHE_SIZE = 100000;
+
   private final ResourceAuthorizationProvider provider_;
   private final AuthorizationConfig config_;
   private final AuthorizeableServer server_;
+  private final AuthorizationPolicy policy_;
+  private final Cache<DecisionKey, Boolean> decisionCache_;
+
+  /**
+   * Key of a cached authorization decision.
+   */
+  private static class DecisionKey {
+    private final long policyVersion_;
+    private final Set<String> groups_;
+    private final PrivilegeRequest request_;
+
+    public DecisionKey(long policyVersion, Set<String> groups,
+        PrivilegeRequest request) {
+      policyVersion_ = policyVersion;
+      groups_ = groups;
+      request_ = request;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(policyVersion_, groups_, request_);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof DecisionKey)) return false;
+      DecisionKey other = (DecisionKey) o;
+      return policyVersion_ == other.policyVersion_ && groups_.equals(other.groups_)
+          && request_.equals(other.request_);
+    }
+  }
 
   /*
    * Creates a new AuthorizationChecker based on the config values.
@@ -53,6 +98,10 @@ public class AuthorizationChecker {
   public AuthorizationChecker(AuthorizationConfig config, AuthorizationPolicy policy) {
     Preconditions.checkNotNull(config);
     config_ = config;
+    policy_ = policy;
+    decisionCache_ = CacheBuilder.newBuilder()
+        .maximumSize(DECISION_CACHE_SIZE)
+        .build();
     if (config.isEnabled()) {
       server_ = new AuthorizeableServer(config.getServerName());
       provider_ = createProvider(config, policy);
@@ -160,6 +209,72 @@ public class AuthorizationChecker {
       return true;
     }
 
+    // Read the version before deciding, so that a decision is never cached under a
+    // newer version than the policy it was made against.
+    long policyVersion = policy_ == null ? 0 : policy_.getVersion();
+    Set<String> groups = ImmutableSet.copyOf(getUserGroups(user));
+    return hasAccess(user, groups, policyVersion, request);
+  }
+
+  /**
+   * Returns true if the given user has permission to execute all of 'requests', like
+   * hasAccess() for each of them. The requests are decided in order, stopping at the
+   * first one that is denied. The groups of the user are resolved once for all
+   * requests, and if none of them has been granted a role, the requests are denied
+   * without asking the provider. Otherwise each request is decided by the provider (or
+   * the decision cache), because the provider class is configurable and its privilege
+   * matching must not be duplicated here.
+   */
+  public boolean hasAccessToAll(User user, List<PrivilegeRequest> requests)
+      throws InternalException {
+    Preconditions.checkNotNull(user);
+    Preconditions.checkNotNull(requests);
+    if (!config_.isEnabled() || user instanceof ImpalaInternalAdminUser) return true;
+    if (requests.isEmpty()) return true;
+    long policyVersion = policy_ == null ? 0 : policy_.getVersion();
+    Set<String> groups = ImmutableSet.copyOf(getUserGroups(user));
+    if (!config_.isFileBasedPolicy() && !hasGrantedRoles(groups)) return false;
+    for (PrivilegeRequest request: requests) {
+      if (!hasAccess(user, groups, policyVersion, request)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if any of 'groups' has been granted a role in the policy.
+   */
+  private boolean hasGrantedRoles(Set<String> groups) {
+    Preconditions.checkNotNull(policy_);
+    for (String group: groups) {
+      if (!policy_.getGrantedRoles(group).isEmpty()) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the cached decision for 'request' by a user with 'groups' under the given
+   * policy version, asking the provider if there is none.
+   */
+  private boolean hasAccess(User user, Set<String> groups, long policyVersion,
+      PrivilegeRequest request) {
+    DecisionKey key = new DecisionKey(policyVersion, groups, request);
+    Boolean hasAccess = decisionCache_.getIfPresent(key);
+    if (hasAccess == null) {
+      hasAccess = hasAccessUncached(user, request);
+      decisionCache_.put(key, hasAccess);
+    }
+    return hasAccess;
+  }
+
+  /**
+   * Returns the statistics of the decision cache, e.g. its hit rate.
+   */
+  public CacheStats getDecisionCacheStats() { return decisionCache_.stats(); }
+
+  /**
+   * Asks the provider whether the user has permission to execute the request.
+   */
+  private boolean hasAccessUncached(User user, PrivilegeRequest request) {
     EnumSet<DBModelAction> actions = request.getPrivilege().getHiveActions();
 
     List<DBModelAuthorizable> authorizeables = Lists.newArrayList(
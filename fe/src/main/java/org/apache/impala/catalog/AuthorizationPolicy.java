@@ -20,6 +20,7 @@ package org.apache.impala.catalog;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.net.ntp.TimeStamp;
 import org.apache.log4j.Logger;
@@ -32,7 +33,11 @@ import org.apache.impala.thrift.TResultRow;
 import org.apache.impala.thrift.TResultSet;
 import org.apache.impala.thrift.TResultSetMetadata;
 import org.apache.impala.util.TResultRowBuilder;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -46,28 +51,244 @@ import com.google.common.collect.Sets;
  * to role object. For example:
  * RoleName -> Role -> [RolePriv1, ..., RolePrivN]
  * To ensure we can efficiently retrieve the roles that a user is a member of, a map
- * of user group name to role name is tracked as grantGroups_.
+ * of user group name to role name is tracked as groupsToRoles_.
  * To reduce duplication of metadata, privileges are linked to roles using a "role ID"
  * rather than embedding the role name. When a privilege is added to a role, we do
  * a lookup to get the role ID to using the roleIds_ map.
  * Acts as the backing cache for the Sentry cached based provider (which is why
  * PrivilegeCache is implemented).
+ *
+ * Updates are serialized by synchronizing on the policy. Roles and role IDs are kept in
+ * concurrent maps, so lookups of single roles, which are also used to apply updates,
+ * always see the latest state without locking. The state that authorization checks
+ * read, i.e. the grants of roles to groups, is published in an immutable Snapshot, so
+ * concurrent query compilations never block and see a consistent policy. A snapshot is
+ * published after every update, or once for a batch of updates between beginUpdate()
+ * and endUpdate(), e.g. a catalog update. Role objects are thread safe and updated in
+ * place, so a snapshot keeps its own copy of the privilege names of each role, taken
+ * when it is published; only the roles whose privileges changed are copied again.
  * TODO: Instead of calling into Sentry to perform final authorization checks, we
  * should parse/validate the privileges in Impala.
  */
 public class AuthorizationPolicy implements PrivilegeCache {
   private static final Logger LOG = Logger.getLogger(AuthorizationPolicy.class);
 
-  // Cache of role names (case-insensitive) to role objects.
-  private final CatalogObjectCache<Role> roleCache_ = new CatalogObjectCache<Role>();
+  /**
+   * Immutable state of the policy that authorization checks read.
+   */
+  private static class Snapshot {
+    // Incremented on every published change to the roles, grant groups or privileges.
+    final long version;
+
+    // Map of role name (lower case) to role object.
+    final ImmutableMap<String, Role> roles;
+
+    // Map of group name (case sensitive) to set of role names (lower case) that
+    // have been granted to this group. Kept in sync with roles.
+    final ImmutableMap<String, ImmutableSet<String>> groupsToRoles;
+
+    // Map of role name (lower case) to the names of the privileges of the role as of
+    // this snapshot. Kept in sync with roles.
+    final ImmutableMap<String, ImmutableSet<String>> rolePrivileges;
+
+    // Indexes of the existing roles granted to a group and of the names of their
+    // privileges, by group name. Built on first use of each group from the state of
+    // this snapshot only.
+    private final ConcurrentHashMap<String, List<Role>> grantedRoles_ =
+        new ConcurrentHashMap<String, List<Role>>();
+    private final ConcurrentHashMap<String, Set<String>> grantedPrivileges_ =
+        new ConcurrentHashMap<String, Set<String>>();
+
+    Snapshot(long version, ImmutableMap<String, Role> roles,
+        ImmutableMap<String, ImmutableSet<String>> groupsToRoles,
+        ImmutableMap<String, ImmutableSet<String>> rolePrivileges) {
+      this.version = version;
+      this.roles = roles;
+      this.groupsToRoles = groupsToRoles;
+      this.rolePrivileges = rolePrivileges;
+    }
+
+    /**
+     * Returns the roles granted to the group, in no particular order. The roles are
+     * the live Role objects, whose privileges may be newer than this snapshot.
+     */
+    List<Role> getGrantedRoles(String groupName) {
+      List<Role> grantedRoles = grantedRoles_.get(groupName);
+      if (grantedRoles != null) return grantedRoles;
+      ImmutableList.Builder<Role> builder = ImmutableList.builder();
+      Set<String> roleNames = groupsToRoles.get(groupName);
+      if (roleNames != null) {
+        for (String roleName: roleNames) {
+          // TODO: verify they actually exist.
+          Role role = roles.get(roleName);
+          if (role != null) builder.add(role);
+        }
+      }
+      grantedRoles = builder.build();
+      grantedRoles_.put(groupName, grantedRoles);
+      return grantedRoles;
+    }
+
+    /**
+     * Returns the names of the privileges of all roles granted to the group.
+     */
+    Set<String> getGrantedPrivileges(String groupName) {
+      Set<String> privileges = grantedPrivileges_.get(groupName);
+      if (privileges != null) return privileges;
+      ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+      Set<String> roleNames = groupsToRoles.get(groupName);
+      if (roleNames != null) {
+        for (String roleName: roleNames) {
+          Set<String> rolePrivilegeNames = rolePrivileges.get(roleName);
+          if (rolePrivilegeNames != null) builder.addAll(rolePrivilegeNames);
+        }
+      }
+      privileges = builder.build();
+      grantedPrivileges_.put(groupName, privileges);
+      return privileges;
+    }
+  }
+
+  // Map of role name (lower case) to role object.
+  private final ConcurrentHashMap<String, Role> roleCache_ =
+      new ConcurrentHashMap<String, Role>();
 
   // Map of role ID -> role name. Used to match privileges to roles.
-  Map<Integer, String> roleIds_ = Maps.newHashMap();
+  private final ConcurrentHashMap<Integer, String> roleIds_ =
+      new ConcurrentHashMap<Integer, String>();
+
+  // Map of group name (case sensitive) to set of role names (lower case) that
+  // have been granted to this group. Kept in sync with roleCache_.
+  private final Map<String, Set<String>> groupsToRoles_ = Maps.newHashMap();
+
+  // Number of batches started by beginUpdate() that have not ended yet.
+  private int numOpenBatches_ = 0;
+
+  // True if there are changes that have not been published yet, and if they include
+  // changes to the roles or grant groups, i.e. if the maps need to be copied.
+  private boolean hasUnpublishedChanges_ = false;
+  private boolean hasUnpublishedMapChanges_ = false;
+
+  // Names (lower case) of the roles whose privileges changed since the last snapshot.
+  private final Set<String> rolesWithUnpublishedPrivileges_ = Sets.newHashSet();
+
+  private volatile Snapshot snapshot_ = new Snapshot(0,
+      ImmutableMap.<String, Role>of(), ImmutableMap.<String, ImmutableSet<String>>of(),
+      ImmutableMap.<String, ImmutableSet<String>>of());
+
+  /**
+   * Starts a batch of updates. Until the matching endUpdate(), the updates are not
+   * published, so authorization checks keep using the policy as of before the batch,
+   * and a batch of N updates copies the maps once instead of N times. Batches may be
+   * nested, and updates by other threads during a batch are published with it.
+   * Lookups of single roles and privileges, e.g. getRole(), are not part of the
+   * snapshot and see the updates of an open batch.
+   */
+  public synchronized void beginUpdate() { ++numOpenBatches_; }
+
+  /**
+   * Ends a batch of updates started by beginUpdate(). Publishes the changes made since
+   * the outermost batch started.
+   */
+  public synchronized void endUpdate() {
+    Preconditions.checkState(numOpenBatches_ > 0);
+    if (--numOpenBatches_ == 0 && hasUnpublishedChanges_) publish();
+  }
+
+  /**
+   * Records a change, which changed the roles or grant groups if 'mapsChanged' is true,
+   * and publishes it unless a batch is open. Must be called while synchronized on this
+   * policy.
+   */
+  private void onChange(boolean mapsChanged) {
+    hasUnpublishedChanges_ = true;
+    hasUnpublishedMapChanges_ |= mapsChanged;
+    if (numOpenBatches_ == 0) publish();
+  }
+
+  /**
+   * Records a change to the privileges of 'role' and publishes it unless a batch is
+   * open. Must be called while synchronized on this policy.
+   */
+  private void onPrivilegeChange(Role role) {
+    rolesWithUnpublishedPrivileges_.add(role.getName().toLowerCase());
+    onChange(false);
+  }
+
+  /**
+   * Publishes a new snapshot with the next version. The maps are only copied if they
+   * changed since the last snapshot, and the privileges only of the roles that changed.
+   * Must be called while synchronized on this policy.
+   */
+  private void publish() {
+    Snapshot current = snapshot_;
+    ImmutableMap<String, Role> roles = current.roles;
+    ImmutableMap<String, ImmutableSet<String>> groupsToRoles = current.groupsToRoles;
+    if (hasUnpublishedMapChanges_) {
+      ImmutableMap.Builder<String, ImmutableSet<String>> groupsToRolesBuilder =
+          ImmutableMap.builder();
+      for (Map.Entry<String, Set<String>> entry: groupsToRoles_.entrySet()) {
+        groupsToRolesBuilder.put(entry.getKey(), ImmutableSet.copyOf(entry.getValue()));
+      }
+      roles = ImmutableMap.copyOf(roleCache_);
+      groupsToRoles = groupsToRolesBuilder.build();
+    }
+    ImmutableMap<String, ImmutableSet<String>> rolePrivileges = current.rolePrivileges;
+    if (hasUnpublishedMapChanges_ || !rolesWithUnpublishedPrivileges_.isEmpty()) {
+      ImmutableMap.Builder<String, ImmutableSet<String>> rolePrivilegesBuilder =
+          ImmutableMap.builder();
+      for (Map.Entry<String, Role> entry: roles.entrySet()) {
+        String roleName = entry.getKey();
+        ImmutableSet<String> privileges = current.rolePrivileges.get(roleName);
+        if (privileges == null || current.roles.get(roleName) != entry.getValue()
+            || rolesWithUnpublishedPrivileges_.contains(roleName)) {
+          privileges = getPrivilegeNames(entry.getValue());
+        }
+        rolePrivilegesBuilder.put(roleName, privileges);
+      }
+      rolePrivileges = rolePrivilegesBuilder.build();
+    }
+    snapshot_ = new Snapshot(current.version + 1, roles, groupsToRoles, rolePrivileges);
+    hasUnpublishedChanges_ = false;
+    hasUnpublishedMapChanges_ = false;
+    rolesWithUnpublishedPrivileges_.clear();
+  }
 
-  // Map of group name (case sensitive) to set of role names (case insensitive) that
-  // have been granted to this group. Kept in sync with roleCache_. Provides efficient
-  // lookups of Role by group name.
-  Map<String, Set<String>> groupsToRoles_ = Maps.newHashMap();
+  /**
+   * Returns the names of the current privileges of 'role'.
+   */
+  private static ImmutableSet<String> getPrivilegeNames(Role role) {
+    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+    for (RolePrivilege privilege: role.getPrivileges()) {
+      String authorizeable = privilege.getName();
+      if (authorizeable == null) {
+        if (LOG.isTraceEnabled()) {
+          LOG.trace("Ignoring invalid privilege: " + privilege.getName());
+        }
+        continue;
+      }
+      builder.add(authorizeable);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Grants 'roleName' to 'groupName', or revokes it from it if 'grant' is false. Must be
+   * called while synchronized on this policy.
+   */
+  private void updateGrant(String groupName, String roleName, boolean grant) {
+    Set<String> grantedRoles = groupsToRoles_.get(groupName);
+    if (grant) {
+      if (grantedRoles == null) {
+        grantedRoles = Sets.newHashSet();
+        groupsToRoles_.put(groupName, grantedRoles);
+      }
+      grantedRoles.add(roleName.toLowerCase());
+    } else if (grantedRoles != null) {
+      grantedRoles.remove(roleName.toLowerCase());
+      if (grantedRoles.isEmpty()) groupsToRoles_.remove(groupName);
+    }
+  }
 
   /**
    * Adds a new role to the policy. If a role with the same name already
@@ -76,7 +297,7 @@ public class AuthorizationPolicy implements PrivilegeCache {
    * role will be copied to the new role.
    */
   public synchronized void addRole(Role role) {
-    Role existingRole = roleCache_.get(role.getName());
+    Role existingRole = getRole(role.getName());
     // There is already a newer version of this role in the catalog, ignore
     // just return.
     if (existingRole != null &&
@@ -85,7 +306,7 @@ public class AuthorizationPolicy implements PrivilegeCache {
     // If there was an existing role that was replaced we first need to remove it.
     if (existingRole != null) {
       // Remove the role. This will also clean up the grantGroup mappings.
-      removeRole(existingRole.getName());
+      removeRoleInternal(existingRole);
       if (existingRole.getId() == role.getId()) {
         // Copy the privileges from the existing role.
         for (RolePrivilege p: existingRole.getPrivileges()) {
@@ -93,20 +314,16 @@ public class AuthorizationPolicy implements PrivilegeCache {
         }
       }
     }
-    roleCache_.add(role);
+    roleCache_.put(role.getName().toLowerCase(), role);
 
     // Add new grants
     for (String groupName: role.getGrantGroups()) {
-      Set<String> grantedRoles = groupsToRoles_.get(groupName);
-      if (grantedRoles == null) {
-        grantedRoles = Sets.newHashSet();
-        groupsToRoles_.put(groupName, grantedRoles);
-      }
-      grantedRoles.add(role.getName().toLowerCase());
+      updateGrant(groupName, role.getName(), true);
     }
 
     // Add this role to the role ID mapping
     roleIds_.put(role.getId(), role.getName());
+    onChange(true);
   }
 
   /**
@@ -130,6 +347,7 @@ public class AuthorizationPolicy implements PrivilegeCache {
           role.getName() + "ID: " + role.getId());
     }
     role.addPrivilege(privilege);
+    onPrivilegeChange(role);
   }
 
   /**
@@ -149,64 +367,62 @@ public class AuthorizationPolicy implements PrivilegeCache {
       LOG.trace("Removing privilege: '" + privilege.getName() + "' from Role ID: " +
           privilege.getRoleId() + " Role Name: " + role.getName());
     }
-    return role.removePrivilege(privilege.getName());
+    RolePrivilege removedPrivilege = role.removePrivilege(privilege.getName());
+    onPrivilegeChange(role);
+    return removedPrivilege;
   }
 
+  /**
+   * Returns the version of the policy that authorization checks use. The version
+   * changes whenever a change to the roles, grant groups or privileges is published.
+   */
+  public long getVersion() { return snapshot_.version; }
+
   /**
    * Returns all roles in the policy. Returns an empty list if no roles exist.
    */
-  public synchronized List<Role> getAllRoles() {
-    return roleCache_.getValues();
+  public List<Role> getAllRoles() {
+    return Lists.newArrayList(roleCache_.values());
   }
 
   /**
    * Returns all role names in the policy. Returns an empty set if no roles exist.
    */
-  public synchronized Set<String> getAllRoleNames() {
+  public Set<String> getAllRoleNames() {
     return Sets.newHashSet(roleCache_.keySet());
   }
 
   /**
    * Gets a role given a role name. Returns null if no roles exist with this name.
    */
-  public synchronized Role getRole(String roleName) {
-    return roleCache_.get(roleName);
+  public Role getRole(String roleName) {
+    return roleCache_.get(roleName.toLowerCase());
   }
 
   /**
    * Gets a role given a role ID. Returns null if no roles exist with this ID.
    */
-  public synchronized Role getRole(int roleId) {
+  public Role getRole(int roleId) {
     String roleName = roleIds_.get(roleId);
     if (roleName == null) return null;
-    return roleCache_.get(roleName);
+    return getRole(roleName);
   }
 
   /**
    * Gets a privilege from the given role ID. Returns null of there are no roles with a
    * matching ID or if no privilege with this name exists for the role.
    */
-  public synchronized RolePrivilege getPrivilege(int roleId, String privilegeName) {
-    String roleName = roleIds_.get(roleId);
-    if (roleName == null) return null;
-    Role role = roleCache_.get(roleName);
+  public RolePrivilege getPrivilege(int roleId, String privilegeName) {
+    Role role = getRole(roleId);
+    if (role == null) return null;
     return role.getPrivilege(privilegeName);
   }
 
   /**
-   * Gets all roles granted to the specified group.
+   * Gets all roles granted to the specified group, as of the current snapshot.
    */
-  public synchronized List<Role> getGrantedRoles(String groupName) {
-    List<Role> grantedRoles = Lists.newArrayList();
-    Set<String> roleNames = groupsToRoles_.get(groupName);
-    if (roleNames != null) {
-      for (String roleName: roleNames) {
-        // TODO: verify they actually exist.
-        Role role = roleCache_.get(roleName);
-        if (role != null) grantedRoles.add(roleCache_.get(roleName));
-      }
-    }
-    return grantedRoles;
+  public List<Role> getGrantedRoles(String groupName) {
+    return Lists.newArrayList(snapshot_.getGrantedRoles(groupName));
   }
 
   /**
@@ -214,17 +430,26 @@ public class AuthorizationPolicy implements PrivilegeCache {
    * this name existed.
    */
   public synchronized Role removeRole(String roleName) {
-    Role removedRole = roleCache_.remove(roleName);
+    Role removedRole = getRole(roleName);
     if (removedRole == null) return null;
+    removeRoleInternal(removedRole);
+    onChange(true);
+    return removedRole;
+  }
+
+  /**
+   * Removes 'role' from the maps without publishing the change. Must be called while
+   * synchronized on this policy.
+   */
+  private void removeRoleInternal(Role role) {
+    roleCache_.remove(role.getName().toLowerCase());
     // Cleanup grant groups
-    for (String grantGroup: removedRole.getGrantGroups()) {
+    for (String grantGroup: role.getGrantGroups()) {
       // Remove this role from all of its grant groups.
-      Set<String> roles = groupsToRoles_.get(grantGroup);
-      if (roles != null) roles.remove(roleName.toLowerCase());
+      updateGrant(grantGroup, role.getName(), false);
     }
     // Cleanup role id.
-    roleIds_.remove(removedRole.getId());
-    return removedRole;
+    roleIds_.remove(role.getId());
   }
 
   /**
@@ -234,15 +459,11 @@ public class AuthorizationPolicy implements PrivilegeCache {
    */
   public synchronized Role addGrantGroup(String roleName, String groupName)
       throws CatalogException {
-    Role role = roleCache_.get(roleName);
+    Role role = getRole(roleName);
     if (role == null) throw new CatalogException("Role does not exist: " + roleName);
     role.addGrantGroup(groupName);
-    Set<String> grantedRoles = groupsToRoles_.get(groupName);
-    if (grantedRoles == null) {
-      grantedRoles = Sets.newHashSet();
-      groupsToRoles_.put(groupName, grantedRoles);
-    }
-    grantedRoles.add(roleName.toLowerCase());
+    updateGrant(groupName, roleName, true);
+    onChange(true);
     return role;
   }
 
@@ -253,13 +474,11 @@ public class AuthorizationPolicy implements PrivilegeCache {
    */
   public synchronized Role removeGrantGroup(String roleName, String groupName)
       throws CatalogException {
-    Role role = roleCache_.get(roleName);
+    Role role = getRole(roleName);
     if (role == null) throw new CatalogException("Role does not exist: " + roleName);
     role.removeGrantGroup(groupName);
-    Set<String> grantedRoles = groupsToRoles_.get(groupName);
-    if (grantedRoles != null) {
-      grantedRoles.remove(roleName.toLowerCase());
-    }
+    updateGrant(groupName, roleName, false);
+    onChange(true);
     return role;
   }
 
@@ -267,28 +486,16 @@ public class AuthorizationPolicy implements PrivilegeCache {
    * Returns a set of privilege strings in Sentry format.
    */
   @Override
-  public synchronized Set<String>
-      listPrivileges(Set<String> groups, ActiveRoleSet roleSet) {
+  public Set<String> listPrivileges(Set<String> groups, ActiveRoleSet roleSet) {
     Set<String> privileges = Sets.newHashSet();
     if (roleSet != ActiveRoleSet.ALL) {
       throw new UnsupportedOperationException("Impala does not support role subsets.");
     }
 
     // Collect all privileges granted to all roles.
+    Snapshot snapshot = snapshot_;
     for (String groupName: groups) {
-      List<Role> grantedRoles = getGrantedRoles(groupName);
-      for (Role role: grantedRoles) {
-        for (RolePrivilege privilege: role.getPrivileges()) {
-          String authorizeable = privilege.getName();
-          if (authorizeable == null) {
-            if (LOG.isTraceEnabled()) {
-              LOG.trace("Ignoring invalid privilege: " + privilege.getName());
-            }
-            continue;
-          }
-          privileges.add(authorizeable);
-        }
-      }
+      privileges.addAll(snapshot.getGrantedPrivileges(groupName));
     }
     return privileges;
   }
@@ -303,7 +510,7 @@ public class AuthorizationPolicy implements PrivilegeCache {
    * Allows for filtering based on a specific privilege spec or showing all privileges
    * granted to the role. Used by the SHOW GRANT ROLE statement.
    */
-  public synchronized TResultSet getRolePrivileges(String roleName, TPrivilege filter) {
+  public TResultSet getRolePrivileges(String roleName, TPrivilege filter) {
     TResultSet result = new TResultSet();
     result.setSchema(new TResultSetMetadata());
     result.getSchema().addToColumns(new TColumn("scope", Type.STRING.toThrift()));
@@ -32,18 +32,41 @@ import org.apache.impala.analysis.InPredicate;
 import org.apache.impala.analysis.IsNullPredicate;
 import org.apache.impala.analysis.LikePredicate;
 import org.apache.impala.builtins.ScalarBuiltins;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
 public class BuiltinsDb extends Db {
+  // The builtins of this JVM, recorded by the first BuiltinsDb. Every Catalog has a
+  // BuiltinsDb, and the impalad creates a new ImpaladCatalog for each full catalog
+  // update, so all BuiltinsDbs share the table, and each builtin is only created on the
+  // first lookup of its name in any of them.
+  private static BuiltinsTable builtins_;
+
+  // Records the builtins while initBuiltins() runs, null otherwise.
+  private BuiltinsTable.Builder recorder_;
+
   public BuiltinsDb(String name, Catalog catalog) {
     super(name, catalog, createMetastoreDb(name));
+    // The builtins belong to the database they were created for.
+    Preconditions.checkArgument(getName().equals(Catalog.BUILTINS_DB));
     setIsSystemDb(true);
-    initBuiltins();
+    synchronized (BuiltinsDb.class) {
+      if (builtins_ == null) {
+        recorder_ = new BuiltinsTable.Builder();
+        try {
+          initBuiltins();
+          builtins_ = recorder_.build();
+        } finally {
+          recorder_ = null;
+        }
+      }
+    }
+    addLazyBuiltins(builtins_);
   }
 
   /**
-   * Initializes all the builtins.
+   * Records all the builtins.
    */
   private void initBuiltins() {
     // Populate all aggregate builtins.
@@ -61,6 +84,28 @@ public class BuiltinsDb extends Db {
     ScalarBuiltins.initBuiltins(this);
   }
 
+  @Override
+  public void addScalarBuiltin(String fnName, String symbol, boolean userVisible,
+      String prepareFnSymbol, String closeFnSymbol, boolean varArgs, Type retType,
+      Type ... args) {
+    if (recorder_ == null) {
+      super.addScalarBuiltin(fnName, symbol, userVisible, prepareFnSymbol,
+          closeFnSymbol, varArgs, retType, args);
+      return;
+    }
+    recorder_.addScalarBuiltin(fnName, symbol, userVisible, prepareFnSymbol,
+        closeFnSymbol, varArgs, retType, args);
+  }
+
+  @Override
+  public void addBuiltin(Function fn) {
+    if (recorder_ == null) {
+      super.addBuiltin(fn);
+      return;
+    }
+    recorder_.addBuiltin(fn);
+  }
+
   private static final String BUILTINS_DB_COMMENT = "System database for Impala builtin functions";
 
   private static Database createMetastoreDb(String name) {
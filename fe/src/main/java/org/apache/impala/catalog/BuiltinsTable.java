@@ -0,0 +1,158 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.catalog;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Table of the builtins of the JVM, by function name, shared by all BuiltinsDbs.
+ *
+ * The table is filled once by running the builtin registration code, which only records
+ * each builtin under its name. The functions of a name are created, checked against
+ * each other and sorted into a FunctionOverloads on the first lookup of the name in any
+ * BuiltinsDb, and shared from then on. Scalar builtins registered through
+ * Db.addScalarBuiltin(), which the generated ScalarBuiltins uses for most of them, are
+ * recorded by their arguments, so not even their ScalarFunction and its symbol lookup
+ * are created before the name is used.
+ */
+class BuiltinsTable {
+  // Arguments of a Db.addScalarBuiltin() call.
+  private static class ScalarBuiltin {
+    final String fnName;
+    final String symbol;
+    final boolean userVisible;
+    final String prepareFnSymbol;
+    final String closeFnSymbol;
+    final boolean varArgs;
+    final Type retType;
+    final Type[] args;
+
+    ScalarBuiltin(String fnName, String symbol, boolean userVisible,
+        String prepareFnSymbol, String closeFnSymbol, boolean varArgs, Type retType,
+        Type[] args) {
+      this.fnName = fnName;
+      this.symbol = symbol;
+      this.userVisible = userVisible;
+      this.prepareFnSymbol = prepareFnSymbol;
+      this.closeFnSymbol = closeFnSymbol;
+      this.varArgs = varArgs;
+      this.retType = retType;
+      this.args = args;
+    }
+
+    Function create() {
+      return ScalarFunction.createBuiltin(fnName, Lists.newArrayList(args), varArgs,
+          retType, symbol, prepareFnSymbol, closeFnSymbol, userVisible);
+    }
+  }
+
+  /**
+   * Records builtins in registration order.
+   */
+  static class Builder {
+    private final Map<String, List<Object>> builtins_ = Maps.newHashMap();
+
+    void addScalarBuiltin(String fnName, String symbol, boolean userVisible,
+        String prepareFnSymbol, String closeFnSymbol, boolean varArgs, Type retType,
+        Type ... args) {
+      add(fnName, new ScalarBuiltin(fnName, symbol, userVisible, prepareFnSymbol,
+          closeFnSymbol, varArgs, retType, args));
+    }
+
+    void addBuiltin(Function fn) {
+      Preconditions.checkNotNull(fn);
+      add(fn.functionName(), fn);
+    }
+
+    private void add(String name, Object builtin) {
+      List<Object> builtins = builtins_.get(name);
+      if (builtins == null) {
+        builtins = Lists.newArrayList();
+        builtins_.put(name, builtins);
+      }
+      builtins.add(builtin);
+    }
+
+    BuiltinsTable build() { return new BuiltinsTable(builtins_); }
+  }
+
+  // Recorded builtins by name, in registration order: Functions, or ScalarBuiltins.
+  // The lists are also the locks for creating the functions of their name.
+  private final Map<String, List<Object>> builtins_;
+
+  // Overloads of the names that have been looked up.
+  private final ConcurrentHashMap<String, FunctionOverloads> overloads_ =
+      new ConcurrentHashMap<String, FunctionOverloads>();
+
+  private BuiltinsTable(Map<String, List<Object>> builtins) {
+    builtins_ = ImmutableMap.copyOf(builtins);
+  }
+
+  Set<String> getNames() { return builtins_.keySet(); }
+
+  /**
+   * Returns the overloads of 'name', creating them on first use, or null if there are
+   * no builtins of that name.
+   */
+  FunctionOverloads getOverloads(String name) {
+    FunctionOverloads overloads = overloads_.get(name);
+    if (overloads != null) return overloads;
+    List<Object> builtins = builtins_.get(name);
+    if (builtins == null) return null;
+    synchronized (builtins) {
+      overloads = overloads_.get(name);
+      if (overloads == null) {
+        overloads = new FunctionOverloads(createFunctions(builtins));
+        overloads_.put(name, overloads);
+      }
+      return overloads;
+    }
+  }
+
+  /**
+   * Creates the functions of 'builtins' with the same checks as registering them one by
+   * one with Db.addBuiltin(): a builtin must not be identical to an earlier one, and one
+   * that is indistinguishable from an earlier one is dropped. Returns them in resolution
+   * order.
+   */
+  private static List<Function> createFunctions(List<Object> builtins) {
+    List<Function> fns = Lists.newArrayListWithCapacity(builtins.size());
+    for (Object builtin: builtins) {
+      Function fn = builtin instanceof ScalarBuiltin ?
+          ((ScalarBuiltin) builtin).create() : (Function) builtin;
+      Preconditions.checkState(
+          Db.findFunction(fns, fn, Function.CompareMode.IS_IDENTICAL) == null);
+      if (Db.findFunction(fns, fn, Function.CompareMode.IS_INDISTINGUISHABLE) != null) {
+        continue;
+      }
+      fns.add(fn);
+    }
+    // The sort is stable, so this is the order that sorting after every addition gives.
+    Collections.sort(fns, Db.FUNCTION_RESOLUTION_ORDER);
+    return fns;
+  }
+}
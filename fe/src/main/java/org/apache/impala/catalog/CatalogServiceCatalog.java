@@ -1183,8 +1183,10 @@ public class CatalogServiceCatalog extends Catalog {
     try {
       Role role = authPolicy_.getRole(roleName);
       if (role == null) throw new CatalogException("Role does not exist: " + roleName);
-      RolePrivilege rolePrivilege =
-          role.removePrivilege(thriftPriv.getPrivilege_name());
+      RolePrivilege rolePrivilege = role.getPrivilege(thriftPriv.getPrivilege_name());
+      if (rolePrivilege == null) return null;
+      // Remove it through the policy so that the policy publishes the change.
+      rolePrivilege = authPolicy_.removePrivilege(rolePrivilege);
       if (rolePrivilege == null) return null;
       rolePrivilege.setCatalogVersion(incrementAndGetCatalogVersion());
       return rolePrivilege;
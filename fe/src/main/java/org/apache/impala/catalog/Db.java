@@ -22,6 +22,8 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.thrift.protocol.TCompactProtocol;
@@ -83,6 +85,24 @@ public class Db implements CatalogObject {
   // canonical order defined by FunctionResolutionOrder.
   private final HashMap<String, List<Function>> functions_;
 
+  // Immutable snapshots of the overloads in functions_, by name. Replaced while holding
+  // the lock on functions_ whenever the overloads of a name change, and read without
+  // locking when resolving functions.
+  private final ConcurrentHashMap<String, FunctionOverloads> fnOverloads_ =
+      new ConcurrentHashMap<String, FunctionOverloads>();
+
+  // If true, changes to functions_ are not published to fnOverloads_ until
+  // publishFnOverloads() is called. Protected by the lock on functions_.
+  private boolean deferFnOverloadsUpdates_ = false;
+
+  // Builtins that are only added to functions_ on the first use of their name, and the
+  // names that have not been used yet. Set by BuiltinsDb. A name is removed from
+  // unloadedBuiltins_ only after its functions are published, so a name that is in
+  // neither fnOverloads_ nor unloadedBuiltins_ has no functions.
+  private BuiltinsTable lazyBuiltins_;
+  private final Set<String> unloadedBuiltins_ =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
   // If true, this database is an Impala system database.
   // (e.g. can't drop it, can't add tables to it, etc).
   private boolean isSystemDb_ = false;
@@ -212,7 +232,7 @@ public class Db implements CatalogObject {
     }
   }
 
-  private static final FunctionResolutionOrder FUNCTION_RESOLUTION_ORDER =
+  static final FunctionResolutionOrder FUNCTION_RESOLUTION_ORDER =
       new FunctionResolutionOrder();
 
   /**
@@ -228,7 +248,8 @@ public class Db implements CatalogObject {
    */
   public int numFunctions() {
     synchronized (functions_) {
-      return functions_.size();
+      // Unloaded builtins are never in functions_ as well.
+      return functions_.size() + unloadedBuiltins_.size();
     }
   }
 
@@ -236,54 +257,80 @@ public class Db implements CatalogObject {
    * See comment in Catalog.
    */
   public boolean containsFunction(String name) {
-    synchronized (functions_) {
-      return functions_.get(name) != null;
-    }
+    return fnOverloads_.containsKey(name) || unloadedBuiltins_.contains(name);
   }
 
   /*
    * See comment in Catalog.
    */
   public Function getFunction(Function desc, Function.CompareMode mode) {
-    synchronized (functions_) {
-      List<Function> fns = functions_.get(desc.functionName());
-      if (fns == null) return null;
+    FunctionOverloads fns = getFnOverloads(desc.functionName());
+    if (fns == null) return null;
+    return fns.getFunction(desc, mode);
+  }
 
-      // First check for identical
-      for (Function f: fns) {
-        if (f.compare(desc, Function.CompareMode.IS_IDENTICAL)) return f;
-      }
-      if (mode == Function.CompareMode.IS_IDENTICAL) return null;
+  public Function getFunction(String signatureString) {
+    // The signature string starts with the function name.
+    int nameEnd = signatureString.indexOf('(');
+    if (nameEnd < 0) return null;
+    FunctionOverloads fns = getFnOverloads(signatureString.substring(0, nameEnd));
+    if (fns == null) return null;
+    return fns.getFunction(signatureString);
+  }
 
-      // Next check for indistinguishable
-      for (Function f: fns) {
-        if (f.compare(desc, Function.CompareMode.IS_INDISTINGUISHABLE)) return f;
-      }
-      if (mode == Function.CompareMode.IS_INDISTINGUISHABLE) return null;
+  /**
+   * Returns the published overloads of 'name', adding its lazily registered builtins
+   * first if they have not been added yet.
+   */
+  private FunctionOverloads getFnOverloads(String name) {
+    FunctionOverloads fns = fnOverloads_.get(name);
+    if (fns != null || !loadBuiltins(name)) return fns;
+    return fnOverloads_.get(name);
+  }
 
-      // Next check for strict supertypes
-      for (Function f: fns) {
-        if (f.compare(desc, Function.CompareMode.IS_SUPERTYPE_OF)) return f;
-      }
-      if (mode == Function.CompareMode.IS_SUPERTYPE_OF) return null;
+  /**
+   * Returns the function in functions_ that best matches 'desc' using 'mode', comparing
+   * against every overload of its name. Only supports the IS_IDENTICAL and
+   * IS_INDISTINGUISHABLE modes. Used for the checks when registering and removing
+   * functions, which do not need the overload index and must see functions whose
+   * overloads are not published yet. Must be called with the lock on functions_ held.
+   */
+  private Function findFunction(Function desc, Function.CompareMode mode) {
+    loadBuiltins(desc.functionName());
+    return findFunction(functions_.get(desc.functionName()), desc, mode);
+  }
 
-      // Finally check for non-strict supertypes
-      for (Function f: fns) {
-        if (f.compare(desc, Function.CompareMode.IS_NONSTRICT_SUPERTYPE_OF)) return f;
-      }
+  /**
+   * Returns the function in 'fns' that best matches 'desc', see above. 'fns' may be
+   * null.
+   */
+  static Function findFunction(List<Function> fns, Function desc,
+      Function.CompareMode mode) {
+    Preconditions.checkState(mode == Function.CompareMode.IS_IDENTICAL
+        || mode == Function.CompareMode.IS_INDISTINGUISHABLE);
+    if (fns == null) return null;
+    for (Function f: fns) {
+      if (f.compare(desc, Function.CompareMode.IS_IDENTICAL)) return f;
+    }
+    if (mode == Function.CompareMode.IS_IDENTICAL) return null;
+    for (Function f: fns) {
+      if (f.compare(desc, Function.CompareMode.IS_INDISTINGUISHABLE)) return f;
     }
     return null;
   }
 
-  public Function getFunction(String signatureString) {
-    synchronized (functions_) {
-      for (List<Function> fns: functions_.values()) {
-        for (Function f: fns) {
-          if (f.signatureString().equals(signatureString)) return f;
-        }
-      }
+  /**
+   * Publishes the current overloads of 'name' in functions_ to fnOverloads_, unless
+   * updates are deferred. Must be called with the lock on functions_ held.
+   */
+  private void updateFnOverloads(String name) {
+    if (deferFnOverloadsUpdates_) return;
+    List<Function> fns = functions_.get(name);
+    if (fns == null) {
+      fnOverloads_.remove(name);
+    } else {
+      fnOverloads_.put(name, new FunctionOverloads(fns));
     }
-    return null;
   }
 
   /**
@@ -330,7 +377,7 @@ public class Db implements CatalogObject {
   public boolean addFunction(Function fn, boolean addToDbParams) {
     Preconditions.checkState(fn.dbName().equals(getName()));
     synchronized (functions_) {
-      if (getFunction(fn, Function.CompareMode.IS_INDISTINGUISHABLE) != null) {
+      if (findFunction(fn, Function.CompareMode.IS_INDISTINGUISHABLE) != null) {
         return false;
       }
       List<Function> fns = functions_.get(fn.functionName());
@@ -341,6 +388,7 @@ public class Db implements CatalogObject {
       if (addToDbParams && !addFunctionToDbParams(fn)) return false;
       fns.add(fn);
       Collections.sort(fns, FUNCTION_RESOLUTION_ORDER);
+      updateFnOverloads(fn.functionName());
       return true;
     }
   }
@@ -350,12 +398,13 @@ public class Db implements CatalogObject {
    */
   public Function removeFunction(Function desc) {
     synchronized (functions_) {
-      Function fn = getFunction(desc, Function.CompareMode.IS_INDISTINGUISHABLE);
+      Function fn = findFunction(desc, Function.CompareMode.IS_INDISTINGUISHABLE);
       if (fn == null) return null;
       List<Function> fns = functions_.get(desc.functionName());
       Preconditions.checkNotNull(fns);
       fns.remove(fn);
       if (fns.isEmpty()) functions_.remove(desc.functionName());
+      updateFnOverloads(desc.functionName());
       if (fn.getBinaryType() == TFunctionBinaryType.JAVA) return fn;
       // Remove the function from the metastore database parameters
       String fnKey = FUNCTION_INDEX_PREFIX + fn.signatureString();
@@ -405,8 +454,77 @@ public class Db implements CatalogObject {
   public void addBuiltin(Function fn) {
     Preconditions.checkState(isSystemDb());
     Preconditions.checkState(fn != null);
-    Preconditions.checkState(getFunction(fn, Function.CompareMode.IS_IDENTICAL) == null);
-    addFunction(fn, false);
+    synchronized (functions_) {
+      Preconditions.checkState(
+          findFunction(fn, Function.CompareMode.IS_IDENTICAL) == null);
+      addFunction(fn, false);
+    }
+  }
+
+  /**
+   * Stops publishing the overloads of a name to the lookups each time a function is
+   * added or removed, until publishFnOverloads() is called. Used to register many
+   * functions without building a FunctionOverloads for each of them. getFunction() and
+   * containsFunction() do not see the changes made in between.
+   */
+  void deferFnOverloadsUpdates() {
+    synchronized (functions_) {
+      deferFnOverloadsUpdates_ = true;
+    }
+  }
+
+  /**
+   * Publishes the overloads of every function name in functions_ and resumes publishing
+   * them on every change.
+   */
+  void publishFnOverloads() {
+    synchronized (functions_) {
+      deferFnOverloadsUpdates_ = false;
+      fnOverloads_.keySet().retainAll(functions_.keySet());
+      for (Map.Entry<String, List<Function>> entry: functions_.entrySet()) {
+        fnOverloads_.put(entry.getKey(), new FunctionOverloads(entry.getValue()));
+      }
+    }
+  }
+
+  /**
+   * Makes the builtins in 'builtins' functions of this database. They are added on the
+   * first use of their name, or when all functions are listed. Used by BuiltinsDb.
+   */
+  void addLazyBuiltins(BuiltinsTable builtins) {
+    Preconditions.checkState(isSystemDb());
+    synchronized (functions_) {
+      Preconditions.checkState(lazyBuiltins_ == null && functions_.isEmpty());
+      lazyBuiltins_ = builtins;
+      unloadedBuiltins_.addAll(builtins.getNames());
+    }
+  }
+
+  /**
+   * Adds the lazily registered builtins of 'name' to functions_ and publishes them, if
+   * that has not been done yet. Returns false if 'name' had no builtins to add, in which
+   * case the caller does not need to look it up again.
+   */
+  private boolean loadBuiltins(String name) {
+    if (!unloadedBuiltins_.contains(name)) return false;
+    synchronized (functions_) {
+      if (!unloadedBuiltins_.contains(name)) return true;
+      FunctionOverloads overloads = lazyBuiltins_.getOverloads(name);
+      functions_.put(name, overloads.getFunctions());
+      fnOverloads_.put(name, overloads);
+      unloadedBuiltins_.remove(name);
+      return true;
+    }
+  }
+
+  /**
+   * Adds all lazily registered builtins that have not been added yet.
+   */
+  private void loadAllBuiltins() {
+    if (unloadedBuiltins_.isEmpty()) return;
+    synchronized (functions_) {
+      for (String name: Lists.newArrayList(unloadedBuiltins_)) loadBuiltins(name);
+    }
   }
 
   /**
@@ -415,6 +533,7 @@ public class Db implements CatalogObject {
    * over the returned functions.
    */
   protected HashMap<String, List<Function>> getAllFunctions() {
+    loadAllBuiltins();
     return functions_;
   }
 
@@ -423,6 +542,7 @@ public class Db implements CatalogObject {
    */
   protected List<Function> getTransientFunctions() {
     List<Function> result = Lists.newArrayList();
+    loadAllBuiltins();
     synchronized (functions_) {
       for (String fnKey: functions_.keySet()) {
         for (Function fn: functions_.get(fnKey)) {
@@ -442,6 +562,7 @@ public class Db implements CatalogObject {
       PatternMatcher matcher) {
     Preconditions.checkNotNull(matcher);
     List<Function> result = Lists.newArrayList();
+    loadAllBuiltins();
     synchronized (functions_) {
       for (Map.Entry<String, List<Function>> fns: functions_.entrySet()) {
         if (!matcher.matches(fns.getKey())) continue;
@@ -462,6 +583,7 @@ public class Db implements CatalogObject {
   public List<Function> getFunctions(String name) {
     List<Function> result = Lists.newArrayList();
     Preconditions.checkNotNull(name);
+    loadBuiltins(name);
     synchronized (functions_) {
       if (!functions_.containsKey(name)) return result;
       for (Function fn: functions_.get(name)) {
@@ -478,6 +600,7 @@ public class Db implements CatalogObject {
     List<Function> result = Lists.newArrayList();
     Preconditions.checkNotNull(category);
     Preconditions.checkNotNull(name);
+    loadBuiltins(name);
     synchronized (functions_) {
       if (!functions_.containsKey(name)) return result;
       for (Function fn: functions_.get(name)) {
@@ -0,0 +1,179 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.catalog;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Immutable set of the overloads of one function name in a Db, in resolution order.
+ * Used by Db to resolve functions without locking and without comparing against every
+ * overload in each compare mode.
+ *
+ * The index only narrows down the overloads that can possibly match a lookup:
+ * IS_IDENTICAL lookups only consider the overloads with the same argument primitive
+ * types, and lookups of a signature without varargs only consider the overloads with a
+ * compatible number of arguments. The remaining candidates are compared in resolution
+ * order with Function.compare(), so the result is the same as comparing against all
+ * overloads in order. Lookups by signature string use a separate map, so that the
+ * signature strings are only computed for names that are looked up that way.
+ */
+class FunctionOverloads {
+  // The compare modes that follow IS_IDENTICAL, in the order they are tried.
+  private static final Function.CompareMode[] NON_IDENTICAL_MODES = {
+      Function.CompareMode.IS_INDISTINGUISHABLE, Function.CompareMode.IS_SUPERTYPE_OF,
+      Function.CompareMode.IS_NONSTRICT_SUPERTYPE_OF};
+
+  // All overloads in resolution order.
+  private final Function[] fns_;
+
+  // Built on first use. Racing threads may build them more than once, which is harmless
+  // because they only depend on fns_.
+  private volatile Index index_;
+  // Overloads by signatureString(). The first one in resolution order wins.
+  private volatile Map<String, Function> bySignature_;
+
+  private static class Index {
+    // Overloads by identicalKey().
+    final Map<String, Function[]> identical = Maps.newHashMap();
+    // byNumArgs[n] are the overloads that can match a signature with n arguments and
+    // without varargs, i.e., overloads with n arguments and overloads with varargs and
+    // at most n arguments. Signatures with more arguments can only match 'varArgs'.
+    final Function[][] byNumArgs;
+    final Function[] varArgs;
+
+    Index(Function[] fns) {
+      int maxNumArgs = -1;
+      List<Function> varArgFns = Lists.newArrayList();
+      Map<String, List<Function>> identical = Maps.newHashMap();
+      for (Function fn: fns) {
+        maxNumArgs = Math.max(maxNumArgs, fn.getNumArgs());
+        if (fn.hasVarArgs()) varArgFns.add(fn);
+        String key = identicalKey(fn);
+        List<Function> sameKey = identical.get(key);
+        if (sameKey == null) {
+          sameKey = Lists.newArrayList();
+          identical.put(key, sameKey);
+        }
+        sameKey.add(fn);
+      }
+      for (Map.Entry<String, List<Function>> entry: identical.entrySet()) {
+        this.identical.put(entry.getKey(), toArray(entry.getValue()));
+      }
+      varArgs = toArray(varArgFns);
+      byNumArgs = new Function[maxNumArgs + 1][];
+      for (int numArgs = 0; numArgs <= maxNumArgs; ++numArgs) {
+        List<Function> candidates = Lists.newArrayList();
+        for (Function fn: fns) {
+          if (fn.getNumArgs() == numArgs
+              || (fn.hasVarArgs() && fn.getNumArgs() < numArgs)) {
+            candidates.add(fn);
+          }
+        }
+        byNumArgs[numArgs] = toArray(candidates);
+      }
+    }
+  }
+
+  public FunctionOverloads(List<Function> fns) {
+    fns_ = toArray(fns);
+  }
+
+  /**
+   * Returns a new mutable list of the overloads in resolution order.
+   */
+  public List<Function> getFunctions() { return Lists.newArrayList(fns_); }
+
+  /**
+   * Returns the overload that best matches 'desc' using 'mode', with the same semantics
+   * as Db.getFunction().
+   */
+  public Function getFunction(Function desc, Function.CompareMode mode) {
+    Index index = getIndex();
+    Function[] identical = index.identical.get(identicalKey(desc));
+    if (identical != null) {
+      for (Function f: identical) {
+        if (f.compare(desc, Function.CompareMode.IS_IDENTICAL)) return f;
+      }
+    }
+    if (mode == Function.CompareMode.IS_IDENTICAL) return null;
+
+    Function[] candidates;
+    if (desc.hasVarArgs()) {
+      candidates = fns_;
+    } else if (desc.getNumArgs() < index.byNumArgs.length) {
+      candidates = index.byNumArgs[desc.getNumArgs()];
+    } else {
+      candidates = index.varArgs;
+    }
+    for (Function.CompareMode m: NON_IDENTICAL_MODES) {
+      for (Function f: candidates) {
+        if (f.compare(desc, m)) return f;
+      }
+      if (mode == m) return null;
+    }
+    return null;
+  }
+
+  /**
+   * Returns the first overload in resolution order with the given signature string, or
+   * null if there is none.
+   */
+  public Function getFunction(String signatureString) {
+    Map<String, Function> bySignature = bySignature_;
+    if (bySignature == null) {
+      bySignature = Maps.newHashMap();
+      for (Function fn: fns_) {
+        String signature = fn.signatureString();
+        if (!bySignature.containsKey(signature)) bySignature.put(signature, fn);
+      }
+      bySignature_ = bySignature;
+    }
+    return bySignature.get(signatureString);
+  }
+
+  private Index getIndex() {
+    Index index = index_;
+    if (index == null) {
+      index = new Index(fns_);
+      index_ = index;
+    }
+    return index;
+  }
+
+  /**
+   * Returns a key that is the same for 'fn' and every signature that fn is identical to,
+   * i.e., the primitive types of the arguments and whether fn has varargs.
+   */
+  private static String identicalKey(Function fn) {
+    Type[] args = fn.getArgs();
+    char[] key = new char[args.length + 1];
+    for (int i = 0; i < args.length; ++i) {
+      key[i] = (char) ('A' + args[i].getPrimitiveType().ordinal());
+    }
+    key[args.length] = fn.hasVarArgs() ? '*' : '.';
+    return new String(key);
+  }
+
+  private static Function[] toArray(List<Function> fns) {
+    return fns.toArray(new Function[fns.size()]);
+  }
+}
@@ -130,25 +130,31 @@ public class ImpaladCatalog extends Catalog {
       }
     }
 
-    // First process all updates
+    // Publish the changes to the authorization policy once for the whole update.
     long newCatalogVersion = lastSyncedCatalogVersion_;
-    for (TCatalogObject catalogObject: req.getUpdated_objects()) {
-      if (catalogObject.getType() == TCatalogObjectType.CATALOG) {
-        newCatalogVersion = catalogObject.getCatalog_version();
-      } else {
-        try {
-          addCatalogObject(catalogObject);
-        } catch (Exception e) {
-          LOG.error("Error adding catalog object: " + e.getMessage(), e);
+    authPolicy_.beginUpdate();
+    try {
+      // First process all updates
+      for (TCatalogObject catalogObject: req.getUpdated_objects()) {
+        if (catalogObject.getType() == TCatalogObjectType.CATALOG) {
+          newCatalogVersion = catalogObject.getCatalog_version();
+        } else {
+          try {
+            addCatalogObject(catalogObject);
+          } catch (Exception e) {
+            LOG.error("Error adding catalog object: " + e.getMessage(), e);
+          }
         }
       }
-    }
 
-    // Now remove all objects from the catalog. Removing a database before removing
-    // its child tables/functions is fine. If that happens, the removal of the child
-    // object will be a no-op.
-    for (TCatalogObject catalogObject: req.getRemoved_objects()) {
-      removeCatalogObject(catalogObject, newCatalogVersion);
+      // Now remove all objects from the catalog. Removing a database before removing
+      // its child tables/functions is fine. If that happens, the removal of the child
+      // object will be a no-op.
+      for (TCatalogObject catalogObject: req.getRemoved_objects()) {
+        removeCatalogObject(catalogObject, newCatalogVersion);
+      }
+    } finally {
+      authPolicy_.endUpdate();
     }
     lastSyncedCatalogVersion_ = newCatalogVersion;
     // Cleanup old entries in the log.
@@ -442,7 +448,11 @@ public class ImpaladCatalog extends Catalog {
     // version of the drop, remove the function.
     if (existingPrivilege != null &&
         existingPrivilege.getCatalogVersion() < dropCatalogVersion) {
-      role.removePrivilege(thriftPrivilege.getPrivilege_name());
+      try {
+        authPolicy_.removePrivilege(existingPrivilege);
+      } catch (CatalogException e) {
+        LOG.error("Error removing privilege: ", e);
+      }
     }
   }
 
@@ -67,6 +67,13 @@ public class ScalarType extends Type {
   public static final int MAX_PRECISION = 38;
   public static final int MAX_SCALE = MAX_PRECISION;
 
+  // Results of isImplicitlyCastable() for pairs of non-parameterized types, indexed by
+  // [strict][t1 ordinal][t2 ordinal]. 0 if not computed yet.
+  private static final byte IMPLICITLY_CASTABLE = 1;
+  private static final byte NOT_IMPLICITLY_CASTABLE = 2;
+  private static final byte[][][] implicitCastCache =
+      new byte[2][PrimitiveType.values().length][PrimitiveType.values().length];
+
   protected ScalarType(PrimitiveType type) {
     type_ = type;
   }
@@ -473,6 +480,26 @@ public class ScalarType extends Type {
    */
   public static boolean isImplicitlyCastable(ScalarType t1, ScalarType t2,
       boolean strict) {
-    return getAssignmentCompatibleType(t1, t2, strict).matchesType(t2);
+    if (t1.isParameterized() || t2.isParameterized()) {
+      return getAssignmentCompatibleType(t1, t2, strict).matchesType(t2);
+    }
+    // The result only depends on the primitive types, so it is computed once per pair.
+    // Racing threads compute and store the same value.
+    byte[] row = implicitCastCache[strict ? 1 : 0][t1.type_.ordinal()];
+    int idx = t2.type_.ordinal();
+    if (row[idx] == 0) {
+      row[idx] = getAssignmentCompatibleType(t1, t2, strict).matchesType(t2)
+          ? IMPLICITLY_CASTABLE : NOT_IMPLICITLY_CASTABLE;
+    }
+    return row[idx] == IMPLICITLY_CASTABLE;
+  }
+
+  /**
+   * Returns true if this type has a length, precision or scale, i.e., if it is not
+   * fully described by its primitive type.
+   */
+  private boolean isParameterized() {
+    return type_ == PrimitiveType.DECIMAL || type_ == PrimitiveType.CHAR
+        || type_ == PrimitiveType.VARCHAR;
   }
 }
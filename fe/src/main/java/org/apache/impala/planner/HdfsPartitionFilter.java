@@ -22,8 +22,10 @@ import java.util.HashMap;
 import java.util.HashSet;
 
 import org.apache.impala.analysis.Analyzer;
+import org.apache.impala.analysis.ConstantEvaluator;
 import org.apache.impala.analysis.Expr;
 import org.apache.impala.analysis.ExprSubstitutionMap;
+import org.apache.impala.analysis.LiteralExpr;
 import org.apache.impala.analysis.SlotDescriptor;
 import org.apache.impala.analysis.SlotId;
 import org.apache.impala.analysis.SlotRef;
@@ -86,18 +88,26 @@ public class HdfsPartitionFilter {
   public HashSet<Long> getMatchingPartitionIds(ArrayList<HdfsPartition> partitions,
       Analyzer analyzer) throws ImpalaException {
     HashSet<Long> result = new HashSet<Long>();
-    // List of predicates to evaluate
+    // List of predicates to evaluate in the BE
     ArrayList<Expr> predicates = new ArrayList<Expr>(partitions.size());
     long[] partitionIds = new long[partitions.size()];
     int indx = 0;
     for (HdfsPartition p: partitions) {
-      predicates.add(buildPartitionPredicate(p, analyzer));
+      Expr predicate = buildPartitionPredicate(p, analyzer);
+      // Avoid the expensive BE evaluation if possible.
+      LiteralExpr feResult = ConstantEvaluator.evaluate(predicate);
+      if (feResult != null) {
+        if (Expr.IS_TRUE_LITERAL.apply(feResult)) result.add(p.getId());
+        continue;
+      }
+      predicates.add(predicate);
       partitionIds[indx++] = p.getId();
     }
+    if (predicates.isEmpty()) return result;
     // Evaluate the predicates
     TResultRow results = FeSupport.EvalPredicateBatch(predicates,
         analyzer.getQueryCtx());
-    Preconditions.checkState(results.getColValsSize() == partitions.size());
+    Preconditions.checkState(results.getColValsSize() == predicates.size());
     indx = 0;
     for (TColumnValue val: results.getColVals()) {
       if (val.isBool_val()) result.add(partitionIds[indx]);
@@ -171,11 +171,11 @@ public class HdfsPartitionPruner {
     Preconditions.checkNotNull(expr);
     Preconditions.checkState(!(expr instanceof BetweenPredicate));
     if (expr instanceof BinaryPredicate) {
-      // Evaluate any constant expression in the BE
+      // Evaluate any constant expression, in the FE if possible
       try {
         analyzer.getConstantFolder().rewrite(expr, analyzer);
       } catch (AnalysisException e) {
-        LOG.error("Error evaluating constant expressions in the BE: " + e.getMessage());
+        LOG.error("Error evaluating constant expressions: " + e.getMessage());
         return false;
       }
       BinaryPredicate bp = (BinaryPredicate)expr;
@@ -195,11 +195,11 @@ public class HdfsPartitionPruner {
       IsNullPredicate nullPredicate = (IsNullPredicate)expr;
       return nullPredicate.getBoundSlot() != null;
     } else if (expr instanceof InPredicate) {
-      // Evaluate any constant expressions in the BE
+      // Evaluate any constant expressions, in the FE if possible
       try {
         analyzer.getConstantFolder().rewrite(expr, analyzer);
       } catch (AnalysisException e) {
-        LOG.error("Error evaluating constant expressions in the BE: " + e.getMessage());
+        LOG.error("Error evaluating constant expressions: " + e.getMessage());
         return false;
       }
       // Check for SlotRef [NOT] IN (Literal, ... Literal) case
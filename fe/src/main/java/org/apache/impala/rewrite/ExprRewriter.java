@@ -17,6 +17,8 @@
 
 package org.apache.impala.rewrite;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 import org.apache.impala.analysis.Analyzer;
@@ -24,6 +26,8 @@ import org.apache.impala.analysis.Expr;
 import org.apache.impala.common.AnalysisException;
 import org.apache.kudu.client.shaded.com.google.common.collect.Lists;
 
+import com.google.common.base.Objects;
+
 /**
  * Helper class that drives the transformation of Exprs according to a given list of
  * ExprRewriteRules. The rules are applied as follows:
@@ -31,67 +35,253 @@ import org.apache.kudu.client.shaded.com.google.common.collect.Lists;
  *   fashion until there are no more changes
  * - the rule list is applied repeatedly until no rule has made any changes
  * - the rules are applied in the order they appear in the rule list
- * Keeps track of how many transformations were applied.
+ * Keeps track of how many transformations were applied, in total and per rule, and
+ * optionally of the time spent in each rule (see setTimeRules()).
+ *
+ * Within one rewrite(), the rewriter remembers the subtrees for which a rule returned
+ * the same Expr at every node, and skips them when that rule makes another pass, unless
+ * a rule has changed something inside them since. Rules only see the Expr they are
+ * applied to, so a skipped subtree would have been left unchanged by the pass anyway,
+ * and the order of rule applications, the results and getNumChanges() are the same as
+ * without skipping.
  */
 public class ExprRewriter {
+  // Rules beyond this position in the rule list are always reapplied to all subtrees
+  // because their fixpoints are tracked in a long bit mask.
+  private final static int MAX_MEMOIZED_RULES = 64;
+
   private int numChanges_ = 0;
   private final List<ExprRewriteRule> rules_;
 
+  // Per-rule statistics, indexed by the position of the rule in rules_.
+  private final long[] ruleNumApplications_;
+  private final int[] ruleNumChanges_;
+  private final long[] ruleTimeNs_;
+
+  // If true, the time spent in each rule is measured. Off by default because it costs
+  // two System.nanoTime() calls per rule application.
+  private boolean timeRules_ = false;
+
+  // Number of modifications of the Expr tree being rewritten, including Exprs that a
+  // rule modified in place without returning a different Expr. Used to detect whether
+  // a subtree has changed.
+  private long modCount_ = 0;
+
+  private final static Expr[] NO_CHILDREN = new Expr[0];
+
+  /**
+   * What rewrite() knows about an Expr it has visited.
+   */
+  private static class ExprState {
+    // Bit mask of the rules (by position in rules_) for which the subtree of the Expr
+    // is a fixpoint.
+    long fixpointRules;
+    // The Expr under which this Expr was first visited, and whether it was visited
+    // under another Expr since. Rules may reuse an Expr in several places of their
+    // result, so the tree may have shared subtrees.
+    final Expr parent;
+    boolean shared;
+
+    ExprState(Expr parent) { this.parent = parent; }
+  }
+
+  /**
+   * Statistics of a single rule since the last reset().
+   */
+  public static class RuleStats {
+    private final ExprRewriteRule rule_;
+    private final long numApplications_;
+    private final int numChanges_;
+    private final long timeNs_;
+
+    private RuleStats(ExprRewriteRule rule, long numApplications, int numChanges,
+        long timeNs) {
+      rule_ = rule;
+      numApplications_ = numApplications;
+      numChanges_ = numChanges;
+      timeNs_ = timeNs;
+    }
+
+    public ExprRewriteRule getRule() { return rule_; }
+    // Number of calls of ExprRewriteRule.apply().
+    public long getNumApplications() { return numApplications_; }
+    // Number of calls of ExprRewriteRule.apply() that returned a different Expr.
+    public int getNumChanges() { return numChanges_; }
+    // Time spent in ExprRewriteRule.apply() while rule timing was enabled.
+    public long getTimeNs() { return timeNs_; }
+
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this)
+          .add("rule", rule_.getClass().getSimpleName())
+          .add("applications", numApplications_)
+          .add("changes", numChanges_)
+          .add("timeNs", timeNs_)
+          .toString();
+    }
+  }
+
   public ExprRewriter(List<ExprRewriteRule> rules) {
     rules_ = rules;
+    ruleNumApplications_ = new long[rules.size()];
+    ruleNumChanges_ = new int[rules.size()];
+    ruleTimeNs_ = new long[rules.size()];
   }
 
   public ExprRewriter(ExprRewriteRule rule) {
-    rules_ = Lists.newArrayList(rule);
+    this(Lists.newArrayList(rule));
   }
 
   public Expr rewrite(Expr expr, Analyzer analyzer) throws AnalysisException {
+    IdentityHashMap<Expr, ExprState> states = new IdentityHashMap<Expr, ExprState>();
     // Keep applying the rule list until no rule has made any changes.
     int oldNumChanges;
     Expr rewrittenExpr = expr;
     do {
       oldNumChanges = numChanges_;
-      for (ExprRewriteRule rule: rules_) {
-        rewrittenExpr = applyRuleRepeatedly(rewrittenExpr, rule, analyzer);
+      for (int i = 0; i < rules_.size(); ++i) {
+        rewrittenExpr = applyRuleRepeatedly(rewrittenExpr, i, states, analyzer);
       }
     } while (oldNumChanges != numChanges_);
     return rewrittenExpr;
   }
 
   /**
-   * Applies 'rule' on the Expr tree rooted at 'expr' until there are no more changes.
+   * Applies the rule at position 'ruleIdx' of rules_ on the Expr tree rooted at 'expr'
+   * until there are no more changes.
    * Returns the transformed Expr or 'expr' if there were no changes.
    */
-  private Expr applyRuleRepeatedly(Expr expr, ExprRewriteRule rule, Analyzer analyzer)
+  private Expr applyRuleRepeatedly(Expr expr, int ruleIdx,
+      IdentityHashMap<Expr, ExprState> states, Analyzer analyzer)
       throws AnalysisException {
     int oldNumChanges;
     Expr rewrittenExpr = expr;
     do {
       oldNumChanges = numChanges_;
-      rewrittenExpr = applyRuleBottomUp(rewrittenExpr, rule, analyzer);
+      rewrittenExpr = applyRuleBottomUp(rewrittenExpr, null, ruleIdx, states, analyzer);
     } while (oldNumChanges != numChanges_);
     return rewrittenExpr;
   }
 
   /**
-   * Applies 'rule' on 'expr' and all its children in a bottom-up fashion.
+   * Applies the rule at position 'ruleIdx' of rules_ on 'expr' and all its children in
+   * a bottom-up fashion. 'parent' is the Expr whose child 'expr' is, or null for the
+   * root. Skips subtrees whose state in 'states' says they are a fixpoint of this rule,
+   * and records the subtrees that are.
    * Returns the transformed Expr or 'expr' if there were no changes.
    */
-  private Expr applyRuleBottomUp(Expr expr, ExprRewriteRule rule, Analyzer analyzer)
+  private Expr applyRuleBottomUp(Expr expr, Expr parent, int ruleIdx,
+      IdentityHashMap<Expr, ExprState> states, Analyzer analyzer)
+      throws AnalysisException {
+    long ruleBit = ruleIdx < MAX_MEMOIZED_RULES ? 1L << ruleIdx : 0;
+    ExprState state = getState(expr, parent, states);
+    if ((state.fixpointRules & ruleBit) != 0) return expr;
+
+    long oldModCount = modCount_;
+    List<Expr> children = expr.getChildren();
+    for (int i = 0; i < children.size(); ++i) {
+      expr.setChild(i, applyRuleBottomUp(children.get(i), expr, ruleIdx, states,
+          analyzer));
+    }
+    Expr[] oldChildren =
+        children.isEmpty() ? NO_CHILDREN : children.toArray(new Expr[children.size()]);
+    boolean wasAnalyzed = expr.isAnalyzed();
+    Expr rewrittenExpr = applyRule(expr, ruleIdx, analyzer);
+    if (rewrittenExpr != expr) {
+      ++modCount_;
+    } else if (expr.isAnalyzed() != wasAnalyzed || !hasChildren(expr, oldChildren)) {
+      // Rules may modify an Expr in place when analyzing it, which may also modify
+      // Exprs below it that are recorded as fixpoints.
+      ++modCount_;
+      states.clear();
+      return expr;
+    }
+
+    if (modCount_ == oldModCount) {
+      state.fixpointRules |= ruleBit;
+    } else if (state.shared) {
+      // If 'expr' is also the child of an Expr outside of this subtree, the fixpoints
+      // recorded for that Expr and its ancestors are stale.
+      states.clear();
+    } else {
+      state.fixpointRules = 0;
+    }
+    return rewrittenExpr;
+  }
+
+  private static ExprState getState(Expr expr, Expr parent,
+      IdentityHashMap<Expr, ExprState> states) {
+    ExprState state = states.get(expr);
+    if (state == null) {
+      state = new ExprState(parent);
+      states.put(expr, state);
+    } else if (state.parent != parent) {
+      state.shared = true;
+    }
+    return state;
+  }
+
+  /**
+   * Applies the rule at position 'ruleIdx' of rules_ on 'expr' only and updates the
+   * statistics.
+   */
+  private Expr applyRule(Expr expr, int ruleIdx, Analyzer analyzer)
       throws AnalysisException {
-    for (int i = 0; i < expr.getChildren().size(); ++i) {
-      expr.setChild(i, applyRuleBottomUp(expr.getChild(i), rule, analyzer));
+    ++ruleNumApplications_[ruleIdx];
+    Expr rewrittenExpr;
+    if (timeRules_) {
+      long startNs = System.nanoTime();
+      rewrittenExpr = rules_.get(ruleIdx).apply(expr, analyzer);
+      ruleTimeNs_[ruleIdx] += System.nanoTime() - startNs;
+    } else {
+      rewrittenExpr = rules_.get(ruleIdx).apply(expr, analyzer);
+    }
+    if (rewrittenExpr != expr) {
+      ++numChanges_;
+      ++ruleNumChanges_[ruleIdx];
     }
-    Expr rewrittenExpr = rule.apply(expr, analyzer);
-    if (rewrittenExpr != expr) ++numChanges_;
     return rewrittenExpr;
   }
 
+  /**
+   * Returns true if the children of 'expr' are exactly the Exprs in 'children'.
+   */
+  private static boolean hasChildren(Expr expr, Expr[] children) {
+    if (expr.getChildren().size() != children.length) return false;
+    for (int i = 0; i < children.length; ++i) {
+      if (expr.getChild(i) != children[i]) return false;
+    }
+    return true;
+  }
+
   public void rewriteList(List<Expr> exprs, Analyzer analyzer) throws AnalysisException {
     for (int i = 0; i < exprs.size(); ++i) exprs.set(i, rewrite(exprs.get(i), analyzer));
   }
 
-  public void reset() { numChanges_ = 0; }
+  /**
+   * Returns the statistics of all rules since the last reset(), in rule list order.
+   */
+  public List<RuleStats> getRuleStats() {
+    List<RuleStats> result = Lists.newArrayListWithCapacity(rules_.size());
+    for (int i = 0; i < rules_.size(); ++i) {
+      result.add(new RuleStats(rules_.get(i), ruleNumApplications_[i],
+          ruleNumChanges_[i], ruleTimeNs_[i]));
+    }
+    return result;
+  }
+
+  public void reset() {
+    numChanges_ = 0;
+    Arrays.fill(ruleNumApplications_, 0);
+    Arrays.fill(ruleNumChanges_, 0);
+    Arrays.fill(ruleTimeNs_, 0);
+  }
+
+  /**
+   * Enables or disables measuring the time spent in each rule.
+   */
+  public void setTimeRules(boolean timeRules) { timeRules_ = timeRules; }
+
   public boolean changed() { return numChanges_ > 0; }
   public int getNumChanges() { return numChanges_; }
 }
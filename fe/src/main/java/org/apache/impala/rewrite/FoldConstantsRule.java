@@ -24,7 +24,8 @@ import org.apache.impala.common.AnalysisException;
 
 /**
  * This rule replaces a constant Expr with its equivalent LiteralExpr by evaluating the
- * Expr in the BE. Exprs that are already LiteralExprs are not changed.
+ * Expr with ConstantEvaluator, or in the BE if ConstantEvaluator does not support it.
+ * Exprs that are already LiteralExprs are not changed.
  *
  * TODO: Expressions fed into this rule are currently not required to be analyzed
  * in order to support constant folding in expressions that contain unresolved
@@ -54,6 +54,9 @@ public class BackendConfig {
         !Strings.isNullOrEmpty(backendCfg_.principal);
   }
   public int getKuduClientTimeoutMs() { return backendCfg_.kudu_operation_timeout_ms; }
+  public long getParseCacheCapacityBytes() {
+    return backendCfg_.parse_cache_capacity_bytes;
+  }
 
   // Inits the auth_to_local configuration in the static KerberosName class.
   private static void initAuthToLocal() {
@@ -53,6 +53,7 @@ import org.apache.impala.analysis.DropTableOrViewStmt;
 import org.apache.impala.analysis.GrantRevokePrivStmt;
 import org.apache.impala.analysis.GrantRevokeRoleStmt;
 import org.apache.impala.analysis.InsertStmt;
+import org.apache.impala.analysis.ParseCache;
 import org.apache.impala.analysis.QueryStmt;
 import org.apache.impala.analysis.ResetMetadataStmt;
 import org.apache.impala.analysis.ShowFunctionsStmt;
@@ -104,6 +105,7 @@ import org.apache.impala.thrift.TExecRequest;
 import org.apache.impala.thrift.TExplainResult;
 import org.apache.impala.thrift.TFinalizeParams;
 import org.apache.impala.thrift.TFunctionCategory;
+import org.apache.impala.thrift.TGetParseCacheMetricsResult;
 import org.apache.impala.thrift.TGrantRevokePrivParams;
 import org.apache.impala.thrift.TGrantRevokeRoleParams;
 import org.apache.impala.thrift.TLineageGraph;
@@ -158,24 +160,36 @@ public class Frontend {
   //TODO: Make the reload interval configurable.
   private static final int AUTHORIZATION_POLICY_RELOAD_INTERVAL_SECS = 5 * 60;
 
+  // Estimated memory used by cached parsed statements, unless set by the
+  // --parse_cache_capacity_bytes impalad flag.
+  public static final long DEFAULT_PARSE_CACHE_CAPACITY_BYTES = 64L * 1024 * 1024;
+
   private ImpaladCatalog impaladCatalog_;
   private final AuthorizationConfig authzConfig_;
   private final AtomicReference<AuthorizationChecker> authzChecker_;
   private final ScheduledExecutorService policyReader_ =
       Executors.newScheduledThreadPool(1);
   private final String defaultKuduMasterHosts_;
+  private final ParseCache parseCache_;
 
   public Frontend(AuthorizationConfig authorizationConfig,
       String defaultKuduMasterHosts) {
-    this(authorizationConfig, new ImpaladCatalog(defaultKuduMasterHosts));
+    this(authorizationConfig, new ImpaladCatalog(defaultKuduMasterHosts),
+        BackendConfig.INSTANCE.getParseCacheCapacityBytes());
   }
 
   /**
    * C'tor used by tests to pass in a custom ImpaladCatalog.
    */
   public Frontend(AuthorizationConfig authorizationConfig, ImpaladCatalog catalog) {
+    this(authorizationConfig, catalog, DEFAULT_PARSE_CACHE_CAPACITY_BYTES);
+  }
+
+  private Frontend(AuthorizationConfig authorizationConfig, ImpaladCatalog catalog,
+      long parseCacheCapacityBytes) {
     authzConfig_ = authorizationConfig;
     impaladCatalog_ = catalog;
+    parseCache_ = new ParseCache(parseCacheCapacityBytes);
     defaultKuduMasterHosts_ = catalog.getDefaultKuduMasterHosts();
     authzChecker_ = new AtomicReference<AuthorizationChecker>(
         new AuthorizationChecker(authzConfig_, impaladCatalog_.getAuthPolicy()));
@@ -215,6 +229,20 @@ public class Frontend {
 
   public ImpaladCatalog getCatalog() { return impaladCatalog_; }
   public AuthorizationChecker getAuthzChecker() { return authzChecker_.get(); }
+  public ParseCache getParseCache() { return parseCache_; }
+
+  /**
+   * Returns the number of entries and the hit, miss and eviction counts of the parse
+   * cache.
+   */
+  public TGetParseCacheMetricsResult getParseCacheMetrics() {
+    TGetParseCacheMetricsResult result = new TGetParseCacheMetricsResult();
+    result.setNum_entries(parseCache_.size());
+    result.setHit_count(parseCache_.getHitCount());
+    result.setMiss_count(parseCache_.getMissCount());
+    result.setEviction_count(parseCache_.getEvictionCount());
+    return result;
+  }
 
   public TUpdateCatalogCacheResponse updateCatalogCache(
       TUpdateCatalogCacheRequest req) throws CatalogException {
@@ -887,6 +915,7 @@ public class Frontend {
 
     AnalysisContext analysisCtx = new AnalysisContext(impaladCatalog_, queryCtx,
         authzConfig_);
+    analysisCtx.setParseCache(parseCache_);
     LOG.info("Compiling query: " + queryCtx.request.stmt);
 
     // Run analysis in a loop until it any of the following events occur:
@@ -68,6 +68,7 @@ import org.apache.impala.thrift.TGetFunctionsParams;
 import org.apache.impala.thrift.TGetFunctionsResult;
 import org.apache.impala.thrift.TGetHadoopConfigRequest;
 import org.apache.impala.thrift.TGetHadoopConfigResponse;
+import org.apache.impala.thrift.TGetParseCacheMetricsResult;
 import org.apache.impala.thrift.TGetTablesParams;
 import org.apache.impala.thrift.TGetTablesResult;
 import org.apache.impala.thrift.TLoadDataReq;
@@ -375,6 +376,20 @@ public class JniFrontend {
     }
   }
 
+  /**
+   * Returns the parse cache metrics as a serialized TGetParseCacheMetricsResult. Called
+   * by the impalad to update its parse cache metrics.
+   */
+  public byte[] getParseCacheMetrics() throws ImpalaException {
+    TGetParseCacheMetricsResult result = frontend_.getParseCacheMetrics();
+    TSerializer serializer = new TSerializer(protocolFactory_);
+    try {
+      return serializer.serialize(result);
+    } catch (TException e) {
+      throw new InternalException(e.getMessage());
+    }
+  }
+
   /**
    * Returns a list of function names matching an optional pattern.
    * The argument is a serialized TGetFunctionsParams object.
@@ -0,0 +1,160 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.impala.common.Id;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Disjoint-set data structure over Ids, e.g. SlotIds or TupleIds, with the same
+ * operations as DisjointSet. The item sets are kept in an IntDisjointSet keyed by
+ * Id.asInt(), so union() takes nearly constant time instead of copying the smaller
+ * set.
+ *
+ * The item set views returned by get() and getSets() are materialized on demand for
+ * all sets at once, and rebuilt after the next change. Use inSameSet() to only test
+ * membership and setSize() to only get the size of a set.
+ */
+public class IdDisjointSet<T extends Id<T>> {
+  private final IntDisjointSet sets_ = new IntDisjointSet();
+  // The registered items, in registration order.
+  private final List<T> items_ = Lists.newArrayList();
+
+  // Item set views, keyed by the representative of each set. Null if stale.
+  private Map<Integer, Set<T>> views_;
+
+  /**
+   * Returns the item set corresponding to the given item or null if it doesn't exist.
+   * The returned set is unmodifiable and is not updated by later unions.
+   */
+  public Set<T> get(T item) {
+    int root = sets_.find(item.asInt());
+    if (root == -1) return null;
+    return getViews().get(root);
+  }
+
+  /**
+   * Returns all item sets. The sets are unmodifiable and are not updated by later
+   * unions.
+   */
+  public Collection<Set<T>> getSets() {
+    return Collections.unmodifiableCollection(getViews().values());
+  }
+
+  /**
+   * Returns the number of items in the item set of the given item, or 0 if it doesn't
+   * exist. Unlike get(), this does not materialize the item set views.
+   */
+  public int setSize(T item) { return sets_.getSetSize(item.asInt()); }
+
+  /**
+   * Returns true if both items belong to the same item set.
+   */
+  public boolean inSameSet(T a, T b) {
+    return sets_.inSameSet(a.asInt(), b.asInt());
+  }
+
+  public boolean contains(T item) { return sets_.contains(item.asInt()); }
+
+  /**
+   * Registers a new item set with a single item.
+   * Throws if such an item set already exists.
+   */
+  public void makeSet(T item) {
+    sets_.makeSet(item.asInt());
+    items_.add(item);
+    views_ = null;
+  }
+
+  /**
+   * Merges the two item sets belonging to the members a and b. The merged set contains
+   * at least a and b even if a or b did not have an associated item set.
+   * Returns false if the item sets of a and b are non-empty and already identical,
+   * true otherwise.
+   */
+  public boolean union(T a, T b) {
+    boolean hasA = contains(a);
+    boolean hasB = a.equals(b) || contains(b);
+    if (!sets_.union(a.asInt(), b.asInt())) return false;
+    if (!hasA) items_.add(a);
+    if (!hasB) items_.add(b);
+    views_ = null;
+    return true;
+  }
+
+  /**
+   * Merges all the item sets corresponding to the given items. Returns true if any item
+   * sets were merged or created, false otherwise (item sets are already identical).
+   */
+  public boolean bulkUnion(Collection<T> items) {
+    if (items.isEmpty()) return false;
+    T head = items.iterator().next();
+    // bulkUnion(x) is equivalent to makeSet(x)
+    if (items.size() == 1) {
+      if (contains(head)) return false;
+      makeSet(head);
+      return true;
+    }
+    boolean result = false;
+    for (T item: items) {
+      if (union(head, item)) result = true;
+    }
+    return result;
+  }
+
+  public int getNumSets() { return sets_.getNumSets(); }
+
+  /**
+   * Checks the internal consistency of this data structure.
+   * Throws an IllegalStateException if an inconsistency is detected.
+   */
+  public void checkConsistency() {
+    sets_.checkConsistency();
+    if (items_.size() != sets_.getNumItems()) {
+      throw new IllegalStateException("IdDisjointSet is in an inconsistent state.");
+    }
+  }
+
+  private Map<Integer, Set<T>> getViews() {
+    if (views_ != null) return views_;
+    Map<Integer, Set<T>> sets = Maps.newHashMapWithExpectedSize(sets_.getNumSets());
+    for (T item: items_) {
+      int root = sets_.find(item.asInt());
+      Set<T> set = sets.get(root);
+      if (set == null) {
+        set = Sets.newHashSet();
+        sets.put(root, set);
+      }
+      set.add(item);
+    }
+    views_ = Maps.newHashMapWithExpectedSize(sets.size());
+    for (Map.Entry<Integer, Set<T>> entry: sets.entrySet()) {
+      views_.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+    }
+    return views_;
+  }
+}
@@ -1,11 +1,10 @@
 package org.apache.impala.util;
 
-import java_cup.runtime.ExtendSymbolFactory;
-import org.apache.impala.analysis.SqlParser;
-import org.apache.impala.analysis.SqlScanner;
 import org.apache.impala.analysis.SyntaxBlock;
 
-import java.io.StringReader;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 
 /**
@@ -13,36 +12,90 @@ import java.util.Stack;
  */
 public class ImpalaSqlUtil {
     public static SyntaxBlock parse(String sql) throws Exception {
-        SqlScanner scanner = new SqlScanner(new StringReader(sql));
-        SqlParser parser = new SqlParser(scanner, new ExtendSymbolFactory(sql));
-        return (SyntaxBlock) parser.parse().value;
+        SqlParserHandle handle = SqlParserHandle.acquire();
+        try {
+            return (SyntaxBlock) handle.parse(sql);
+        } finally {
+            handle.release();
+        }
     }
 
+    /**
+     * Calls 'action' for every block of the tree in pre-order. 'parentStack' is a copy of
+     * the ancestors of the block that the action may keep; callers that do not need to
+     * keep it should prefer walking the tree with a SyntaxBlockCursor, which does not
+     * copy the ancestor path for every block.
+     */
     public static void foreach(SyntaxBlock rootBlock, ForeachAction action) {
         if (rootBlock == null || action == null) {
             return;
         }
-        action.doAction(rootBlock, new Stack<SyntaxBlock>(), 0);
-        foreachSubBlocks(rootBlock, action, new Stack<SyntaxBlock>());
+        SyntaxBlockCursor cursor = new SyntaxBlockCursor(rootBlock, SyntaxBlockCursor.Order.PRE_ORDER);
+        while (cursor.next()) {
+            Stack<SyntaxBlock> parentStack = new Stack<>();
+            parentStack.addAll(cursor.ancestors());
+            action.doAction(cursor.current(), parentStack, cursor.childIndex());
+        }
+    }
+
+    /**
+     * Walks the tree in the given order without copying the ancestor path. The visitor
+     * can stop the walk or skip the children of a block (pre-order only).
+     */
+    public static void walk(SyntaxBlock rootBlock, SyntaxBlockCursor.Order order, WalkVisitor visitor) {
+        if (rootBlock == null || visitor == null) {
+            return;
+        }
+        SyntaxBlockCursor cursor = new SyntaxBlockCursor(rootBlock, order);
+        while (cursor.next()) {
+            WalkResult result = visitor.visit(cursor.current(), cursor.ancestors(), cursor.childIndex());
+            if (result == WalkResult.TERMINATE) {
+                return;
+            } else if (result == WalkResult.SKIP_SUBTREE && order == SyntaxBlockCursor.Order.PRE_ORDER) {
+                cursor.skipSubtree();
+            }
+        }
     }
 
-    private static void foreachSubBlocks(SyntaxBlock parentSyntaxBlock, ForeachAction action, Stack<SyntaxBlock> stack) {
-        if (parentSyntaxBlock.subBlocks != null && parentSyntaxBlock.subBlocks.size() > 0) {
-            stack.push(parentSyntaxBlock);
-            for (int i = 0; i < parentSyntaxBlock.subBlocks.size(); i++) {
-                SyntaxBlock subBlock = parentSyntaxBlock.subBlocks.get(i);
-                if (subBlock != null) {
-                    Stack<SyntaxBlock> copyStack = new Stack<>();
-                    copyStack.addAll(stack);
-                    action.doAction(subBlock, copyStack, i);
-                    foreachSubBlocks(subBlock, action, stack);
-                }
+    /**
+     * Adds 'delta' to the positions of every block in the tree. Blocks that are reachable
+     * through several paths are moved once; unset positions (-1) are left alone.
+     */
+    public static void shiftPositions(SyntaxBlock rootBlock, int delta) {
+        if (rootBlock == null || delta == 0) {
+            return;
+        }
+        Map<SyntaxBlock, Boolean> seen = new IdentityHashMap<>();
+        SyntaxBlockCursor cursor = new SyntaxBlockCursor(rootBlock);
+        while (cursor.next()) {
+            SyntaxBlock block = cursor.current();
+            if (seen.put(block, Boolean.TRUE) != null) {
+                cursor.skipSubtree();
+                continue;
+            }
+            if (block.startPosition >= 0) {
+                block.startPosition += delta;
+            }
+            if (block.endPosition >= 0) {
+                block.endPosition += delta;
             }
-            stack.pop();
         }
     }
 
     public interface ForeachAction {
         void doAction(SyntaxBlock syntaxBlock, Stack<SyntaxBlock> parentStack, int childIndex);
     }
+
+    public enum WalkResult {
+        CONTINUE,
+        SKIP_SUBTREE,
+        TERMINATE
+    }
+
+    public interface WalkVisitor {
+        /**
+         * 'ancestors' is a read-only view that is only valid during the call.
+         */
+        WalkResult visit(SyntaxBlock syntaxBlock, List<SyntaxBlock> ancestors, int childIndex);
+    }
 }
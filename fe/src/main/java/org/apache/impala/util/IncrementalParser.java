@@ -0,0 +1,389 @@
+package org.apache.impala.util;
+
+import com.google.common.base.Preconditions;
+import java_cup.runtime.ExtendSymbol;
+import java_cup.runtime.ExtendSymbolFactory;
+import java_cup.runtime.Scanner;
+import java_cup.runtime.Symbol;
+import org.apache.impala.analysis.SqlParser;
+import org.apache.impala.analysis.SqlParserSymbols;
+import org.apache.impala.analysis.SqlScanner;
+import org.apache.impala.analysis.SyntaxBlock;
+
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fast path for reparsing a statement after an edit that leaves its tokens unchanged,
+ * i.e. that only changes whitespace and comments.
+ *
+ * A full parse records the token stream next to the tree. On an edit only the tokens
+ * around the edited range are relexed: the scanner has no lexical states, so it can
+ * restart at any token boundary, and it stops as soon as it produces a token that lines
+ * up with an old token after the edit. The old tree is reused if the relexed window has
+ * the same tokens, in kind and text, as the old one. Any other change to the token
+ * stream falls back to a full parse, including a renamed identifier or a changed
+ * literal: the AST nodes keep token values in their own fields, e.g. the path of a
+ * SlotRef or the value of a NumericLiteral, so they cannot take a new value without
+ * being rebuilt by the parser.
+ *
+ * A reused tree is made of the AST nodes of the full parse that built it, with their
+ * positions moved to the new text, so it is equal to a full parse of the new text.
+ * Since the nodes are moved rather than copied, the previous result gives up its tree:
+ * its getRoot() fails once reparse() has reused it.
+ *
+ * Usage:
+ * <pre>
+ *     IncrementalParser.Result result = IncrementalParser.parse(sql);
+ *     result = IncrementalParser.reparse(result, offset, removedLength, text);
+ * </pre>
+ */
+public class IncrementalParser {
+    // Returned by PositionShift.map() for a position that is not a token boundary.
+    private static final int NOT_A_BOUNDARY = Integer.MIN_VALUE;
+
+    /**
+     * Parse result plus the token stream needed to reparse it. A result whose tree has
+     * been moved to a later result by reparse() no longer gives access to the tree.
+     */
+    public static class Result {
+        private final String sql;
+        private final SyntaxBlock root;
+        // Tokens of 'sql'.
+        private final TokenList tokens;
+        private final boolean reused;
+        // Set once reparse() has moved 'root' to a later result.
+        private boolean moved;
+
+        private Result(String sql, SyntaxBlock root, TokenList tokens, boolean reused) {
+            this.sql = sql;
+            this.root = root;
+            this.tokens = tokens;
+            this.reused = reused;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * Returns the tree. Its positions refer to getSql(). Fails if the tree has been
+         * moved to a later result.
+         */
+        public SyntaxBlock getRoot() {
+            Preconditions.checkState(!moved, "The tree has been moved to a later result");
+            return root;
+        }
+
+        /**
+         * Returns true if the tree was moved from the previous result instead of being
+         * built by a full parse.
+         */
+        public boolean isReused() {
+            return reused;
+        }
+    }
+
+    /**
+     * Fully parses 'sql' and records its token stream.
+     */
+    public static Result parse(String sql) throws Exception {
+        SqlScanner scanner = new SqlScanner(new StringReader(sql));
+        scanner.setLazyTextSource(sql);
+        RecordingScanner recordingScanner = new RecordingScanner(scanner);
+        SqlParser parser = new SqlParser(recordingScanner, new ExtendSymbolFactory(sql));
+        SyntaxBlock root = (SyntaxBlock) parser.parse().value;
+        return new Result(sql, root, recordingScanner.tokens, false);
+    }
+
+    /**
+     * Applies the edit that replaces 'removedLength' chars at 'offset' of the previous
+     * text with 'insertedText', and returns the parse result for the new text. The tree
+     * of 'previous' is moved to the new result if the edit leaves the tokens of the
+     * statement unchanged; otherwise the new text is fully parsed and 'previous' stays
+     * as it was.
+     */
+    public static Result reparse(Result previous, int offset, int removedLength,
+            String insertedText) throws Exception {
+        Preconditions.checkNotNull(previous);
+        Preconditions.checkNotNull(insertedText);
+        Preconditions.checkState(!previous.moved, "The tree has been moved to a later result");
+        String oldSql = previous.sql;
+        Preconditions.checkPositionIndexes(offset, offset + removedLength, oldSql.length());
+        String newSql = oldSql.substring(0, offset) + insertedText
+                + oldSql.substring(offset + removedLength);
+        if (previous.root == null || previous.tokens.hasContextSensitiveTokens()) {
+            return parse(newSql);
+        }
+
+        int delta = insertedText.length() - removedLength;
+        TokenList oldTokens = previous.tokens;
+        // A token ending right at the edit may merge with the inserted text, so relex from
+        // the last token that ends strictly before the edit.
+        int windowBegin = oldTokens.lastEndingBefore(offset);
+        int windowStart;
+        if (windowBegin < 0) {
+            windowBegin = 0;
+            windowStart = 0;
+        } else {
+            windowStart = oldTokens.start(windowBegin);
+        }
+        int editEnd = offset + insertedText.length();
+
+        StringReader reader = new StringReader(newSql);
+        reader.skip(windowStart);
+        SqlScanner scanner = new SqlScanner(reader);
+        // Offsets of the relexed tokens are relative to windowStart.
+        scanner.setLazyTextSource(CharBuffer.wrap(newSql, windowStart, newSql.length()));
+        TokenList window = new TokenList();
+        int windowEnd;
+        while (true) {
+            ExtendSymbol token = (ExtendSymbol) scanner.next_token();
+            int start = windowStart + token.start;
+            int end = windowStart + token.end;
+            if (start >= editEnd) {
+                int old = oldTokens.indexOfStart(start - delta);
+                if (old >= 0 && oldTokens.sameToken(old, oldSql, token.sym, start, end, newSql)) {
+                    windowEnd = old;
+                    break;
+                }
+            }
+            // The old stream always ends with EOF, which the new EOF lines up with.
+            Preconditions.checkState(token.sym != SqlParserSymbols.EOF);
+            window.add(token.sym, start, end);
+        }
+
+        if (window.size() != windowEnd - windowBegin) {
+            return parse(newSql);
+        }
+        for (int i = 0; i < window.size(); i++) {
+            if (!oldTokens.sameToken(windowBegin + i, oldSql, window.sym(i),
+                    window.start(i), window.end(i), newSql)) {
+                return parse(newSql);
+            }
+        }
+        TokenList newTokens = oldTokens.withWindow(windowBegin, window, delta);
+        if (!new PositionShift(oldTokens, newTokens).apply(previous.root)) {
+            return parse(newSql);
+        }
+        previous.moved = true;
+        return new Result(newSql, previous.root, newTokens, true);
+    }
+
+    /**
+     * Moves the positions of a tree parsed from one token stream to the same boundaries
+     * of another stream with the same tokens. A block shared by several parents is moved
+     * once.
+     */
+    private static class PositionShift {
+        private final TokenList from;
+        private final TokenList to;
+
+        PositionShift(TokenList from, TokenList to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Moves the positions of all blocks of the tree rooted at 'root'. Returns false,
+         * and leaves the tree as it was, if a position is not a token boundary.
+         */
+        boolean apply(SyntaxBlock root) {
+            Set<SyntaxBlock> visited = Collections.newSetFromMap(
+                    new IdentityHashMap<SyntaxBlock, Boolean>());
+            List<SyntaxBlock> blocks = new ArrayList<>();
+            SyntaxBlockCursor cursor = new SyntaxBlockCursor(root);
+            while (cursor.next()) {
+                if (!visited.add(cursor.current())) {
+                    cursor.skipSubtree();
+                    continue;
+                }
+                blocks.add(cursor.current());
+            }
+            // Map every position before moving any, so that a failure leaves the tree
+            // untouched.
+            int[] positions = new int[2 * blocks.size()];
+            for (int i = 0; i < blocks.size(); i++) {
+                SyntaxBlock block = blocks.get(i);
+                positions[2 * i] = map(block.startPosition, true);
+                positions[2 * i + 1] = map(block.endPosition, false);
+                if (positions[2 * i] == NOT_A_BOUNDARY
+                        || positions[2 * i + 1] == NOT_A_BOUNDARY) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < blocks.size(); i++) {
+                blocks.get(i).startPosition = positions[2 * i];
+                blocks.get(i).endPosition = positions[2 * i + 1];
+            }
+            return true;
+        }
+
+        /**
+         * Maps a token boundary of 'from' to the same boundary in 'to'. Where a token
+         * ends right at the start of the next one, a start position is taken to be the
+         * start of the next token and an end position the end of the previous.
+         */
+        private int map(int position, boolean isStart) {
+            if (position < 0) {
+                return position;
+            }
+            int start = from.indexOfStart(position);
+            int end = from.firstIndexOfEnd(position);
+            if (start >= 0 && (isStart || end < 0)) {
+                return to.start(start);
+            }
+            return end >= 0 ? to.end(end) : NOT_A_BOUNDARY;
+        }
+    }
+
+    /**
+     * Token stream as parallel arrays of symbol ids and [start, end) offsets.
+     */
+    private static class TokenList {
+        private int[] syms = new int[64];
+        private int[] starts = new int[64];
+        private int[] ends = new int[64];
+        private int size;
+
+        void add(int sym, int start, int end) {
+            if (size == syms.length) {
+                syms = Arrays.copyOf(syms, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            syms[size] = sym;
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int sym(int i) {
+            return syms[i];
+        }
+
+        int start(int i) {
+            return starts[i];
+        }
+
+        int end(int i) {
+            return ends[i];
+        }
+
+        /**
+         * Returns the index of the token starting at 'start', or -1.
+         */
+        int indexOfStart(int start) {
+            int i = Arrays.binarySearch(starts, 0, size, start);
+            return i >= 0 ? i : -1;
+        }
+
+        /**
+         * Returns the index of the first token ending at 'end', or -1. Only the last token
+         * and the empty EOF token after it can end at the same offset.
+         */
+        int firstIndexOfEnd(int end) {
+            int i = Arrays.binarySearch(ends, 0, size, end);
+            if (i < 0) {
+                return -1;
+            }
+            while (i > 0 && ends[i - 1] == end) {
+                i--;
+            }
+            return i;
+        }
+
+        /**
+         * Returns the index of the last token with end < offset, or -1.
+         */
+        int lastEndingBefore(int offset) {
+            int lo = 0;
+            int hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ends[mid] < offset) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return hi;
+        }
+
+        boolean sameToken(int i, String sql, int otherSym, int otherStart, int otherEnd, String otherSql) {
+            int length = ends[i] - starts[i];
+            return syms[i] == otherSym && otherEnd - otherStart == length
+                    && sql.regionMatches(starts[i], otherSql, otherStart, length);
+        }
+
+        /**
+         * Returns true if the stream contains tokens whose meaning can change when text
+         * after them is edited: an unterminated quote may become a string literal and an
+         * adjacent '/' '*' pair may become the start of a comment.
+         */
+        boolean hasContextSensitiveTokens() {
+            for (int i = 0; i < size; i++) {
+                if (syms[i] == SqlParserSymbols.UNMATCHED_STRING_LITERAL) {
+                    return true;
+                }
+                if (syms[i] == SqlParserSymbols.DIVIDE && i + 1 < size
+                        && syms[i + 1] == SqlParserSymbols.STAR && starts[i + 1] == ends[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns a copy of this stream with the tokens from 'begin' overwritten by
+         * 'window', which has the same kinds of tokens, and the tokens after it shifted by
+         * 'delta'.
+         */
+        TokenList withWindow(int begin, TokenList window, int delta) {
+            TokenList copy = new TokenList();
+            copy.syms = Arrays.copyOf(syms, size);
+            copy.starts = Arrays.copyOf(starts, size);
+            copy.ends = Arrays.copyOf(ends, size);
+            copy.size = size;
+            System.arraycopy(window.starts, 0, copy.starts, begin, window.size);
+            System.arraycopy(window.ends, 0, copy.ends, begin, window.size);
+            for (int i = begin + window.size; i < size; i++) {
+                copy.starts[i] += delta;
+                copy.ends[i] += delta;
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Passes tokens through to the parser while recording them.
+     */
+    private static class RecordingScanner implements Scanner {
+        private final Scanner scanner;
+        private final TokenList tokens = new TokenList();
+
+        RecordingScanner(Scanner scanner) {
+            this.scanner = scanner;
+        }
+
+        @Override
+        public Symbol next_token() throws Exception {
+            ExtendSymbol token = (ExtendSymbol) scanner.next_token();
+            // The parser may ask for more tokens once it has seen EOF; record it only once.
+            if (tokens.size() == 0 || tokens.sym(tokens.size() - 1) != SqlParserSymbols.EOF) {
+                tokens.add(token.sym, token.start, token.end);
+            }
+            return token;
+        }
+    }
+}
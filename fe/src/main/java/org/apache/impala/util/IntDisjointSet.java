@@ -0,0 +1,212 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Disjoint-set (union-find) data structure over small non-negative int items, such as
+ * the ints of dense SlotIds or TupleIds. Each item set is a tree stored in a parent
+ * array; find() compresses paths and union() links by rank, so both take nearly
+ * constant amortized time. Items must be registered with makeSet() or union() before
+ * they belong to a set.
+ *
+ * Has the same union() and bulkUnion() semantics as DisjointSet. IdDisjointSet adapts
+ * this class to Id types and provides the item set views of DisjointSet.
+ */
+public class IntDisjointSet {
+  // parent_[i] is the parent of item i, i itself if i is the root of its set, or -1 if
+  // i is not registered. Grows as needed.
+  private int[] parent_;
+  // Upper bound on the height of the tree of each root.
+  private byte[] rank_;
+  // size_[i] is the number of items in the set of root i. Not maintained for non-roots.
+  private int[] size_;
+  private int numItems_ = 0;
+  private int numSets_ = 0;
+
+  public IntDisjointSet() { this(16); }
+
+  public IntDisjointSet(int capacity) {
+    parent_ = new int[Math.max(capacity, 1)];
+    rank_ = new byte[parent_.length];
+    size_ = new int[parent_.length];
+    Arrays.fill(parent_, -1);
+  }
+
+  /**
+   * Returns true if the item belongs to an item set.
+   */
+  public boolean contains(int item) {
+    return item >= 0 && item < parent_.length && parent_[item] != -1;
+  }
+
+  /**
+   * Returns the representative item of the item set of the given item, or -1 if the
+   * item is not registered. All items of a set have the same representative until the
+   * set is merged with another one.
+   */
+  public int find(int item) {
+    if (!contains(item)) return -1;
+    int root = item;
+    while (parent_[root] != root) root = parent_[root];
+    // Path compression.
+    while (parent_[item] != root) {
+      int next = parent_[item];
+      parent_[item] = root;
+      item = next;
+    }
+    return root;
+  }
+
+  /**
+   * Returns the number of items in the item set of the given item, or 0 if the item is
+   * not registered.
+   */
+  public int getSetSize(int item) {
+    int root = find(item);
+    return root == -1 ? 0 : size_[root];
+  }
+
+  /**
+   * Returns true if both items are registered and belong to the same item set.
+   */
+  public boolean inSameSet(int a, int b) {
+    int rootA = find(a);
+    return rootA != -1 && rootA == find(b);
+  }
+
+  /**
+   * Registers a new item set with a single item.
+   * Throws if the item already belongs to an item set.
+   */
+  public void makeSet(int item) {
+    Preconditions.checkArgument(item >= 0);
+    if (contains(item)) {
+      throw new IllegalStateException("Item set for item already exists: " + item);
+    }
+    if (item >= parent_.length) {
+      int oldLength = parent_.length;
+      int newLength = Math.max(oldLength * 2, item + 1);
+      parent_ = Arrays.copyOf(parent_, newLength);
+      rank_ = Arrays.copyOf(rank_, newLength);
+      size_ = Arrays.copyOf(size_, newLength);
+      Arrays.fill(parent_, oldLength, newLength, -1);
+    }
+    parent_[item] = item;
+    size_[item] = 1;
+    ++numItems_;
+    ++numSets_;
+  }
+
+  /**
+   * Merges the two item sets belonging to the items a and b. The merged set contains
+   * at least a and b even if a or b did not have an associated item set.
+   * Returns false if the item sets of a and b are non-empty and already identical,
+   * true otherwise.
+   */
+  public boolean union(int a, int b) {
+    int rootA = find(a);
+    int rootB = find(b);
+    if (rootA != -1 && rootA == rootB) return false;
+    if (rootA == -1) {
+      makeSet(a);
+      rootA = a;
+      // union(x, x) is equivalent to makeSet(x)
+      if (a == b) return true;
+    }
+    if (rootB == -1) {
+      makeSet(b);
+      rootB = b;
+    }
+    if (rank_[rootA] < rank_[rootB]) {
+      parent_[rootA] = rootB;
+      size_[rootB] += size_[rootA];
+    } else {
+      parent_[rootB] = rootA;
+      size_[rootA] += size_[rootB];
+      if (rank_[rootA] == rank_[rootB]) ++rank_[rootA];
+    }
+    --numSets_;
+    return true;
+  }
+
+  /**
+   * Merges all the item sets corresponding to the given items. Returns true if any item
+   * sets were merged or created, false otherwise (item sets are already identical).
+   */
+  public boolean bulkUnion(int[] items) {
+    if (items.length == 0) return false;
+    // bulkUnion(x) is equivalent to makeSet(x)
+    if (items.length == 1) {
+      if (contains(items[0])) return false;
+      makeSet(items[0]);
+      return true;
+    }
+    boolean result = false;
+    for (int i = 1; i < items.length; ++i) {
+      if (union(items[0], items[i])) result = true;
+    }
+    return result;
+  }
+
+  /**
+   * Returns one more than the largest item that can be registered without growing the
+   * internal arrays. All registered items are smaller than this.
+   */
+  public int capacity() { return parent_.length; }
+
+  public int getNumItems() { return numItems_; }
+  public int getNumSets() { return numSets_; }
+
+  /**
+   * Checks the internal consistency of this data structure.
+   * Throws an IllegalStateException if an inconsistency is detected.
+   */
+  public void checkConsistency() {
+    int numItems = 0;
+    int numRoots = 0;
+    int[] setSizes = new int[parent_.length];
+    for (int i = 0; i < parent_.length; ++i) {
+      if (parent_[i] == -1) continue;
+      ++numItems;
+      if (parent_[i] == i) ++numRoots;
+      // Every registered item must lead to a root in at most rank steps.
+      int item = i;
+      int steps = 0;
+      while (parent_[item] != item) {
+        item = parent_[item];
+        if (item < 0 || item >= parent_.length || parent_[item] == -1
+            || ++steps > rank_[item]) {
+          throw new IllegalStateException("IntDisjointSet is in an inconsistent state.");
+        }
+      }
+      ++setSizes[item];
+    }
+    if (numItems != numItems_ || numRoots != numSets_) {
+      throw new IllegalStateException("IntDisjointSet is in an inconsistent state.");
+    }
+    for (int i = 0; i < parent_.length; ++i) {
+      if (parent_[i] == i && size_[i] != setSizes[i]) {
+        throw new IllegalStateException("IntDisjointSet is in an inconsistent state.");
+      }
+    }
+  }
+}
@@ -0,0 +1,176 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Transitive closure of a directed graph over the nodes 0..n-1. Each node has a row of
+ * n bits packed into longs, with bit j of row i set if node j is reachable from node i.
+ * Every node reaches itself.
+ *
+ * Usage: add the edges with addEdge(), then call computeClosure() once before querying
+ * reaches(). The closure is computed by propagating rows backwards in a topological
+ * order of the graph, which takes a single pass of O(E * n / 64) word operations if the
+ * graph is a DAG. Graphs with cycles are supported, but need repeated passes until no
+ * row changes.
+ */
+public class ReachabilityMatrix {
+  private final int numNodes_;
+  // Number of longs per row.
+  private final int rowWords_;
+  // Row i occupies bits_[i * rowWords_, (i + 1) * rowWords_).
+  private final long[] bits_;
+
+  // Edges added so far, as parallel arrays of source and destination nodes.
+  private int[] edgeSrc_ = new int[8];
+  private int[] edgeDest_ = new int[8];
+  private int numEdges_ = 0;
+
+  private boolean closed_ = false;
+
+  public ReachabilityMatrix(int numNodes) {
+    Preconditions.checkArgument(numNodes >= 0);
+    numNodes_ = numNodes;
+    rowWords_ = (numNodes + 63) >>> 6;
+    bits_ = new long[numNodes * rowWords_];
+    for (int i = 0; i < numNodes; ++i) set(i, i);
+  }
+
+  public int getNumNodes() { return numNodes_; }
+
+  /**
+   * Adds a direct edge from src to dest. Must be called before computeClosure().
+   */
+  public void addEdge(int src, int dest) {
+    Preconditions.checkState(!closed_);
+    Preconditions.checkElementIndex(src, numNodes_);
+    Preconditions.checkElementIndex(dest, numNodes_);
+    if (src == dest || get(src, dest)) return;
+    set(src, dest);
+    if (numEdges_ == edgeSrc_.length) {
+      edgeSrc_ = Arrays.copyOf(edgeSrc_, numEdges_ * 2);
+      edgeDest_ = Arrays.copyOf(edgeDest_, numEdges_ * 2);
+    }
+    edgeSrc_[numEdges_] = src;
+    edgeDest_[numEdges_] = dest;
+    ++numEdges_;
+  }
+
+  /**
+   * Computes the transitive closure of the edges added so far.
+   */
+  public void computeClosure() {
+    Preconditions.checkState(!closed_);
+    closed_ = true;
+    if (numEdges_ == 0) return;
+
+    // Adjacency lists in compressed form: the successors of node i are
+    // succ[succStart[i], succStart[i + 1]).
+    int[] succStart = new int[numNodes_ + 1];
+    for (int e = 0; e < numEdges_; ++e) ++succStart[edgeSrc_[e] + 1];
+    for (int i = 0; i < numNodes_; ++i) succStart[i + 1] += succStart[i];
+    int[] succ = new int[numEdges_];
+    int[] fill = Arrays.copyOf(succStart, numNodes_);
+    for (int e = 0; e < numEdges_; ++e) succ[fill[edgeSrc_[e]]++] = edgeDest_[e];
+    edgeSrc_ = null;
+    edgeDest_ = null;
+
+    // Iterative DFS that lists the nodes in post-order, i.e., every node after all of
+    // its successors unless they are on a cycle with it.
+    int[] postOrder = new int[numNodes_];
+    int numVisited = 0;
+    // 0: not visited, 1: on the DFS stack, 2: finished.
+    byte[] state = new byte[numNodes_];
+    int[] stack = new int[numNodes_];
+    int[] nextSucc = new int[numNodes_];
+    boolean hasCycle = false;
+    for (int root = 0; root < numNodes_; ++root) {
+      if (state[root] != 0) continue;
+      int top = 0;
+      stack[0] = root;
+      state[root] = 1;
+      nextSucc[root] = succStart[root];
+      while (top >= 0) {
+        int node = stack[top];
+        if (nextSucc[node] < succStart[node + 1]) {
+          int child = succ[nextSucc[node]++];
+          if (state[child] == 0) {
+            state[child] = 1;
+            nextSucc[child] = succStart[child];
+            stack[++top] = child;
+          } else if (state[child] == 1) {
+            hasCycle = true;
+          }
+        } else {
+          state[node] = 2;
+          postOrder[numVisited++] = node;
+          --top;
+        }
+      }
+    }
+
+    // In post-order, the rows of all successors of a node are complete before the node
+    // itself is processed, unless the graph has cycles.
+    boolean changed;
+    do {
+      changed = false;
+      for (int i = 0; i < numNodes_; ++i) {
+        int node = postOrder[i];
+        for (int s = succStart[node]; s < succStart[node + 1]; ++s) {
+          changed |= orRow(node, succ[s]);
+        }
+      }
+    } while (hasCycle && changed);
+  }
+
+  /**
+   * Returns true if dest is reachable from src. Requires computeClosure() to have been
+   * called.
+   */
+  public boolean reaches(int src, int dest) {
+    Preconditions.checkState(closed_);
+    return get(src, dest);
+  }
+
+  private boolean get(int i, int j) {
+    return (bits_[i * rowWords_ + (j >>> 6)] & (1L << j)) != 0;
+  }
+
+  private void set(int i, int j) {
+    bits_[i * rowWords_ + (j >>> 6)] |= 1L << j;
+  }
+
+  /**
+   * Sets all bits of row 'src' in row 'dest'. Returns true if row 'dest' changed.
+   */
+  private boolean orRow(int dest, int src) {
+    int destOffset = dest * rowWords_;
+    int srcOffset = src * rowWords_;
+    long changedBits = 0;
+    for (int w = 0; w < rowWords_; ++w) {
+      long old = bits_[destOffset + w];
+      long updated = old | bits_[srcOffset + w];
+      changedBits |= old ^ updated;
+      bits_[destOffset + w] = updated;
+    }
+    return changedBits != 0;
+  }
+}
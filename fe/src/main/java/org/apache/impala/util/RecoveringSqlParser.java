@@ -0,0 +1,574 @@
+package org.apache.impala.util;
+
+import com.google.common.base.Preconditions;
+import java_cup.runtime.ExtendSymbol;
+import java_cup.runtime.ExtendSymbolFactory;
+import java_cup.runtime.Symbol;
+import org.apache.impala.analysis.SqlParser;
+import org.apache.impala.analysis.SqlParserSymbols;
+import org.apache.impala.analysis.SqlScanner;
+import org.apache.impala.analysis.SyntaxBlock;
+
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Parses a statement in error recovery mode: instead of stopping at the first syntax
+ * error the parser resynchronizes and keeps going, so that all errors of a statement are
+ * reported at once together with a partial tree.
+ *
+ * The statement is scanned and parsed in a single pass. The parse loop is the one of the
+ * CUP runtime, except that on a syntax error it repairs its input in place, using the
+ * tokens that the parse tables accept in the current parser state (the expected tokens,
+ * see SqlParser.getExpectedTokenIds()). The repairs are tried in this order:
+ * <ol>
+ *   <li>insert a single expected token (an identifier, ')', a literal or, if only a few
+ *   tokens are expected, a keyword) in front of the error token,</li>
+ *   <li>delete the error token,</li>
+ *   <li>skip from the error token to the next statement or clause boundary such as
+ *   SELECT, FROM, WHERE or GROUP, and drop the innermost unfinished constructs from the
+ *   parser stack until the parser accepts the boundary token.</li>
+ * </ol>
+ * Whether an insertion or deletion lets the parser get past the error token is decided by
+ * running the parse tables on the parser's state stack, without running any actions, so
+ * a repair costs a few table lookups instead of a reparse. Insertions and deletions are
+ * only made if they get past the error token and skipping always consumes tokens, so
+ * recovery terminates. At the end of the statement up to MAX_INSERTIONS_AT_END tokens
+ * are inserted to complete it.
+ *
+ * Each error becomes a SyntaxErrorBlock that is spliced into the tree, as a child of the
+ * innermost block that contains it. It spans the error token and any tokens skipped
+ * after it, and its subBlocks are the partial trees that were dropped from the parser
+ * stack. The parse always returns a root: if the statement cannot be completed, the root
+ * is a plain SyntaxBlock that holds the partial trees on the parser stack. Positions
+ * refer to the statement text; inserted tokens have empty spans and placeholder values.
+ *
+ * Statement boundaries are handled by ScriptParser.parseWithRecovery(), which splits a
+ * script and recovers within each statement.
+ */
+public class RecoveringSqlParser {
+    public static final int DEFAULT_MAX_ERRORS = 100;
+
+    // Value of inserted identifiers.
+    public static final String MISSING_IDENT = "__missing__";
+
+    // Keywords are only inserted if at most this many tokens are expected.
+    private static final int MAX_EXPECTED_FOR_KEYWORD_INSERTION = 3;
+
+    // Bounds the insertions at the end of the statement.
+    private static final int MAX_INSERTIONS_AT_END = 8;
+
+    // Tokens at which a clause or a statement starts.
+    private static final int[] BOUNDARY_TOKENS = new int[] {
+            SqlParserSymbols.KW_SELECT, SqlParserSymbols.KW_FROM, SqlParserSymbols.KW_WHERE,
+            SqlParserSymbols.KW_GROUP, SqlParserSymbols.KW_HAVING, SqlParserSymbols.KW_ORDER,
+            SqlParserSymbols.KW_LIMIT, SqlParserSymbols.KW_OFFSET, SqlParserSymbols.KW_UNION,
+            SqlParserSymbols.KW_WITH, SqlParserSymbols.KW_VALUES, SqlParserSymbols.KW_JOIN,
+            SqlParserSymbols.KW_ON, SqlParserSymbols.KW_USING, SqlParserSymbols.KW_SET,
+            SqlParserSymbols.KW_PARTITION, SqlParserSymbols.KW_STORED,
+            SqlParserSymbols.KW_LOCATION, SqlParserSymbols.KW_TBLPROPERTIES,
+            SqlParserSymbols.SEMICOLON, SqlParserSymbols.EOF
+    };
+
+    // Tokens inserted in preference to keywords, in this order.
+    private static final int[] PREFERRED_INSERTIONS = new int[] {
+            SqlParserSymbols.RPAREN, SqlParserSymbols.IDENT, SqlParserSymbols.INTEGER_LITERAL
+    };
+
+    /**
+     * A syntax error found during recovery. Spans the error token and the tokens skipped
+     * after it; its subBlocks are the partial trees that recovery dropped, if any.
+     */
+    public static class SyntaxErrorBlock extends SyntaxBlock {
+        private final String message;
+        private final List<Integer> expectedTokenIds;
+
+        private SyntaxErrorBlock(int startPosition, int endPosition, String message,
+                List<Integer> expectedTokenIds) {
+            super(startPosition, endPosition);
+            this.message = message;
+            this.expectedTokenIds = expectedTokenIds;
+        }
+
+        /**
+         * Returns the parser's error message, see SqlParser.getErrorMsg().
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        public List<Integer> getExpectedTokenIds() {
+            return expectedTokenIds;
+        }
+    }
+
+    /**
+     * Outcome of a parse in recovery mode.
+     */
+    public static class Result {
+        private final SyntaxBlock root;
+        private final boolean complete;
+        private final List<SyntaxErrorBlock> errors;
+        private final Exception firstError;
+
+        private Result(SyntaxBlock root, boolean complete, List<SyntaxErrorBlock> errors,
+                Exception firstError) {
+            this.root = root;
+            this.complete = complete;
+            this.errors = Collections.unmodifiableList(errors);
+            this.firstError = firstError;
+        }
+
+        /**
+         * Returns the tree of the repaired statement, with the errors spliced in. Never
+         * null: if the statement could not be completed, see isComplete(), this is a
+         * SyntaxBlock holding the partial trees that were built.
+         */
+        public SyntaxBlock getRoot() {
+            return root;
+        }
+
+        /**
+         * Returns false if recovery gave up before the end of the statement, either
+         * because it found too many errors or because the statement could not be
+         * completed.
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        /**
+         * Returns the syntax errors in statement order. These are the SyntaxErrorBlocks
+         * in the tree.
+         */
+        public List<SyntaxErrorBlock> getErrors() {
+            return errors;
+        }
+
+        public boolean hasErrors() {
+            return !errors.isEmpty();
+        }
+
+        /**
+         * Returns the exception the parser would have thrown for the first error, or null.
+         */
+        public Exception getFirstError() {
+            return firstError;
+        }
+    }
+
+    public static Result parse(String sql) throws Exception {
+        return parse(sql, true, DEFAULT_MAX_ERRORS);
+    }
+
+    /**
+     * Parses 'sql' in recovery mode, giving up after 'maxErrors' errors. Only throws if
+     * the statement cannot be scanned.
+     */
+    public static Result parse(String sql, boolean buildSubBlocks, int maxErrors)
+            throws Exception {
+        Preconditions.checkNotNull(sql);
+        Preconditions.checkArgument(maxErrors > 0);
+        SqlScanner scanner = new SqlScanner(new StringReader(sql));
+        scanner.setLazyTextSource(sql);
+        return new RecoveringParser(sql, scanner, buildSubBlocks, maxErrors).recover();
+    }
+
+    /**
+     * SqlParser with a parse loop that repairs its input on syntax errors.
+     */
+    private static class RecoveringParser extends SqlParser {
+        private final String sql;
+        private final SqlScanner scanner;
+        private final int maxErrors;
+        // Tokens to parse before scanning more: inserted tokens, the error token they are
+        // inserted in front of, and tokens scanned ahead.
+        private final Deque<ExtendSymbol> pending = new ArrayDeque<>();
+        private final List<SyntaxErrorBlock> errors = new ArrayList<>();
+        private Exception firstError;
+        // The error token of the last reported error, so that repeated repairs in front
+        // of the same token, e.g. at the end of the statement, report it only once.
+        private ExtendSymbol lastErrorToken;
+        private int insertionsAtEnd;
+        // Parse states of the simulated stack on top of the real one, see canShift().
+        private int[] simStates = new int[16];
+
+        RecoveringParser(String sql, SqlScanner scanner, boolean buildSubBlocks,
+                int maxErrors) {
+            super(scanner, new ExtendSymbolFactory(sql));
+            this.sql = sql;
+            this.scanner = scanner;
+            this.maxErrors = maxErrors;
+            setBuildSubBlocks(buildSubBlocks);
+        }
+
+        /**
+         * Same as lr_parser.parse(), but calls repair() on errors instead of failing.
+         */
+        Result recover() throws Exception {
+            production_tab = production_table();
+            action_tab = action_table();
+            reduce_tab = reduce_table();
+            init_actions();
+            user_init();
+            resetErrorState();
+            cur_token = nextToken();
+            stack.removeAllElements();
+            stack.push(getSymbolFactory().startSymbol("START", 0, start_state()));
+            tos = 0;
+            Symbol lhs = null;
+            for (_done_parsing = false; !_done_parsing; ) {
+                int act = get_action(((Symbol) stack.peek()).parse_state, cur_token.sym);
+                if (act > 0) {
+                    cur_token.parse_state = act - 1;
+                    stack.push(cur_token);
+                    tos++;
+                    cur_token = nextToken();
+                } else if (act < 0) {
+                    try {
+                        lhs = reduce(-act - 1);
+                    } catch (Exception e) {
+                        // An action rejected the construct, see SqlParser.parseError(). The
+                        // stack is unchanged, so the parser can skip ahead.
+                        if (!repair(e)) {
+                            return giveUp();
+                        }
+                    }
+                } else {
+                    syntax_error(cur_token);
+                    if (!repair(null)) {
+                        return giveUp();
+                    }
+                }
+            }
+            SyntaxBlock root = (SyntaxBlock) lhs.value;
+            for (SyntaxErrorBlock error: errors) {
+                splice(root, error);
+            }
+            return new Result(root, true, errors, firstError);
+        }
+
+        private Symbol reduce(int production) throws Exception {
+            Symbol lhs = do_action(production, this, stack, tos);
+            short lhsSym = production_tab[production][0];
+            short handleSize = production_tab[production][1];
+            for (int i = 0; i < handleSize; i++) {
+                stack.pop();
+                tos--;
+            }
+            lhs.parse_state = get_reduce(((Symbol) stack.peek()).parse_state, lhsSym);
+            stack.push(lhs);
+            tos++;
+            return lhs;
+        }
+
+        private ExtendSymbol nextToken() throws Exception {
+            if (!pending.isEmpty()) {
+                return pending.poll();
+            }
+            return (ExtendSymbol) scanner.next_token();
+        }
+
+        private ExtendSymbol peekToken() throws Exception {
+            if (pending.isEmpty()) {
+                pending.add((ExtendSymbol) scanner.next_token());
+            }
+            return pending.peek();
+        }
+
+        /**
+         * Reports the error at cur_token, unless it was already reported, and repairs the
+         * input so that the parser can continue. 'failure' is the exception thrown by an
+         * action, or null for an error in the parse tables, which syntax_error() has
+         * already recorded. Returns false if recovery has to give up.
+         */
+        private boolean repair(Exception failure) throws Exception {
+            ExtendSymbol errorToken = (ExtendSymbol) cur_token;
+            if (errorToken != lastErrorToken) {
+                if (errors.size() == maxErrors) {
+                    return false;
+                }
+                reportError(errorToken, failure);
+                lastErrorToken = errorToken;
+                insertionsAtEnd = 0;
+            }
+            boolean atEnd = errorToken.sym == SqlParserSymbols.EOF;
+            if (failure == null) {
+                if (!atEnd || insertionsAtEnd < MAX_INSERTIONS_AT_END) {
+                    if (tryInsertion(getExpectedTokenIds(), atEnd)) {
+                        if (atEnd) {
+                            ++insertionsAtEnd;
+                        }
+                        return true;
+                    }
+                }
+                if (!atEnd && canShift(stack.size(), peekToken().sym, -1)) {
+                    // Delete the error token.
+                    cur_token = nextToken();
+                    return true;
+                }
+            }
+            return !atEnd && skipToBoundary();
+        }
+
+        private void reportError(ExtendSymbol errorToken, Exception failure) {
+            String message = getErrorMsg(sql);
+            if (message == null && failure != null) {
+                message = failure.getMessage();
+            }
+            if (firstError == null) {
+                firstError = failure;
+                if (firstError == null) {
+                    try {
+                        unrecovered_syntax_error(errorToken);
+                    } catch (Exception e) {
+                        firstError = e;
+                    }
+                }
+            }
+            errors.add(new SyntaxErrorBlock(errorToken.start, errorToken.end, message,
+                    Collections.unmodifiableList(new ArrayList<>(getExpectedTokenIds()))));
+        }
+
+        /**
+         * Inserts the first expected token after which the parser accepts the error token.
+         * At the end of the statement, where completing it may take several tokens, falls
+         * back to the first expected token that the parser accepts at all.
+         */
+        private boolean tryInsertion(List<Integer> expectedTokenIds, boolean atEnd) {
+            List<Integer> candidates = insertionCandidates(expectedTokenIds);
+            for (int tokenId: candidates) {
+                if (canShift(stack.size(), tokenId, cur_token.sym)) {
+                    insert(tokenId);
+                    return true;
+                }
+            }
+            if (atEnd) {
+                for (int tokenId: candidates) {
+                    if (canShift(stack.size(), tokenId, -1)) {
+                        insert(tokenId);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void insert(int tokenId) {
+            ExtendSymbol next = (ExtendSymbol) cur_token;
+            pending.addFirst(next);
+            cur_token = syntheticToken(tokenId, next);
+        }
+
+        /**
+         * Skips from the error token to the next boundary token that the parser accepts
+         * once the fewest possible symbols are popped from its stack. The popped partial
+         * trees become children of the error. Returns false if no boundary token before
+         * the end of the statement is accepted; cur_token is then at the end and the error
+         * is not reported again when completing the statement fails.
+         */
+        private boolean skipToBoundary() throws Exception {
+            SyntaxErrorBlock error = errors.get(errors.size() - 1);
+            ExtendSymbol token = (ExtendSymbol) cur_token;
+            while (true) {
+                do {
+                    error.endPosition = Math.max(error.endPosition, token.end);
+                    token = nextToken();
+                } while (!isBoundary(token.sym));
+                for (int depth = stack.size(); depth > 1; depth--) {
+                    if (canShift(depth, token.sym, -1)) {
+                        popTo(depth, error);
+                        cur_token = token;
+                        return true;
+                    }
+                }
+                if (token.sym == SqlParserSymbols.EOF) {
+                    cur_token = token;
+                    lastErrorToken = token;
+                    insertionsAtEnd = 0;
+                    return true;
+                }
+            }
+        }
+
+        private void popTo(int depth, SyntaxErrorBlock error) {
+            List<SyntaxBlock> dropped = new ArrayList<>();
+            while (stack.size() > depth) {
+                Object value = ((Symbol) stack.pop()).value;
+                tos--;
+                if (value instanceof SyntaxBlock) {
+                    dropped.add((SyntaxBlock) value);
+                }
+            }
+            if (dropped.isEmpty()) {
+                return;
+            }
+            Collections.reverse(dropped);
+            if (error.subBlocks == null) {
+                error.subBlocks = new ArrayList<>();
+            }
+            error.subBlocks.addAll(dropped);
+        }
+
+        /**
+         * Returns true if the parser, with only the bottom 'depth' symbols of its stack,
+         * would shift 'sym' and then, unless it is -1, 'nextSym'. Runs the parse tables
+         * on the parse states alone: the states above the kept part of the stack are
+         * tracked in simStates, and no actions are run.
+         */
+        private boolean canShift(int depth, int sym, int nextSym) {
+            int base = depth - 1;
+            int simTop = -1;
+            for (int i = 0; i < 2; i++) {
+                int s = i == 0 ? sym : nextSym;
+                if (s < 0) {
+                    break;
+                }
+                while (true) {
+                    int state = simTop >= 0 ? simStates[simTop]
+                            : ((Symbol) stack.get(base)).parse_state;
+                    int act = get_action(state, s);
+                    if (act == 0) {
+                        return false;
+                    }
+                    if (act > 0) {
+                        simTop = pushSimState(simTop, act - 1);
+                        break;
+                    }
+                    int production = -act - 1;
+                    int handleSize = production_tab[production][1];
+                    int fromSim = Math.min(handleSize, simTop + 1);
+                    simTop -= fromSim;
+                    base -= handleSize - fromSim;
+                    if (base < 0) {
+                        return false;
+                    }
+                    state = simTop >= 0 ? simStates[simTop]
+                            : ((Symbol) stack.get(base)).parse_state;
+                    simTop = pushSimState(simTop,
+                            get_reduce(state, production_tab[production][0]));
+                }
+            }
+            return true;
+        }
+
+        private int pushSimState(int simTop, int state) {
+            if (simTop + 1 == simStates.length) {
+                simStates = Arrays.copyOf(simStates, simStates.length * 2);
+            }
+            simStates[simTop + 1] = state;
+            return simTop + 1;
+        }
+
+        /**
+         * Returns a root for a statement that could not be completed: a block holding the
+         * partial trees on the parser stack and the errors.
+         */
+        private Result giveUp() {
+            SyntaxBlock root = new SyntaxBlock();
+            root.subBlocks = new ArrayList<>();
+            for (int i = 1; i < stack.size(); i++) {
+                Object value = ((Symbol) stack.get(i)).value;
+                if (value instanceof SyntaxBlock) {
+                    root.subBlocks.add((SyntaxBlock) value);
+                }
+            }
+            stack.removeAllElements();
+            for (SyntaxErrorBlock error: errors) {
+                splice(root, error);
+            }
+            for (SyntaxBlock block: root.subBlocks) {
+                if (block.startPosition >= 0 && (root.startPosition < 0
+                        || block.startPosition < root.startPosition)) {
+                    root.startPosition = block.startPosition;
+                }
+                root.endPosition = Math.max(root.endPosition, block.endPosition);
+            }
+            return new Result(root, false, errors, firstError);
+        }
+    }
+
+    /**
+     * Adds 'error' to the subBlocks of the innermost block under 'root' that contains it
+     * and has subBlocks, or of 'root', in position order.
+     */
+    private static void splice(SyntaxBlock root, SyntaxErrorBlock error) {
+        SyntaxBlock parent = root;
+        boolean descended = true;
+        while (descended && parent.subBlocks != null) {
+            descended = false;
+            for (SyntaxBlock child: parent.subBlocks) {
+                if (child != null && child.subBlocks != null
+                        && !(child instanceof SyntaxErrorBlock)
+                        && child.startPosition >= 0
+                        && child.startPosition <= error.startPosition
+                        && error.endPosition <= child.endPosition) {
+                    parent = child;
+                    descended = true;
+                    break;
+                }
+            }
+        }
+        if (parent.subBlocks == null) {
+            parent.subBlocks = new ArrayList<>();
+        }
+        int index = 0;
+        while (index < parent.subBlocks.size()) {
+            SyntaxBlock child = parent.subBlocks.get(index);
+            if (child != null && child.startPosition > error.startPosition) {
+                break;
+            }
+            ++index;
+        }
+        parent.subBlocks.add(index, error);
+    }
+
+    private static boolean isBoundary(int sym) {
+        for (int boundary: BOUNDARY_TOKENS) {
+            if (sym == boundary) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Integer> insertionCandidates(List<Integer> expectedTokenIds) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int tokenId: PREFERRED_INSERTIONS) {
+            if (expectedTokenIds.contains(tokenId)) {
+                candidates.add(tokenId);
+            }
+        }
+        if (expectedTokenIds.size() <= MAX_EXPECTED_FOR_KEYWORD_INSERTION) {
+            for (int tokenId: expectedTokenIds) {
+                if (SqlScanner.isKeyword(tokenId)) {
+                    candidates.add(tokenId);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns a token with an empty span in front of 'next'. Like scanned keywords,
+     * inserted keywords have no value, only their text.
+     */
+    private static ExtendSymbol syntheticToken(int tokenId, ExtendSymbol next) {
+        Object value = null;
+        String text = "";
+        if (tokenId == SqlParserSymbols.IDENT) {
+            value = MISSING_IDENT;
+        } else if (tokenId == SqlParserSymbols.INTEGER_LITERAL) {
+            value = Long.valueOf(0);
+        } else if (SqlScanner.isKeyword(tokenId)) {
+            text = SqlScanner.tokenIdMap.get(tokenId).toLowerCase();
+        }
+        return new ExtendSymbol(tokenId, next.left, next.right, value,
+                next.start, next.start, text);
+    }
+}
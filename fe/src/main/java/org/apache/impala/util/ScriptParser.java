@@ -0,0 +1,251 @@
+package org.apache.impala.util;
+
+import com.google.common.base.Preconditions;
+import java_cup.runtime.ExtendSymbol;
+import org.apache.impala.analysis.SqlParserSymbols;
+import org.apache.impala.analysis.SqlScanner;
+import org.apache.impala.analysis.SyntaxBlock;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a script of ';'-separated statements and parses the statements in parallel.
+ *
+ * Splitting runs the scanner over the whole script once, so semicolons inside string
+ * literals, quoted identifiers and comments are never split on. Every other semicolon
+ * ends a statement, as no statement contains one.
+ *
+ * Each statement is parsed on its own; a statement that fails to parse records its error
+ * and does not stop the others. Positions in the returned trees are offsets into the
+ * whole script.
+ *
+ * parseWithRecovery() parses each statement with RecoveringSqlParser, so all syntax
+ * errors of the script are found in one pass instead of only the first of each statement.
+ */
+public class ScriptParser {
+    private static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    private static ForkJoinPool defaultPool;
+
+    /**
+     * One statement of a script. startPosition/endPosition cover the statement text
+     * without the terminating semicolon.
+     */
+    public static class Statement {
+        private final int index;
+        private final int startPosition;
+        private final int endPosition;
+        private final String sql;
+        private SyntaxBlock root;
+        private Exception error;
+        private String errorMessage;
+        private List<RecoveringSqlParser.SyntaxErrorBlock> syntaxErrors =
+                Collections.emptyList();
+
+        private Statement(int index, int startPosition, int endPosition, String sql) {
+            this.index = index;
+            this.startPosition = startPosition;
+            this.endPosition = endPosition;
+            this.sql = sql;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getStartPosition() {
+            return startPosition;
+        }
+
+        public int getEndPosition() {
+            return endPosition;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * Returns the parse tree, or null if the statement was not parsed or failed. With
+         * recovery, returns the tree of the repaired statement with its syntax errors, or
+         * the partial tree if it could not be repaired.
+         */
+        public SyntaxBlock getRoot() {
+            return root;
+        }
+
+        public boolean hasError() {
+            return error != null;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * Returns the parser's error message, with line numbers relative to the statement.
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        /**
+         * Returns all syntax errors of the statement if it was parsed with recovery, with
+         * positions relative to the whole script. Empty otherwise.
+         */
+        public List<RecoveringSqlParser.SyntaxErrorBlock> getSyntaxErrors() {
+            return syntaxErrors;
+        }
+    }
+
+    /**
+     * Splits 'script' into statements without parsing them. Empty statements are dropped.
+     */
+    public static List<Statement> split(String script) throws IOException {
+        List<Statement> statements = new ArrayList<>();
+        SqlScanner scanner = new SqlScanner(new StringReader(script));
+        scanner.setLazyTextSource(script);
+        int start = -1;
+        int end = -1;
+        while (true) {
+            ExtendSymbol token = (ExtendSymbol) scanner.next_token();
+            int sym = token.sym;
+            if (sym == SqlParserSymbols.EOF || sym == SqlParserSymbols.SEMICOLON) {
+                if (start >= 0) {
+                    statements.add(new Statement(statements.size(), start, end,
+                            script.substring(start, end)));
+                }
+                if (sym == SqlParserSymbols.EOF) {
+                    break;
+                }
+                start = -1;
+                continue;
+            }
+            if (start < 0) {
+                start = token.start;
+            }
+            end = token.end;
+        }
+        return statements;
+    }
+
+    /**
+     * Splits and parses 'script' on a shared pool sized to the number of processors.
+     */
+    public static List<Statement> parse(String script) throws IOException {
+        return parse(script, getDefaultPool());
+    }
+
+    /**
+     * Splits and parses 'script', parsing the statements in parallel on 'pool'.
+     */
+    public static List<Statement> parse(String script, ForkJoinPool pool) throws IOException {
+        return parse(script, pool, false);
+    }
+
+    /**
+     * Same as parse() above, but recovers from syntax errors within each statement and
+     * reports all of them, see RecoveringSqlParser.
+     */
+    public static List<Statement> parseWithRecovery(String script) throws IOException {
+        return parse(script, getDefaultPool(), true);
+    }
+
+    public static List<Statement> parseWithRecovery(String script, ForkJoinPool pool)
+            throws IOException {
+        return parse(script, pool, true);
+    }
+
+    private static List<Statement> parse(String script, ForkJoinPool pool, boolean recover)
+            throws IOException {
+        Preconditions.checkNotNull(pool);
+        List<Statement> statements = split(script);
+        if (!statements.isEmpty()) {
+            pool.invoke(new ParseTask(statements.toArray(new Statement[statements.size()]),
+                    0, statements.size(), recover));
+        }
+        return Collections.unmodifiableList(statements);
+    }
+
+    private static synchronized ForkJoinPool getDefaultPool() {
+        if (defaultPool == null) {
+            defaultPool = new ForkJoinPool(DEFAULT_PARALLELISM);
+        }
+        return defaultPool;
+    }
+
+    private static void parseStatement(Statement statement) {
+        SqlParserHandle parser = SqlParserHandle.acquire();
+        try {
+            SyntaxBlock root = (SyntaxBlock) parser.parse(statement.sql);
+            ImpalaSqlUtil.shiftPositions(root, statement.startPosition);
+            statement.root = root;
+        } catch (Exception e) {
+            statement.error = e;
+            statement.errorMessage = parser.getErrorMsg(statement.sql);
+            if (statement.errorMessage == null) {
+                statement.errorMessage = e.getMessage();
+            }
+        } finally {
+            parser.release();
+        }
+    }
+
+    private static void parseStatementWithRecovery(Statement statement) {
+        RecoveringSqlParser.Result result;
+        try {
+            result = RecoveringSqlParser.parse(statement.sql, true,
+                    RecoveringSqlParser.DEFAULT_MAX_ERRORS);
+        } catch (Exception e) {
+            statement.error = e;
+            statement.errorMessage = e.getMessage();
+            return;
+        }
+        statement.root = result.getRoot();
+        ImpalaSqlUtil.shiftPositions(statement.root, statement.startPosition);
+        if (result.hasErrors()) {
+            statement.error = result.getFirstError();
+            statement.errorMessage = result.getErrors().get(0).getMessage();
+            // The errors are part of the tree, so shifting the root has moved them.
+            statement.syntaxErrors = result.getErrors();
+        }
+    }
+
+    /**
+     * Parses statements [from, to) by splitting the range in halves.
+     */
+    private static class ParseTask extends RecursiveAction {
+        private final Statement[] statements;
+        private final int from;
+        private final int to;
+        private final boolean recover;
+
+        ParseTask(Statement[] statements, int from, int to, boolean recover) {
+            this.statements = statements;
+            this.from = from;
+            this.to = to;
+            this.recover = recover;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                if (recover) {
+                    parseStatementWithRecovery(statements[from]);
+                } else {
+                    parseStatement(statements[from]);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ParseTask(statements, from, mid, recover),
+                    new ParseTask(statements, mid, to, recover));
+        }
+    }
+}
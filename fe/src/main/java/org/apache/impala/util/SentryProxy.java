@@ -108,71 +108,77 @@ public class SentryProxy {
   private class PolicyReader implements Runnable {
     public void run() {
       synchronized (SentryProxy.this) {
-        // Assume all roles should be removed. Then query the Policy Service and remove
-        // roles from this set that actually exist.
-        Set<String> rolesToRemove = catalog_.getAuthPolicy().getAllRoleNames();
+        // Publish the changes to the policy once, at the end of the refresh.
+        catalog_.getAuthPolicy().beginUpdate();
         try {
-          // Read the full policy, adding new/modified roles to "updatedRoles".
-          for (TSentryRole sentryRole:
-              sentryPolicyService_.listAllRoles(processUser_)) {
-            // This role exists and should not be removed, delete it from the
-            // rolesToRemove set.
-            rolesToRemove.remove(sentryRole.getRoleName().toLowerCase());
+          // Assume all roles should be removed. Then query the Policy Service and remove
+          // roles from this set that actually exist.
+          Set<String> rolesToRemove = catalog_.getAuthPolicy().getAllRoleNames();
+          try {
+            // Read the full policy, adding new/modified roles to "updatedRoles".
+            for (TSentryRole sentryRole:
+                sentryPolicyService_.listAllRoles(processUser_)) {
+              // This role exists and should not be removed, delete it from the
+              // rolesToRemove set.
+              rolesToRemove.remove(sentryRole.getRoleName().toLowerCase());
 
-            Set<String> grantGroups = Sets.newHashSet();
-            for (TSentryGroup group: sentryRole.getGroups()) {
-              grantGroups.add(group.getGroupName());
-            }
-            Role existingRole =
-                catalog_.getAuthPolicy().getRole(sentryRole.getRoleName());
-            Role role;
-            // These roles are the same, use the current role.
-            if (existingRole != null &&
-                existingRole.getGrantGroups().equals(grantGroups)) {
-              role = existingRole;
-            } else {
-              role = catalog_.addRole(sentryRole.getRoleName(), grantGroups);
-            }
+              Set<String> grantGroups = Sets.newHashSet();
+              for (TSentryGroup group: sentryRole.getGroups()) {
+                grantGroups.add(group.getGroupName());
+              }
+              Role existingRole =
+                  catalog_.getAuthPolicy().getRole(sentryRole.getRoleName());
+              Role role;
+              // These roles are the same, use the current role.
+              if (existingRole != null &&
+                  existingRole.getGrantGroups().equals(grantGroups)) {
+                role = existingRole;
+              } else {
+                role = catalog_.addRole(sentryRole.getRoleName(), grantGroups);
+              }
 
-            // Assume all privileges should be removed. Privileges that still exist are
-            // deleted from this set and we are left with the set of privileges that need
-            // to be removed.
-            Set<String> privilegesToRemove = role.getPrivilegeNames();
+              // Assume all privileges should be removed. Privileges that still exist
+              // are deleted from this set and we are left with the set of privileges
+              // that need to be removed.
+              Set<String> privilegesToRemove = role.getPrivilegeNames();
 
-            // Check all the privileges that are part of this role.
-            for (TSentryPrivilege sentryPriv:
-                sentryPolicyService_.listRolePrivileges(processUser_, role.getName())) {
-              TPrivilege thriftPriv =
-                  SentryPolicyService.sentryPrivilegeToTPrivilege(sentryPriv);
-              thriftPriv.setRole_id(role.getId());
-              privilegesToRemove.remove(thriftPriv.getPrivilege_name().toLowerCase());
+              // Check all the privileges that are part of this role.
+              for (TSentryPrivilege sentryPriv:
+                  sentryPolicyService_.listRolePrivileges(processUser_, role.getName())) {
+                TPrivilege thriftPriv =
+                    SentryPolicyService.sentryPrivilegeToTPrivilege(sentryPriv);
+                thriftPriv.setRole_id(role.getId());
+                privilegesToRemove.remove(thriftPriv.getPrivilege_name().toLowerCase());
 
-              RolePrivilege existingPriv =
-                  role.getPrivilege(thriftPriv.getPrivilege_name());
-              // We already know about this privilege (privileges cannot be modified).
-              if (existingPriv != null &&
-                  existingPriv.getCreateTimeMs() == sentryPriv.getCreateTime()) {
-                continue;
+                RolePrivilege existingPriv =
+                    role.getPrivilege(thriftPriv.getPrivilege_name());
+                // We already know about this privilege (privileges cannot be modified).
+                if (existingPriv != null &&
+                    existingPriv.getCreateTimeMs() == sentryPriv.getCreateTime()) {
+                  continue;
+                }
+                catalog_.addRolePrivilege(role.getName(), thriftPriv);
               }
-              catalog_.addRolePrivilege(role.getName(), thriftPriv);
-            }
 
-            // Remove the privileges that no longer exist.
-            for (String privilegeName: privilegesToRemove) {
-              TPrivilege privilege = new TPrivilege();
-              privilege.setPrivilege_name(privilegeName);
-              catalog_.removeRolePrivilege(role.getName(), privilege);
+              // Remove the privileges that no longer exist.
+              for (String privilegeName: privilegesToRemove) {
+                TPrivilege privilege = new TPrivilege();
+                privilege.setPrivilege_name(privilegeName);
+                catalog_.removeRolePrivilege(role.getName(), privilege);
+              }
             }
+          } catch (Exception e) {
+            LOG.error("Error refreshing Sentry policy: ", e);
+            return;
           }
-        } catch (Exception e) {
-          LOG.error("Error refreshing Sentry policy: ", e);
-          return;
-        }
 
-        // Remove all the roles, incrementing the catalog version to indicate
-        // a change.
-        for (String roleName: rolesToRemove) {
-          catalog_.removeRole(roleName);
+          // Remove all the roles, incrementing the catalog version to indicate
+          // a change.
+          for (String roleName: rolesToRemove) {
+            catalog_.removeRole(roleName);
+          }
+        } finally {
+          catalog_.getAuthPolicy().endUpdate();
         }
       }
     }
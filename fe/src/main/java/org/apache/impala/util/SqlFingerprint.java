@@ -0,0 +1,199 @@
+package org.apache.impala.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java_cup.runtime.ExtendSymbol;
+import org.apache.impala.analysis.SqlParserSymbols;
+import org.apache.impala.analysis.SqlScanner;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fingerprint of a statement that is the same for statements that only differ in their
+ * literal values, layout, comments or keyword case, e.g. for grouping statements or as
+ * a plan/result cache key.
+ *
+ * The fingerprint is computed from the SqlScanner tokens alone, without parsing:
+ * <ul>
+ *   <li>INTEGER_LITERAL, DECIMAL_LITERAL and STRING_LITERAL tokens become '?' and their
+ *   values are recorded with their offsets,</li>
+ *   <li>keywords are replaced by their canonical upper-case name (so '&&' becomes AND),</li>
+ *   <li>whitespace and comments are dropped and tokens are separated by one space,</li>
+ *   <li>all other tokens, including identifiers, are kept as written.</li>
+ * </ul>
+ * Plan hints in comments are tokens of their own and are kept. The hashes are the
+ * 128-bit murmur3 hash of the normalized text and its first 64 bits.
+ *
+ * Usage:
+ * <pre>
+ *     SqlFingerprint fingerprint = SqlFingerprint.of(sql);
+ *     cache.get(fingerprint.getHash());
+ * </pre>
+ */
+public class SqlFingerprint {
+    public static final String PLACEHOLDER = "?";
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    /**
+     * A literal replaced by a placeholder. 'sym' is the SqlParserSymbols id of its token
+     * and the value is the one the scanner produced: a Long or BigDecimal for numbers and
+     * the unquoted text for strings.
+     */
+    public static class Literal {
+        private final int sym;
+        private final Object value;
+        private final int startPosition;
+        private final int endPosition;
+
+        private Literal(int sym, Object value, int startPosition, int endPosition) {
+            this.sym = sym;
+            this.value = value;
+            this.startPosition = startPosition;
+            this.endPosition = endPosition;
+        }
+
+        public int getSym() {
+            return sym;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public int getStartPosition() {
+            return startPosition;
+        }
+
+        public int getEndPosition() {
+            return endPosition;
+        }
+
+        @Override
+        public String toString() {
+            return SqlScanner.tokenIdMap.get(sym) + "(" + value + ")@" + startPosition;
+        }
+    }
+
+    private final String normalizedSql;
+    private final HashCode hashCode;
+    private final List<Literal> literals;
+
+    private SqlFingerprint(String normalizedSql, List<Literal> literals) {
+        this.normalizedSql = normalizedSql;
+        this.hashCode = HASH_FUNCTION.hashString(normalizedSql);
+        this.literals = Collections.unmodifiableList(literals);
+    }
+
+    /**
+     * Computes the fingerprint of 'sql'. Text the scanner cannot match (e.g. an unmatched
+     * quote) is kept as written.
+     */
+    public static SqlFingerprint of(String sql) {
+        Preconditions.checkNotNull(sql);
+        SqlScanner scanner = new SqlScanner(new StringReader(sql));
+        scanner.setLazyTextSource(sql);
+        StringBuilder normalized = new StringBuilder(sql.length());
+        List<Literal> literals = new ArrayList<>();
+        try {
+            while (true) {
+                ExtendSymbol token = (ExtendSymbol) scanner.next_token();
+                int sym = token.sym;
+                if (sym == SqlParserSymbols.EOF) {
+                    break;
+                }
+                if (normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                switch (sym) {
+                    case SqlParserSymbols.INTEGER_LITERAL:
+                    case SqlParserSymbols.DECIMAL_LITERAL:
+                    case SqlParserSymbols.STRING_LITERAL:
+                        literals.add(new Literal(sym, token.value, token.start, token.end));
+                        normalized.append(PLACEHOLDER);
+                        break;
+                    case SqlParserSymbols.COMMENTED_PLAN_HINTS:
+                        normalized.append("/* +").append(token.value).append(" */");
+                        break;
+                    default:
+                        if (SqlScanner.isKeyword(sym)) {
+                            normalized.append(SqlScanner.tokenIdMap.get(sym));
+                        } else {
+                            normalized.append(sql, token.start, token.end);
+                        }
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            // Reading from a string does not fail.
+            throw new IllegalStateException(e);
+        }
+        return new SqlFingerprint(normalized.toString(), literals);
+    }
+
+    /**
+     * Returns the statement with literals replaced by placeholders, see the class comment.
+     */
+    public String getNormalizedSql() {
+        return normalizedSql;
+    }
+
+    /**
+     * Returns the 64-bit hash of the normalized statement.
+     */
+    public long getHash() {
+        return hashCode.asLong();
+    }
+
+    /**
+     * Returns the 128-bit hash of the normalized statement as two longs, the first one
+     * being getHash().
+     */
+    public long[] getHash128() {
+        ByteBuffer bytes = ByteBuffer.wrap(hashCode.asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        return new long[] {bytes.getLong(0), bytes.getLong(8)};
+    }
+
+    /**
+     * Returns the 128-bit hash as a hex string.
+     */
+    public String getHashString() {
+        return hashCode.toString();
+    }
+
+    /**
+     * Returns the replaced literals in statement order.
+     */
+    public List<Literal> getLiterals() {
+        return literals;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SqlFingerprint)) {
+            return false;
+        }
+        return normalizedSql.equals(((SqlFingerprint) obj).normalizedSql);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode.asInt();
+    }
+
+    @Override
+    public String toString() {
+        return getHashString() + ": " + normalizedSql;
+    }
+}
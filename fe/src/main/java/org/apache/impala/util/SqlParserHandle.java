@@ -0,0 +1,147 @@
+package org.apache.impala.util;
+
+import com.google.common.base.Preconditions;
+import java_cup.runtime.ExtendSymbolFactory;
+import org.apache.impala.analysis.SqlParser;
+import org.apache.impala.analysis.SqlScanner;
+
+import java.io.Reader;
+
+/**
+ * A SqlScanner and SqlParser pair that is reused across statements instead of being
+ * created for each one. Creating a scanner allocates its 16K char buffer and creating a
+ * parser its parse stacks; a handle resets both with yyreset() and resetErrorState().
+ *
+ * Handles are thread-confined and pooled per thread:
+ * <pre>
+ *     SqlParserHandle handle = SqlParserHandle.acquire();
+ *     try {
+ *         Object result = handle.parse(sql);
+ *         ...
+ *     } finally {
+ *         handle.release();
+ *     }
+ * </pre>
+ * A nested acquire() on a thread whose handle is in use returns a new handle that is not
+ * pooled. After a statement longer than MAX_POOLED_LENGTH chars the thread's handle is
+ * dropped on release(), so that the grown scanner buffer is not kept alive.
+ */
+public class SqlParserHandle {
+    private static final int MAX_POOLED_LENGTH = 1 << 20;
+
+    private static final ThreadLocal<SqlParserHandle> THREAD_HANDLE =
+            new ThreadLocal<SqlParserHandle>() {
+                @Override
+                protected SqlParserHandle initialValue() {
+                    return new SqlParserHandle(true);
+                }
+            };
+
+    private final boolean pooled;
+    private final CharSequenceReader reader = new CharSequenceReader();
+    private final SqlScanner scanner = new SqlScanner(reader);
+    private final ExtendSymbolFactory symbolFactory = new ExtendSymbolFactory("");
+    private final SqlParser parser = new SqlParser(scanner, symbolFactory);
+    private boolean inUse;
+    private int maxLength;
+
+    private SqlParserHandle(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    /**
+     * Returns the calling thread's handle, or a new one if it is already in use. The
+     * handle must be released by the same thread.
+     */
+    public static SqlParserHandle acquire() {
+        SqlParserHandle handle = THREAD_HANDLE.get();
+        if (handle.inUse) {
+            handle = new SqlParserHandle(false);
+        }
+        handle.inUse = true;
+        return handle;
+    }
+
+    /**
+     * Returns the handle to the pool. It must not be used afterwards.
+     */
+    public void release() {
+        Preconditions.checkState(inUse);
+        inUse = false;
+        // Drop references to the last statement.
+        reader.reset("");
+        scanner.setLazyTextSource(null);
+        symbolFactory.reset("");
+        parser.resetErrorState();
+        parser.clearParseState();
+        if (pooled && maxLength > MAX_POOLED_LENGTH) {
+            THREAD_HANDLE.remove();
+        }
+    }
+
+    /**
+     * Parses 'sql' and returns the parser's result, a StatementBase that is also the root
+     * SyntaxBlock of the statement. Token text is sliced lazily out of 'sql'.
+     */
+    public Object parse(CharSequence sql) throws Exception {
+        return parse(sql, true);
+    }
+
+    /**
+     * Same as parse() above. If 'buildSubBlocks' is false the tree only has positions and
+     * no subBlocks, which is all that analysis needs.
+     */
+    public Object parse(CharSequence sql, boolean buildSubBlocks) throws Exception {
+        Preconditions.checkState(inUse);
+        Preconditions.checkNotNull(sql);
+        maxLength = Math.max(maxLength, sql.length());
+        reader.reset(sql);
+        scanner.yyreset(reader);
+        scanner.setLazyTextSource(sql);
+        symbolFactory.reset(sql);
+        parser.resetErrorState();
+        parser.setBuildSubBlocks(buildSubBlocks);
+        return parser.parse().value;
+    }
+
+    /**
+     * Returns the error message of the last parse(), see SqlParser.getErrorMsg().
+     */
+    public String getErrorMsg(String sql) {
+        return parser.getErrorMsg(sql);
+    }
+
+    /**
+     * Reader over a CharSequence that can be pointed at another one without allocating.
+     */
+    private static class CharSequenceReader extends Reader {
+        private CharSequence chars = "";
+        private int pos;
+
+        void reset(CharSequence chars) {
+            this.chars = chars;
+            this.pos = 0;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            int n = Math.min(len, chars.length() - pos);
+            if (n <= 0) {
+                return len == 0 ? 0 : -1;
+            }
+            if (chars instanceof String) {
+                ((String) chars).getChars(pos, pos + n, cbuf, off);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    cbuf[off + i] = chars.charAt(pos + i);
+                }
+            }
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package org.apache.impala.util;
+
+import com.google.common.base.Preconditions;
+import org.apache.impala.analysis.SyntaxBlock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * Parses ';'-separated statements one at a time from a Reader or a CharBuffer (e.g. a
+ * decoded memory-mapped query log), so that memory use is bounded by the largest single
+ * statement rather than by the size of the input.
+ *
+ * Statements are cut at every semicolon outside of string literals, quoted identifiers
+ * and comments, following the same quoting and comment rules as SqlScanner. One
+ * difference: an unterminated quote or block comment runs to the end of the input, where
+ * SqlScanner would fall back to single-character tokens. The resulting statement then
+ * fails to parse like it would otherwise.
+ *
+ * For a CharBuffer input, statement text is a view into the buffer and is not copied
+ * before parsing. Offsets into the input are longs; positions in each statement's tree
+ * are relative to the start of that statement.
+ *
+ * Usage:
+ * <pre>
+ *     StatementStreamParser parser = new StatementStreamParser(reader);
+ *     StatementStreamParser.Statement statement;
+ *     while ((statement = parser.next()) != null) {
+ *         ...
+ *     }
+ * </pre>
+ */
+public class StatementStreamParser implements Closeable {
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    /**
+     * One parsed statement. getSql() is the statement text without the terminating
+     * semicolon, starting at its first non-whitespace character.
+     */
+    public static class Statement {
+        private final long index;
+        private final long startOffset;
+        private final CharSequence sql;
+        private SyntaxBlock root;
+        private Exception error;
+        private String errorMessage;
+
+        private Statement(long index, long startOffset, CharSequence sql) {
+            this.index = index;
+            this.startOffset = startOffset;
+            this.sql = sql;
+        }
+
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * Offset of the statement's first character in the input.
+         */
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        public long getEndOffset() {
+            return startOffset + sql.length();
+        }
+
+        public CharSequence getSql() {
+            return sql;
+        }
+
+        /**
+         * Returns the parse tree with positions relative to getStartOffset(), or null if
+         * the statement failed to parse.
+         */
+        public SyntaxBlock getRoot() {
+            return root;
+        }
+
+        public boolean hasError() {
+            return error != null;
+        }
+
+        public Exception getError() {
+            return error;
+        }
+
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+    }
+
+    private final Reader reader;
+    private final char[] readBuffer;
+    private int readPos;
+    private int readLimit;
+    // Text of the statement being read from 'reader'.
+    private final StringBuilder pending;
+
+    private final CharBuffer buffer;
+
+    private final Splitter splitter = new Splitter();
+    private long offset;
+    private long nextIndex;
+    private boolean done;
+
+    public StatementStreamParser(Reader reader) {
+        Preconditions.checkNotNull(reader);
+        this.reader = reader;
+        this.readBuffer = new char[READ_BUFFER_SIZE];
+        this.pending = new StringBuilder();
+        this.buffer = null;
+    }
+
+    /**
+     * Reads statements from the remaining chars of 'buffer', which is not modified.
+     */
+    public StatementStreamParser(CharBuffer buffer) {
+        Preconditions.checkNotNull(buffer);
+        this.reader = null;
+        this.readBuffer = null;
+        this.pending = null;
+        this.buffer = buffer.slice();
+    }
+
+    /**
+     * Returns the next statement, or null at the end of the input. Statements that only
+     * contain whitespace and comments are skipped.
+     */
+    public Statement next() throws IOException {
+        while (!done) {
+            long startOffset = offset;
+            CharSequence sql =
+                    reader != null ? readStatementFromReader() : readStatementFromBuffer();
+            if (sql == null) {
+                continue;
+            }
+            startOffset += splitter.contentStart;
+            Statement statement = new Statement(nextIndex++, startOffset, sql);
+            parse(statement);
+            return statement;
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    /**
+     * Consumes the input up to and including the next statement terminator. Returns the
+     * statement text, or null if there was no statement before the terminator.
+     */
+    private CharSequence readStatementFromReader() throws IOException {
+        pending.setLength(0);
+        splitter.reset();
+        while (true) {
+            if (readPos == readLimit) {
+                readLimit = reader.read(readBuffer, 0, readBuffer.length);
+                readPos = 0;
+                if (readLimit < 0) {
+                    readLimit = 0;
+                    done = true;
+                    splitter.finish();
+                    break;
+                }
+            }
+            char c = readBuffer[readPos++];
+            offset++;
+            if (splitter.accept(c)) {
+                break;
+            }
+            if (splitter.contentStart >= 0) {
+                pending.append(c);
+            }
+        }
+        if (!splitter.hasTokens) {
+            return null;
+        }
+        pending.setLength(splitter.contentEnd - splitter.contentStart);
+        return pending.toString();
+    }
+
+    private CharSequence readStatementFromBuffer() {
+        splitter.reset();
+        int start = (int) offset;
+        int pos = start;
+        int limit = buffer.limit();
+        while (true) {
+            if (pos == limit) {
+                done = true;
+                splitter.finish();
+                break;
+            }
+            char c = buffer.get(pos++);
+            if (splitter.accept(c)) {
+                break;
+            }
+        }
+        offset = pos;
+        if (!splitter.hasTokens) {
+            return null;
+        }
+        return buffer.subSequence(start + splitter.contentStart, start + splitter.contentEnd);
+    }
+
+    private static void parse(Statement statement) {
+        SqlParserHandle parser = SqlParserHandle.acquire();
+        try {
+            statement.root = (SyntaxBlock) parser.parse(statement.sql);
+        } catch (Exception e) {
+            statement.error = e;
+            String sql = statement.sql.toString();
+            statement.errorMessage = parser.getErrorMsg(sql);
+            if (statement.errorMessage == null) {
+                statement.errorMessage = e.getMessage();
+            }
+        } finally {
+            parser.release();
+        }
+    }
+
+    /**
+     * Character-at-a-time statement splitter mirroring the quoting and comment rules of
+     * SqlScanner. Offsets are relative to the last reset().
+     */
+    private static class Splitter {
+        private static final int NORMAL = 0;
+        private static final int DASH = 1;
+        private static final int SLASH = 2;
+        private static final int LINE_COMMENT = 3;
+        private static final int BLOCK_COMMENT = 4;
+        private static final int BLOCK_COMMENT_STAR = 5;
+        private static final int QUOTED = 6;
+        private static final int QUOTED_ESCAPE = 7;
+
+        private int state;
+        private char quote;
+        private int pos;
+        // [contentStart, contentEnd) spans the statement from its first to its last
+        // non-whitespace char, comments included. contentStart is -1 until the first one.
+        int contentStart;
+        int contentEnd;
+        // Whether anything other than whitespace and comments was seen.
+        boolean hasTokens;
+
+        void reset() {
+            state = NORMAL;
+            pos = 0;
+            contentStart = -1;
+            contentEnd = 0;
+            hasTokens = false;
+        }
+
+        /**
+         * Called at the end of the input: a pending '-' or '/' is a token of its own.
+         */
+        void finish() {
+            if (state == DASH || state == SLASH) {
+                hasTokens = true;
+            }
+        }
+
+        /**
+         * Consumes 'c' and returns true if it terminates the statement.
+         */
+        boolean accept(char c) {
+            int at = pos++;
+            switch (state) {
+                case LINE_COMMENT:
+                    if (c == '\n' || c == '\r') {
+                        state = NORMAL;
+                    }
+                    markContent(at, false);
+                    return false;
+                case BLOCK_COMMENT:
+                    if (c == '*') {
+                        state = BLOCK_COMMENT_STAR;
+                    }
+                    markContent(at, false);
+                    return false;
+                case BLOCK_COMMENT_STAR:
+                    if (c == '/') {
+                        state = NORMAL;
+                    } else if (c != '*') {
+                        state = BLOCK_COMMENT;
+                    }
+                    markContent(at, false);
+                    return false;
+                case QUOTED:
+                    if (c == '\\') {
+                        state = QUOTED_ESCAPE;
+                    } else if (c == quote) {
+                        state = NORMAL;
+                    }
+                    markContent(at, true);
+                    return false;
+                case QUOTED_ESCAPE:
+                    state = QUOTED;
+                    markContent(at, true);
+                    return false;
+                case DASH:
+                    if (c == '-') {
+                        state = LINE_COMMENT;
+                        markContent(at, false);
+                        return false;
+                    }
+                    // The '-' was a token of its own.
+                    hasTokens = true;
+                    state = NORMAL;
+                    break;
+                case SLASH:
+                    if (c == '*') {
+                        state = BLOCK_COMMENT;
+                        markContent(at, false);
+                        return false;
+                    }
+                    hasTokens = true;
+                    state = NORMAL;
+                    break;
+                default:
+                    break;
+            }
+
+            if (Character.isWhitespace(c)) {
+                return false;
+            }
+            switch (c) {
+                case ';':
+                    return true;
+                case '-':
+                    state = DASH;
+                    markContent(at, false);
+                    return false;
+                case '/':
+                    state = SLASH;
+                    markContent(at, false);
+                    return false;
+                case '\'':
+                case '"':
+                case '`':
+                    state = QUOTED;
+                    quote = c;
+                    break;
+                default:
+                    break;
+            }
+            markContent(at, true);
+            return false;
+        }
+
+        private void markContent(int at, boolean isToken) {
+            if (contentStart < 0) {
+                contentStart = at;
+            }
+            contentEnd = at + 1;
+            hasTokens |= isToken;
+        }
+    }
+}
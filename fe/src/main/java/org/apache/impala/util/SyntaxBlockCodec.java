@@ -0,0 +1,529 @@
+package org.apache.impala.util;
+
+import com.google.common.io.CountingInputStream;
+import org.apache.impala.analysis.AnalyticWindow;
+import org.apache.impala.analysis.CreateFunctionStmtBase;
+import org.apache.impala.analysis.JoinOperator;
+import org.apache.impala.analysis.ObjectSyntaxBlock;
+import org.apache.impala.analysis.SyntaxBlock;
+import org.apache.impala.analysis.UnionStmt;
+import org.apache.impala.thrift.TCatalogObjectType;
+import org.apache.impala.thrift.TDescribeOutputStyle;
+import org.apache.impala.thrift.TFunctionCategory;
+import org.apache.impala.thrift.THdfsFileFormat;
+import org.apache.impala.thrift.TPrivilegeLevel;
+import org.apache.impala.thrift.TTablePropertyType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a SyntaxBlock tree, e.g. to keep parse results of saved
+ * queries in an on-disk cache instead of reparsing them.
+ *
+ * The encoding keeps, for every block, its kind (class name), startPosition and
+ * endPosition, its subBlocks (including null entries and null lists) and, for
+ * ObjectSyntaxBlocks, the objectValue if it is a String, Boolean, Integer, Long,
+ * BigDecimal or a constant of one of the enum types in ENUM_TYPES. This covers the values
+ * of all terminals. Other values, such as the lists built by some non-terminals, are
+ * decoded as null.
+ *
+ * Decoding does not rebuild the analysis classes of the original tree: blocks that were
+ * plain ObjectSyntaxBlocks are decoded as ObjectSyntaxBlocks and all other blocks as
+ * SyntaxBlockCodec.Block, which records the original kind. A block shared by several
+ * parents is encoded once and is shared again in the decoded tree.
+ *
+ * Format: a magic number and version, then the blocks in pre-order. Integers are
+ * variable-length, positions are zigzag-encoded and end positions are stored relative
+ * to start positions. A kind is written as a string the first time it occurs and as an
+ * index into the kinds seen so far afterwards. An enum constant is written as the index
+ * of its type in ENUM_TYPES and its name, so decoding never loads a class named by the
+ * input.
+ *
+ * Decoding validates the lengths and counts it reads against the input, so a corrupt or
+ * truncated encoding fails with an IOException instead of allocating their size.
+ */
+public class SyntaxBlockCodec {
+    private static final int MAGIC = 0x53424331;
+    private static final int VERSION = 2;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_REFERENCE = 1;
+    private static final int TAG_BLOCK = 2;
+
+    private static final int VALUE_NONE = 0;
+    private static final int VALUE_NULL = 1;
+    private static final int VALUE_UNSUPPORTED = 2;
+    private static final int VALUE_STRING = 3;
+    private static final int VALUE_TRUE = 4;
+    private static final int VALUE_FALSE = 5;
+    private static final int VALUE_INTEGER = 6;
+    private static final int VALUE_LONG = 7;
+    private static final int VALUE_BIG_DECIMAL = 8;
+    private static final int VALUE_ENUM = 9;
+
+    private static final String OBJECT_SYNTAX_BLOCK_KIND = ObjectSyntaxBlock.class.getName();
+
+    // The enum types of the objectValues that the grammar creates. The index of a type is
+    // part of the encoding, so new types must be appended.
+    private static final Class<?>[] ENUM_TYPES = {
+            AnalyticWindow.Type.class,
+            CreateFunctionStmtBase.OptArg.class,
+            JoinOperator.class,
+            TCatalogObjectType.class,
+            TDescribeOutputStyle.class,
+            TFunctionCategory.class,
+            THdfsFileFormat.class,
+            TPrivilegeLevel.class,
+            TTablePropertyType.class,
+            UnionStmt.Qualifier.class,
+    };
+    private static final Map<Class<?>, Integer> ENUM_TYPE_IDS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < ENUM_TYPES.length; i++) {
+            ENUM_TYPE_IDS.put(ENUM_TYPES[i], i);
+        }
+    }
+
+    // Upper bound of the lengths and counts read from an input of unknown length.
+    private static final int MAX_LENGTH = 1 << 28;
+    // Largest buffer or list capacity allocated before the data that fills it is read.
+    private static final int MAX_INITIAL_CAPACITY = 1 << 13;
+
+    /**
+     * A decoded block that was not a plain ObjectSyntaxBlock.
+     */
+    public static class Block extends SyntaxBlock {
+        private final String kind;
+
+        public Block(String kind, int startPosition, int endPosition) {
+            super(startPosition, endPosition);
+            this.kind = kind;
+        }
+
+        /**
+         * Returns the class name of the original block.
+         */
+        public String getKind() {
+            return kind;
+        }
+    }
+
+    /**
+     * Returns the kind of 'block', the class name of the original block for decoded ones.
+     */
+    public static String kindOf(SyntaxBlock block) {
+        if (block instanceof Block) {
+            return ((Block) block).getKind();
+        }
+        return block.getClass().getName();
+    }
+
+    /**
+     * Returns true if 'value' is an objectValue that the encoding keeps, i.e. null or of
+     * one of the types listed above.
+     */
+    static boolean isEncodableValue(Object value) {
+        return value == null || value instanceof String || value instanceof Boolean
+                || value instanceof Integer || value instanceof Long
+                || value instanceof BigDecimal
+                || (value instanceof Enum
+                        && ENUM_TYPE_IDS.containsKey(((Enum<?>) value).getDeclaringClass()));
+    }
+
+    public static byte[] encode(SyntaxBlock root) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        encode(root, bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the encoding of the tree rooted at 'root', which may be null, to 'out'.
+     */
+    public static void encode(SyntaxBlock root, OutputStream out) throws IOException {
+        new Encoder(out).encode(root);
+    }
+
+    public static SyntaxBlock decode(byte[] bytes) throws IOException {
+        return new Decoder(new ByteArrayInputStream(bytes), bytes.length).decode();
+    }
+
+    /**
+     * Reads a tree written by encode() from 'in'.
+     */
+    public static SyntaxBlock decode(InputStream in) throws IOException {
+        return new Decoder(in, Long.MAX_VALUE).decode();
+    }
+
+    private static class Encoder {
+        private final DataOutputStream out;
+        private final Map<SyntaxBlock, Integer> blockIds = new IdentityHashMap<>();
+        private final Map<String, Integer> kindIds = new HashMap<>();
+
+        Encoder(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        void encode(SyntaxBlock root) throws IOException {
+            out.writeInt(MAGIC);
+            writeVarInt(VERSION);
+            // Blocks whose children still have to be written, with the next child index.
+            Deque<SyntaxBlock> blocks = new ArrayDeque<>();
+            Deque<Integer> nextChildren = new ArrayDeque<>();
+            if (writeBlock(root)) {
+                blocks.push(root);
+                nextChildren.push(0);
+            }
+            while (!blocks.isEmpty()) {
+                SyntaxBlock block = blocks.peek();
+                int next = nextChildren.pop();
+                if (next == block.subBlocks.size()) {
+                    blocks.pop();
+                    continue;
+                }
+                nextChildren.push(next + 1);
+                SyntaxBlock child = block.subBlocks.get(next);
+                if (writeBlock(child)) {
+                    blocks.push(child);
+                    nextChildren.push(0);
+                }
+            }
+            out.flush();
+        }
+
+        /**
+         * Writes the block header. Returns true if its children follow.
+         */
+        private boolean writeBlock(SyntaxBlock block) throws IOException {
+            if (block == null) {
+                out.writeByte(TAG_NULL);
+                return false;
+            }
+            Integer id = blockIds.get(block);
+            if (id != null) {
+                out.writeByte(TAG_REFERENCE);
+                writeVarInt(id);
+                return false;
+            }
+            blockIds.put(block, blockIds.size());
+            out.writeByte(TAG_BLOCK);
+            writeKind(block.getClass().getName());
+            writeVarInt(zigzag(block.startPosition));
+            writeVarInt(zigzag(block.endPosition - block.startPosition));
+            if (block instanceof ObjectSyntaxBlock) {
+                writeValue(((ObjectSyntaxBlock<?>) block).objectValue);
+            } else {
+                out.writeByte(VALUE_NONE);
+            }
+            // 0 stands for a null list.
+            writeVarInt(block.subBlocks == null ? 0 : block.subBlocks.size() + 1);
+            return block.subBlocks != null && !block.subBlocks.isEmpty();
+        }
+
+        private void writeKind(String kind) throws IOException {
+            Integer id = kindIds.get(kind);
+            if (id != null) {
+                writeVarInt(id);
+                return;
+            }
+            writeVarInt(kindIds.size());
+            kindIds.put(kind, kindIds.size());
+            writeString(kind);
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(VALUE_NULL);
+            } else if (value instanceof String) {
+                out.writeByte(VALUE_STRING);
+                writeString((String) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? VALUE_TRUE : VALUE_FALSE);
+            } else if (value instanceof Integer) {
+                out.writeByte(VALUE_INTEGER);
+                writeVarLong(zigzag(((Integer) value).longValue()));
+            } else if (value instanceof Long) {
+                out.writeByte(VALUE_LONG);
+                writeVarLong(zigzag((Long) value));
+            } else if (value instanceof BigDecimal) {
+                BigDecimal decimal = (BigDecimal) value;
+                out.writeByte(VALUE_BIG_DECIMAL);
+                byte[] unscaled = decimal.unscaledValue().toByteArray();
+                writeVarInt(unscaled.length);
+                out.write(unscaled);
+                writeVarLong(zigzag(decimal.scale()));
+            } else if (isEncodableValue(value)) {
+                Enum<?> constant = (Enum<?>) value;
+                out.writeByte(VALUE_ENUM);
+                writeVarInt(ENUM_TYPE_IDS.get(constant.getDeclaringClass()));
+                writeString(constant.name());
+            } else {
+                out.writeByte(VALUE_UNSUPPORTED);
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(utf8.length);
+            out.write(utf8);
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        private static int zigzag(int value) {
+            return (value << 1) ^ (value >> 31);
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    private static class Decoder {
+        private final CountingInputStream counter;
+        private final DataInputStream in;
+        // Length of the input, Long.MAX_VALUE if it is not known.
+        private final long length;
+        private final List<SyntaxBlock> blocks = new ArrayList<>();
+        private final List<String> kinds = new ArrayList<>();
+        // Number of children that follow the block returned by the last readBlock() call,
+        // 0 unless it was a new block.
+        private int newBlockChildren;
+
+        Decoder(InputStream in, long length) {
+            this.counter = new CountingInputStream(in);
+            this.in = new DataInputStream(counter);
+            this.length = length;
+        }
+
+        SyntaxBlock decode() throws IOException {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an encoded SyntaxBlock tree");
+            }
+            int version = readVarInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported SyntaxBlock encoding version: " + version);
+            }
+            // Blocks whose children are being read, with the number of children left.
+            Deque<SyntaxBlock> parents = new ArrayDeque<>();
+            int[] remaining = new int[64];
+            SyntaxBlock root = readBlock();
+            if (newBlockChildren > 0) {
+                parents.push(root);
+                remaining[0] = newBlockChildren;
+            }
+            while (!parents.isEmpty()) {
+                int depth = parents.size() - 1;
+                if (remaining[depth] == 0) {
+                    parents.pop();
+                    continue;
+                }
+                remaining[depth]--;
+                SyntaxBlock child = readBlock();
+                parents.peek().subBlocks.add(child);
+                if (newBlockChildren > 0) {
+                    if (depth + 1 == remaining.length) {
+                        remaining = Arrays.copyOf(remaining, remaining.length * 2);
+                    }
+                    remaining[depth + 1] = newBlockChildren;
+                    parents.push(child);
+                }
+            }
+            return root;
+        }
+
+        /**
+         * Reads one block header. The children of a new block are read by the caller and
+         * appended to its subBlocks, which is created with the right capacity unless that
+         * is very large.
+         */
+        private SyntaxBlock readBlock() throws IOException {
+            newBlockChildren = 0;
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_REFERENCE: {
+                    int id = readVarInt();
+                    if (id < 0 || id >= blocks.size()) {
+                        throw new IOException("Invalid block reference: " + id);
+                    }
+                    return blocks.get(id);
+                }
+                case TAG_BLOCK:
+                    break;
+                default:
+                    throw new IOException("Invalid block tag: " + tag);
+            }
+            String kind = readKind();
+            int start = unzigzag(readVarInt());
+            int end = start + unzigzag(readVarInt());
+            int valueType = in.readUnsignedByte();
+            Object value = valueType == VALUE_NONE ? null : readValue(valueType);
+            SyntaxBlock block;
+            if (kind.equals(OBJECT_SYNTAX_BLOCK_KIND)) {
+                block = new ObjectSyntaxBlock<>(start, end, value);
+            } else {
+                block = new Block(kind, start, end);
+            }
+            // Every child takes at least one byte.
+            int childCount = readLength("child count", 1) - 1;
+            if (childCount >= 0) {
+                block.subBlocks = new ArrayList<>(Math.min(childCount, MAX_INITIAL_CAPACITY));
+            }
+            newBlockChildren = Math.max(childCount, 0);
+            blocks.add(block);
+            return block;
+        }
+
+        private String readKind() throws IOException {
+            int id = readVarInt();
+            if (id == kinds.size()) {
+                kinds.add(readString());
+            } else if (id < 0 || id > kinds.size()) {
+                throw new IOException("Invalid kind reference: " + id);
+            }
+            return kinds.get(id);
+        }
+
+        private Object readValue(int valueType) throws IOException {
+            switch (valueType) {
+                case VALUE_NULL:
+                case VALUE_UNSUPPORTED:
+                    return null;
+                case VALUE_STRING:
+                    return readString();
+                case VALUE_TRUE:
+                    return Boolean.TRUE;
+                case VALUE_FALSE:
+                    return Boolean.FALSE;
+                case VALUE_INTEGER:
+                    return (int) unzigzag(readVarLong());
+                case VALUE_LONG:
+                    return unzigzag(readVarLong());
+                case VALUE_BIG_DECIMAL: {
+                    int unscaledLength = readLength("decimal length", 0);
+                    if (unscaledLength == 0) {
+                        throw new IOException("Invalid decimal length: 0");
+                    }
+                    byte[] unscaled = readBytes(unscaledLength);
+                    int scale = (int) unzigzag(readVarLong());
+                    return new BigDecimal(new BigInteger(unscaled), scale);
+                }
+                case VALUE_ENUM:
+                    return readEnum(readVarInt(), readString());
+                default:
+                    throw new IOException("Invalid value type: " + valueType);
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Object readEnum(int typeId, String name) throws IOException {
+            if (typeId < 0 || typeId >= ENUM_TYPES.length) {
+                throw new IOException("Invalid enum type: " + (typeId & 0xFFFFFFFFL));
+            }
+            Class<? extends Enum> enumClass = (Class<? extends Enum>) ENUM_TYPES[typeId];
+            try {
+                return Enum.valueOf(enumClass, name);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid enum constant: " + enumClass.getName() + "."
+                        + name, e);
+            }
+        }
+
+        private String readString() throws IOException {
+            byte[] utf8 = readBytes(readLength("string length", 0));
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Reads a count of bytes or of items of at least one byte that follow, plus
+         * 'extra'. Fails if it is negative, or if the count is larger than the rest of the
+         * input or MAX_LENGTH.
+         */
+        private int readLength(String what, int extra) throws IOException {
+            int value = readVarInt();
+            long limit = Math.min(length - counter.getCount(), MAX_LENGTH) + extra;
+            if (value < 0 || value > limit) {
+                throw new IOException("Invalid " + what + ": " + (value & 0xFFFFFFFFL));
+            }
+            return value;
+        }
+
+        /**
+         * Reads 'count' bytes. The buffer grows as the bytes are read, so that a truncated
+         * input fails before a large buffer is allocated.
+         */
+        private byte[] readBytes(int count) throws IOException {
+            byte[] bytes = new byte[Math.min(count, MAX_INITIAL_CAPACITY)];
+            int offset = 0;
+            while (true) {
+                in.readFully(bytes, offset, bytes.length - offset);
+                offset = bytes.length;
+                if (offset == count) {
+                    return bytes;
+                }
+                bytes = Arrays.copyOf(bytes, (int) Math.min((long) offset * 2, count));
+            }
+        }
+
+        private int readVarInt() throws IOException {
+            long value = readVarLong();
+            if ((value & ~0xFFFFFFFFL) != 0) {
+                throw new IOException("Invalid variable-length int");
+            }
+            return (int) value;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException();
+                }
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid variable-length long");
+        }
+
+        private static int unzigzag(int value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
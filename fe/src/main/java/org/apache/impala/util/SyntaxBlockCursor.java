@@ -0,0 +1,219 @@
+package org.apache.impala.util;
+
+import com.google.common.base.Preconditions;
+import org.apache.impala.analysis.SyntaxBlock;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Iterative pre-order or post-order cursor over a SyntaxBlock tree.
+ *
+ * The cursor keeps the path from the root to the current block in one explicit stack
+ * that is reused for the whole walk (and across reset() calls), so traversal does not
+ * allocate per block and does not recurse, no matter how deep the tree is.
+ * Null entries in subBlocks are skipped.
+ *
+ * Usage:
+ * <pre>
+ *     SyntaxBlockCursor cursor = new SyntaxBlockCursor(root, Order.PRE_ORDER);
+ *     while (cursor.next()) {
+ *         SyntaxBlock block = cursor.current();
+ *         List&lt;SyntaxBlock&gt; ancestors = cursor.ancestors();
+ *         if (...) cursor.skipSubtree();
+ *         if (...) break;
+ *     }
+ * </pre>
+ */
+public class SyntaxBlockCursor {
+    public enum Order {
+        PRE_ORDER,
+        POST_ORDER
+    }
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private final Order order;
+
+    // blocks[0..depth] is the path from the root to the top of the stack.
+    private SyntaxBlock[] blocks = new SyntaxBlock[INITIAL_CAPACITY];
+    // childIndexes[i] is the index of blocks[i] in the subBlocks of blocks[i - 1].
+    private int[] childIndexes = new int[INITIAL_CAPACITY];
+    // nextChildren[i] is the index of the next child of blocks[i] to descend into.
+    private int[] nextChildren = new int[INITIAL_CAPACITY];
+    private int depth = -1;
+
+    private SyntaxBlock root;
+    private boolean started;
+    // Set in post-order when the top of the stack has been returned and must be popped.
+    private boolean popPending;
+    private boolean skipRequested;
+
+    private final List<SyntaxBlock> ancestorsView = new AbstractList<SyntaxBlock>() {
+        @Override
+        public SyntaxBlock get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return blocks[index];
+        }
+
+        @Override
+        public int size() {
+            return Math.max(depth, 0);
+        }
+    };
+
+    public SyntaxBlockCursor(SyntaxBlock root) {
+        this(root, Order.PRE_ORDER);
+    }
+
+    public SyntaxBlockCursor(SyntaxBlock root, Order order) {
+        Preconditions.checkNotNull(order);
+        this.order = order;
+        reset(root);
+    }
+
+    /**
+     * Restarts the cursor on 'root', keeping the already allocated stack.
+     */
+    public void reset(SyntaxBlock root) {
+        Arrays.fill(blocks, 0, Math.max(depth + 1, 0), null);
+        this.root = root;
+        this.depth = -1;
+        this.started = false;
+        this.popPending = false;
+        this.skipRequested = false;
+    }
+
+    /**
+     * Advances to the next block. Returns false once the walk is complete.
+     */
+    public boolean next() {
+        if (!started) {
+            started = true;
+            if (root == null) {
+                return false;
+            }
+            push(root, 0);
+            if (order == Order.PRE_ORDER) {
+                return true;
+            }
+        } else if (popPending) {
+            pop();
+            popPending = false;
+        } else if (depth >= 0 && skipRequested) {
+            nextChildren[depth] = Integer.MAX_VALUE;
+        }
+        skipRequested = false;
+
+        while (depth >= 0) {
+            SyntaxBlock child = descendNextChild();
+            if (child != null) {
+                if (order == Order.PRE_ORDER) {
+                    return true;
+                }
+                continue;
+            }
+            if (order == Order.POST_ORDER) {
+                popPending = true;
+                return true;
+            }
+            pop();
+        }
+        return false;
+    }
+
+    /**
+     * Returns the block the cursor is positioned on.
+     */
+    public SyntaxBlock current() {
+        Preconditions.checkState(depth >= 0, "cursor is not positioned on a block");
+        return blocks[depth];
+    }
+
+    /**
+     * Returns the index of the current block in its parent's subBlocks, or 0 for the root.
+     */
+    public int childIndex() {
+        Preconditions.checkState(depth >= 0, "cursor is not positioned on a block");
+        return childIndexes[depth];
+    }
+
+    /**
+     * Returns the number of ancestors of the current block; 0 for the root.
+     */
+    public int depth() {
+        Preconditions.checkState(depth >= 0, "cursor is not positioned on a block");
+        return depth;
+    }
+
+    /**
+     * Returns the parent of the current block, or null for the root.
+     */
+    public SyntaxBlock parent() {
+        Preconditions.checkState(depth >= 0, "cursor is not positioned on a block");
+        return depth == 0 ? null : blocks[depth - 1];
+    }
+
+    /**
+     * Read-only view of the ancestors of the current block, ordered from the root down to
+     * the parent. The view is live: it changes as the cursor moves and must be copied if it
+     * has to outlive the current step.
+     */
+    public List<SyntaxBlock> ancestors() {
+        return ancestorsView;
+    }
+
+    /**
+     * Makes the next call to next() skip the children of the current block. Only
+     * meaningful in pre-order, where the children have not been visited yet.
+     */
+    public void skipSubtree() {
+        Preconditions.checkState(order == Order.PRE_ORDER,
+                "skipSubtree() is only supported in pre-order");
+        Preconditions.checkState(depth >= 0, "cursor is not positioned on a block");
+        skipRequested = true;
+    }
+
+    /**
+     * Pushes the next non-null child of the top of the stack and returns it, or returns
+     * null if the top of the stack has no children left.
+     */
+    private SyntaxBlock descendNextChild() {
+        List<SyntaxBlock> subBlocks = blocks[depth].subBlocks;
+        if (subBlocks == null) {
+            return null;
+        }
+        int size = subBlocks.size();
+        for (int i = nextChildren[depth]; i < size; i++) {
+            SyntaxBlock child = subBlocks.get(i);
+            if (child != null) {
+                nextChildren[depth] = i + 1;
+                push(child, i);
+                return child;
+            }
+        }
+        nextChildren[depth] = size;
+        return null;
+    }
+
+    private void push(SyntaxBlock block, int childIndex) {
+        if (depth + 1 == blocks.length) {
+            int capacity = blocks.length * 2;
+            blocks = Arrays.copyOf(blocks, capacity);
+            childIndexes = Arrays.copyOf(childIndexes, capacity);
+            nextChildren = Arrays.copyOf(nextChildren, capacity);
+        }
+        depth++;
+        blocks[depth] = block;
+        childIndexes[depth] = childIndex;
+        nextChildren[depth] = 0;
+    }
+
+    private void pop() {
+        blocks[depth] = null;
+        depth--;
+    }
+}
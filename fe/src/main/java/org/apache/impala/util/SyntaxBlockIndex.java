@@ -0,0 +1,223 @@
+package org.apache.impala.util;
+
+import org.apache.impala.analysis.SyntaxBlock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Immutable offset index over a parsed SyntaxBlock tree, built once per parse.
+ *
+ * Blocks are flattened into arrays sorted by startPosition ascending and endPosition
+ * descending, so that a block always sorts after the blocks that enclose it. Ranges are
+ * half-open: a block covers the offsets startPosition <= offset < endPosition. Blocks
+ * without a valid non-empty range (e.g. positions of -1) are not indexed.
+ *
+ * Lookups:
+ * - innermostAt(): O(log n), binary search over the precomputed innermost block of each
+ *   elementary segment between two consecutive block boundaries.
+ * - enclosingAt() / overlapping(): O(log n + k) for k results, using an implicit interval
+ *   tree over the sorted array augmented with the max endPosition of each subtree.
+ */
+public class SyntaxBlockIndex {
+    private static final SyntaxBlock[] NO_BLOCKS = new SyntaxBlock[0];
+
+    // Indexed blocks sorted by (start asc, end desc), with their positions copied out.
+    private final SyntaxBlock[] blocks;
+    private final int[] starts;
+    private final int[] ends;
+    // maxEnds[mid] is the max end of the subrange [lo, hi) whose midpoint is mid.
+    private final int[] maxEnds;
+
+    // Sorted distinct block boundaries. segmentInnermost[i] is the index into 'blocks' of
+    // the innermost block covering [segmentPoints[i], segmentPoints[i + 1]), or -1.
+    private final int[] segmentPoints;
+    private final int[] segmentInnermost;
+
+    private SyntaxBlockIndex(SyntaxBlock[] blocks) {
+        this.blocks = blocks;
+        int n = blocks.length;
+        starts = new int[n];
+        ends = new int[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = blocks[i].startPosition;
+            ends[i] = blocks[i].endPosition;
+        }
+        maxEnds = new int[n];
+        computeMaxEnds(0, n);
+
+        int[] points = new int[n * 2];
+        for (int i = 0; i < n; i++) {
+            points[2 * i] = starts[i];
+            points[2 * i + 1] = ends[i];
+        }
+        Arrays.sort(points);
+        int numPoints = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (numPoints == 0 || points[numPoints - 1] != points[i]) {
+                points[numPoints++] = points[i];
+            }
+        }
+        segmentPoints = Arrays.copyOf(points, numPoints);
+        segmentInnermost = computeSegmentInnermost();
+    }
+
+    /**
+     * Builds the index over all blocks reachable from 'root'. Blocks that are reachable
+     * through several paths are indexed once.
+     */
+    public static SyntaxBlockIndex build(SyntaxBlock root) {
+        List<SyntaxBlock> indexed = new ArrayList<>();
+        Map<SyntaxBlock, Boolean> seen = new IdentityHashMap<>();
+        SyntaxBlockCursor cursor = new SyntaxBlockCursor(root);
+        while (cursor.next()) {
+            SyntaxBlock block = cursor.current();
+            if (seen.put(block, Boolean.TRUE) != null) {
+                cursor.skipSubtree();
+                continue;
+            }
+            if (block.startPosition >= 0 && block.endPosition > block.startPosition) {
+                indexed.add(block);
+            }
+        }
+        SyntaxBlock[] blocks = indexed.toArray(NO_BLOCKS);
+        // The sort is stable, so blocks with identical ranges keep their pre-order, i.e.
+        // a parent stays before a child with the same range.
+        Arrays.sort(blocks, new Comparator<SyntaxBlock>() {
+            @Override
+            public int compare(SyntaxBlock a, SyntaxBlock b) {
+                if (a.startPosition != b.startPosition) {
+                    return Integer.compare(a.startPosition, b.startPosition);
+                }
+                return Integer.compare(b.endPosition, a.endPosition);
+            }
+        });
+        return new SyntaxBlockIndex(blocks);
+    }
+
+    public int size() {
+        return blocks.length;
+    }
+
+    /**
+     * Returns the innermost block covering 'offset', or null if there is none. When
+     * ranges partially overlap, the covering block that starts last (and among those,
+     * ends first) wins.
+     */
+    public SyntaxBlock innermostAt(int offset) {
+        int segment = floorIndex(segmentPoints, segmentPoints.length, offset);
+        if (segment < 0) {
+            return null;
+        }
+        int block = segmentInnermost[segment];
+        return block < 0 ? null : blocks[block];
+    }
+
+    /**
+     * Returns all blocks covering 'offset', innermost first.
+     */
+    public List<SyntaxBlock> enclosingAt(int offset) {
+        List<SyntaxBlock> result = overlapping(offset, offset + 1);
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Returns all blocks whose range intersects [from, to), ordered by startPosition
+     * (outer blocks before the blocks they enclose).
+     */
+    public List<SyntaxBlock> overlapping(int from, int to) {
+        List<SyntaxBlock> result = new ArrayList<>();
+        if (from < to) {
+            collectOverlapping(0, blocks.length, from, to, result);
+        }
+        return result;
+    }
+
+    private int computeMaxEnds(int lo, int hi) {
+        if (lo >= hi) {
+            return Integer.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        int max = Math.max(ends[mid], Math.max(computeMaxEnds(lo, mid), computeMaxEnds(mid + 1, hi)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    private void collectOverlapping(int lo, int hi, int from, int to, List<SyntaxBlock> result) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (maxEnds[mid] <= from) {
+            return;
+        }
+        collectOverlapping(lo, mid, from, to, result);
+        // Everything from mid on starts at or after starts[mid].
+        if (starts[mid] >= to) {
+            return;
+        }
+        if (ends[mid] > from) {
+            result.add(blocks[mid]);
+        }
+        collectOverlapping(mid + 1, hi, from, to, result);
+    }
+
+    /**
+     * Sweeps the boundaries left to right keeping the set of blocks open at each point.
+     * Because of the sort order, the innermost open block is the one with the largest
+     * index.
+     */
+    private int[] computeSegmentInnermost() {
+        int n = blocks.length;
+        Integer[] byEnd = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            byEnd[i] = i;
+        }
+        Arrays.sort(byEnd, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(ends[a], ends[b]);
+            }
+        });
+
+        int[] innermost = new int[segmentPoints.length];
+        TreeSet<Integer> open = new TreeSet<>();
+        int nextStart = 0;
+        int nextEnd = 0;
+        for (int i = 0; i < segmentPoints.length; i++) {
+            int point = segmentPoints[i];
+            while (nextEnd < n && ends[byEnd[nextEnd]] <= point) {
+                open.remove(byEnd[nextEnd++]);
+            }
+            while (nextStart < n && starts[nextStart] <= point) {
+                open.add(nextStart++);
+            }
+            innermost[i] = open.isEmpty() ? -1 : open.last();
+        }
+        return innermost;
+    }
+
+    /**
+     * Returns the largest i < length with values[i] <= key, or -1.
+     */
+    private static int floorIndex(int[] values, int length, int key) {
+        int lo = 0;
+        int hi = length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi;
+    }
+}
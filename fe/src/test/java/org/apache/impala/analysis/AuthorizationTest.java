@@ -46,13 +46,21 @@ import org.junit.runners.Parameterized.Parameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.impala.authorization.AuthorizationChecker;
 import org.apache.impala.authorization.AuthorizationConfig;
 import org.apache.impala.authorization.AuthorizeableTable;
+import org.apache.impala.authorization.Privilege;
+import org.apache.impala.authorization.PrivilegeRequest;
+import org.apache.impala.authorization.PrivilegeRequestBuilder;
 import org.apache.impala.authorization.User;
 import org.apache.impala.catalog.AuthorizationException;
+import org.apache.impala.catalog.AuthorizationPolicy;
 import org.apache.impala.catalog.Catalog;
+import org.apache.impala.catalog.CatalogException;
 import org.apache.impala.catalog.Db;
 import org.apache.impala.catalog.ImpaladCatalog;
+import org.apache.impala.catalog.Role;
+import org.apache.impala.catalog.RolePrivilege;
 import org.apache.impala.catalog.ScalarFunction;
 import org.apache.impala.catalog.Type;
 import org.apache.impala.common.AnalysisException;
@@ -62,6 +70,9 @@ import org.apache.impala.common.RuntimeEnv;
 import org.apache.impala.service.Frontend;
 import org.apache.impala.testutil.ImpaladTestCatalog;
 import org.apache.impala.testutil.TestUtils;
+import org.apache.impala.thrift.TCatalog;
+import org.apache.impala.thrift.TCatalogObject;
+import org.apache.impala.thrift.TCatalogObjectType;
 import org.apache.impala.thrift.TFunctionBinaryType;
 import org.apache.impala.thrift.TMetadataOpRequest;
 import org.apache.impala.thrift.TMetadataOpcode;
@@ -72,11 +83,14 @@ import org.apache.impala.thrift.TPrivilegeScope;
 import org.apache.impala.thrift.TQueryCtx;
 import org.apache.impala.thrift.TResultSet;
 import org.apache.impala.thrift.TSessionState;
+import org.apache.impala.thrift.TUniqueId;
+import org.apache.impala.thrift.TUpdateCatalogCacheRequest;
 import org.apache.impala.util.PatternMatcher;
 import org.apache.impala.util.SentryPolicyService;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 @RunWith(Parameterized.class)
 public class AuthorizationTest {
@@ -2169,6 +2183,115 @@ public class AuthorizationTest {
         "TBLPROPERTIES ('kudu.master_addresses'='127.0.0.1', 'kudu.table_name'='tbl')");
   }
 
+  @Test
+  public void TestHasAccessToAll() throws ImpalaException {
+    // Uses its own policy, which does not need the Sentry Service.
+    if (ctx_.authzConfig.isFileBasedPolicy()) return;
+    AuthorizationPolicy policy = new AuthorizationPolicy();
+    AuthorizationChecker checker = createCatalogPolicyChecker(policy);
+    PrivilegeRequest idOfSmall = selectColumn("alltypessmall", "id");
+    PrivilegeRequest bigintColOfSmall = selectColumn("alltypessmall", "bigint_col");
+
+    // None of the groups of the user has been granted a role, so the requests are
+    // denied without asking the provider.
+    Assert.assertFalse(checker.hasAccessToAll(USER, Lists.newArrayList(idOfSmall)));
+    Assert.assertTrue(
+        checker.hasAccessToAll(USER, Collections.<PrivilegeRequest>emptyList()));
+    assertEquals(0, checker.getDecisionCacheStats().requestCount());
+
+    Role role = addRole(policy, "select_alltypes");
+    addPrivilege(policy, role, TPrivilegeLevel.SELECT, "alltypes", null);
+    addPrivilege(policy, role, TPrivilegeLevel.SELECT, "alltypessmall", "id");
+
+    // Each column is decided, and cached, on its own.
+    Assert.assertTrue(checker.hasAccessToAll(USER, Lists.newArrayList(
+        selectColumn("alltypes", "id"), selectColumn("alltypes", "int_col"))));
+    assertEquals(2, checker.getDecisionCacheStats().missCount());
+    Assert.assertTrue(checker.hasAccessToAll(USER, Lists.newArrayList(
+        selectColumn("alltypes", "int_col"))));
+    assertEquals(1, checker.getDecisionCacheStats().hitCount());
+
+    // Requests are decided in order, stopping at the first denied one.
+    Assert.assertTrue(checker.hasAccessToAll(USER, Lists.newArrayList(idOfSmall)));
+    long requestCount = checker.getDecisionCacheStats().requestCount();
+    Assert.assertFalse(checker.hasAccessToAll(USER, Lists.newArrayList(
+        bigintColOfSmall, idOfSmall)));
+    assertEquals(requestCount + 1, checker.getDecisionCacheStats().requestCount());
+
+    // ANY on a column is satisfied by a privilege on that column only.
+    Assert.assertTrue(checker.hasAccessToAll(USER, Lists.newArrayList(
+        new PrivilegeRequestBuilder().any()
+            .onColumn("functional", "alltypessmall", "id").toRequest())));
+    Assert.assertFalse(checker.hasAccessToAll(USER, Lists.newArrayList(
+        new PrivilegeRequestBuilder().any()
+            .onColumn("functional", "alltypessmall", "bigint_col").toRequest())));
+  }
+
+  @Test
+  public void TestDecisionCacheInvalidation() throws ImpalaException {
+    // Uses its own policy, which does not need the Sentry Service.
+    if (ctx_.authzConfig.isFileBasedPolicy()) return;
+    AuthorizationPolicy policy = new AuthorizationPolicy();
+    AuthorizationChecker checker = createCatalogPolicyChecker(policy);
+    PrivilegeRequest selectAlltypes = new PrivilegeRequestBuilder()
+        .allOf(Privilege.SELECT).onTable("functional", "alltypes").toRequest();
+    Role role = addRole(policy, "select_alltypes");
+    RolePrivilege privilege =
+        addPrivilege(policy, role, TPrivilegeLevel.SELECT, "alltypes", null);
+
+    // The second decision comes from the cache.
+    Assert.assertTrue(checker.hasAccess(USER, selectAlltypes));
+    Assert.assertTrue(checker.hasAccess(USER, selectAlltypes));
+    assertEquals(1, checker.getDecisionCacheStats().hitCount());
+
+    // Every change to the policy makes the cached decision stale.
+    policy.removePrivilege(privilege);
+    Assert.assertFalse(checker.hasAccess(USER, selectAlltypes));
+    policy.addPrivilege(privilege);
+    Assert.assertTrue(checker.hasAccess(USER, selectAlltypes));
+    policy.removeGrantGroup(role.getName(), USER.getName());
+    Assert.assertFalse(checker.hasAccess(USER, selectAlltypes));
+    policy.addGrantGroup(role.getName(), USER.getName());
+    Assert.assertTrue(checker.hasAccess(USER, selectAlltypes));
+    policy.removeRole(role.getName());
+    Assert.assertFalse(checker.hasAccess(USER, selectAlltypes));
+    assertEquals(1, checker.getDecisionCacheStats().hitCount());
+  }
+
+  @Test
+  public void TestDecisionCacheInvalidationByCatalogUpdate() throws ImpalaException {
+    // Uses its own catalog, which does not need the Sentry Service.
+    if (ctx_.authzConfig.isFileBasedPolicy()) return;
+    ImpaladCatalog catalog = new ImpaladCatalog("127.0.0.1");
+    AuthorizationChecker checker = createCatalogPolicyChecker(catalog.getAuthPolicy());
+    PrivilegeRequest selectAlltypes = new PrivilegeRequestBuilder()
+        .allOf(Privilege.SELECT).onTable("functional", "alltypes").toRequest();
+    Role role = new Role("select_alltypes", Sets.newHashSet(USER.getName()));
+    TPrivilege privilege =
+        createPrivilege(role, TPrivilegeLevel.SELECT, "alltypes", null);
+
+    TCatalogObject roleObject = new TCatalogObject(TCatalogObjectType.ROLE, 1L);
+    roleObject.setRole(role.toThrift());
+    TCatalogObject privilegeObject =
+        new TCatalogObject(TCatalogObjectType.PRIVILEGE, 2L);
+    privilegeObject.setPrivilege(privilege);
+    updateCatalog(catalog, 2L, Lists.newArrayList(roleObject, privilegeObject),
+        Lists.<TCatalogObject>newArrayList());
+    Assert.assertTrue(checker.hasAccess(USER, selectAlltypes));
+    Assert.assertTrue(checker.hasAccess(USER, selectAlltypes));
+    assertEquals(1, checker.getDecisionCacheStats().hitCount());
+
+    // Dropping the privilege in a later update makes the cached decision stale.
+    TCatalogObject droppedPrivilege =
+        new TCatalogObject(TCatalogObjectType.PRIVILEGE, 0L);
+    droppedPrivilege.setPrivilege(privilege);
+    updateCatalog(catalog, 3L, Lists.<TCatalogObject>newArrayList(),
+        Lists.newArrayList(droppedPrivilege));
+    Assert.assertNull(catalog.getAuthPolicy().getPrivilege(
+        role.getId(), privilege.getPrivilege_name()));
+    Assert.assertFalse(checker.hasAccess(USER, selectAlltypes));
+  }
+
   private void TestWithIncorrectConfig(AuthorizationConfig authzConfig, User user)
       throws AnalysisException, InternalException {
     Frontend fe = new Frontend(authzConfig, ctx_.catalog);
@@ -2238,6 +2361,77 @@ public class AuthorizationTest {
     fail("Stmt didn't result in authorization error: " + stmt);
   }
 
+  /**
+   * Returns an AuthorizationChecker that authorizes against 'policy' instead of a
+   * policy file.
+   */
+  private static AuthorizationChecker createCatalogPolicyChecker(
+      AuthorizationPolicy policy) {
+    AuthorizationConfig authzConfig =
+        AuthorizationConfig.createHadoopGroupAuthConfig("server1", null,
+        System.getenv("IMPALA_HOME") + "/fe/src/test/resources/sentry-site.xml");
+    authzConfig.validateConfig();
+    return new AuthorizationChecker(authzConfig, policy);
+  }
+
+  /**
+   * Adds a role that is granted to the group of USER to 'policy'.
+   */
+  private static Role addRole(AuthorizationPolicy policy, String roleName) {
+    Role role = new Role(roleName, Sets.newHashSet(USER.getName()));
+    policy.addRole(role);
+    return role;
+  }
+
+  /**
+   * Grants 'level' on a table of the functional database, or on one of its columns if
+   * 'columnName' is not null, to 'role'.
+   */
+  private static RolePrivilege addPrivilege(AuthorizationPolicy policy, Role role,
+      TPrivilegeLevel level, String tableName, String columnName)
+      throws CatalogException {
+    RolePrivilege rolePrivilege = RolePrivilege.fromThrift(
+        createPrivilege(role, level, tableName, columnName));
+    policy.addPrivilege(rolePrivilege);
+    return rolePrivilege;
+  }
+
+  private static TPrivilege createPrivilege(Role role, TPrivilegeLevel level,
+      String tableName, String columnName) {
+    TPrivilege privilege = new TPrivilege("", level,
+        columnName == null ? TPrivilegeScope.TABLE : TPrivilegeScope.COLUMN, false);
+    privilege.setServer_name("server1");
+    privilege.setDb_name("functional");
+    privilege.setTable_name(tableName);
+    if (columnName != null) privilege.setColumn_name(columnName);
+    privilege.setRole_id(role.getId());
+    privilege.setPrivilege_name(RolePrivilege.buildRolePrivilegeName(privilege));
+    return privilege;
+  }
+
+  /**
+   * Applies a catalog update with the given catalog version, updated and removed
+   * objects to 'catalog', like a statestore heartbeat would.
+   */
+  private static void updateCatalog(ImpaladCatalog catalog, long catalogVersion,
+      List<TCatalogObject> updatedObjects, List<TCatalogObject> removedObjects)
+      throws CatalogException {
+    TUniqueId catalogServiceId = new TUniqueId(1L, 1L);
+    TCatalogObject catalogObject = new TCatalogObject();
+    catalogObject.setType(TCatalogObjectType.CATALOG);
+    catalogObject.setCatalog_version(catalogVersion);
+    catalogObject.setCatalog(new TCatalog(catalogServiceId));
+    List<TCatalogObject> objects = Lists.newArrayList(updatedObjects);
+    objects.add(catalogObject);
+    catalog.updateCatalog(new TUpdateCatalogCacheRequest(true, catalogServiceId,
+        objects, removedObjects));
+  }
+
+  private static PrivilegeRequest selectColumn(String tableName, String columnName) {
+    return new PrivilegeRequestBuilder().allOf(Privilege.SELECT)
+        .onColumn("functional", tableName, columnName).toRequest();
+  }
+
   private static TSessionState createSessionState(String defaultDb, User user) {
     return new TSessionState(null, null,
         defaultDb, user.getName(), new TNetworkAddress("", 0));
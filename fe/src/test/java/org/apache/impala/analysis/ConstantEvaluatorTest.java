@@ -0,0 +1,183 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.impala.catalog.Catalog;
+import org.apache.impala.common.AnalysisException;
+import org.apache.impala.common.FrontendTestBase;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Tests evaluating constant exprs in the FE with ConstantEvaluator.
+ */
+public class ConstantEvaluatorTest extends FrontendTestBase {
+
+  /**
+   * Analyzes 'expr' without rewriting it and asserts that ConstantEvaluator evaluates
+   * it to 'expectedSql', or cannot evaluate it if 'expectedSql' is null.
+   */
+  private void EvaluatesTo(String expr, String expectedSql) throws AnalysisException {
+    SelectStmt stmt = (SelectStmt) ParsesOk("select " + expr);
+    Analyzer analyzer = createAnalyzer(Catalog.DEFAULT_DB);
+    stmt.analyze(analyzer);
+    EvaluatesTo(stmt.getResultExprs().get(0), expectedSql);
+  }
+
+  private void EvaluatesTo(Expr expr, String expectedSql) {
+    assertTrue(expr.toSql(), expr.isConstant());
+    LiteralExpr result = ConstantEvaluator.evaluate(expr);
+    if (expectedSql == null) {
+      assertNull(expr.toSql(), result);
+    } else {
+      assertEquals(expr.toSql(), expectedSql, result == null ? null : result.toSql());
+    }
+  }
+
+  @Test
+  public void TestArithmetic() throws AnalysisException {
+    EvaluatesTo("1 + 1 + 1 + 1 + 1", "5");
+    EvaluatesTo("10 - 5 - 2 - 1 - 8", "-6");
+    EvaluatesTo("3 * 4 % 5", "2");
+    EvaluatesTo("-7 % 3", "-1");
+    EvaluatesTo("7 div 2", "3");
+    EvaluatesTo("5 & 3", "1");
+    EvaluatesTo("5 | 3", "7");
+    EvaluatesTo("5 ^ 3", "6");
+    EvaluatesTo("~5", "-6");
+    EvaluatesTo("1 / 2", "0.5");
+    EvaluatesTo("cast(1.5 as double) * 2", "3");
+    EvaluatesTo("1 + null", "NULL");
+
+    // Evaluations that differ between the FE and the BE are left to the BE.
+    EvaluatesTo("1 / 0", null);
+    EvaluatesTo("7 div 0", null);
+    EvaluatesTo("9223372036854775807 + 1", null);
+    EvaluatesTo("1.5 + 1.5", null);
+  }
+
+  @Test
+  public void TestPredicates() throws AnalysisException {
+    EvaluatesTo("1 < 2", "TRUE");
+    EvaluatesTo("2 <= 1", "FALSE");
+    EvaluatesTo("1.5 > 1", "TRUE");
+    EvaluatesTo("'abc' = 'abc'", "TRUE");
+    EvaluatesTo("'a' > 'b'", "FALSE");
+    EvaluatesTo("true != false", "TRUE");
+    EvaluatesTo("null = 1", "NULL");
+    EvaluatesTo("null is distinct from 1", "TRUE");
+    EvaluatesTo("null is not distinct from null", "TRUE");
+    EvaluatesTo("null is null", "TRUE");
+    EvaluatesTo("1 is null", "FALSE");
+
+    EvaluatesTo("true and null", "NULL");
+    EvaluatesTo("false and null", "FALSE");
+    EvaluatesTo("true or null", "TRUE");
+    EvaluatesTo("false or null", "NULL");
+    EvaluatesTo("not true", "FALSE");
+    EvaluatesTo("not (1 > 2 or 'a' = 'b')", "TRUE");
+  }
+
+  @Test
+  public void TestConditionals() throws AnalysisException {
+    EvaluatesTo("case 2 when 1 then 'a' when 2 then 'b' else 'c' end", "'b'");
+    EvaluatesTo("case 3 when 1 then 'a' when 2 then 'b' else 'c' end", "'c'");
+    EvaluatesTo("case null when 1 then 'a' end", "NULL");
+    EvaluatesTo("case when false then 1 when 1 < 2 then 2 end", "2");
+    EvaluatesTo("case when false then 1 end", "NULL");
+    EvaluatesTo("decode(1, 1, 'one', 'other')", "'one'");
+    EvaluatesTo("decode(null, 1, 'one', null, 'null', 'other')", "'null'");
+    EvaluatesTo("coalesce(null, 2, 3)", "2");
+    EvaluatesTo("coalesce(null, null)", "NULL");
+    EvaluatesTo("if(null, 1, 2)", "2");
+    EvaluatesTo("if(1 < 2, 'x', 'y')", "'x'");
+    EvaluatesTo("isnull(null, 'x')", "'x'");
+    EvaluatesTo("nvl(1, 2)", "1");
+  }
+
+  @Test
+  public void TestCasts() throws AnalysisException {
+    EvaluatesTo("cast('123' as int)", "123");
+    EvaluatesTo("cast('-5' as tinyint)", "-5");
+    EvaluatesTo("cast(5 as string)", "'5'");
+    EvaluatesTo("cast(1 as boolean)", "TRUE");
+    EvaluatesTo("cast(true as int)", "1");
+    EvaluatesTo("cast(3 as double) / 2", "1.5");
+    EvaluatesTo("cast(null as int)", "NULL");
+
+    // Left to the BE.
+    EvaluatesTo("cast(' 123' as int)", null);
+    EvaluatesTo("cast(300 as tinyint)", null);
+    EvaluatesTo("cast(cast(3 as double) as int)", null);
+    EvaluatesTo("cast('2016-11-09' as timestamp)", null);
+  }
+
+  @Test
+  public void TestFunctions() throws AnalysisException {
+    EvaluatesTo("upper('abc')", "'ABC'");
+    EvaluatesTo("lcase('AbC')", "'abc'");
+    EvaluatesTo("length('abc')", "3");
+    EvaluatesTo("length('a\\tb')", "3");
+    EvaluatesTo("concat('a', 'b', 'c')", "'abc'");
+    EvaluatesTo("concat('a', null)", "NULL");
+    EvaluatesTo("substr('hello', 2, 3)", "'ell'");
+    EvaluatesTo("substr('hello', -3)", "'llo'");
+    EvaluatesTo("substr('hello', 0)", "''");
+    EvaluatesTo("substring('hello', 4, 10)", "'lo'");
+    EvaluatesTo("trim('  a  ')", "'a'");
+    EvaluatesTo("ltrim('  a  ')", "'a  '");
+    EvaluatesTo("rtrim('  a  ')", "'  a'");
+    EvaluatesTo("reverse('abc')", "'cba'");
+    EvaluatesTo("upper(concat('a', substr('xbx', 2, 1))) = 'AB'", "TRUE");
+
+    // Left to the BE.
+    EvaluatesTo("hex(unhex('D3'))", null);
+    EvaluatesTo("upper('\u00e9')", null);
+  }
+
+  @Test
+  public void TestTimestampFunctions() throws AnalysisException {
+    Analyzer analyzer = createAnalyzer(Catalog.DEFAULT_DB);
+    TimestampLiteral ts = new TimestampLiteral(new byte[16], "2016-11-09 10:11:12.5");
+    String[][] fnResults = new String[][] {
+        {"year", "2016"}, {"month", "11"}, {"day", "9"}, {"hour", "10"},
+        {"minute", "11"}, {"second", "12"}, {"to_date", "'2016-11-09'"}};
+    for (String[] fnResult: fnResults) {
+      Expr fnCall = new FunctionCallExpr(fnResult[0], Lists.<Expr>newArrayList(ts));
+      fnCall.analyze(analyzer);
+      EvaluatesTo(fnCall, fnResult[1]);
+    }
+  }
+
+  /**
+   * Non-deterministic functions must not be evaluated.
+   */
+  @Test
+  public void TestNonDeterministic() throws AnalysisException {
+    SelectStmt stmt = (SelectStmt) ParsesOk("select rand(), uuid()");
+    stmt.analyze(createAnalyzer(Catalog.DEFAULT_DB));
+    for (Expr expr: stmt.getResultExprs()) {
+      assertNull(ConstantEvaluator.evaluate(expr));
+    }
+  }
+}
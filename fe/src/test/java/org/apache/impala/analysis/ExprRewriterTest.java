@@ -17,10 +17,14 @@
 
 package org.apache.impala.analysis;
 
+import java.util.List;
+import java.util.Set;
+
 import org.apache.impala.authorization.AuthorizationConfig;
 import org.apache.impala.catalog.Catalog;
 import org.apache.impala.common.AnalysisException;
 import org.apache.impala.common.RuntimeEnv;
+import org.apache.impala.rewrite.BetweenToCompoundRule;
 import org.apache.impala.rewrite.ExprRewriteRule;
 import org.apache.impala.rewrite.ExprRewriter;
 import org.apache.impala.testutil.TestUtils;
@@ -28,6 +32,8 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 /**
  * Tests that the ExprRewriter framework covers all clauses as well as nested statements.
@@ -65,6 +71,19 @@ public class ExprRewriterTest extends AnalyzerTest {
     private TrueToFalseRule() {}
   }
 
+  /**
+   * Counts its applications and never changes an Expr.
+   */
+  static class CountingRule implements ExprRewriteRule {
+    private int numApplications_ = 0;
+
+    @Override
+    public Expr apply(Expr expr, Analyzer analyzer) throws AnalysisException {
+      ++numApplications_;
+      return expr;
+    }
+  }
+
   private final ExprRewriter exprToTrue_ = new ExprRewriter(ExprToBoolRule.INSTANCE);
   private final ExprRewriter trueToFalse_ = new ExprRewriter(TrueToFalseRule.INSTANCE);
 
@@ -172,4 +191,51 @@ public class ExprRewriterTest extends AnalyzerTest {
       RewritesOk("delete functional_kudu.testtbl where exists (" + stmt_ + ")", 24, 12);
     }
   }
+
+  private static void collectDistinctExprs(Expr expr, Set<Expr> exprs) {
+    if (!exprs.add(expr)) return;
+    for (Expr child: expr.getChildren()) collectDistinctExprs(child, exprs);
+  }
+
+  /**
+   * Checks that rules are not reapplied to subtrees that are known to be fixpoints, and
+   * the per-rule statistics.
+   */
+  @Test
+  public void TestIncrementalRewrite() throws AnalysisException {
+    SelectStmt stmt = (SelectStmt) ParsesOk("select * from functional.alltypes " +
+        "where int_col between 1 and 2 and (id = 1 or id = 2) and bool_col");
+    stmt.analyze(createAnalyzer(Catalog.DEFAULT_DB));
+    CountingRule countingRule = new CountingRule();
+    ExprRewriter rewriter = new ExprRewriter(Lists.<ExprRewriteRule>newArrayList(
+        BetweenToCompoundRule.INSTANCE, countingRule));
+    Expr whereClause = rewriter.rewrite(stmt.getWhereClause(), stmt.getAnalyzer());
+    Assert.assertFalse(whereClause.contains(BetweenPredicate.class));
+    Assert.assertEquals(1, rewriter.getNumChanges());
+
+    // The rule list is applied twice because the first round made a change, but the
+    // second round finds the whole tree at a fixpoint of both rules. The rewritten
+    // BETWEEN shares 'int_col' between its two comparisons, which is visited once.
+    Set<Expr> distinctExprs = Sets.newIdentityHashSet();
+    collectDistinctExprs(whereClause, distinctExprs);
+    Assert.assertEquals(distinctExprs.size(), countingRule.numApplications_);
+
+    List<ExprRewriter.RuleStats> stats = rewriter.getRuleStats();
+    Assert.assertEquals(2, stats.size());
+    Assert.assertSame(BetweenToCompoundRule.INSTANCE, stats.get(0).getRule());
+    Assert.assertEquals(1, stats.get(0).getNumChanges());
+    Assert.assertEquals(0, stats.get(1).getNumChanges());
+    Assert.assertEquals(countingRule.numApplications_, stats.get(1).getNumApplications());
+    // Rules are not timed unless enabled.
+    Assert.assertEquals(0, stats.get(0).getTimeNs());
+    Assert.assertEquals(0, stats.get(1).getTimeNs());
+
+    // A new rewrite() does not reuse the fixpoints of the previous one.
+    rewriter.reset();
+    rewriter.rewrite(whereClause, stmt.getAnalyzer());
+    Assert.assertEquals(0, rewriter.getNumChanges());
+    Assert.assertEquals(2 * distinctExprs.size(), countingRule.numApplications_);
+    Assert.assertEquals(distinctExprs.size(),
+        rewriter.getRuleStats().get(0).getNumApplications());
+  }
 }
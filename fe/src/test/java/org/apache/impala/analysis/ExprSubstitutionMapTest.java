@@ -0,0 +1,203 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.impala.common.FrontendTestBase;
+import org.junit.Test;
+
+/**
+ * Tests for Expr.structuralHash() and the hash index of ExprSubstitutionMap.
+ */
+public class ExprSubstitutionMapTest extends FrontendTestBase {
+
+  /**
+   * Returns an analyzed query over functional.alltypes with 'numItems' distinct select
+   * items of the form 'int_col + i', for i from 1.
+   */
+  private SelectStmt wideSelect(int numItems) {
+    StringBuilder stmt = new StringBuilder("select ");
+    for (int i = 1; i <= numItems; ++i) {
+      if (i > 1) stmt.append(", ");
+      stmt.append("int_col + ").append(i);
+    }
+    stmt.append(" from functional.alltypes");
+    return (SelectStmt) AnalyzesOk(stmt.toString());
+  }
+
+  private List<Expr> wideSelectList(int numItems) {
+    return wideSelect(numItems).getResultExprs();
+  }
+
+  @Test
+  public void TestStructuralHash() {
+    SelectStmt stmt = (SelectStmt) AnalyzesOk("select int_col, bigint_col + int_col, " +
+        "count(*), upper(string_col) like 'A%', tinyint_col is null " +
+        "from functional.alltypes group by 1, 2, 4, 5");
+    for (Expr expr: stmt.getResultExprs()) {
+      assertTrue(expr.isStructurallyHashable());
+      Expr clone = expr.clone();
+      assertTrue(expr.equals(clone));
+      assertEquals(expr.structuralHash(), clone.structuralHash());
+    }
+
+    // The implicit cast of int_col to BIGINT hashes like int_col itself.
+    SelectStmt sum = (SelectStmt) AnalyzesOk(
+        "select bigint_col + int_col, int_col from functional.alltypes");
+    Expr add = sum.getResultExprs().get(0);
+    Expr intCol = sum.getResultExprs().get(1);
+    assertTrue(add.getChild(1).isImplicitCast());
+    assertTrue(add.getChild(1).equals(intCol));
+    assertEquals(intCol.structuralHash(), add.getChild(1).structuralHash());
+
+    // Unresolved SlotRefs are only compared by label.
+    SlotRef unresolved = new SlotRef("int_col");
+    assertFalse(unresolved.isStructurallyHashable());
+    assertTrue(unresolved.equals(intCol));
+
+    // The memoized hashes agree with structuralHash() and isStructurallyHashable(),
+    // also for subtrees that were hashed as part of their parent.
+    Map<Expr, Integer> hashes = new IdentityHashMap<Expr, Integer>();
+    assertEquals(Integer.valueOf(add.structuralHash()), add.structuralHash(hashes));
+    assertTrue(hashes.containsKey(add.getChild(1)));
+    assertEquals(Integer.valueOf(intCol.structuralHash()),
+        add.getChild(1).structuralHash(hashes));
+    Expr unresolvedAdd = new ArithmeticExpr(ArithmeticExpr.Operator.ADD,
+        unresolved, new NumericLiteral(1));
+    assertNull(unresolvedAdd.structuralHash(hashes));
+  }
+
+  @Test
+  public void TestIndexedLookup() {
+    List<Expr> items = wideSelectList(200);
+    List<Expr> others = wideSelectList(400).subList(200, 400);
+    ExprSubstitutionMap smap = new ExprSubstitutionMap();
+    for (Expr item: items) smap.put(item.clone(), item);
+
+    for (Expr item: items) {
+      assertSame(item, smap.get(item.clone()));
+      assertTrue(smap.containsMappingFor(item));
+    }
+    for (Expr other: others) {
+      assertNull(smap.get(other));
+      assertFalse(smap.containsMappingFor(other));
+    }
+
+    // Entries appended after the index was built are found as well.
+    for (Expr other: others) smap.put(other.clone(), other);
+    for (Expr other: others) assertSame(other, smap.get(other));
+
+    // A lookup with an unresolved SlotRef falls back to comparing all entries.
+    SlotRef intCol = (SlotRef) items.get(0).getChild(0).ignoreImplicitCast();
+    smap.put(intCol.clone(), intCol);
+    assertSame(intCol, smap.get(new SlotRef("int_col")));
+
+    // Unresolved lhs exprs are not indexed but still match.
+    ExprSubstitutionMap byLabel = new ExprSubstitutionMap();
+    for (Expr item: items) byLabel.put(item.clone(), item);
+    byLabel.put(new SlotRef("int_col"), intCol);
+    assertSame(intCol, byLabel.get(intCol));
+
+    smap.clear();
+    assertEquals(0, smap.size());
+    for (Expr item: items) assertNull(smap.get(item));
+    for (Expr other: others) smap.put(other.clone(), other);
+    for (Expr item: items) assertNull(smap.get(item));
+    for (Expr other: others) assertSame(other, smap.get(other));
+  }
+
+  /**
+   * Numeric literals kept as a long are found under lhs literals kept as a BigDecimal of
+   * the same value and scale, also through the hash index.
+   */
+  @Test
+  public void TestNumericLiteralLhs() {
+    for (int numOthers: new int[] {0, 100}) {
+      ExprSubstitutionMap smap = new ExprSubstitutionMap();
+      for (Expr other: wideSelectList(numOthers)) smap.put(other.clone(), other);
+      NumericLiteral lhs = new NumericLiteral(new BigDecimal(7));
+      smap.put(lhs, lhs);
+      assertSame(lhs, smap.get(new NumericLiteral(7L)));
+      assertNull(smap.get(new NumericLiteral(new BigDecimal("7.0"))));
+    }
+  }
+
+  @Test
+  public void TestCompose() {
+    SelectStmt stmt = wideSelect(100);
+    List<Expr> items = stmt.getResultExprs();
+    ExprSubstitutionMap f = new ExprSubstitutionMap();
+    ExprSubstitutionMap g = new ExprSubstitutionMap();
+    for (int i = 0; i < items.size(); ++i) {
+      f.put(items.get(i).clone(), items.get(i));
+      if (i % 2 == 0) g.put(items.get(i).clone(), items.get(items.size() - 1 - i));
+    }
+    ExprSubstitutionMap composed = ExprSubstitutionMap.compose(f, g, stmt.getAnalyzer());
+    // All of g's lhs exprs are already in f, so they are not added again.
+    assertEquals(items.size(), composed.size());
+    for (Expr item: items) assertTrue(composed.containsMappingFor(item));
+  }
+
+  /**
+   * Lookups compare the probe expr against the lhs exprs, as List.contains() does. An
+   * implicit cast on the lhs equals its bare child, but not the other way around.
+   */
+  @Test
+  public void TestImplicitCastLhs() {
+    SelectStmt stmt = (SelectStmt) AnalyzesOk(
+        "select bigint_col + int_col, int_col from functional.alltypes");
+    Expr cast = stmt.getResultExprs().get(0).getChild(1);
+    Expr intCol = stmt.getResultExprs().get(1);
+    assertTrue(cast.isImplicitCast());
+
+    // Small maps are scanned, large ones use the hash index.
+    for (int numOthers: new int[] {0, 100}) {
+      ExprSubstitutionMap smap = new ExprSubstitutionMap();
+      for (Expr other: wideSelectList(numOthers)) smap.put(other.clone(), other);
+      smap.put(cast, cast);
+      assertFalse(smap.containsMappingFor(intCol));
+      assertNull(smap.get(intCol));
+      assertTrue(smap.containsMappingFor(cast));
+
+      ExprSubstitutionMap bareLhs = new ExprSubstitutionMap();
+      for (Expr other: wideSelectList(numOthers)) bareLhs.put(other.clone(), other);
+      bareLhs.put(intCol, intCol);
+      assertSame(intCol, bareLhs.get(cast));
+      assertTrue(bareLhs.containsMappingFor(cast));
+    }
+
+    // compose() keeps g's mapping for int_col although f maps an implicit cast of it.
+    ExprSubstitutionMap f = new ExprSubstitutionMap();
+    f.put(cast, cast);
+    ExprSubstitutionMap g = new ExprSubstitutionMap();
+    g.put(intCol, intCol);
+    ExprSubstitutionMap composed = ExprSubstitutionMap.compose(f, g, stmt.getAnalyzer());
+    assertEquals(2, composed.size());
+    assertEquals(intCol, composed.get(intCol));
+  }
+}
@@ -0,0 +1,126 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.impala.authorization.AuthorizationConfig;
+import org.apache.impala.catalog.Catalog;
+import org.apache.impala.common.AnalysisException;
+import org.apache.impala.common.FrontendTestBase;
+import org.apache.impala.testutil.TestUtils;
+import org.apache.impala.thrift.TGetParseCacheMetricsResult;
+import org.junit.Test;
+
+/**
+ * Tests for ParseCache and its use in AnalysisContext.
+ */
+public class ParseCacheTest extends FrontendTestBase {
+
+  private StatementBase analyze(String stmt, ParseCache cache) throws Exception {
+    AnalysisContext analysisCtx = new AnalysisContext(catalog_,
+        TestUtils.createQueryContext(Catalog.DEFAULT_DB, System.getProperty("user.name")),
+        AuthorizationConfig.createAuthDisabledConfig());
+    analysisCtx.setParseCache(cache);
+    analysisCtx.analyze(stmt, createAnalyzer(Catalog.DEFAULT_DB));
+    return analysisCtx.getAnalysisResult().getStmt();
+  }
+
+  @Test
+  public void TestCachedAnalysis() throws Exception {
+    ParseCache cache = new ParseCache(1L << 20);
+    String[] stmts = new String[] {
+        "select id, count(*) from functional.alltypes where int_col in (1, 2, 3) " +
+            "group by id",
+        "select * from functional.alltypes a where exists " +
+            "(select 1 from functional.alltypestiny b where a.id = b.id)",
+        "with v as (select 1 x) select x from v union all select 2",
+        "explain values(1, 'a')"
+    };
+    for (String stmt: stmts) {
+      StatementBase first = analyze(stmt, cache);
+      StatementBase second = analyze(stmt, cache);
+      assertNotSame(first, second);
+      assertEquals(first.toSql(), second.toSql());
+      assertEquals(first.isExplain(), second.isExplain());
+    }
+    assertEquals(stmts.length, cache.getMissCount());
+    assertEquals(stmts.length, cache.getHitCount());
+    assertEquals(stmts.length, cache.size());
+
+    // Copies returned by the cache are unanalyzed and independent of each other.
+    StatementBase copy1 = cache.get(stmts[0]);
+    StatementBase copy2 = cache.get(stmts[0]);
+    assertNotSame(copy1, copy2);
+    assertFalse(copy1.isAnalyzed());
+    assertFalse(copy2.isAnalyzed());
+  }
+
+  @Test
+  public void TestNotCached() throws Exception {
+    ParseCache cache = new ParseCache(1L << 20);
+    // Only query stmts are cached.
+    analyze("create table functional.new_tbl (i int)", cache);
+    analyze("show tables in functional", cache);
+    assertEquals(0, cache.size());
+    assertNull(cache.get("create table functional.new_tbl (i int)"));
+    // Parse errors are not cached.
+    try {
+      analyze("select from where", cache);
+      fail("Expected a parse error");
+    } catch (AnalysisException e) {
+      // Expected.
+    }
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void TestEviction() throws Exception {
+    String stmt = "select id from functional.alltypes where id = ";
+    long entryBytes = ParseCache.estimateBytes(stmt + "100");
+    ParseCache cache = new ParseCache(entryBytes * 10);
+    for (int i = 100; i < 200; ++i) analyze(stmt + i, cache);
+    assertTrue(cache.size() <= 10);
+    assertTrue(cache.getEvictionCount() >= 90);
+    // The most recently added stmt is still cached.
+    analyze(stmt + 199, cache);
+    assertEquals(1, cache.getHitCount());
+  }
+
+  /**
+   * The Frontend reports the counts of its parse cache as metrics.
+   */
+  @Test
+  public void TestFrontendMetrics() throws Exception {
+    ParseCache cache = frontend_.getParseCache();
+    TGetParseCacheMetricsResult before = frontend_.getParseCacheMetrics();
+    String stmt = "select id from functional.alltypes where id = 12345";
+    analyze(stmt, cache);
+    analyze(stmt, cache);
+    TGetParseCacheMetricsResult after = frontend_.getParseCacheMetrics();
+    assertEquals(before.getHit_count() + 1, after.getHit_count());
+    assertEquals(before.getMiss_count() + 1, after.getMiss_count());
+    assertEquals(cache.size(), after.getNum_entries());
+    assertEquals(cache.getEvictionCount(), after.getEviction_count());
+  }
+}
@@ -18,13 +18,20 @@
 package org.apache.impala.analysis;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.StringReader;
+import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+
+import java_cup.runtime.ExtendSymbol;
+import java_cup.runtime.Symbol;
 
 import org.apache.hadoop.hive.metastore.MetaStoreUtils;
 import org.apache.impala.analysis.TimestampArithmeticExpr.TimeUnit;
@@ -3436,4 +3443,103 @@ public class ParserTest extends FrontendTestBase {
     ParsesOk("DESCRIBE functional.alltypes;");
     ParsesOk("SET num_nodes=1;");
   }
+
+  /**
+   * Checks that scanning in lazy token text mode yields the same tokens, offsets and
+   * token text as the default mode, which copies yytext() for every token.
+   */
+  @Test
+  public void TestLazyTokenText() throws Exception {
+    String[] stmts = new String[] {
+        "select a, b.c, 'str', \"dq\", 1.5e3, 10 from db.tbl where x <= 5",
+        "  select `quoted ident`, count(*) -- comment\n from t /* block */ limit 1;",
+        "select /* +straight_join */ a && b || c from t1 join [shuffle] t2",
+        "select 1 ... $ '"
+    };
+    for (String stmt: stmts) {
+      SqlScanner eager = new SqlScanner(new StringReader(stmt));
+      SqlScanner lazy = new SqlScanner(new StringReader(stmt));
+      lazy.setLazyTextSource(stmt);
+      while (true) {
+        ExtendSymbol expected = (ExtendSymbol) eager.next_token();
+        ExtendSymbol actual = (ExtendSymbol) lazy.next_token();
+        assertEquals(stmt, expected.sym, actual.sym);
+        assertEquals(stmt, expected.start, actual.start);
+        assertEquals(stmt, expected.end, actual.end);
+        assertEquals(stmt, expected.value, actual.value);
+        assertEquals(stmt, expected.getText(), actual.getText());
+        if (expected.sym == SqlParserSymbols.EOF) break;
+      }
+    }
+  }
+
+  /**
+   * Checks that keywords are recognized case-insensitively in the scan buffer and that
+   * identifiers which only resemble keywords are not.
+   */
+  @Test
+  public void TestKeywordRecognition() throws Exception {
+    for (Map.Entry<String, Integer> entry: SqlScanner.keywordMap.entrySet()) {
+      String keyword = entry.getKey();
+      int tokenId = entry.getValue();
+      assertTrue(keyword, SqlScanner.isKeyword(tokenId));
+      assertTrue(keyword, SqlScanner.isKeyword(keyword.toUpperCase()));
+      // Scan the keyword in different cases, surrounded by other tokens.
+      for (String text: new String[] {keyword, keyword.toUpperCase(),
+          Character.toUpperCase(keyword.charAt(0)) + keyword.substring(1)}) {
+        for (boolean lazy: new boolean[] {false, true}) {
+          String sql = "(" + text + ")";
+          SqlScanner scanner = new SqlScanner(new StringReader(sql));
+          if (lazy) scanner.setLazyTextSource(sql);
+          assertEquals(SqlParserSymbols.LPAREN, scanner.next_token().sym);
+          ExtendSymbol token = (ExtendSymbol) scanner.next_token();
+          assertEquals(text, tokenId, token.sym);
+          // Keywords carry no value, only their text as written.
+          assertNull(text, token.value);
+          assertEquals(text, token.getText());
+        }
+      }
+    }
+    // The Kelvin sign lower-cases to 'k', but keywords only match ASCII letters.
+    for (String ident: new String[] {"selec", "selects", "_select", "a1", "ands",
+        "\u212Audu"}) {
+      assertFalse(ident, SqlScanner.isKeyword(ident));
+      SqlScanner scanner = new SqlScanner(new StringReader(ident));
+      assertEquals(ident, SqlParserSymbols.IDENT, scanner.next_token().sym);
+    }
+    assertFalse(SqlScanner.isKeyword(SqlParserSymbols.IDENT));
+    assertFalse(SqlScanner.isKeyword(SqlParserSymbols.INTEGER_LITERAL));
+  }
+
+  /**
+   * Checks that integer and decimal literals scanned without going through a String give
+   * the same values and types as literals built from a BigDecimal of the token text.
+   */
+  @Test
+  public void TestNumericLiteralScanning() throws Exception {
+    String[] literals = new String[] {"0", "007", "127", "128", "32768", "2147483648",
+        "999999999999999999", "9223372036854775807", "9223372036854775808",
+        "123456789012345678901234567890", "1.", "1.50", ".5", "0.000", "3.14159",
+        "123456789.123456789", "1234567890.123456789", "1e5", "1.5E-3"};
+    for (String literal: literals) {
+      SqlScanner scanner = new SqlScanner(new StringReader(literal));
+      Symbol token = scanner.next_token();
+      assertTrue(literal, token.sym == SqlParserSymbols.INTEGER_LITERAL ||
+          token.sym == SqlParserSymbols.DECIMAL_LITERAL);
+      NumericLiteral actual = NumericLiteral.create((Number) token.value);
+      NumericLiteral expected = new NumericLiteral(new BigDecimal(literal));
+      assertEquals(literal, expected, actual);
+      assertEquals(literal, expected.hashCode(), actual.hashCode());
+      assertEquals(literal, 0, expected.compareTo(actual));
+      assertEquals(literal, expected.getStringValue(), actual.getStringValue());
+      actual.analyze(null);
+      expected.analyze(null);
+      assertEquals(literal, expected.getType(), actual.getType());
+      assertEquals(literal, expected.getValue(), actual.getValue());
+    }
+    // Like their BigDecimals, literals with the same value and a different scale are
+    // not equal.
+    assertFalse(NumericLiteral.create(1L).equals(
+        new NumericLiteral(new BigDecimal("1.0"))));
+  }
 }
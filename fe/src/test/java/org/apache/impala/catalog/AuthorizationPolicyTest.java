@@ -0,0 +1,184 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.sentry.core.common.ActiveRoleSet;
+import org.junit.Test;
+
+import org.apache.impala.thrift.TPrivilege;
+import org.apache.impala.thrift.TPrivilegeLevel;
+import org.apache.impala.thrift.TPrivilegeScope;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+public class AuthorizationPolicyTest {
+  private static final String GROUP = "test_group";
+  private static final Set<String> GROUPS = ImmutableSet.of(GROUP);
+
+  /**
+   * Returns a privilege of 'role' to SELECT from the given table of the functional
+   * database.
+   */
+  private static RolePrivilege createPrivilege(Role role, String tableName) {
+    TPrivilege privilege = new TPrivilege("", TPrivilegeLevel.SELECT,
+        TPrivilegeScope.TABLE, false);
+    privilege.setServer_name("server1");
+    privilege.setDb_name("functional");
+    privilege.setTable_name(tableName);
+    privilege.setRole_id(role.getId());
+    privilege.setPrivilege_name(RolePrivilege.buildRolePrivilegeName(privilege));
+    return RolePrivilege.fromThrift(privilege);
+  }
+
+  private static Set<String> listPrivileges(AuthorizationPolicy policy) {
+    return policy.listPrivileges(GROUPS, ActiveRoleSet.ALL);
+  }
+
+  @Test
+  public void TestListPrivileges() throws CatalogException {
+    AuthorizationPolicy policy = new AuthorizationPolicy();
+    Role role = new Role("test_role", GROUPS);
+    policy.addRole(role);
+    assertTrue(listPrivileges(policy).isEmpty());
+
+    RolePrivilege alltypes = createPrivilege(role, "alltypes");
+    RolePrivilege alltypesagg = createPrivilege(role, "alltypesagg");
+    policy.addPrivilege(alltypes);
+    policy.addPrivilege(alltypesagg);
+    assertEquals(ImmutableSet.of(alltypes.getName(), alltypesagg.getName()),
+        listPrivileges(policy));
+    assertTrue(policy.listPrivileges(
+        ImmutableSet.of("other_group"), ActiveRoleSet.ALL).isEmpty());
+
+    long version = policy.getVersion();
+    assertSame(alltypes, policy.removePrivilege(alltypes));
+    assertTrue(policy.getVersion() > version);
+    assertEquals(ImmutableSet.of(alltypesagg.getName()), listPrivileges(policy));
+
+    policy.removeGrantGroup(role.getName(), GROUP);
+    assertTrue(listPrivileges(policy).isEmpty());
+    policy.addGrantGroup(role.getName(), GROUP);
+    assertEquals(ImmutableSet.of(alltypesagg.getName()), listPrivileges(policy));
+    policy.removeRole(role.getName());
+    assertTrue(listPrivileges(policy).isEmpty());
+  }
+
+  /**
+   * The changes made between beginUpdate() and endUpdate() are published at once.
+   */
+  @Test
+  public void TestBatchedUpdates() throws CatalogException {
+    AuthorizationPolicy policy = new AuthorizationPolicy();
+    Role existing = new Role("existing", GROUPS);
+    policy.addRole(existing);
+    RolePrivilege alltypes = createPrivilege(existing, "alltypes");
+    policy.addPrivilege(alltypes);
+    long version = policy.getVersion();
+
+    policy.beginUpdate();
+    Role added = new Role("added", GROUPS);
+    policy.addRole(added);
+    RolePrivilege alltypesagg = createPrivilege(added, "alltypesagg");
+    policy.addPrivilege(alltypesagg);
+    policy.removeRole(existing.getName());
+
+    // Authorization checks see the policy as of before the batch.
+    assertEquals(version, policy.getVersion());
+    assertEquals(Lists.newArrayList(existing), policy.getGrantedRoles(GROUP));
+    assertEquals(ImmutableSet.of(alltypes.getName()), listPrivileges(policy));
+    // Lookups of single roles, which are used to apply updates, see the changes.
+    assertSame(added, policy.getRole(added.getName()));
+    assertSame(added, policy.getRole(added.getId()));
+    assertNull(policy.getRole(existing.getName()));
+
+    policy.endUpdate();
+    assertEquals(version + 1, policy.getVersion());
+    assertEquals(Lists.newArrayList(added), policy.getGrantedRoles(GROUP));
+    assertEquals(ImmutableSet.of(alltypesagg.getName()), listPrivileges(policy));
+  }
+
+  /**
+   * Privilege changes to an existing role during a batch are not visible to readers,
+   * even to those that read the privileges of a group for the first time.
+   */
+  @Test
+  public void TestBatchedPrivilegeChanges() throws CatalogException {
+    AuthorizationPolicy policy = new AuthorizationPolicy();
+    Role role = new Role("test_role", GROUPS);
+    policy.addRole(role);
+    RolePrivilege alltypes = createPrivilege(role, "alltypes");
+    RolePrivilege alltypesagg = createPrivilege(role, "alltypesagg");
+    policy.addPrivilege(alltypes);
+
+    policy.beginUpdate();
+    policy.addPrivilege(alltypesagg);
+    policy.removePrivilege(alltypes);
+    assertEquals(ImmutableSet.of(alltypes.getName()), listPrivileges(policy));
+    policy.endUpdate();
+    assertEquals(ImmutableSet.of(alltypesagg.getName()), listPrivileges(policy));
+  }
+
+  /**
+   * Readers never see a batch that replaces the role granted to a group half done.
+   */
+  @Test
+  public void TestConsistentSnapshots() throws Exception {
+    final AuthorizationPolicy policy = new AuthorizationPolicy();
+    policy.addRole(new Role("role_0", GROUPS));
+    final AtomicBoolean done = new AtomicBoolean(false);
+    final AtomicReference<String> error = new AtomicReference<String>();
+    Thread reader = new Thread() {
+      @Override
+      public void run() {
+        while (!done.get()) {
+          List<Role> grantedRoles = policy.getGrantedRoles(GROUP);
+          if (grantedRoles.size() != 1) {
+            error.compareAndSet(null, "Granted roles: " + grantedRoles.size());
+          }
+        }
+      }
+    };
+    reader.start();
+    try {
+      for (int i = 1; i <= 1000; ++i) {
+        policy.beginUpdate();
+        try {
+          policy.removeRole("role_" + (i - 1));
+          policy.addRole(new Role("role_" + i, GROUPS));
+        } finally {
+          policy.endUpdate();
+        }
+      }
+    } finally {
+      done.set(true);
+      reader.join();
+    }
+    assertNull(error.get());
+    assertEquals("role_1000", policy.getGrantedRoles(GROUP).get(0).getName());
+  }
+}
@@ -19,20 +19,25 @@ package org.apache.impala.catalog;
 
 import static org.apache.impala.thrift.ImpalaInternalServiceConstants.DEFAULT_PARTITION_ID;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.hadoop.hive.metastore.TableType;
 import org.apache.hadoop.hive.metastore.api.ColumnStatisticsData;
+import org.apache.sentry.core.common.ActiveRoleSet;
 import org.junit.Test;
 
 import org.apache.impala.analysis.FunctionName;
@@ -42,6 +47,10 @@ import org.apache.impala.analysis.NumericLiteral;
 import org.apache.impala.catalog.MetaStoreClientPool.MetaStoreClient;
 import org.apache.impala.testutil.CatalogServiceTestCatalog;
 import org.apache.impala.thrift.TFunctionBinaryType;
+import org.apache.impala.thrift.TFunctionCategory;
+import org.apache.impala.thrift.TPrivilege;
+import org.apache.impala.thrift.TPrivilegeLevel;
+import org.apache.impala.thrift.TPrivilegeScope;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -642,4 +651,173 @@ public class CatalogTest {
     fnNames = getFunctionSignatures("default");
     assertEquals(fnNames.size(), 0);
   }
+
+  /**
+   * Returns the overload that Db.getFunction() resolves 'desc' to, by comparing against
+   * all overloads in resolution order in each compare mode up to 'mode'.
+   */
+  private Function resolveLinearly(List<Function> fns, Function desc,
+      Function.CompareMode mode) {
+    for (Function.CompareMode m: Function.CompareMode.values()) {
+      for (Function f: fns) {
+        if (f.compare(desc, m)) return f;
+      }
+      if (m == mode) return null;
+    }
+    return null;
+  }
+
+  /**
+   * Checks that resolving builtins through their FunctionOverloads index finds the same
+   * overloads as comparing against all of them.
+   */
+  @Test
+  public void TestFunctionOverloadResolution() {
+    Type[] argTypes = new Type[] {Type.NULL, Type.BOOLEAN, Type.TINYINT, Type.INT,
+        Type.BIGINT, Type.FLOAT, Type.DOUBLE, Type.STRING, Type.TIMESTAMP,
+        ScalarType.createDecimalType(10, 2), ScalarType.createCharType(5),
+        ScalarType.createVarcharType(5)};
+    Db db = catalog_.getBuiltinsDb();
+    for (Map.Entry<String, List<Function>> entry: db.getAllFunctions().entrySet()) {
+      List<Function> fns = entry.getValue();
+      FunctionOverloads overloads = new FunctionOverloads(fns);
+      FunctionName fnName = new FunctionName(Catalog.BUILTINS_DB, entry.getKey());
+      List<Function> descs = Lists.newArrayList();
+      for (Function fn: fns) {
+        Type[] args = fn.getArgs();
+        descs.add(new Function(fnName, args, Type.INVALID, fn.hasVarArgs()));
+        descs.add(new Function(fnName, args, Type.INVALID, false));
+        // Try every argument type in every position, and an additional argument.
+        for (int i = 0; i <= args.length; ++i) {
+          for (Type argType: argTypes) {
+            Type[] descArgs = Arrays.copyOf(args, Math.max(args.length, i + 1));
+            descArgs[i] = argType;
+            descs.add(new Function(fnName, descArgs, Type.INVALID, false));
+          }
+        }
+      }
+      for (Function fn: fns) {
+        Function firstWithSignature = null;
+        for (Function f: fns) {
+          if (f.signatureString().equals(fn.signatureString())) {
+            firstWithSignature = f;
+            break;
+          }
+        }
+        assertSame(fn.signatureString(), firstWithSignature,
+            overloads.getFunction(fn.signatureString()));
+      }
+      for (Function desc: descs) {
+        for (Function.CompareMode mode: Function.CompareMode.values()) {
+          assertSame(desc.signatureString() + " " + mode,
+              resolveLinearly(fns, desc, mode), overloads.getFunction(desc, mode));
+        }
+      }
+    }
+  }
+
+  /**
+   * All BuiltinsDbs share the same builtins, but are still independent databases.
+   */
+  @Test
+  public void TestSharedBuiltins() {
+    Db first = catalog_.getBuiltinsDb();
+    Db second = new BuiltinsDb(Catalog.BUILTINS_DB, catalog_);
+    assertEquals(first.numFunctions(), second.numFunctions());
+    for (Map.Entry<String, List<Function>> entry: first.getAllFunctions().entrySet()) {
+      assertEquals(entry.getValue(), second.getAllFunctions().get(entry.getKey()));
+      for (Function fn: entry.getValue()) {
+        assertSame(fn, second.getFunction(fn, Function.CompareMode.IS_IDENTICAL));
+      }
+    }
+
+    ScalarFunction fn = ScalarFunction.createBuiltin("shared_builtins_test",
+        Lists.<Type>newArrayList(Type.INT), false, Type.INT, "Foo", null, null, true);
+    second.addBuiltin(fn);
+    assertSame(fn, second.getFunction(fn, Function.CompareMode.IS_IDENTICAL));
+    assertNull(first.getFunction(fn, Function.CompareMode.IS_IDENTICAL));
+    assertNull(new BuiltinsDb(Catalog.BUILTINS_DB, catalog_).getFunction(
+        fn, Function.CompareMode.IS_IDENTICAL));
+  }
+
+  /**
+   * Builtins are added to a BuiltinsDb on the first use of their name, and are visible
+   * through every kind of lookup before that.
+   */
+  @Test
+  public void TestLazyBuiltins() {
+    Db db = new BuiltinsDb(Catalog.BUILTINS_DB, catalog_);
+    int numFunctions = db.numFunctions();
+    assertTrue(numFunctions > 0);
+    assertTrue(db.containsFunction("count"));
+    assertFalse(db.containsFunction("lazy_builtins_test"));
+    assertFalse(db.getFunctions("count").isEmpty());
+    assertFalse(db.getFunctions(TFunctionCategory.AGGREGATE, "sum").isEmpty());
+    Function concat = catalog_.getBuiltinsDb().getFunctions("concat").get(0);
+    assertSame(concat, db.getFunction(concat.signatureString()));
+    assertSame(concat, db.getFunction(concat, Function.CompareMode.IS_IDENTICAL));
+    // A builtin cannot be added again before its name has been used.
+    Function upper = catalog_.getBuiltinsDb().getFunctions("upper").get(0);
+    Db other = new BuiltinsDb(Catalog.BUILTINS_DB, catalog_);
+    assertFalse(other.addFunction(upper, false));
+    assertEquals(numFunctions, other.numFunctions());
+    assertEquals(numFunctions, db.getAllFunctions().size());
+    assertEquals(numFunctions, db.numFunctions());
+  }
+
+  /**
+   * Functions registered while updates are deferred are checked against each other, but
+   * are only visible to lookups once they are published.
+   */
+  @Test
+  public void TestDeferredFunctionOverloads() {
+    Db db = new BuiltinsDb(Catalog.BUILTINS_DB, catalog_);
+    db.deferFnOverloadsUpdates();
+    ScalarFunction fn = ScalarFunction.createBuiltin("deferred_overloads_test",
+        Lists.<Type>newArrayList(Type.INT), false, Type.INT, "Foo", null, null, true);
+    assertTrue(db.addFunction(fn, false));
+    assertFalse(db.addFunction(fn, false));
+    assertFalse(db.containsFunction(fn.functionName()));
+    assertNull(db.getFunction(fn.signatureString()));
+
+    db.publishFnOverloads();
+    assertSame(fn, db.getFunction(fn, Function.CompareMode.IS_IDENTICAL));
+    assertSame(fn, db.getFunction(fn.signatureString()));
+    ScalarFunction other = ScalarFunction.createBuiltin("deferred_overloads_test",
+        Lists.<Type>newArrayList(Type.STRING), false, Type.INT, "Foo", null, null, true);
+    db.addBuiltin(other);
+    assertSame(other, db.getFunction(other, Function.CompareMode.IS_IDENTICAL));
+  }
+
+  /**
+   * Removing a privilege through the catalog publishes the change to the policy.
+   */
+  @Test
+  public void TestRemoveRolePrivilege() throws CatalogException {
+    AuthorizationPolicy policy = catalog_.getAuthPolicy();
+    Set<String> groups = Sets.newHashSet("remove_role_privilege_test_group");
+    Role role = catalog_.addRole("remove_role_privilege_test", groups);
+    try {
+      TPrivilege privilege = new TPrivilege("", TPrivilegeLevel.SELECT,
+          TPrivilegeScope.TABLE, false);
+      privilege.setServer_name("server1");
+      privilege.setDb_name("functional");
+      privilege.setTable_name("alltypes");
+      privilege.setRole_id(role.getId());
+      String privilegeName = RolePrivilege.buildRolePrivilegeName(privilege);
+      privilege.setPrivilege_name(privilegeName);
+      catalog_.addRolePrivilege(role.getName(), privilege);
+      assertEquals(Sets.newHashSet(privilegeName),
+          policy.listPrivileges(groups, ActiveRoleSet.ALL));
+
+      long version = policy.getVersion();
+      assertNotNull(catalog_.removeRolePrivilege(role.getName(), privilege));
+      assertTrue(policy.getVersion() > version);
+      assertNull(policy.getPrivilege(role.getId(), privilegeName));
+      assertTrue(policy.listPrivileges(groups, ActiveRoleSet.ALL).isEmpty());
+      assertNull(catalog_.removeRolePrivilege(role.getName(), privilege));
+    } finally {
+      catalog_.removeRole(role.getName());
+    }
+  }
 }
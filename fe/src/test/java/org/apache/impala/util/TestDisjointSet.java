@@ -17,19 +17,27 @@
 
 package org.apache.impala.util;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
+import org.apache.impala.analysis.SlotId;
+import org.apache.impala.common.IdGenerator;
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
- * Unit tests for the DisjointSet data structure.
+ * Unit tests for the DisjointSet, IntDisjointSet and IdDisjointSet data structures.
  */
 public class TestDisjointSet {
 
@@ -157,4 +165,165 @@ public class TestDisjointSet {
         && ds.get(1).containsAll(Lists.newArrayList(1, 2, 3, 4, 5, 6, 7, 8)));
     ds.checkConsistency();
   }
+
+  @Test
+  public void testIntDisjointSet() throws Exception {
+    IntDisjointSet ds = new IntDisjointSet(2);
+    assertFalse(ds.contains(0));
+    assertEquals(-1, ds.find(0));
+    ds.makeSet(0);
+    assertTrue(ds.contains(0));
+    try {
+      ds.makeSet(0);
+      fail("makeSet() on an item with an existing item set did not fail");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+    // union(x, x) is equivalent to makeSet(x)
+    assertTrue(ds.union(100, 100));
+    assertFalse(ds.union(100, 100));
+    assertTrue(ds.capacity() > 100);
+    assertTrue(ds.union(0, 100));
+    assertTrue(ds.inSameSet(0, 100));
+    assertFalse(ds.inSameSet(0, 1));
+    assertFalse(ds.bulkUnion(new int[] {0, 100}));
+    assertTrue(ds.bulkUnion(new int[] {1, 2, 3}));
+    assertFalse(ds.bulkUnion(new int[] {3}));
+    assertTrue(ds.bulkUnion(new int[] {4}));
+    assertEquals(6, ds.getNumItems());
+    assertEquals(3, ds.getNumSets());
+    assertEquals(2, ds.getSetSize(100));
+    assertEquals(3, ds.getSetSize(2));
+    assertEquals(1, ds.getSetSize(4));
+    assertEquals(0, ds.getSetSize(5));
+    ds.checkConsistency();
+  }
+
+  /**
+   * Applies the same random unions to a DisjointSet and an IntDisjointSet and checks
+   * that both return the same results and end up with the same item sets.
+   */
+  @Test
+  public void testIntDisjointSetMatchesDisjointSet() throws Exception {
+    Random rand = new Random(42);
+    for (int round = 0; round < 20; ++round) {
+      int numItems = 1 + rand.nextInt(500);
+      DisjointSet<Integer> expected = new DisjointSet<Integer>();
+      IntDisjointSet actual = new IntDisjointSet();
+      for (int i = 0; i < numItems; ++i) {
+        int a = rand.nextInt(numItems);
+        int b = rand.nextInt(numItems);
+        assertEquals(expected.union(a, b), actual.union(a, b));
+      }
+      actual.checkConsistency();
+      // Count the sets of 'expected' by identity: DisjointSet.getSets() may contain
+      // merged sets that could not be removed after their hash code changed.
+      Set<Set<Integer>> expectedSets =
+          Collections.newSetFromMap(new IdentityHashMap<Set<Integer>, Boolean>());
+      for (int a = 0; a < numItems; ++a) {
+        Set<Integer> set = expected.get(a);
+        if (set != null) expectedSets.add(set);
+      }
+      assertEquals(expectedSets.size(), actual.getNumSets());
+      for (int a = 0; a < numItems; ++a) {
+        Set<Integer> set = expected.get(a);
+        assertEquals(set != null, actual.contains(a));
+        assertEquals(set == null ? 0 : set.size(), actual.getSetSize(a));
+        for (int b = 0; b < numItems; ++b) {
+          assertEquals(set != null && set.contains(b), actual.inSameSet(a, b));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testIdDisjointSet() throws Exception {
+    IdGenerator<SlotId> idGenerator = SlotId.createGenerator();
+    List<SlotId> ids = Lists.newArrayList();
+    for (int i = 0; i < 10; ++i) ids.add(idGenerator.getNextId());
+    IdDisjointSet<SlotId> ds = new IdDisjointSet<SlotId>();
+    assertNull(ds.get(ids.get(0)));
+    assertTrue(ds.bulkUnion(ids.subList(0, 3)));
+    assertTrue(ds.union(ids.get(5), ids.get(6)));
+    ds.makeSet(ids.get(9));
+    assertFalse(ds.union(ids.get(2), ids.get(0)));
+
+    Set<SlotId> set = ds.get(ids.get(1));
+    assertEquals(Sets.newHashSet(ids.subList(0, 3)), set);
+    assertTrue(set == ds.get(ids.get(2)));
+    assertEquals(Sets.newHashSet(ids.get(9)), ds.get(ids.get(9)));
+    assertNull(ds.get(ids.get(4)));
+    assertEquals(3, ds.setSize(ids.get(0)));
+    assertEquals(1, ds.setSize(ids.get(9)));
+    assertEquals(0, ds.setSize(ids.get(4)));
+    assertEquals(3, ds.getSets().size());
+    assertTrue(ds.inSameSet(ids.get(5), ids.get(6)));
+    assertFalse(ds.inSameSet(ids.get(4), ids.get(4)));
+    try {
+      set.add(ids.get(4));
+      fail("Item set views are not unmodifiable");
+    } catch (UnsupportedOperationException e) {
+      // Expected.
+    }
+
+    // The views are rebuilt after a union.
+    assertTrue(ds.union(ids.get(0), ids.get(5)));
+    assertEquals(5, ds.setSize(ids.get(6)));
+    assertEquals(5, ds.get(ids.get(6)).size());
+    assertEquals(2, ds.getSets().size());
+    ds.checkConsistency();
+  }
+
+  /**
+   * Unions on a large number of items, in orders that make the set trees deep without
+   * union by rank or that make DisjointSet copy large sets.
+   */
+  @Test
+  public void testScale() throws Exception {
+    int numItems = 1000000;
+    // A chain of unions that always merges a single item into the growing set.
+    IntDisjointSet chain = new IntDisjointSet();
+    for (int i = 1; i < numItems; ++i) assertTrue(chain.union(i, i - 1));
+    assertEquals(1, chain.getNumSets());
+    assertTrue(chain.inSameSet(0, numItems - 1));
+    chain.checkConsistency();
+
+    // Pairwise merges of equal-sized sets, which maximize the rank.
+    IntDisjointSet tree = new IntDisjointSet(numItems);
+    for (int width = 1; width < numItems; width *= 2) {
+      for (int i = 0; i + width < numItems; i += 2 * width) {
+        assertTrue(tree.union(i, i + width));
+      }
+    }
+    assertEquals(1, tree.getNumSets());
+    tree.checkConsistency();
+
+    // Random unions, checked against the number of sets tracked independently.
+    Random rand = new Random(42);
+    IntDisjointSet random = new IntDisjointSet();
+    for (int i = 0; i < numItems; ++i) random.makeSet(i);
+    int numSets = numItems;
+    for (int i = 0; i < numItems; ++i) {
+      if (random.union(rand.nextInt(numItems), rand.nextInt(numItems))) --numSets;
+    }
+    assertEquals(numSets, random.getNumSets());
+    random.checkConsistency();
+
+    // Item set views of many small sets.
+    IdGenerator<SlotId> idGenerator = SlotId.createGenerator();
+    IdDisjointSet<SlotId> ids = new IdDisjointSet<SlotId>();
+    SlotId prev = null;
+    for (int i = 0; i < numItems / 10; ++i) {
+      SlotId id = idGenerator.getNextId();
+      if (i % 10 == 0) {
+        ids.makeSet(id);
+      } else {
+        assertTrue(ids.union(prev, id));
+      }
+      prev = id;
+    }
+    assertEquals(numItems / 100, ids.getSets().size());
+    for (Set<SlotId> set: ids.getSets()) assertEquals(10, set.size());
+    ids.checkConsistency();
+  }
 }
@@ -0,0 +1,176 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.impala.analysis.Expr;
+import org.apache.impala.analysis.ObjectSyntaxBlock;
+import org.apache.impala.analysis.StatementBase;
+import org.apache.impala.analysis.SyntaxBlock;
+import org.junit.Test;
+
+/**
+ * Unit tests for IncrementalParser. Every reparse result is compared against a full
+ * parse of the edited text.
+ */
+public class TestIncrementalParser {
+  private static final String SQL =
+      "select a, count(*) from db.tbl t -- comment\n" +
+      "where t.b = 'x'  and c in (1, 2, 3) group by a";
+
+  /**
+   * Asserts that 'actual' is equal to the AST 'expected': the same node classes in the
+   * same shape, with the same positions, equal exprs and terminal values, and the same
+   * SQL for the statement.
+   */
+  private static void assertSameTree(SyntaxBlock expected, SyntaxBlock actual) {
+    assertEquals(expected.getClass(), actual.getClass());
+    assertEquals(((StatementBase) expected).toSql(), ((StatementBase) actual).toSql());
+    SyntaxBlockCursor expectedCursor = new SyntaxBlockCursor(expected);
+    SyntaxBlockCursor actualCursor = new SyntaxBlockCursor(actual);
+    while (expectedCursor.next()) {
+      assertTrue(actualCursor.next());
+      SyntaxBlock e = expectedCursor.current();
+      SyntaxBlock a = actualCursor.current();
+      assertEquals(e.getClass(), a.getClass());
+      assertEquals(expectedCursor.depth(), actualCursor.depth());
+      assertEquals(e.startPosition, a.startPosition);
+      assertEquals(e.endPosition, a.endPosition);
+      if (e instanceof Expr) {
+        assertEquals(e, a);
+      } else if (e instanceof ObjectSyntaxBlock) {
+        assertEquals(((ObjectSyntaxBlock<?>) e).objectValue,
+            ((ObjectSyntaxBlock<?>) a).objectValue);
+      }
+    }
+    assertFalse(actualCursor.next());
+  }
+
+  private static IncrementalParser.Result checkEdit(String sql, int offset,
+      int removedLength, String insertedText, boolean expectReused) throws Exception {
+    IncrementalParser.Result previous = IncrementalParser.parse(sql);
+    SyntaxBlock previousRoot = previous.getRoot();
+    IncrementalParser.Result result = IncrementalParser.reparse(
+        previous, offset, removedLength, insertedText);
+    String newSql = sql.substring(0, offset) + insertedText +
+        sql.substring(offset + removedLength);
+    assertEquals(newSql, result.getSql());
+    assertEquals(expectReused, result.isReused());
+    assertSameTree(ImpalaSqlUtil.parse(newSql), result.getRoot());
+    assertEquals(sql, previous.getSql());
+    if (expectReused) {
+      // The nodes of the previous tree are moved to the new result.
+      assertSame(previousRoot, result.getRoot());
+    } else {
+      // The previous result is left as it was.
+      assertSame(previousRoot, previous.getRoot());
+      assertSameTree(ImpalaSqlUtil.parse(sql), previous.getRoot());
+    }
+    return result;
+  }
+
+  @Test
+  public void testLayoutEditsReuseTree() throws Exception {
+    // Insert and remove whitespace at various places.
+    checkEdit(SQL, 0, 0, "  ", true);
+    checkEdit(SQL, SQL.indexOf(", count"), 0, "\n   ", true);
+    checkEdit(SQL, SQL.indexOf("  and"), 1, "", true);
+    checkEdit(SQL, SQL.length(), 0, "\n\n", true);
+    // Edit and remove comments.
+    checkEdit(SQL, SQL.indexOf("comment"), 7, "longer comment text", true);
+    checkEdit(SQL, SQL.indexOf("-- comment"), "-- comment".length(), "", true);
+    checkEdit(SQL, SQL.indexOf(" from"), 0, " /* c */", true);
+    // Separate tokens that had no space between them.
+    checkEdit(SQL, SQL.indexOf("*)"), 0, " ", true);
+    checkEdit(SQL, SQL.indexOf("(*)"), 0, " ", true);
+    // Replace a token with the same text.
+    checkEdit(SQL, SQL.indexOf("tbl"), 3, "tbl", true);
+  }
+
+  @Test
+  public void testTokenChangesReparse() throws Exception {
+    // Renamed identifiers, also quoted ones.
+    checkEdit(SQL, SQL.indexOf("tbl"), 3, "other_tbl", false);
+    checkEdit(SQL, SQL.indexOf("a,"), 1, "`first col`", false);
+    // Changed string and numeric literals.
+    checkEdit(SQL, SQL.indexOf("'x'"), 3, "'yy'", false);
+    checkEdit(SQL, SQL.indexOf("2,"), 1, "20", false);
+    checkEdit("select 1.5 from t", 7, 3, "12.25", false);
+    // Changed operator and token kinds.
+    checkEdit(SQL, SQL.indexOf(" = "), 3, " != ", false);
+    checkEdit(SQL, SQL.indexOf("'x'"), 3, "5", false);
+    checkEdit(SQL, SQL.indexOf("2,"), 1, "2.5", false);
+    // Tokens that merge across the edit.
+    checkEdit(SQL, SQL.indexOf("tbl t") + 3, 1, "", false);
+    // An edit that turns the rest of a line into a comment.
+    checkEdit(SQL, SQL.indexOf("group"), 0, "-- ", false);
+  }
+
+  @Test
+  public void testChainedEdits() throws Exception {
+    IncrementalParser.Result result = IncrementalParser.parse(SQL);
+    String sql = SQL;
+    for (int i = 0; i < 5; ++i) {
+      // Doubling an existing space never changes the tokens.
+      int offset = sql.indexOf(' ', i * 15);
+      result = IncrementalParser.reparse(result, offset, 0, " ");
+      sql = sql.substring(0, offset) + " " + sql.substring(offset);
+      assertTrue(result.isReused());
+      assertSameTree(ImpalaSqlUtil.parse(sql), result.getRoot());
+      // Rename the table back and forth, then keep editing the fully parsed tree.
+      String from = i % 2 == 0 ? "tbl" : "other";
+      String to = i % 2 == 0 ? "other" : "tbl";
+      offset = sql.indexOf(from);
+      result = IncrementalParser.reparse(result, offset, from.length(), to);
+      sql = sql.substring(0, offset) + to + sql.substring(offset + from.length());
+      assertFalse(result.isReused());
+      assertSameTree(ImpalaSqlUtil.parse(sql), result.getRoot());
+    }
+  }
+
+  @Test
+  public void testTreeIsMovedToNewResult() throws Exception {
+    IncrementalParser.Result previous = IncrementalParser.parse(SQL);
+    SyntaxBlock root = previous.getRoot();
+    int start = root.startPosition;
+    int end = root.endPosition;
+    IncrementalParser.Result result = IncrementalParser.reparse(previous, 0, 0, "   ");
+    assertTrue(result.isReused());
+    assertSame(root, result.getRoot());
+    assertEquals(start + 3, root.startPosition);
+    assertEquals(end + 3, root.endPosition);
+    // The previous result gave up its tree.
+    try {
+      previous.getRoot();
+      fail("Expected the tree to have been moved");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+    try {
+      IncrementalParser.reparse(previous, 0, 0, " ");
+      fail("Expected the tree to have been moved");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+}
@@ -0,0 +1,151 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for ReachabilityMatrix.
+ */
+public class TestReachabilityMatrix {
+
+  /**
+   * Brute-force transitive closure of the given adjacency matrix, in place.
+   */
+  private static void bruteForceClosure(boolean[][] m) {
+    int n = m.length;
+    for (int i = 0; i < n; ++i) m[i][i] = true;
+    for (int k = 0; k < n; ++k) {
+      for (int i = 0; i < n; ++i) {
+        if (!m[i][k]) continue;
+        for (int j = 0; j < n; ++j) {
+          if (m[k][j]) m[i][j] = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds 'numEdges' random edges to a graph of 'numNodes' nodes, or only forward edges
+   * of a random topological order if 'acyclic' is true, and compares the closure with
+   * the brute-force one.
+   */
+  private void checkRandomGraph(Random rand, int numNodes, int numEdges,
+      boolean acyclic) {
+    int[] order = new int[numNodes];
+    for (int i = 0; i < numNodes; ++i) {
+      int j = rand.nextInt(i + 1);
+      order[i] = order[j];
+      order[j] = i;
+    }
+    boolean[][] expected = new boolean[numNodes][numNodes];
+    ReachabilityMatrix actual = new ReachabilityMatrix(numNodes);
+    for (int e = 0; e < numEdges; ++e) {
+      int a = rand.nextInt(numNodes);
+      int b = rand.nextInt(numNodes);
+      if (acyclic && a > b) {
+        int tmp = a;
+        a = b;
+        b = tmp;
+      }
+      int src = acyclic ? order[a] : a;
+      int dest = acyclic ? order[b] : b;
+      expected[src][dest] = true;
+      actual.addEdge(src, dest);
+    }
+    bruteForceClosure(expected);
+    actual.computeClosure();
+    for (int i = 0; i < numNodes; ++i) {
+      for (int j = 0; j < numNodes; ++j) {
+        assertEquals("reaches(" + i + ", " + j + ")", expected[i][j],
+            actual.reaches(i, j));
+      }
+    }
+  }
+
+  @Test
+  public void testChain() {
+    // A chain crossing several words per row, with edges added in reverse.
+    int n = 200;
+    ReachabilityMatrix m = new ReachabilityMatrix(n);
+    for (int i = n - 2; i >= 0; --i) m.addEdge(i, i + 1);
+    m.computeClosure();
+    for (int i = 0; i < n; ++i) {
+      for (int j = 0; j < n; ++j) assertEquals(i <= j, m.reaches(i, j));
+    }
+  }
+
+  @Test
+  public void testNoEdges() {
+    ReachabilityMatrix m = new ReachabilityMatrix(3);
+    m.computeClosure();
+    assertTrue(m.reaches(1, 1));
+    assertFalse(m.reaches(0, 1));
+    new ReachabilityMatrix(0).computeClosure();
+  }
+
+  @Test
+  public void testCycle() {
+    ReachabilityMatrix m = new ReachabilityMatrix(4);
+    m.addEdge(0, 1);
+    m.addEdge(1, 2);
+    m.addEdge(2, 0);
+    m.addEdge(2, 3);
+    m.computeClosure();
+    for (int i = 0; i < 3; ++i) {
+      for (int j = 0; j < 4; ++j) assertTrue(m.reaches(i, j));
+      assertFalse(m.reaches(3, i));
+    }
+  }
+
+  @Test
+  public void testRandomGraphs() {
+    Random rand = new Random(1234);
+    for (int i = 0; i < 50; ++i) {
+      int numNodes = 1 + rand.nextInt(150);
+      int numEdges = rand.nextInt(3 * numNodes);
+      checkRandomGraph(rand, numNodes, numEdges, true);
+      checkRandomGraph(rand, numNodes, numEdges, false);
+    }
+  }
+
+  @Test
+  public void testUsage() {
+    ReachabilityMatrix m = new ReachabilityMatrix(2);
+    try {
+      m.reaches(0, 1);
+      fail("reaches() before computeClosure() did not fail");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+    m.computeClosure();
+    try {
+      m.addEdge(0, 1);
+      fail("addEdge() after computeClosure() did not fail");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+}
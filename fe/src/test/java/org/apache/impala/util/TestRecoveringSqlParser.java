@@ -0,0 +1,137 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.impala.analysis.ParseNode;
+import org.apache.impala.analysis.SqlParserSymbols;
+import org.apache.impala.analysis.SyntaxBlock;
+import org.junit.Test;
+
+/**
+ * Unit tests for RecoveringSqlParser and ScriptParser.parseWithRecovery().
+ */
+public class TestRecoveringSqlParser {
+
+  @Test
+  public void testValidStatement() throws Exception {
+    String stmt = "select a, count(*) from t where b = 1 group by a";
+    RecoveringSqlParser.Result result = RecoveringSqlParser.parse(stmt);
+    assertFalse(result.hasErrors());
+    assertNull(result.getFirstError());
+    assertEquals(((ParseNode) ImpalaSqlUtil.parse(stmt)).toSql(),
+        ((ParseNode) result.getRoot()).toSql());
+  }
+
+  @Test
+  public void testAllErrorsReported() throws Exception {
+    String stmt = "select a, from t where x = = 1 group by";
+    RecoveringSqlParser.Result result = RecoveringSqlParser.parse(stmt);
+    List<RecoveringSqlParser.SyntaxErrorBlock> errors = result.getErrors();
+    assertEquals(3, errors.size());
+    // Missing select list item.
+    assertEquals(stmt.indexOf("from"), errors.get(0).startPosition);
+    assertTrue(errors.get(0).getExpectedTokenIds().contains(SqlParserSymbols.IDENT));
+    // Duplicate '='.
+    assertEquals(stmt.indexOf("= =") + 2, errors.get(1).startPosition);
+    // Missing grouping expr at the end.
+    assertEquals(stmt.length(), errors.get(2).startPosition);
+    for (RecoveringSqlParser.SyntaxErrorBlock error: errors) {
+      assertTrue(error.getMessage(), error.getMessage().startsWith("Syntax error"));
+    }
+    assertNotNull(result.getFirstError());
+    // The repaired statement still parses into a tree.
+    assertNotNull(result.getRoot());
+  }
+
+  @Test
+  public void testMaxErrors() throws Exception {
+    String stmt = "select a, from t where x = = 1 group by";
+    RecoveringSqlParser.Result result = RecoveringSqlParser.parse(stmt, false, 1);
+    assertEquals(1, result.getErrors().size());
+    assertFalse(result.isComplete());
+    // Recovery gave up, but the partial tree holds what was parsed and the error.
+    assertNotNull(result.getRoot());
+    assertEquals(result.getErrors(), errorsInTree(result.getRoot()));
+  }
+
+  @Test
+  public void testErrorsInTree() throws Exception {
+    String stmt = "select a, from t where x = = 1 group by";
+    RecoveringSqlParser.Result result = RecoveringSqlParser.parse(stmt);
+    assertTrue(result.isComplete());
+    assertEquals(3, result.getErrors().size());
+    assertEquals(result.getErrors(), errorsInTree(result.getRoot()));
+  }
+
+  @Test
+  public void testSkipToBoundary() throws Exception {
+    String stmt = "select a from t where ) ) ) group by a";
+    RecoveringSqlParser.Result result = RecoveringSqlParser.parse(stmt);
+    assertTrue(result.isComplete());
+    assertEquals(1, result.getErrors().size());
+    RecoveringSqlParser.SyntaxErrorBlock error = result.getErrors().get(0);
+    // The error spans the skipped tokens up to the next clause.
+    assertEquals(stmt.indexOf(")"), error.startPosition);
+    assertEquals(stmt.lastIndexOf(")") + 1, error.endPosition);
+    assertEquals(result.getErrors(), errorsInTree(result.getRoot()));
+  }
+
+  private static List<SyntaxBlock> errorsInTree(SyntaxBlock root) {
+    List<SyntaxBlock> errors = new ArrayList<>();
+    SyntaxBlockCursor cursor = new SyntaxBlockCursor(root);
+    while (cursor.next()) {
+      if (cursor.current() instanceof RecoveringSqlParser.SyntaxErrorBlock) {
+        errors.add(cursor.current());
+      }
+    }
+    return errors;
+  }
+
+  @Test
+  public void testScript() throws Exception {
+    String script = "select 1;\nselect from t;\nselect a b c from t;\nselect 2";
+    List<ScriptParser.Statement> statements = ScriptParser.parseWithRecovery(script);
+    assertEquals(4, statements.size());
+    assertFalse(statements.get(0).hasError());
+    assertTrue(statements.get(0).getSyntaxErrors().isEmpty());
+    assertFalse(statements.get(3).hasError());
+
+    ScriptParser.Statement missingItem = statements.get(1);
+    assertTrue(missingItem.hasError());
+    assertNotNull(missingItem.getRoot());
+    assertEquals(1, missingItem.getSyntaxErrors().size());
+    assertEquals(script.indexOf("from t;"),
+        missingItem.getSyntaxErrors().get(0).startPosition);
+    assertEquals(missingItem.getSyntaxErrors().get(0).getMessage(),
+        missingItem.getErrorMessage());
+
+    ScriptParser.Statement extraItem = statements.get(2);
+    assertEquals(1, extraItem.getSyntaxErrors().size());
+    assertEquals(script.indexOf("c from"), extraItem.getSyntaxErrors().get(0).startPosition);
+    assertEquals(extraItem.getStartPosition(), extraItem.getRoot().startPosition);
+  }
+}
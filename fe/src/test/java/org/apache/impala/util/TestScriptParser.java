@@ -0,0 +1,102 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.impala.analysis.SyntaxBlock;
+import org.junit.Test;
+
+/**
+ * Unit tests for ScriptParser.
+ */
+public class TestScriptParser {
+
+  @Test
+  public void testSplit() throws Exception {
+    String script =
+        "select 'a;b' from t;\n" +
+        "-- comment; with semicolon\n" +
+        "select `odd;name`, \"x;y\" from t /* ; */ where a = 1;;  \n" +
+        "  ;select 1";
+    List<ScriptParser.Statement> statements = ScriptParser.split(script);
+    assertEquals(3, statements.size());
+    assertEquals("select 'a;b' from t", statements.get(0).getSql());
+    assertEquals("select `odd;name`, \"x;y\" from t /* ; */ where a = 1",
+        statements.get(1).getSql());
+    assertEquals("select 1", statements.get(2).getSql());
+    for (ScriptParser.Statement stmt: statements) {
+      assertEquals(stmt.getSql(),
+          script.substring(stmt.getStartPosition(), stmt.getEndPosition()));
+      assertNull(stmt.getRoot());
+    }
+    assertTrue(ScriptParser.split("  -- nothing\n ; ;").isEmpty());
+    // An unbalanced parenthesis does not swallow the following statements.
+    statements = ScriptParser.split("select (1; select 2");
+    assertEquals(2, statements.size());
+    assertEquals("select (1", statements.get(0).getSql());
+    assertEquals("select 2", statements.get(1).getSql());
+  }
+
+  @Test
+  public void testParseKeepsGoingAfterErrors() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    int numStmts = 200;
+    for (int i = 0; i < numStmts; ++i) {
+      if (i % 10 == 3) {
+        sb.append("select from where ").append(i).append(";\n");
+      } else {
+        sb.append("select c").append(i).append(", count(*) from t").append(i)
+            .append(" group by 1;\n");
+      }
+    }
+    String script = sb.toString();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      List<ScriptParser.Statement> statements = ScriptParser.parse(script, pool);
+      assertEquals(numStmts, statements.size());
+      for (int i = 0; i < numStmts; ++i) {
+        ScriptParser.Statement stmt = statements.get(i);
+        assertEquals(i, stmt.getIndex());
+        if (i % 10 == 3) {
+          assertTrue(stmt.hasError());
+          assertNull(stmt.getRoot());
+          assertNotNull(stmt.getErrorMessage());
+          continue;
+        }
+        assertFalse(stmt.hasError());
+        // Positions are absolute offsets into the script.
+        SyntaxBlock expected = ImpalaSqlUtil.parse(stmt.getSql());
+        SyntaxBlock actual = stmt.getRoot();
+        assertEquals(stmt.getStartPosition(), actual.startPosition);
+        assertEquals(expected.startPosition + stmt.getStartPosition(),
+            actual.startPosition);
+        assertEquals(expected.endPosition + stmt.getStartPosition(), actual.endPosition);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
@@ -0,0 +1,115 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.apache.impala.analysis.SqlParserSymbols;
+import org.junit.Test;
+
+/**
+ * Unit tests for SqlFingerprint.
+ */
+public class TestSqlFingerprint {
+
+  private static void assertSameFingerprint(String sql1, String sql2) {
+    SqlFingerprint f1 = SqlFingerprint.of(sql1);
+    SqlFingerprint f2 = SqlFingerprint.of(sql2);
+    assertEquals(f1.getNormalizedSql(), f2.getNormalizedSql());
+    assertEquals(f1, f2);
+    assertEquals(f1.getHash(), f2.getHash());
+    assertEquals(f1.getHashString(), f2.getHashString());
+  }
+
+  private static void assertDifferentFingerprint(String sql1, String sql2) {
+    SqlFingerprint f1 = SqlFingerprint.of(sql1);
+    SqlFingerprint f2 = SqlFingerprint.of(sql2);
+    assertFalse(f1.equals(f2));
+    assertTrue(f1.getHash() != f2.getHash());
+  }
+
+  @Test
+  public void testNormalization() {
+    assertEquals("SELECT a , b FROM t WHERE c = ? AND d IN ( ? , ? , ? )",
+        SqlFingerprint.of(
+            "select a, b\n  from t -- comment\nwhere c = 'x' && d in (1, 2.5, 3)")
+        .getNormalizedSql());
+    // Plan hints are kept, other comments are not.
+    assertEquals("SELECT /* +straight_join */ * FROM t",
+        SqlFingerprint.of("select /* +straight_join */ * /* other */ from t")
+        .getNormalizedSql());
+    assertEquals("", SqlFingerprint.of("  -- only a comment\n").getNormalizedSql());
+  }
+
+  @Test
+  public void testSameFingerprint() {
+    assertSameFingerprint("select * from t where a = 1",
+        "SELECT *\nFROM t\n  WHERE a = 12345678901234567890123");
+    assertSameFingerprint("select * from t where a = 'x' and b = 1.5",
+        "Select * From t /* c */ Where a = \"yy\" AND b = 1e10");
+    assertSameFingerprint("select a from t where x in (1, 2)",
+        "select a from t where x in (3, 4)");
+  }
+
+  @Test
+  public void testDifferentFingerprint() {
+    assertDifferentFingerprint("select a from t", "select b from t");
+    assertDifferentFingerprint("select a from t where x in (1, 2)",
+        "select a from t where x in (1, 2, 3)");
+    assertDifferentFingerprint("select a from t where x = 1",
+        "select a from t where x = b");
+    // Quoted identifiers are kept as written.
+    assertDifferentFingerprint("select `a b` from t", "select a b from t");
+  }
+
+  @Test
+  public void testLiterals() {
+    String sql = "select 'abc', 10, 1.50 from t where x > 99999999999999999999";
+    List<SqlFingerprint.Literal> literals = SqlFingerprint.of(sql).getLiterals();
+    assertEquals(4, literals.size());
+
+    assertEquals(SqlParserSymbols.STRING_LITERAL, literals.get(0).getSym());
+    assertEquals("abc", literals.get(0).getValue());
+    assertEquals(sql.indexOf("'abc'"), literals.get(0).getStartPosition());
+    assertEquals(sql.indexOf("'abc'") + 5, literals.get(0).getEndPosition());
+
+    assertEquals(SqlParserSymbols.INTEGER_LITERAL, literals.get(1).getSym());
+    assertEquals(Long.valueOf(10), literals.get(1).getValue());
+    assertEquals(sql.indexOf("10"), literals.get(1).getStartPosition());
+
+    assertEquals(SqlParserSymbols.DECIMAL_LITERAL, literals.get(2).getSym());
+    assertEquals(new BigDecimal("1.50"), literals.get(2).getValue());
+
+    assertEquals(SqlParserSymbols.INTEGER_LITERAL, literals.get(3).getSym());
+    assertEquals(new BigDecimal("99999999999999999999"), literals.get(3).getValue());
+    assertEquals(sql.length(), literals.get(3).getEndPosition());
+  }
+
+  @Test
+  public void testHash128() {
+    SqlFingerprint fingerprint = SqlFingerprint.of("select 1");
+    long[] hash = fingerprint.getHash128();
+    assertEquals(2, hash.length);
+    assertEquals(fingerprint.getHash(), hash[0]);
+  }
+}
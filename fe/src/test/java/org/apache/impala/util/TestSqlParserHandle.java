@@ -0,0 +1,118 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import java_cup.runtime.ExtendSymbolFactory;
+import org.apache.impala.analysis.SqlParser;
+import org.apache.impala.analysis.SqlScanner;
+import org.apache.impala.analysis.ParseNode;
+import org.apache.impala.analysis.SyntaxBlock;
+import org.junit.Test;
+
+/**
+ * Unit tests for SqlParserHandle.
+ */
+public class TestSqlParserHandle {
+  private static final String[] STMTS = new String[] {
+      "select a, count(*) from db.tbl where b = 'x' group by a",
+      "  insert into t partition (p=1) select * from s",
+      "with v as (select 1) select * from v union all select 2 order by 1 limit 5",
+      "create table t (a int, b string comment 'c') stored as parquet"
+  };
+
+  private static String parseFresh(String sql) throws Exception {
+    SqlScanner scanner = new SqlScanner(new StringReader(sql));
+    SqlParser parser = new SqlParser(scanner, new ExtendSymbolFactory(sql));
+    return ((ParseNode) parser.parse().value).toSql();
+  }
+
+  @Test
+  public void testReuseMatchesFreshParser() throws Exception {
+    SqlParserHandle handle = SqlParserHandle.acquire();
+    try {
+      for (int i = 0; i < 3; ++i) {
+        for (String stmt: STMTS) {
+          Object result = handle.parse(stmt);
+          assertEquals(parseFresh(stmt), ((ParseNode) result).toSql());
+          assertEquals(stmt.indexOf(stmt.trim()), ((SyntaxBlock) result).startPosition);
+        }
+      }
+    } finally {
+      handle.release();
+    }
+  }
+
+  @Test
+  public void testWithoutSubBlocks() throws Exception {
+    SqlParserHandle handle = SqlParserHandle.acquire();
+    try {
+      for (String stmt: STMTS) {
+        SyntaxBlock full = (SyntaxBlock) handle.parse(stmt);
+        assertNotNull(full.subBlocks);
+        SyntaxBlock positionsOnly = (SyntaxBlock) handle.parse(stmt, false);
+        assertNull(positionsOnly.subBlocks);
+        assertEquals(((ParseNode) full).toSql(), ((ParseNode) positionsOnly).toSql());
+        assertEquals(full.startPosition, positionsOnly.startPosition);
+        assertEquals(full.endPosition, positionsOnly.endPosition);
+      }
+    } finally {
+      handle.release();
+    }
+  }
+
+  @Test
+  public void testErrorStateIsReset() throws Exception {
+    String badStmt = "select from where";
+    SqlParserHandle handle = SqlParserHandle.acquire();
+    try {
+      try {
+        handle.parse(badStmt);
+        fail("Expected a parse error");
+      } catch (Exception e) {
+        assertNotNull(handle.getErrorMsg(badStmt));
+      }
+      handle.parse(STMTS[0]);
+      assertNull(handle.getErrorMsg(STMTS[0]));
+    } finally {
+      handle.release();
+    }
+  }
+
+  @Test
+  public void testThreadPooling() throws Exception {
+    SqlParserHandle handle = SqlParserHandle.acquire();
+    // A nested acquire gets its own handle.
+    SqlParserHandle nested = SqlParserHandle.acquire();
+    assertNotSame(handle, nested);
+    nested.release();
+    handle.release();
+    // The thread's handle is handed out again once released.
+    SqlParserHandle again = SqlParserHandle.acquire();
+    assertSame(handle, again);
+    again.release();
+  }
+}
@@ -0,0 +1,127 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.List;
+
+import org.apache.impala.analysis.SyntaxBlock;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for StatementStreamParser.
+ */
+public class TestStatementStreamParser {
+  private static final String SCRIPT =
+      "  select 'a;b' from t;\n" +
+      "-- comment; with semicolon\n" +
+      "select `x;y`, \"p;q\" from t /* ; */ where a in (1, 2);;  -- only a comment\n" +
+      ";select from;\n" +
+      "select 1 - 2";
+
+  private static List<StatementStreamParser.Statement> readAll(
+      StatementStreamParser parser) throws Exception {
+    List<StatementStreamParser.Statement> result = Lists.newArrayList();
+    StatementStreamParser.Statement stmt;
+    while ((stmt = parser.next()) != null) result.add(stmt);
+    assertNull(parser.next());
+    return result;
+  }
+
+  private static void checkStatements(List<StatementStreamParser.Statement> stmts) {
+    assertEquals(4, stmts.size());
+    assertEquals("select 'a;b' from t", stmts.get(0).getSql().toString());
+    assertEquals("-- comment; with semicolon\n" +
+        "select `x;y`, \"p;q\" from t /* ; */ where a in (1, 2)",
+        stmts.get(1).getSql().toString());
+    assertEquals("select from", stmts.get(2).getSql().toString());
+    assertEquals("select 1 - 2", stmts.get(3).getSql().toString());
+    for (int i = 0; i < stmts.size(); ++i) {
+      StatementStreamParser.Statement stmt = stmts.get(i);
+      assertEquals(i, stmt.getIndex());
+      assertEquals(stmt.getSql().toString(), SCRIPT.substring(
+          (int) stmt.getStartOffset(), (int) stmt.getEndOffset()));
+      if (i == 2) {
+        assertTrue(stmt.hasError());
+        assertNotNull(stmt.getErrorMessage());
+        assertNull(stmt.getRoot());
+      } else {
+        assertFalse(stmt.hasError());
+        // Tree positions are relative to the statement.
+        SyntaxBlock expected = ImpalaSqlUtil.parse(stmt.getSql().toString());
+        assertEquals(expected.startPosition, stmt.getRoot().startPosition);
+        assertEquals(expected.endPosition, stmt.getRoot().endPosition);
+      }
+    }
+  }
+
+  @Test
+  public void testReader() throws Exception {
+    checkStatements(readAll(new StatementStreamParser(new StringReader(SCRIPT))));
+  }
+
+  @Test
+  public void testCharBuffer() throws Exception {
+    CharBuffer buffer = CharBuffer.wrap("xx" + SCRIPT);
+    buffer.position(2);
+    checkStatements(readAll(new StatementStreamParser(buffer)));
+    // The caller's buffer is left untouched.
+    assertEquals(2, buffer.position());
+  }
+
+  @Test
+  public void testLargeInput() throws Exception {
+    // Many statements across read buffer boundaries.
+    StringBuilder sb = new StringBuilder();
+    int numStmts = 5000;
+    for (int i = 0; i < numStmts; ++i) {
+      sb.append("select c").append(i).append(" from t where s = 'v;").append(i)
+          .append("';\n");
+    }
+    StatementStreamParser parser =
+        new StatementStreamParser(new StringReader(sb.toString()));
+    List<StatementStreamParser.Statement> stmts = readAll(parser);
+    assertEquals(numStmts, stmts.size());
+    for (int i = 0; i < numStmts; ++i) {
+      assertFalse(stmts.get(i).hasError());
+      assertEquals("select c" + i + " from t where s = 'v;" + i + "'",
+          stmts.get(i).getSql().toString());
+    }
+  }
+
+  @Test
+  public void testUnbalancedParenthesis() throws Exception {
+    // The parenthesis does not swallow the following statement.
+    List<StatementStreamParser.Statement> stmts = readAll(
+        new StatementStreamParser(new StringReader("select (1; select 2")));
+    assertEquals(2, stmts.size());
+    assertEquals("select (1", stmts.get(0).getSql().toString());
+    assertTrue(stmts.get(0).hasError());
+    assertEquals("select 2", stmts.get(1).getSql().toString());
+    assertFalse(stmts.get(1).hasError());
+  }
+}
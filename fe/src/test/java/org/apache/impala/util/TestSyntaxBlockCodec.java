@@ -0,0 +1,230 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.impala.analysis.ObjectSyntaxBlock;
+import org.apache.impala.analysis.SyntaxBlock;
+import org.apache.impala.thrift.THdfsFileFormat;
+import org.apache.impala.thrift.TShowStatsOp;
+import org.junit.Test;
+
+/**
+ * Unit tests for SyntaxBlockCodec.
+ */
+public class TestSyntaxBlockCodec {
+  private static final String[] STMTS = new String[] {
+      "select a, count(*) from db.tbl t where t.b = 'x' and c in (1, 2.5, -3) group by a",
+      "with v as (select 1 x) select * from v union all select 2 order by 1 limit 5",
+      "create table t (a int, b decimal(10, 2) comment 'c') stored as parquet",
+      "insert overwrite t partition (p=1) select * from s where x between 1 and 10"
+  };
+
+  /**
+   * Asserts that the decoded tree has the shape, kinds, positions and terminal values of
+   * the original.
+   */
+  private static void assertEquivalent(SyntaxBlock expected, SyntaxBlock actual) {
+    SyntaxBlockCursor expectedCursor = new SyntaxBlockCursor(expected);
+    SyntaxBlockCursor actualCursor = new SyntaxBlockCursor(actual);
+    while (expectedCursor.next()) {
+      assertTrue(actualCursor.next());
+      SyntaxBlock e = expectedCursor.current();
+      SyntaxBlock a = actualCursor.current();
+      assertEquals(SyntaxBlockCodec.kindOf(e), SyntaxBlockCodec.kindOf(a));
+      assertEquals(expectedCursor.depth(), actualCursor.depth());
+      assertEquals(e.startPosition, a.startPosition);
+      assertEquals(e.endPosition, a.endPosition);
+      assertEquals(e.subBlocks == null, a.subBlocks == null);
+      if (e.subBlocks != null) assertEquals(e.subBlocks.size(), a.subBlocks.size());
+      if (e.getClass() == ObjectSyntaxBlock.class) {
+        Object value = ((ObjectSyntaxBlock<?>) e).objectValue;
+        if (value == null || value instanceof String || value instanceof Number ||
+            value instanceof Boolean || value instanceof Enum) {
+          assertEquals(value, ((ObjectSyntaxBlock<?>) a).objectValue);
+        }
+      }
+    }
+    assertFalse(actualCursor.next());
+  }
+
+  @Test
+  public void testParsedTrees() throws Exception {
+    for (String stmt: STMTS) {
+      SyntaxBlock root = ImpalaSqlUtil.parse(stmt);
+      byte[] bytes = SyntaxBlockCodec.encode(root);
+      assertEquivalent(root, SyntaxBlockCodec.decode(bytes));
+    }
+  }
+
+  @Test
+  public void testValuesNullsAndSharing() throws Exception {
+    SyntaxBlock root = new SyntaxBlock(0, 40, new ArrayList<SyntaxBlock>());
+    ObjectSyntaxBlock<Object> shared = new ObjectSyntaxBlock<Object>(0, 6, "select");
+    root.subBlocks.add(shared);
+    root.subBlocks.add(null);
+    root.subBlocks.add(new ObjectSyntaxBlock<Object>(7, 8, Long.MIN_VALUE));
+    root.subBlocks.add(new ObjectSyntaxBlock<Object>(9, 15, new BigDecimal("-12.50")));
+    root.subBlocks.add(new ObjectSyntaxBlock<Object>(Integer.MIN_VALUE));
+    root.subBlocks.add(new ObjectSyntaxBlock<Object>(Boolean.TRUE));
+    root.subBlocks.add(new ObjectSyntaxBlock<Object>(THdfsFileFormat.PARQUET));
+    root.subBlocks.add(new ObjectSyntaxBlock<Object>(new ArrayList<String>()));
+    root.subBlocks.add(shared);
+    root.subBlocks.add(new SyntaxBlock(20, 30));
+
+    SyntaxBlock decoded = SyntaxBlockCodec.decode(SyntaxBlockCodec.encode(root));
+    assertEquals(root.subBlocks.size(), decoded.subBlocks.size());
+    assertEquals(SyntaxBlock.class.getName(), SyntaxBlockCodec.kindOf(decoded));
+    assertEquals("select", ((ObjectSyntaxBlock<?>) decoded.subBlocks.get(0)).objectValue);
+    assertNull(decoded.subBlocks.get(1));
+    for (int i = 2; i < 7; ++i) {
+      assertEquals(((ObjectSyntaxBlock<?>) root.subBlocks.get(i)).objectValue,
+          ((ObjectSyntaxBlock<?>) decoded.subBlocks.get(i)).objectValue);
+    }
+    // Values other than terminal values are not encoded.
+    assertNull(((ObjectSyntaxBlock<?>) decoded.subBlocks.get(7)).objectValue);
+    assertSame(decoded.subBlocks.get(0), decoded.subBlocks.get(8));
+    assertNull(decoded.subBlocks.get(9).subBlocks);
+    assertEquals(20, decoded.subBlocks.get(9).startPosition);
+    assertEquals(30, decoded.subBlocks.get(9).endPosition);
+
+    assertNull(SyntaxBlockCodec.decode(SyntaxBlockCodec.encode(null)));
+  }
+
+  @Test
+  public void testDeepTree() throws Exception {
+    SyntaxBlock root = new SyntaxBlock(0, 100000, new ArrayList<SyntaxBlock>());
+    SyntaxBlock block = root;
+    for (int i = 1; i < 100000; ++i) {
+      SyntaxBlock child = new SyntaxBlock(i, 100000, new ArrayList<SyntaxBlock>());
+      block.subBlocks.add(child);
+      block = child;
+    }
+    assertEquivalent(root, SyntaxBlockCodec.decode(SyntaxBlockCodec.encode(root)));
+  }
+
+  @Test
+  public void testInvalidInput() throws Exception {
+    byte[] bytes = SyntaxBlockCodec.encode(ImpalaSqlUtil.parse(STMTS[0]));
+    bytes[0] = 0;
+    try {
+      SyntaxBlockCodec.decode(bytes);
+      fail("Expected an IOException");
+    } catch (IOException e) {
+      // Expected.
+    }
+    byte[] truncated = SyntaxBlockCodec.encode(ImpalaSqlUtil.parse(STMTS[0]));
+    try {
+      SyntaxBlockCodec.decode(Arrays.copyOf(truncated, truncated.length / 2));
+      fail("Expected an IOException");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Enum constants are encoded by a fixed type tag, and unknown tags or names are
+   * rejected. Constants of other enum types are not encoded.
+   */
+  @Test
+  public void testEnumValues() throws Exception {
+    SyntaxBlock unlisted = SyntaxBlockCodec.decode(SyntaxBlockCodec.encode(
+        new ObjectSyntaxBlock<Object>(TShowStatsOp.TABLE_STATS)));
+    assertNull(((ObjectSyntaxBlock<?>) unlisted).objectValue);
+
+    byte[] bytes = SyntaxBlockCodec.encode(
+        new ObjectSyntaxBlock<Object>(THdfsFileFormat.PARQUET));
+    byte[] name = "PARQUET".getBytes(StandardCharsets.UTF_8);
+    int nameStart = -1;
+    for (int i = 0; i + name.length <= bytes.length && nameStart < 0; ++i) {
+      if (Arrays.equals(name, Arrays.copyOfRange(bytes, i, i + name.length))) {
+        nameStart = i;
+      }
+    }
+    assertTrue(nameStart > 1);
+    // The type tag precedes the length of the name.
+    byte[] badType = bytes.clone();
+    badType[nameStart - 2] = 0x7F;
+    assertInvalid(badType);
+    byte[] badName = bytes.clone();
+    badName[nameStart + name.length - 1] = 'X';
+    assertInvalid(badName);
+  }
+
+  /**
+   * Returns the header of an encoding followed by the start of a block of a new kind,
+   * up to the length of the kind name, which is the variable-length int in
+   * 'nameLengthBytes'.
+   */
+  private static byte[] blockWithKindLength(int... nameLengthBytes) {
+    byte[] header = new byte[] {0x53, 0x42, 0x43, 0x31, 1, 2, 0};
+    byte[] bytes = Arrays.copyOf(header, header.length + nameLengthBytes.length);
+    for (int i = 0; i < nameLengthBytes.length; ++i) {
+      bytes[header.length + i] = (byte) nameLengthBytes[i];
+    }
+    return bytes;
+  }
+
+  private static void assertInvalid(byte[] bytes) {
+    try {
+      SyntaxBlockCodec.decode(bytes);
+      fail("Expected an IOException");
+    } catch (IOException e) {
+      // Expected.
+    }
+    try {
+      SyntaxBlockCodec.decode(new ByteArrayInputStream(bytes));
+      fail("Expected an IOException");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Lengths and counts that are negative or larger than the input fail with an
+   * IOException instead of an allocation of their size.
+   */
+  @Test
+  public void testInvalidLengths() throws Exception {
+    // A kind name length of 2^32 - 1, which does not fit in an int.
+    assertInvalid(blockWithKindLength(0xFF, 0xFF, 0xFF, 0xFF, 0x0F));
+    // A kind name length of 2^28 - 1 without the bytes of the name.
+    assertInvalid(blockWithKindLength(0xFF, 0xFF, 0xFF, 0x7F));
+    // A block of kind "x" with 2^31 - 2 children and no children.
+    byte[] kind = blockWithKindLength(1);
+    byte[] bytes = Arrays.copyOf(kind, kind.length + 9);
+    bytes[kind.length] = 'x';
+    byte[] rest = new byte[] {0, 0, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+        (byte) 0xFF, 0x07};
+    System.arraycopy(rest, 0, bytes, kind.length + 1, rest.length);
+    assertInvalid(bytes);
+  }
+}
@@ -0,0 +1,156 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.apache.impala.analysis.ObjectSyntaxBlock;
+import org.apache.impala.analysis.SyntaxBlock;
+import org.apache.impala.util.SyntaxBlockCursor.Order;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for SyntaxBlockCursor.
+ */
+public class TestSyntaxBlockCursor {
+
+  private static SyntaxBlock node(String name, SyntaxBlock... children) {
+    ObjectSyntaxBlock<String> block = new ObjectSyntaxBlock<String>(name);
+    if (children.length > 0) block.subBlocks = Lists.newArrayList(children);
+    return block;
+  }
+
+  private static String name(SyntaxBlock block) {
+    return ((ObjectSyntaxBlock<?>) block).getObjectValue().toString();
+  }
+
+  // a(b(d, null, e), c(f))
+  private static SyntaxBlock sampleTree() {
+    return node("a", node("b", node("d"), null, node("e")), node("c", node("f")));
+  }
+
+  private static String walk(SyntaxBlockCursor cursor) {
+    StringBuilder sb = new StringBuilder();
+    while (cursor.next()) sb.append(name(cursor.current()));
+    return sb.toString();
+  }
+
+  @Test
+  public void testOrders() {
+    assertEquals("abdecf", walk(new SyntaxBlockCursor(sampleTree(), Order.PRE_ORDER)));
+    assertEquals("debfca", walk(new SyntaxBlockCursor(sampleTree(), Order.POST_ORDER)));
+    assertEquals("", walk(new SyntaxBlockCursor(null)));
+  }
+
+  @Test
+  public void testAncestorsAndChildIndex() {
+    SyntaxBlockCursor cursor = new SyntaxBlockCursor(sampleTree());
+    while (cursor.next()) {
+      String name = name(cursor.current());
+      List<SyntaxBlock> ancestors = cursor.ancestors();
+      assertEquals(cursor.depth(), ancestors.size());
+      if (name.equals("a")) {
+        assertTrue(ancestors.isEmpty());
+        assertNull(cursor.parent());
+      } else if (name.equals("e")) {
+        // The null child is skipped but still counts for the child index.
+        assertEquals(2, cursor.childIndex());
+        assertEquals("a", name(ancestors.get(0)));
+        assertEquals("b", name(ancestors.get(1)));
+        assertEquals("b", name(cursor.parent()));
+        try {
+          ancestors.add(cursor.current());
+          fail("ancestors() must be read-only");
+        } catch (UnsupportedOperationException e) {
+          // Expected.
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSkipSubtreeAndReset() {
+    SyntaxBlockCursor cursor = new SyntaxBlockCursor(sampleTree());
+    StringBuilder sb = new StringBuilder();
+    while (cursor.next()) {
+      sb.append(name(cursor.current()));
+      if (name(cursor.current()).equals("b")) cursor.skipSubtree();
+    }
+    assertEquals("abcf", sb.toString());
+
+    cursor.reset(node("x", node("y")));
+    assertEquals("xy", walk(cursor));
+    assertFalse(cursor.next());
+
+    SyntaxBlockCursor postOrder = new SyntaxBlockCursor(sampleTree(), Order.POST_ORDER);
+    assertTrue(postOrder.next());
+    try {
+      postOrder.skipSubtree();
+      fail("skipSubtree() must be rejected in post-order");
+    } catch (IllegalStateException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void testDeepTree() {
+    // Deep enough to overflow the thread stack with a recursive walk.
+    int depth = 100000;
+    SyntaxBlock root = new SyntaxBlock();
+    SyntaxBlock leaf = root;
+    for (int i = 0; i < depth; ++i) {
+      SyntaxBlock child = new SyntaxBlock();
+      leaf.subBlocks = Lists.newArrayList(child);
+      leaf = child;
+    }
+    for (Order order: Order.values()) {
+      SyntaxBlockCursor cursor = new SyntaxBlockCursor(root, order);
+      int count = 0;
+      int maxDepth = 0;
+      while (cursor.next()) {
+        ++count;
+        maxDepth = Math.max(maxDepth, cursor.depth());
+      }
+      assertEquals(depth + 1, count);
+      assertEquals(depth, maxDepth);
+    }
+  }
+
+  @Test
+  public void testWalkTerminates() {
+    final StringBuilder sb = new StringBuilder();
+    ImpalaSqlUtil.walk(sampleTree(), Order.PRE_ORDER, new ImpalaSqlUtil.WalkVisitor() {
+      @Override
+      public ImpalaSqlUtil.WalkResult visit(SyntaxBlock block, List<SyntaxBlock> ancestors,
+          int childIndex) {
+        sb.append(name(block));
+        return name(block).equals("e") ?
+            ImpalaSqlUtil.WalkResult.TERMINATE : ImpalaSqlUtil.WalkResult.CONTINUE;
+      }
+    });
+    assertEquals("abde", sb.toString());
+  }
+}
@@ -0,0 +1,128 @@
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package org.apache.impala.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.impala.analysis.SyntaxBlock;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for SyntaxBlockIndex. The index is checked against a linear scan over
+ * randomly generated, properly nested trees.
+ */
+public class TestSyntaxBlockIndex {
+
+  /**
+   * Builds a random tree covering [start, end). Children are disjoint sub-ranges
+   * separated by random gaps, mimicking tokens separated by whitespace.
+   */
+  private static SyntaxBlock randomTree(Random rand, int start, int end, int depth) {
+    SyntaxBlock block = new SyntaxBlock(start, end);
+    if (depth == 0 || end - start < 2) return block;
+    block.subBlocks = Lists.newArrayList();
+    int pos = start;
+    while (pos < end) {
+      int childStart = pos + rand.nextInt(2);
+      if (childStart >= end) break;
+      int childEnd = Math.min(end, childStart + 1 + rand.nextInt(end - childStart));
+      block.subBlocks.add(randomTree(rand, childStart, childEnd, depth - 1));
+      pos = childEnd;
+    }
+    return block;
+  }
+
+  private static List<SyntaxBlock> flatten(SyntaxBlock root) {
+    List<SyntaxBlock> result = Lists.newArrayList();
+    SyntaxBlockCursor cursor = new SyntaxBlockCursor(root);
+    while (cursor.next()) result.add(cursor.current());
+    return result;
+  }
+
+  private static boolean covers(SyntaxBlock block, int offset) {
+    return block.startPosition <= offset && offset < block.endPosition;
+  }
+
+  @Test
+  public void testAgainstLinearScan() {
+    Random rand = new Random(42);
+    for (int iter = 0; iter < 20; ++iter) {
+      int length = 50 + rand.nextInt(500);
+      SyntaxBlock root = randomTree(rand, 0, length, 8);
+      List<SyntaxBlock> all = flatten(root);
+      SyntaxBlockIndex index = SyntaxBlockIndex.build(root);
+      assertEquals(all.size(), index.size());
+
+      for (int offset = -1; offset <= length; ++offset) {
+        int expectedCount = 0;
+        SyntaxBlock expectedInnermost = null;
+        for (SyntaxBlock block: all) {
+          if (!covers(block, offset)) continue;
+          ++expectedCount;
+          // Nested blocks are visited in pre-order, so the last hit is the innermost.
+          expectedInnermost = block;
+        }
+        assertSame(expectedInnermost, index.innermostAt(offset));
+        List<SyntaxBlock> enclosing = index.enclosingAt(offset);
+        assertEquals(expectedCount, enclosing.size());
+        if (expectedCount > 0) {
+          assertSame(expectedInnermost, enclosing.get(0));
+          assertSame(root, enclosing.get(enclosing.size() - 1));
+        }
+      }
+
+      for (int i = 0; i < 100; ++i) {
+        int from = rand.nextInt(length);
+        int to = from + 1 + rand.nextInt(20);
+        int expectedCount = 0;
+        for (SyntaxBlock block: all) {
+          if (block.startPosition < to && block.endPosition > from) ++expectedCount;
+        }
+        List<SyntaxBlock> overlapping = index.overlapping(from, to);
+        assertEquals(expectedCount, overlapping.size());
+        for (int j = 1; j < overlapping.size(); ++j) {
+          assertTrue(overlapping.get(j - 1).startPosition
+              <= overlapping.get(j).startPosition);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testUnpositionedAndSharedBlocks() {
+    SyntaxBlock shared = new SyntaxBlock(2, 4);
+    SyntaxBlock unpositioned = new SyntaxBlock();
+    SyntaxBlock root = new SyntaxBlock(0, 10,
+        Lists.<SyntaxBlock>newArrayList(shared, unpositioned, null, shared));
+    SyntaxBlockIndex index = SyntaxBlockIndex.build(root);
+    assertEquals(2, index.size());
+    assertSame(shared, index.innermostAt(3));
+    assertSame(root, index.innermostAt(4));
+    assertNull(index.innermostAt(10));
+    assertTrue(index.overlapping(5, 5).isEmpty());
+    assertEquals(0, SyntaxBlockIndex.build(null).size());
+  }
+}